@@ -202,6 +202,7 @@ public final class AuthenticationConfiguration {
     }
 
     private volatile SaslClientFactory saslClientFactory = null;
+    private volatile SaslClientFactoryChain saslClientFactoryChain = null;
     private int hashCode;
     private String toString;
 
@@ -1493,27 +1494,50 @@ public final class AuthenticationConfiguration {
     }
 
     SaslClient createSaslClient(URI uri, Collection<String> serverMechanisms, UnaryOperator<SaslClientFactory> factoryOperator, SSLSession sslSession) throws SaslException {
-        SaslClientFactory saslClientFactory = factoryOperator.apply(getSaslClientFactory());
         final SaslMechanismSelector selector = this.saslMechanismSelector;
         serverMechanisms = (selector == null ? SaslMechanismSelector.DEFAULT : selector).apply(serverMechanisms, sslSession);
         if (serverMechanisms.isEmpty()) {
             return null;
         }
         final Principal authorizationPrincipal = getAuthorizationPrincipal();
-        final Predicate<String> filter;
+        final boolean anonymousOnly;
         final String authzName;
         if (authorizationPrincipal == null) {
-            filter = this::saslSupportedByConfiguration;
+            anonymousOnly = false;
             authzName = null;
         } else if (authorizationPrincipal instanceof NamePrincipal) {
-            filter = this::saslSupportedByConfiguration;
+            anonymousOnly = false;
             authzName = authorizationPrincipal.getName();
         } else if (authorizationPrincipal instanceof AnonymousPrincipal) {
-            filter = ((Predicate<String>) this::saslSupportedByConfiguration).and("ANONYMOUS"::equals);
+            anonymousOnly = true;
             authzName = null;
         } else {
             return null;
         }
+        final Predicate<String> filter = anonymousOnly ? ((Predicate<String>) this::saslSupportedByConfiguration).and("ANONYMOUS"::equals) : this::saslSupportedByConfiguration;
+        final String host = uri.getHost();
+        SaslClientFactoryChain chain = this.saslClientFactoryChain;
+        // the filter depends on the authorization principal, which can change when it is forwarded from a security domain
+        if (chain == null || chain.factoryOperator != factoryOperator || ! Objects.equals(chain.host, host) || chain.anonymousOnly != anonymousOnly) {
+            final SaslClientFactory serverFactory = createServerSaslClientFactory(factoryOperator, host);
+            this.saslClientFactoryChain = chain = new SaslClientFactoryChain(factoryOperator, host, anonymousOnly, serverFactory, wrapSaslClientFactory(serverFactory, filter));
+        }
+        SaslClientFactory saslClientFactory = chain.factory;
+        if (sslSession != null) {
+            saslClientFactory = wrapSaslClientFactory(new SSLSaslClientFactory(() -> SSLConnection.forSession(sslSession, true), chain.serverFactory), filter);
+        }
+
+        SaslClient saslClient = saslClientFactory.createSaslClient(serverMechanisms.toArray(NO_STRINGS),
+                authzName, uri.getScheme(), host, Collections.emptyMap(), createCallbackHandler());
+
+        if (log.isTraceEnabled()) {
+            log.tracef("Created SaslClient [%s] for mechanisms %s", saslClient, Arrays2.objectToString(serverMechanisms));
+        }
+        return saslClient;
+    }
+
+    private SaslClientFactory createServerSaslClientFactory(UnaryOperator<SaslClientFactory> factoryOperator, String host) {
+        SaslClientFactory saslClientFactory = factoryOperator.apply(getSaslClientFactory());
         Map<String, ?> mechanismProperties = this.saslMechanismProperties;
         if (! mechanismProperties.isEmpty()) {
             mechanismProperties = new HashMap<>(mechanismProperties);
@@ -1526,7 +1550,6 @@ public final class AuthenticationConfiguration {
                 saslClientFactory = new PropertiesSaslClientFactory(saslClientFactory, mechanismProperties);
             }
         }
-        String host = uri.getHost();
         if (host != null) {
             saslClientFactory = new ServerNameSaslClientFactory(saslClientFactory, host);
         }
@@ -1534,21 +1557,13 @@ public final class AuthenticationConfiguration {
         if (protocol != null) {
             saslClientFactory = new ProtocolSaslClientFactory(saslClientFactory, protocol);
         }
-        if (sslSession != null) {
-            saslClientFactory = new SSLSaslClientFactory(() -> SSLConnection.forSession(sslSession, true), saslClientFactory);
-        }
-        saslClientFactory = new LocalPrincipalSaslClientFactory(new FilterMechanismSaslClientFactory(saslClientFactory, filter));
-        final SaslClientFactory finalSaslClientFactory = saslClientFactory;
-        saslClientFactory = WILDFLY_ELYTRON_CAPTURE_ACCESS_CONTROL_CONTEXT_PROPERTY ? doPrivileged((PrivilegedAction<PrivilegedSaslClientFactory>) () -> new PrivilegedSaslClientFactory(finalSaslClientFactory), capturedAccessContext) :
-                new PrivilegedSaslClientFactory(finalSaslClientFactory);
-
-        SaslClient saslClient = saslClientFactory.createSaslClient(serverMechanisms.toArray(NO_STRINGS),
-                authzName, uri.getScheme(), uri.getHost(), Collections.emptyMap(), createCallbackHandler());
+        return saslClientFactory;
+    }
 
-        if (log.isTraceEnabled()) {
-            log.tracef("Created SaslClient [%s] for mechanisms %s", saslClient, Arrays2.objectToString(serverMechanisms));
-        }
-        return saslClient;
+    private SaslClientFactory wrapSaslClientFactory(SaslClientFactory saslClientFactory, Predicate<String> filter) {
+        final SaslClientFactory finalSaslClientFactory = new LocalPrincipalSaslClientFactory(new FilterMechanismSaslClientFactory(saslClientFactory, filter));
+        return WILDFLY_ELYTRON_CAPTURE_ACCESS_CONTROL_CONTEXT_PROPERTY ? doPrivileged((PrivilegedAction<PrivilegedSaslClientFactory>) () -> new PrivilegedSaslClientFactory(finalSaslClientFactory), capturedAccessContext) :
+                new PrivilegedSaslClientFactory(finalSaslClientFactory);
     }
 
     CallbackHandler createCallbackHandler() {
@@ -2001,4 +2016,24 @@ public final class AuthenticationConfiguration {
             }
         }
     }
+
+    /**
+     * The SASL client factories last assembled by a configuration, which are reused as long as they are requested for the
+     * same host with the same factory operator and mechanism filter.
+     */
+    private static final class SaslClientFactoryChain {
+        final UnaryOperator<SaslClientFactory> factoryOperator;
+        final String host;
+        final boolean anonymousOnly;
+        final SaslClientFactory serverFactory;
+        final SaslClientFactory factory;
+
+        SaslClientFactoryChain(final UnaryOperator<SaslClientFactory> factoryOperator, final String host, final boolean anonymousOnly, final SaslClientFactory serverFactory, final SaslClientFactory factory) {
+            this.factoryOperator = factoryOperator;
+            this.host = host;
+            this.anonymousOnly = anonymousOnly;
+            this.serverFactory = serverFactory;
+            this.factory = factory;
+        }
+    }
 }
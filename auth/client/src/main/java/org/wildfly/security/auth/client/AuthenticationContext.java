@@ -24,6 +24,8 @@ import java.net.URI;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 
@@ -54,9 +56,15 @@ public final class AuthenticationContext implements Contextual<AuthenticationCon
         CONTEXT_MANAGER.setGlobalDefaultSupplier(() -> DefaultAuthenticationContextProvider.DEFAULT);
     }
 
+    private static final int MAX_DESTINATIONS = 256;
+
     final RuleNode<AuthenticationConfiguration> authRules;
     final RuleNode<SecurityFactory<SSLContext>> sslRules;
 
+    private volatile RuleIndex<AuthenticationConfiguration> authRuleIndex;
+    private volatile RuleIndex<SecurityFactory<SSLContext>> sslRuleIndex;
+    private final Map<Destination, Destination> destinations = new ConcurrentHashMap<>();
+
     static final AuthenticationContext EMPTY = new AuthenticationContext();
 
     private AuthenticationContext() {
@@ -233,21 +241,39 @@ public final class AuthenticationContext implements Contextual<AuthenticationCon
     }
 
     RuleNode<AuthenticationConfiguration> authRuleMatching(URI uri, String abstractType, String abstractTypeAuthority) {
-        RuleNode<AuthenticationConfiguration> node = this.authRules;
-        while (node != null) {
-            if (node.getRule().matches(uri, abstractType, abstractTypeAuthority)) return node;
-            node = node.getNext();
+        if (authRules == null) {
+            return null;
         }
-        return null;
+        RuleIndex<AuthenticationConfiguration> authRuleIndex = this.authRuleIndex;
+        if (authRuleIndex == null) {
+            this.authRuleIndex = authRuleIndex = new RuleIndex<>(authRules);
+        }
+        return authRuleIndex.ruleMatching(uri, abstractType, abstractTypeAuthority);
     }
 
     RuleNode<SecurityFactory<SSLContext>> sslRuleMatching(URI uri, String abstractType, String abstractTypeAuthority) {
-        RuleNode<SecurityFactory<SSLContext>> node = this.sslRules;
-        while (node != null) {
-            if (node.getRule().matches(uri, abstractType, abstractTypeAuthority)) return node;
-            node = node.getNext();
+        if (sslRules == null) {
+            return null;
+        }
+        RuleIndex<SecurityFactory<SSLContext>> sslRuleIndex = this.sslRuleIndex;
+        if (sslRuleIndex == null) {
+            this.sslRuleIndex = sslRuleIndex = new RuleIndex<>(sslRules);
+        }
+        return sslRuleIndex.ruleMatching(uri, abstractType, abstractTypeAuthority);
+    }
+
+    Destination getDestination(URI uri, String abstractType, String abstractTypeAuthority) {
+        Destination destination = new Destination(uri, abstractType, abstractTypeAuthority);
+        Destination existing = destinations.get(destination);
+        if (existing != null) {
+            return existing;
+        }
+        destination.match(this);
+        if (destinations.size() >= MAX_DESTINATIONS) {
+            destinations.clear();
         }
-        return null;
+        existing = destinations.putIfAbsent(destination, destination);
+        return existing != null ? existing : destination;
     }
 
     /**
@@ -26,6 +26,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
 import java.security.AccessControlContext;
+import java.security.AccessController;
 import java.security.GeneralSecurityException;
 import java.security.Principal;
 import java.security.PrivilegedAction;
@@ -114,10 +115,9 @@ public final class AuthenticationContextConfigurationClient {
     public AuthenticationConfiguration getAuthenticationConfiguration(URI uri, AuthenticationContext authenticationContext, int protocolDefaultPort, String abstractType, String abstractTypeAuthority) {
         Assert.checkNotNullParam("uri", uri);
         Assert.checkNotNullParam("authenticationContext", authenticationContext);
-        final RuleNode<AuthenticationConfiguration> node = authenticationContext.authRuleMatching(uri, abstractType, abstractTypeAuthority);
-        AuthenticationConfiguration configuration = node != null ? node.getConfiguration() : AuthenticationConfiguration.empty();
-        configuration = initializeConfiguration(uri, configuration);
-        configuration = establishOverrides(uri, protocolDefaultPort, configuration);
+        final Destination destination = authenticationContext.getDestination(uri, abstractType, abstractTypeAuthority);
+        final RuleNode<AuthenticationConfiguration> node = destination.getAuthRule();
+        final AuthenticationConfiguration configuration = resolveConfiguration(uri, destination, protocolDefaultPort);
 
         log.tracef("getAuthenticationConfiguration uri=%s, protocolDefaultPort=%d, abstractType=%s, abstractTypeAuthority=%s, MatchRule=[%s], AuthenticationConfiguration=[%s]",
                 uri, protocolDefaultPort, abstractType, abstractTypeAuthority, node != null ? node.rule : null, configuration);
@@ -139,9 +139,9 @@ public final class AuthenticationContextConfigurationClient {
     public AuthenticationConfiguration getAuthenticationConfigurationNoOverrides(URI uri, AuthenticationContext authenticationContext, String abstractType, String abstractTypeAuthority) {
         Assert.checkNotNullParam("uri", uri);
         Assert.checkNotNullParam("authenticationContext", authenticationContext);
-        final RuleNode<AuthenticationConfiguration> node = authenticationContext.authRuleMatching(uri, abstractType, abstractTypeAuthority);
-        AuthenticationConfiguration configuration = node != null ? node.getConfiguration() : AuthenticationConfiguration.empty();
-        configuration = initializeConfiguration(uri, configuration);
+        final Destination destination = authenticationContext.getDestination(uri, abstractType, abstractTypeAuthority);
+        final RuleNode<AuthenticationConfiguration> node = destination.getAuthRule();
+        final AuthenticationConfiguration configuration = resolveConfiguration(uri, destination, Destination.NO_OVERRIDES);
 
         log.tracef("getAuthenticationConfiguration uri=%s, abstractType=%s, abstractTypeAuthority=%s, MatchRule=[%s], AuthenticationConfiguration=[%s]",
                 uri, abstractType, abstractTypeAuthority, node != null ? node.rule : null, configuration);
@@ -149,6 +149,36 @@ public final class AuthenticationContextConfigurationClient {
         return configuration;
     }
 
+    /**
+     * Resolve the configuration of a destination, reusing the configuration resolved by an earlier call unless it captured the
+     * current identity or was captured with a different access control context.
+     */
+    private static AuthenticationConfiguration resolveConfiguration(final URI uri, final Destination destination, final int protocolDefaultPort) {
+        final RuleNode<AuthenticationConfiguration> node = destination.getAuthRule();
+        final AuthenticationConfiguration matched = node != null ? node.getConfiguration() : AuthenticationConfiguration.empty();
+        final boolean cacheable = matched.authenticationNameForwardSecurityDomain == null
+                && matched.authenticationCredentialsForwardSecurityDomain == null
+                && matched.authorizationNameForwardSecurityDomain == null;
+        AccessControlContext accessContext = null;
+        if (cacheable) {
+            if (AuthenticationConfiguration.WILDFLY_ELYTRON_CAPTURE_ACCESS_CONTROL_CONTEXT_PROPERTY && matched.getCapturedContext() == null) {
+                accessContext = AccessController.getContext();
+            }
+            final AuthenticationConfiguration configuration = destination.getConfiguration(protocolDefaultPort, accessContext);
+            if (configuration != null) {
+                return configuration;
+            }
+        }
+        AuthenticationConfiguration configuration = initializeConfiguration(uri, matched);
+        if (protocolDefaultPort != Destination.NO_OVERRIDES) {
+            configuration = establishOverrides(uri, protocolDefaultPort, configuration);
+        }
+        if (cacheable) {
+            destination.setConfiguration(protocolDefaultPort, accessContext, configuration);
+        }
+        return configuration;
+    }
+
     @SuppressWarnings("deprecation")
     private static AuthenticationConfiguration establishOverrides(final URI uri, final int protocolDefaultPort, AuthenticationConfiguration configuration) {
         final String uriHost = uri.getHost();
@@ -208,7 +238,8 @@ public final class AuthenticationContextConfigurationClient {
     }
 
     /**
-     * Get the SSL context which matches the given URI and type, or {@link SSLContext#getDefault()} if there is none.
+     * Get the SSL context which matches the given URI and type, or {@link SSLContext#getDefault()} if there is none.  The SSL
+     * context is created once for each URI and type of the authentication context and reused by later calls.
      *
      * @param uri the URI to match (must not be {@code null})
      * @param authenticationContext the authentication context to examine (must not be {@code null})
@@ -217,7 +248,9 @@ public final class AuthenticationContextConfigurationClient {
      * @return the matching SSL context
      */
     public SSLContext getSSLContext(URI uri, AuthenticationContext authenticationContext, String abstractType, String abstractTypeAuthority) throws GeneralSecurityException {
-        return getSSLContextFactory(uri, authenticationContext, abstractType, abstractTypeAuthority).create();
+        Assert.checkNotNullParam("uri", uri);
+        Assert.checkNotNullParam("authenticationContext", authenticationContext);
+        return authenticationContext.getDestination(uri, abstractType, abstractTypeAuthority).getSSLContext();
     }
 
     /**
@@ -232,9 +265,7 @@ public final class AuthenticationContextConfigurationClient {
     public SecurityFactory<SSLContext> getSSLContextFactory(URI uri, AuthenticationContext authenticationContext, String abstractType, String abstractTypeAuthority) {
         Assert.checkNotNullParam("uri", uri);
         Assert.checkNotNullParam("authenticationContext", authenticationContext);
-        final RuleNode<SecurityFactory<SSLContext>> node = authenticationContext.sslRuleMatching(uri, abstractType, abstractTypeAuthority);
-        if (node == null) return SSLContext::getDefault;
-        return node.getConfiguration();
+        return authenticationContext.getDestination(uri, abstractType, abstractTypeAuthority).getSSLContextFactory();
     }
 
     /**
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.client;
+
+import java.net.URI;
+import java.security.AccessControlContext;
+import java.security.GeneralSecurityException;
+import java.util.Objects;
+
+import javax.net.ssl.SSLContext;
+
+import org.wildfly.security.SecurityFactory;
+
+/**
+ * A destination of an {@link AuthenticationContext}, holding the rules of the context matching a URI and abstract type and
+ * what has been resolved from them so far.
+ *
+ * Destinations are cached by the context they were resolved from, as a context is immutable a new context never shares
+ * the destinations of the context it was derived from.
+ */
+final class Destination {
+
+    /**
+     * The protocol default port of a configuration resolved without the host, port and protocol of the URI.
+     */
+    static final int NO_OVERRIDES = Integer.MIN_VALUE;
+
+    private final URI uri;
+    private final String abstractType;
+    private final String abstractTypeAuthority;
+    private final int hashCode;
+
+    private RuleNode<AuthenticationConfiguration> authRule;
+    private RuleNode<SecurityFactory<SSLContext>> sslRule;
+
+    private volatile ResolvedConfiguration configuration;
+    private volatile ResolvedConfiguration configurationNoOverrides;
+    private volatile SSLContext sslContext;
+
+    Destination(URI uri, String abstractType, String abstractTypeAuthority) {
+        this.uri = uri;
+        this.abstractType = abstractType;
+        this.abstractTypeAuthority = abstractTypeAuthority;
+        this.hashCode = Objects.hash(uri, abstractType, abstractTypeAuthority);
+    }
+
+    /**
+     * Match the rules of the given context, this must be called before the destination is shared with other threads.
+     *
+     * @param context the context of this destination
+     */
+    void match(AuthenticationContext context) {
+        authRule = context.authRuleMatching(uri, abstractType, abstractTypeAuthority);
+        sslRule = context.sslRuleMatching(uri, abstractType, abstractTypeAuthority);
+    }
+
+    RuleNode<AuthenticationConfiguration> getAuthRule() {
+        return authRule;
+    }
+
+    AuthenticationConfiguration getConfiguration(int protocolDefaultPort, AccessControlContext accessContext) {
+        final ResolvedConfiguration configuration = protocolDefaultPort == NO_OVERRIDES ? configurationNoOverrides : this.configuration;
+        return configuration != null && configuration.protocolDefaultPort == protocolDefaultPort
+                && Objects.equals(configuration.accessContext, accessContext) ? configuration.configuration : null;
+    }
+
+    void setConfiguration(int protocolDefaultPort, AccessControlContext accessContext, AuthenticationConfiguration configuration) {
+        final ResolvedConfiguration resolvedConfiguration = new ResolvedConfiguration(protocolDefaultPort, accessContext, configuration);
+        if (protocolDefaultPort == NO_OVERRIDES) {
+            configurationNoOverrides = resolvedConfiguration;
+        } else {
+            this.configuration = resolvedConfiguration;
+        }
+    }
+
+    SecurityFactory<SSLContext> getSSLContextFactory() {
+        return sslRule == null ? SSLContext::getDefault : sslRule.getConfiguration();
+    }
+
+    SSLContext getSSLContext() throws GeneralSecurityException {
+        SSLContext sslContext = this.sslContext;
+        if (sslContext == null) {
+            this.sslContext = sslContext = getSSLContextFactory().create();
+        }
+        return sslContext;
+    }
+
+    public boolean equals(final Object obj) {
+        return obj instanceof Destination && equals((Destination) obj);
+    }
+
+    boolean equals(final Destination other) {
+        return this == other || other != null && hashCode == other.hashCode && uri.equals(other.uri)
+                && Objects.equals(abstractType, other.abstractType) && Objects.equals(abstractTypeAuthority, other.abstractTypeAuthority);
+    }
+
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private static final class ResolvedConfiguration {
+        private final int protocolDefaultPort;
+        private final AccessControlContext accessContext;
+        private final AuthenticationConfiguration configuration;
+
+        ResolvedConfiguration(int protocolDefaultPort, AccessControlContext accessContext, AuthenticationConfiguration configuration) {
+            this.protocolDefaultPort = protocolDefaultPort;
+            this.accessContext = accessContext;
+            this.configuration = configuration;
+        }
+    }
+}
@@ -86,6 +86,11 @@ class MatchHostRule extends MatchRule {
         return true;
     }
 
+    @Override
+    boolean isHostSuffixMatched() {
+        return suffixMatch;
+    }
+
     @Override
     public int hashCode() {
         // our prime is 2011
@@ -86,6 +86,21 @@ public abstract class MatchRule {
             return null;
         }
 
+        @Override
+        boolean isHostSuffixMatched() {
+            return false;
+        }
+
+        @Override
+        public boolean isNetworkMatched() {
+            return false;
+        }
+
+        @Override
+        public CidrAddress getMatchNetwork() {
+            return null;
+        }
+
         @Override
         public boolean isPathMatched() {
             return false;
@@ -334,6 +349,15 @@ public abstract class MatchRule {
         return parent.getMatchHost();
     }
 
+    /**
+     * Determine whether the host name returned by {@link #getMatchHost()} also matches any of its subdomains.
+     *
+     * @return {@code true} if the subdomains of the host name are matched, {@code false} otherwise
+     */
+    boolean isHostSuffixMatched() {
+        return parent.isHostSuffixMatched();
+    }
+
     /**
      * Determine whether this rule matches based on network.
      *
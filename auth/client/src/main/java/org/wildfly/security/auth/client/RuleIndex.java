@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.wildfly.common.net.CidrAddress;
+import org.wildfly.common.net.Inet;
+
+/**
+ * An immutable index of a list of rules, used to find the first rule matching a URI without evaluating every rule of the
+ * list.
+ *
+ * Rules are indexed by the scheme they match and then by the host they match, an exact host name is looked up by hash, a
+ * host name which also matches its subdomains is looked up for each parent domain of the host and a network is looked up in
+ * a tree of the bits of the network addresses. The rules which could match the URI are then evaluated in their original
+ * order so the rule selected is always the first one of the list which matches.
+ *
+ * @param <T> the type of the configuration of the rules
+ */
+final class RuleIndex<T> {
+
+    private final List<RuleNode<T>> nodes = new ArrayList<>();
+    private final HostIndex anySchemeRules = new HostIndex();
+    private final Map<String, HostIndex> rulesByScheme = new HashMap<>();
+
+    RuleIndex(RuleNode<T> node) {
+        while (node != null) {
+            MatchRule rule = node.getRule();
+            HostIndex hostIndex = rule.isProtocolMatched() ? rulesByScheme.computeIfAbsent(rule.getMatchProtocol(), s -> new HostIndex()) : anySchemeRules;
+            hostIndex.add(rule, nodes.size());
+            nodes.add(node);
+            node = node.getNext();
+        }
+    }
+
+    RuleNode<T> ruleMatching(URI uri, String abstractType, String abstractTypeAuthority) {
+        BitSet candidates = new BitSet(nodes.size());
+        anySchemeRules.addCandidates(uri, candidates);
+        String scheme = uri.getScheme();
+        if (scheme != null) {
+            HostIndex hostIndex = rulesByScheme.get(scheme);
+            if (hostIndex != null) {
+                hostIndex.addCandidates(uri, candidates);
+            }
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            RuleNode<T> node = nodes.get(i);
+            if (node.getRule().matches(uri, abstractType, abstractTypeAuthority)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static final class HostIndex {
+        private final BitSet anyHostRules = new BitSet();
+        private final Map<String, BitSet> rulesByHost = new HashMap<>();
+        private final Map<String, BitSet> rulesByDomain = new HashMap<>();
+        private NetworkNode inet4Networks;
+        private NetworkNode inet6Networks;
+
+        void add(MatchRule rule, int index) {
+            if (rule.isHostMatched()) {
+                Map<String, BitSet> rules = rule.isHostSuffixMatched() ? rulesByDomain : rulesByHost;
+                rules.computeIfAbsent(rule.getMatchHost(), h -> new BitSet()).set(index);
+            } else if (rule.isNetworkMatched()) {
+                CidrAddress network = rule.getMatchNetwork();
+                byte[] address = network.getNetworkAddress().getAddress();
+                NetworkNode root;
+                if (address.length == 4) {
+                    root = inet4Networks == null ? inet4Networks = new NetworkNode() : inet4Networks;
+                } else {
+                    root = inet6Networks == null ? inet6Networks = new NetworkNode() : inet6Networks;
+                }
+                root.add(address, network.getNetmaskBits(), index);
+            } else {
+                anyHostRules.set(index);
+            }
+        }
+
+        void addCandidates(URI uri, BitSet candidates) {
+            candidates.or(anyHostRules);
+            String host = uri.getHost();
+            if (host == null) {
+                return;
+            }
+
+            String canonHost = host.toLowerCase(Locale.ROOT);
+            addAll(rulesByHost.get(canonHost), candidates);
+            if (! rulesByDomain.isEmpty()) {
+                // the host itself and each of its parent domains
+                String domain = canonHost;
+                for (;;) {
+                    addAll(rulesByDomain.get(domain), candidates);
+                    int dot = domain.indexOf('.');
+                    if (dot == -1) {
+                        break;
+                    }
+                    domain = domain.substring(dot + 1);
+                }
+            }
+            if (inet4Networks != null || inet6Networks != null) {
+                // the same parsing as MatchNetworkRule
+                byte[] hostBytes;
+                if (host.startsWith("[") && host.endsWith("]")) {
+                    hostBytes = Inet.parseInet6AddressToBytes(host);
+                } else {
+                    hostBytes = Inet.parseInet4AddressToBytes(host);
+                }
+                if (hostBytes != null) {
+                    NetworkNode root = hostBytes.length == 4 ? inet4Networks : inet6Networks;
+                    if (root != null) {
+                        root.addCandidates(hostBytes, candidates);
+                    }
+                }
+            }
+        }
+
+        private static void addAll(BitSet rules, BitSet candidates) {
+            if (rules != null) {
+                candidates.or(rules);
+            }
+        }
+    }
+
+    /**
+     * A node of a binary tree of network address bits, holding the rules of the networks whose netmask ends at this node.
+     */
+    private static final class NetworkNode {
+        private NetworkNode zero;
+        private NetworkNode one;
+        private BitSet rules;
+
+        void add(byte[] address, int netmaskBits, int index) {
+            NetworkNode node = this;
+            for (int bit = 0; bit < netmaskBits; bit++) {
+                if (isSet(address, bit)) {
+                    node = node.one == null ? node.one = new NetworkNode() : node.one;
+                } else {
+                    node = node.zero == null ? node.zero = new NetworkNode() : node.zero;
+                }
+            }
+            if (node.rules == null) {
+                node.rules = new BitSet();
+            }
+            node.rules.set(index);
+        }
+
+        void addCandidates(byte[] address, BitSet candidates) {
+            NetworkNode node = this;
+            int bit = 0;
+            while (node != null) {
+                if (node.rules != null) {
+                    candidates.or(node.rules);
+                }
+                if (bit == address.length * 8) {
+                    break;
+                }
+                node = isSet(address, bit) ? node.one : node.zero;
+                bit++;
+            }
+        }
+
+        private static boolean isSet(byte[] address, int bit) {
+            return (address[bit >> 3] & (0x80 >> (bit & 7))) != 0;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.client;
+
+import static java.security.AccessController.doPrivileged;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import javax.net.ssl.SSLContext;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.sasl.SaslClient;
+import javax.security.sasl.SaslClientFactory;
+import javax.security.sasl.SaslException;
+
+import org.junit.Test;
+import org.wildfly.security.auth.server.SecurityDomain;
+import org.wildfly.security.auth.server.SecurityRealm;
+
+/**
+ * Tests of the destinations cached by an {@link AuthenticationContext} for {@link AuthenticationContextConfigurationClient}.
+ */
+public class AuthenticationContextConfigurationClientTest {
+
+    private static final AuthenticationContextConfigurationClient CLIENT = doPrivileged(AuthenticationContextConfigurationClient.ACTION);
+
+    @Test
+    public void testSSLContextCreatedOncePerDestination() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        AuthenticationContext context = AuthenticationContext.empty().withSsl(MatchRule.ALL.matchHost("*.wildfly.org"), () -> {
+            created.incrementAndGet();
+            return SSLContext.getInstance("TLS");
+        });
+
+        SSLContext sslContext = CLIENT.getSSLContext(new URI("https://security.wildfly.org/"), context);
+        assertSame(sslContext, CLIENT.getSSLContext(new URI("https://security.wildfly.org/"), context));
+        assertEquals(1, created.get());
+
+        assertNotSame(sslContext, CLIENT.getSSLContext(new URI("https://docs.wildfly.org/"), context));
+        assertEquals(2, created.get());
+
+        // a derived context does not share the destinations of the original context
+        AuthenticationContext derived = context.with(MatchRule.ALL, AuthenticationConfiguration.empty());
+        assertNotSame(sslContext, CLIENT.getSSLContext(new URI("https://security.wildfly.org/"), derived));
+        assertEquals(3, created.get());
+
+        // no matching rule
+        assertSame(SSLContext.getDefault(), CLIENT.getSSLContext(new URI("https://localhost/"), context));
+    }
+
+    @Test
+    public void testConfigurationResolvedOncePerDestination() throws Exception {
+        AuthenticationContext context = AuthenticationContext.empty()
+                .with(MatchRule.ALL.matchHost("localhost"), AuthenticationConfiguration.empty().useName("alice"));
+        URI uri = new URI("remote+http://localhost/");
+
+        AuthenticationConfiguration configuration = CLIENT.getAuthenticationConfiguration(uri, context, 8080);
+        assertSame(configuration, CLIENT.getAuthenticationConfiguration(uri, context, 8080));
+        assertEquals(8080, CLIENT.getRealPort(configuration));
+        assertEquals(9990, CLIENT.getRealPort(CLIENT.getAuthenticationConfiguration(uri, context, 9990)));
+
+        AuthenticationConfiguration noOverrides = CLIENT.getAuthenticationConfigurationNoOverrides(uri, context, null, null);
+        assertSame(noOverrides, CLIENT.getAuthenticationConfigurationNoOverrides(uri, context, null, null));
+        assertEquals(-1, CLIENT.getRealPort(noOverrides));
+    }
+
+    @Test
+    public void testSaslClientFactoryChainReused() throws Exception {
+        AtomicInteger applied = new AtomicInteger();
+        UnaryOperator<SaslClientFactory> factoryOperator = factory -> {
+            applied.incrementAndGet();
+            return factory;
+        };
+        AuthenticationConfiguration configuration = AuthenticationConfiguration.empty()
+                .useName("alice")
+                .usePassword("password")
+                .useSaslClientFactory(new SaslClientFactory() {
+                    @Override
+                    public SaslClient createSaslClient(String[] mechanisms, String authorizationId, String protocol, String serverName, Map<String, ?> props, CallbackHandler cbh) {
+                        return null;
+                    }
+
+                    @Override
+                    public String[] getMechanismNames(Map<String, ?> props) {
+                        return new String[] { "PLAIN" };
+                    }
+                });
+
+        CLIENT.createSaslClient(new URI("remote://localhost/"), configuration, Collections.singleton("PLAIN"), factoryOperator);
+        CLIENT.createSaslClient(new URI("remote://localhost/"), configuration, Collections.singleton("PLAIN"), factoryOperator);
+        assertEquals(1, applied.get());
+
+        CLIENT.createSaslClient(new URI("remote://otherhost/"), configuration, Collections.singleton("PLAIN"), factoryOperator);
+        assertEquals(2, applied.get());
+    }
+
+    @Test
+    public void testSaslClientFactoryChainFollowsForwardedAuthorization() throws Exception {
+        List<String> offered = new ArrayList<>();
+        SecurityDomain securityDomain = SecurityDomain.builder()
+                .addRealm("default", SecurityRealm.EMPTY_REALM).build()
+                .setDefaultRealmName("default")
+                .build();
+        AuthenticationConfiguration configuration = AuthenticationConfiguration.empty()
+                .useName("alice")
+                .usePassword("password")
+                .useForwardedAuthorizationIdentity(securityDomain)
+                .useSaslClientFactory(new SaslClientFactory() {
+                    @Override
+                    public SaslClient createSaslClient(String[] mechanisms, String authorizationId, String protocol, String serverName, Map<String, ?> props, CallbackHandler cbh) {
+                        offered.addAll(Arrays.asList(mechanisms));
+                        return null;
+                    }
+
+                    @Override
+                    public String[] getMechanismNames(Map<String, ?> props) {
+                        return new String[] { "PLAIN" };
+                    }
+                });
+        URI uri = new URI("remote://localhost/");
+
+        // the anonymous identity of the domain only allows the ANONYMOUS mechanism, which is not usable by alice
+        CLIENT.createSaslClient(uri, configuration, Collections.singleton("PLAIN"), UnaryOperator.identity());
+        assertEquals(Collections.emptyList(), offered);
+
+        securityDomain.createAdHocIdentity("bob").runAs(() -> {
+            try {
+                CLIENT.createSaslClient(uri, configuration, Collections.singleton("PLAIN"), UnaryOperator.identity());
+            } catch (SaslException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(Collections.singletonList("PLAIN"), offered);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.client;
+
+import java.net.URI;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of {@link RuleIndex}, the rule selected must always be the first rule of the list which matches.
+ */
+public class RuleIndexTest {
+
+    private static final String[] SCHEMES = { "http", "https", "remote+http", "domain" };
+    private static final String[] HOST_SPECS = { "wildfly.org", "*.wildfly.org", "security.wildfly.org", "*.security.wildfly.org",
+            "localhost", "*.org", "10.0.0.1", "10.0.0.0/8", "10.1.0.0/16", "0.0.0.0/0", "192.168.1.0/24", "::1", "fe80::/10" };
+    private static final String[] HOSTS = { "wildfly.org", "security.wildfly.org", "a.security.wildfly.org", "Security.WildFly.org",
+            "localhost", "example.com", "10.0.0.1", "10.1.2.3", "11.0.0.1", "192.168.1.7", "192.168.2.7", "[::1]", "[fe80::1]", "[2001:db8::1]" };
+    private static final String[] USERS = { null, "admin", "user" };
+
+    private static MatchRule randomRule(Random random) {
+        MatchRule rule = MatchRule.ALL;
+        if (random.nextInt(3) != 0) {
+            rule = rule.matchProtocol(SCHEMES[random.nextInt(SCHEMES.length)]);
+        }
+        if (random.nextInt(4) != 0) {
+            rule = rule.matchHost(HOST_SPECS[random.nextInt(HOST_SPECS.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            rule = rule.matchPort(random.nextBoolean() ? 8080 : 9990);
+        }
+        if (random.nextInt(5) == 0) {
+            rule = rule.matchUser(USERS[random.nextInt(USERS.length)]);
+        }
+        if (random.nextInt(6) == 0) {
+            rule = rule.matchAbstractType("ejb", null);
+        }
+        return rule;
+    }
+
+    private static URI randomUri(Random random) throws Exception {
+        String user = USERS[random.nextInt(USERS.length)];
+        String port = random.nextBoolean() ? "" : random.nextBoolean() ? ":8080" : ":9990";
+        return new URI(SCHEMES[random.nextInt(SCHEMES.length)] + "://" + (user == null ? "" : user + "@")
+                + HOSTS[random.nextInt(HOSTS.length)] + port + "/");
+    }
+
+    @Test
+    public void testSameResultsAsSequentialMatching() throws Exception {
+        Random random = new Random(5678);
+        for (int round = 0; round < 200; round++) {
+            RuleNode<Integer> rules = null;
+            for (int i = random.nextInt(12); i >= 0; i--) {
+                rules = new RuleNode<>(rules, randomRule(random), i);
+            }
+            RuleIndex<Integer> index = new RuleIndex<>(rules);
+
+            for (int check = 0; check < 50; check++) {
+                URI uri = check == 0 ? new URI("domain:other") : randomUri(random);
+                String abstractType = random.nextBoolean() ? "ejb" : null;
+                RuleNode<Integer> expected = rules;
+                while (expected != null && ! expected.getRule().matches(uri, abstractType, null)) {
+                    expected = expected.getNext();
+                }
+                Assert.assertSame(uri.toString(), expected, index.ruleMatching(uri, abstractType, null));
+            }
+        }
+    }
+
+    @Test
+    public void testFirstMatchSelected() throws Exception {
+        RuleNode<String> rules = new RuleNode<>(null, MatchRule.ALL, "default");
+        rules = new RuleNode<>(rules, MatchRule.ALL.matchHost("*.wildfly.org"), "domain");
+        rules = new RuleNode<>(rules, MatchRule.ALL.matchProtocol("https").matchHost("10.0.0.0/8"), "network");
+        rules = new RuleNode<>(rules, MatchRule.ALL.matchHost("security.wildfly.org").matchPort(8443), "host");
+        RuleIndex<String> index = new RuleIndex<>(rules);
+
+        Assert.assertEquals("host", index.ruleMatching(new URI("https://security.wildfly.org:8443/"), null, null).getConfiguration());
+        Assert.assertEquals("domain", index.ruleMatching(new URI("https://security.wildfly.org/"), null, null).getConfiguration());
+        Assert.assertEquals("network", index.ruleMatching(new URI("https://10.20.30.40/"), null, null).getConfiguration());
+        Assert.assertEquals("default", index.ruleMatching(new URI("http://10.20.30.40/"), null, null).getConfiguration());
+        Assert.assertEquals("default", index.ruleMatching(new URI("urn:example"), null, null).getConfiguration());
+    }
+}
@@ -21,6 +21,7 @@ package org.wildfly.security.auth.realm;
 import java.security.Principal;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import org.wildfly.common.function.ExceptionConsumer;
@@ -54,6 +55,38 @@ public class CachingModifiableSecurityRealm extends CachingSecurityRealm impleme
         super(realm, cache);
     }
 
+    /**
+     * Creates a new instance.
+     *
+     * @param realm the {@link SecurityRealm} whose {@link RealmIdentity} should be cached.
+     * @param cache the {@link RealmIdentityCache} instance
+     * @param negativeCache the {@link RealmIdentityCache} used to remember principals for which no identity exists, or
+     *                      {@code null} if lookups of non-existent identities should not be cached
+     * @param cacheVerifiedEvidence {@code true} if successfully verified password guesses should be remembered for cached identities
+     */
+    public CachingModifiableSecurityRealm(CacheableSecurityRealm realm, RealmIdentityCache cache, RealmIdentityCache negativeCache, boolean cacheVerifiedEvidence) {
+        super(realm, cache, negativeCache, cacheVerifiedEvidence);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param realm the {@link SecurityRealm} whose {@link RealmIdentity} should be cached.
+     * @param cache the {@link RealmIdentityCache} instance
+     * @param negativeCache the {@link RealmIdentityCache} used to remember principals for which no identity exists, or
+     *                      {@code null} if lookups of non-existent identities should not be cached
+     * @param cacheVerifiedEvidence {@code true} if successfully verified password guesses should be remembered for cached identities
+     * @param refreshExecutor the bounded {@link Executor} used to reload identities in the background, or {@code null} to
+     *                        disable refresh-ahead
+     * @param refreshAfter the age in milliseconds after which a cached identity is reloaded in the background
+     * @param maxStaleness the age in milliseconds after which a cached identity is no longer returned and is reloaded before
+     *                     returning, must be greater than {@code refreshAfter}
+     */
+    public CachingModifiableSecurityRealm(CacheableSecurityRealm realm, RealmIdentityCache cache, RealmIdentityCache negativeCache, boolean cacheVerifiedEvidence,
+                                          Executor refreshExecutor, long refreshAfter, long maxStaleness) {
+        super(realm, cache, negativeCache, cacheVerifiedEvidence, refreshExecutor, refreshAfter, maxStaleness);
+    }
+
     @Override
     public ModifiableRealmIdentity getRealmIdentityForUpdate(Principal principal) throws RealmUnavailableException {
         return wrap(getModifiableSecurityRealm().getRealmIdentityForUpdate(principal));
@@ -84,7 +117,7 @@ public class CachingModifiableSecurityRealm extends CachingSecurityRealm impleme
 
             @Override
             public void create() throws RealmUnavailableException {
-                modifiable.create();
+                executeAndInvalidate(modifiable -> { modifiable.create(); });
             }
 
             @Override
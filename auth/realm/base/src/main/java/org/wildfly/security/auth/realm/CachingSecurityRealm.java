@@ -18,11 +18,25 @@
 
 package org.wildfly.security.auth.realm;
 
+import static org.wildfly.common.Assert.checkMinimumParameter;
 import static org.wildfly.common.Assert.checkNotNullParam;
 import static org.wildfly.security.auth.realm.ElytronMessages.log;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.wildfly.security.auth.SupportLevel;
 import org.wildfly.security.auth.server.IdentityCredentials;
@@ -43,22 +57,97 @@ import org.wildfly.security.password.interfaces.ClearPassword;
 /**
  * <p>A wrapper class that provides caching capabilities for a {@link SecurityRealm} and its identities.
  *
+ * <p>Optionally lookups of identities which do not exist can also be cached in a separate negative cache, this cache should
+ * be configured with a short maximum age. Successfully verified {@link PasswordGuessEvidence} can also be remembered for
+ * each cached identity as a salted digest so that repeated verifications of the same password do not need to be verified
+ * against the credential or the wrapped realm again. Other evidence such as bearer tokens, which can expire or be revoked
+ * independently of the identity, is always verified. Both caches are invalidated along with the identity cache when the
+ * wrapped realm reports a change to an identity.
+ *
+ * <p>In refresh-ahead mode cached identities older than the refresh interval are reloaded from the wrapped realm in the
+ * background using the supplied {@link Executor} while the existing identity continues to be returned, identities older than
+ * the maximum staleness are always reloaded synchronously. When using this mode the maximum age of the identity cache
+ * should be disabled or set above the maximum staleness.
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Igor</a>
  */
 public class CachingSecurityRealm implements SecurityRealm {
 
+    /**
+     * The maximum number of verified evidence digests remembered for a single cached identity.
+     */
+    private static final int MAX_VERIFIED_EVIDENCE = 8;
+
     private final CacheableSecurityRealm realm;
     private final RealmIdentityCache cache;
+    private final RealmIdentityCache negativeCache;
+    private final byte[] evidenceSalt;
+    private final ThreadLocal<MessageDigest> evidenceDigest = new ThreadLocal<>();
+    private final Executor refreshExecutor;
+    private final long refreshAfter;
+    private final long maxStaleness;
+    private final Map<Principal, Object> pendingRefresh = new ConcurrentHashMap<>();
+    private final LongAdder refreshHitCount = new LongAdder();
+    private final LongAdder refreshMissCount = new LongAdder();
 
     /**
      * Creates a new instance.
      *
      * @param realm the {@link SecurityRealm} whose {@link RealmIdentity} should be cached.
-     * @param cache the {@link RealmIdentityCache} instance
+     * @param cache the {@link RealmIdentityCache} instance, {@link org.wildfly.security.cache.ConcurrentRealmIdentityCache} is
+     *              recommended where the realm is accessed concurrently by many threads
      */
     public CachingSecurityRealm(CacheableSecurityRealm realm, RealmIdentityCache cache) {
+        this(realm, cache, null, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param realm the {@link SecurityRealm} whose {@link RealmIdentity} should be cached.
+     * @param cache the {@link RealmIdentityCache} instance, {@link org.wildfly.security.cache.ConcurrentRealmIdentityCache} is
+     *              recommended where the realm is accessed concurrently by many threads
+     * @param negativeCache the {@link RealmIdentityCache} used to remember principals for which no identity exists, or
+     *                      {@code null} if lookups of non-existent identities should not be cached
+     * @param cacheVerifiedEvidence {@code true} if successfully verified password guesses should be remembered for cached identities
+     */
+    public CachingSecurityRealm(CacheableSecurityRealm realm, RealmIdentityCache cache, RealmIdentityCache negativeCache, boolean cacheVerifiedEvidence) {
+        this(realm, cache, negativeCache, cacheVerifiedEvidence, null, -1, -1);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param realm the {@link SecurityRealm} whose {@link RealmIdentity} should be cached.
+     * @param cache the {@link RealmIdentityCache} instance, {@link org.wildfly.security.cache.ConcurrentRealmIdentityCache} is
+     *              recommended where the realm is accessed concurrently by many threads
+     * @param negativeCache the {@link RealmIdentityCache} used to remember principals for which no identity exists, or
+     *                      {@code null} if lookups of non-existent identities should not be cached
+     * @param cacheVerifiedEvidence {@code true} if successfully verified password guesses should be remembered for cached identities
+     * @param refreshExecutor the bounded {@link Executor} used to reload identities in the background, or {@code null} to
+     *                        disable refresh-ahead
+     * @param refreshAfter the age in milliseconds after which a cached identity is reloaded in the background
+     * @param maxStaleness the age in milliseconds after which a cached identity is no longer returned and is reloaded before
+     *                     returning, must be greater than {@code refreshAfter}
+     */
+    public CachingSecurityRealm(CacheableSecurityRealm realm, RealmIdentityCache cache, RealmIdentityCache negativeCache, boolean cacheVerifiedEvidence,
+                                Executor refreshExecutor, long refreshAfter, long maxStaleness) {
         this.realm = checkNotNullParam("realm", realm);
         this.cache = checkNotNullParam("cache", cache);
+        this.negativeCache = negativeCache;
+        if (cacheVerifiedEvidence) {
+            evidenceSalt = new byte[16];
+            new SecureRandom().nextBytes(evidenceSalt);
+        } else {
+            evidenceSalt = null;
+        }
+        this.refreshExecutor = refreshExecutor;
+        if (refreshExecutor != null) {
+            checkMinimumParameter("refreshAfter", 0, refreshAfter);
+            checkMinimumParameter("maxStaleness", refreshAfter + 1, maxStaleness);
+        }
+        this.refreshAfter = refreshAfter;
+        this.maxStaleness = maxStaleness;
 
         if (realm instanceof CacheableSecurityRealm) {
             CacheableSecurityRealm cacheable = CacheableSecurityRealm.class.cast(realm);
@@ -73,23 +162,98 @@ public class CachingSecurityRealm implements SecurityRealm {
         RealmIdentity cached = cache.get(principal);
 
         if (cached != null) {
-            log.tracef("Returning cached RealmIdentity for '%s'", principal);
-            return cached;
+            if (refreshExecutor == null || cached instanceof CachedRealmIdentity == false) {
+                log.tracef("Returning cached RealmIdentity for '%s'", principal);
+                return cached;
+            }
+            long age = System.currentTimeMillis() - ((CachedRealmIdentity) cached).loadTime;
+            if (age <= maxStaleness) {
+                if (age > refreshAfter) {
+                    refreshHitCount.increment();
+                    scheduleRefresh(principal, cached);
+                }
+                log.tracef("Returning cached RealmIdentity for '%s'", principal);
+                return cached;
+            }
+            log.tracef("Cached RealmIdentity for '%s' exceeds maximum staleness, reloading.", principal);
+            refreshMissCount.increment();
+            cache.remove(principal);
+        }
+
+        if (negativeCache != null && negativeCache.get(principal) != null) {
+            log.tracef("RealmIdentity for '%s' cached as non-existent", principal);
+            return RealmIdentity.NON_EXISTENT;
         }
 
         RealmIdentity realmIdentity = getCacheableRealm().getRealmIdentity(principal);
 
         if (!realmIdentity.exists()) {
-            log.tracef("RealmIdentity for '%s' does not exist, skipping cache.'", principal);
+            if (negativeCache != null) {
+                log.tracef("RealmIdentity for '%s' does not exist, placing in negative cache.", principal);
+                negativeCache.put(principal, new NonExistentRealmIdentity(principal));
+            } else {
+                log.tracef("RealmIdentity for '%s' does not exist, skipping cache.'", principal);
+            }
             return realmIdentity;
         }
 
-        RealmIdentity cachedIdentity = new RealmIdentity() {
+        RealmIdentity cachedIdentity = wrap(principal, realmIdentity);
+
+        log.tracef("Created wrapper RealmIdentity for '%s' and placing in cache.", principal);
+        cache.put(principal, cachedIdentity);
+
+        return cachedIdentity;
+    }
+
+    private void scheduleRefresh(final Principal principal, final RealmIdentity stale) {
+        final Object refresh = new Object();
+        if (pendingRefresh.putIfAbsent(principal, refresh) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    final RealmIdentity realmIdentity = getCacheableRealm().getRealmIdentity(principal);
+                    final boolean exists = realmIdentity.exists();
+                    // the reloaded identity is only stored if the principal was not invalidated during the reload, and it
+                    // replaces the stale identity in place so callers are not sent to the realm in the meantime
+                    pendingRefresh.computeIfPresent(principal, (p, pending) -> {
+                        if (pending != refresh) {
+                            return pending;
+                        }
+                        if (exists) {
+                            if (cache.replace(principal, stale, wrap(principal, realmIdentity))) {
+                                log.tracef("Refreshed RealmIdentity for '%s' and placing in cache.", principal);
+                            }
+                        } else {
+                            cache.remove(principal);
+                            if (negativeCache != null) {
+                                log.tracef("Refreshed RealmIdentity for '%s' no longer exists, placing in negative cache.", principal);
+                                negativeCache.put(principal, new NonExistentRealmIdentity(principal));
+                            }
+                        }
+                        return null;
+                    });
+                } catch (RealmUnavailableException | RuntimeException e) {
+                    log.debugf(e, "Unable to refresh RealmIdentity for '%s', the cached identity will be retained.", principal);
+                } finally {
+                    pendingRefresh.remove(principal, refresh);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.tracef("Refresh of RealmIdentity for '%s' rejected by executor.", principal);
+            pendingRefresh.remove(principal, refresh);
+        }
+    }
+
+    private CachedRealmIdentity wrap(final Principal principal, final RealmIdentity realmIdentity) {
+        return new CachedRealmIdentity() {
             final RealmIdentity identity = realmIdentity;
 
             AuthorizationIdentity authorizationIdentity = null;
             Attributes attributes = null;
             IdentityCredentials credentials = IdentityCredentials.NONE;
+            final Set<ByteBuffer> verifiedEvidence = evidenceSalt != null ? ConcurrentHashMap.newKeySet() : null;
 
             @Override
             public Principal getRealmIdentityPrincipal() {
@@ -209,6 +373,22 @@ public class CachingSecurityRealm implements SecurityRealm {
 
             @Override
             public boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException {
+                ByteBuffer evidenceDigest = verifiedEvidence != null ? digestEvidence(evidence) : null;
+                if (evidenceDigest != null && verifiedEvidence.contains(evidenceDigest)) {
+                    log.tracef("verifyEvidence For principal='%s' matches previously verified evidence", principal);
+                    return true;
+                }
+                boolean verified = verifyEvidenceUncached(evidence);
+                if (verified && evidenceDigest != null) {
+                    if (verifiedEvidence.size() >= MAX_VERIFIED_EVIDENCE) {
+                        verifiedEvidence.clear();
+                    }
+                    verifiedEvidence.add(evidenceDigest);
+                }
+                return verified;
+            }
+
+            private boolean verifyEvidenceUncached(Evidence evidence) throws RealmUnavailableException {
                 if (evidence instanceof PasswordGuessEvidence) {
                     if (credentials.canVerify(evidence)) {
                         log.tracef("verifyEvidence For principal='%s' using cached credential", principal);
@@ -262,11 +442,6 @@ public class CachingSecurityRealm implements SecurityRealm {
                 identity.dispose();
             }
         };
-
-        log.tracef("Created wrapper RealmIdentity for '%s' and placing in cache.", principal);
-        cache.put(principal, cachedIdentity);
-
-        return cachedIdentity;
     }
 
     @Override
@@ -290,14 +465,68 @@ public class CachingSecurityRealm implements SecurityRealm {
      * @param principal the {@link Principal} that references a previously cached realm identity
      */
     public void removeFromCache(Principal principal) {
+        // discard any reload in progress first, so it cannot store the identity loaded before this invalidation
+        pendingRefresh.remove(principal);
         cache.remove(principal);
+        if (negativeCache != null) {
+            negativeCache.remove(principal);
+        }
     }
 
     /**
      * Removes all cached identities from the cache.
      */
     public void removeAllFromCache() {
+        pendingRefresh.clear();
         cache.clear();
+        if (negativeCache != null) {
+            negativeCache.clear();
+        }
+    }
+
+    private ByteBuffer digestEvidence(Evidence evidence) {
+        if (evidence instanceof PasswordGuessEvidence == false) {
+            return null;
+        }
+        final ByteBuffer evidenceBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(((PasswordGuessEvidence) evidence).getGuess()));
+        try {
+            MessageDigest messageDigest = evidenceDigest.get();
+            if (messageDigest == null) {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+                evidenceDigest.set(messageDigest);
+            }
+            messageDigest.update(evidenceSalt);
+            if (evidenceBytes.hasArray()) {
+                messageDigest.update(evidenceBytes.array(), evidenceBytes.arrayOffset() + evidenceBytes.position(), evidenceBytes.remaining());
+                // the encoded guess should not outlive the verification
+                Arrays.fill(evidenceBytes.array(), (byte) 0);
+            } else {
+                messageDigest.update(evidenceBytes);
+            }
+            return ByteBuffer.wrap(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            log.tracef(e, "Unable to digest evidence, verified evidence will not be cached");
+            return null;
+        }
+    }
+
+    /**
+     * Gets the number of times a cached identity due for refresh was returned while it was reloaded in the background.
+     *
+     * @return the number of refresh-ahead hits
+     */
+    public long getRefreshHitCount() {
+        return refreshHitCount.sum();
+    }
+
+    /**
+     * Gets the number of times a cached identity had exceeded the maximum staleness and had to be reloaded before
+     * returning.
+     *
+     * @return the number of refresh-ahead misses
+     */
+    public long getRefreshMissCount() {
+        return refreshMissCount.sum();
     }
 
     /**
@@ -308,4 +537,52 @@ public class CachingSecurityRealm implements SecurityRealm {
     protected CacheableSecurityRealm getCacheableRealm() {
         return realm;
     }
+
+    private abstract static class CachedRealmIdentity implements RealmIdentity {
+
+        final long loadTime = System.currentTimeMillis();
+    }
+
+    /**
+     * The entry of the negative cache for a principal, unlike {@link RealmIdentity#NON_EXISTENT} it is keyed by the looked up
+     * principal so that caches mapping realm principals to the cached entries hold each of them separately.
+     */
+    private static final class NonExistentRealmIdentity implements RealmIdentity {
+
+        private final Principal principal;
+
+        NonExistentRealmIdentity(final Principal principal) {
+            this.principal = principal;
+        }
+
+        @Override
+        public Principal getRealmIdentityPrincipal() {
+            return principal;
+        }
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+            return RealmIdentity.NON_EXISTENT.getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec);
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+            return RealmIdentity.NON_EXISTENT.getEvidenceVerifySupport(evidenceType, algorithmName);
+        }
+
+        @Override
+        public <C extends Credential> C getCredential(final Class<C> credentialType) throws RealmUnavailableException {
+            return RealmIdentity.NON_EXISTENT.getCredential(credentialType);
+        }
+
+        @Override
+        public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
+            return RealmIdentity.NON_EXISTENT.verifyEvidence(evidence);
+        }
+
+        @Override
+        public boolean exists() throws RealmUnavailableException {
+            return false;
+        }
+    }
 }
@@ -17,6 +17,9 @@
  */
 package org.wildfly.security.auth.realm;
 
+import static org.wildfly.common.Assert.checkMinimumParameter;
+import static org.wildfly.security.auth.realm.ElytronMessages.log;
+
 import org.wildfly.security.auth.SupportLevel;
 import org.wildfly.security.auth.server.RealmIdentity;
 import org.wildfly.security.auth.server.RealmUnavailableException;
@@ -28,17 +31,51 @@ import org.wildfly.security.evidence.Evidence;
 
 import java.security.Principal;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * A realm for authentication and authorization of identities distributed between multiple realms.
  *
+ * <p>By default the realms are queried one after the other in the order they were supplied. When a lookup {@link Executor}
+ * is supplied all of the realms are queried concurrently as soon as an identity is requested, the result of the first realm
+ * in order which holds the identity is used and the lookups still outstanding are cancelled when the identity is disposed.
+ * A lookup which has not yet been started by the executor is run by the calling thread once its result is needed.
+ *
+ * <p>If an unavailable timeout is set a realm which throws {@link RealmUnavailableException} while an identity is looked up
+ * is skipped instead of failing the request, and is not queried again until the timeout has elapsed. Once it has elapsed a
+ * single request is allowed through to the realm to determine whether it has recovered.
+ *
  * @author <a href="mailto:mmazanek@redhat.com">Martin Mazanek</a>
  */
 public class DistributedSecurityRealm implements SecurityRealm {
     private final SecurityRealm[] securityRealms;
+    private final Executor lookupExecutor;
+    private final long unavailableTimeout;
+    private final AtomicLongArray unavailableUntil;
 
     public DistributedSecurityRealm(final SecurityRealm... securityRealms) {
+        this(null, 0, securityRealms);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param lookupExecutor the bounded {@link Executor} used to query the realms concurrently, or {@code null} to query them
+     *                       one after the other
+     * @param unavailableTimeout the time in milliseconds a realm which failed with {@link RealmUnavailableException} is skipped
+     *                           for, or {@code 0} if the failure should be propagated to the caller instead
+     * @param securityRealms the realms to query in order of precedence
+     */
+    public DistributedSecurityRealm(final Executor lookupExecutor, final long unavailableTimeout, final SecurityRealm... securityRealms) {
+        checkMinimumParameter("unavailableTimeout", 0, unavailableTimeout);
         this.securityRealms = securityRealms;
+        this.lookupExecutor = lookupExecutor;
+        this.unavailableTimeout = unavailableTimeout;
+        this.unavailableUntil = unavailableTimeout > 0 ? new AtomicLongArray(securityRealms.length) : null;
     }
 
     @Override
@@ -54,8 +91,15 @@ public class DistributedSecurityRealm implements SecurityRealm {
     @Override
     public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
         SupportLevel max = SupportLevel.UNSUPPORTED;
-        for (SecurityRealm r : securityRealms) {
-            max = SupportLevel.max(max, r.getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec));
+        for (int i = 0; i < securityRealms.length; i++) {
+            if (isAvailable(i)) {
+                try {
+                    max = SupportLevel.max(max, securityRealms[i].getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec));
+                    markAvailable(i);
+                } catch (RealmUnavailableException e) {
+                    markUnavailable(i, e);
+                }
+            }
         }
         return max;
     }
@@ -63,17 +107,197 @@ public class DistributedSecurityRealm implements SecurityRealm {
     @Override
     public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
         SupportLevel max = SupportLevel.UNSUPPORTED;
-        for (SecurityRealm r : securityRealms) {
-            max = SupportLevel.max(max, r.getEvidenceVerifySupport(evidenceType, algorithmName));
+        for (int i = 0; i < securityRealms.length; i++) {
+            if (isAvailable(i)) {
+                try {
+                    max = SupportLevel.max(max, securityRealms[i].getEvidenceVerifySupport(evidenceType, algorithmName));
+                    markAvailable(i);
+                } catch (RealmUnavailableException e) {
+                    markUnavailable(i, e);
+                }
+            }
         }
         return max;
     }
 
+    private boolean isAvailable(final int index) {
+        if (unavailableUntil == null) {
+            return true;
+        }
+        long until = unavailableUntil.get(index);
+        if (until == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        // once the timeout has elapsed only the caller which wins the update probes the realm, everyone else keeps skipping it
+        return now >= until && unavailableUntil.compareAndSet(index, until, now + unavailableTimeout);
+    }
+
+    private void markAvailable(final int index) {
+        if (unavailableUntil != null && unavailableUntil.get(index) != 0) {
+            unavailableUntil.set(index, 0);
+        }
+    }
+
+    private void markUnavailable(final int index, final RealmUnavailableException e) throws RealmUnavailableException {
+        if (unavailableUntil == null) {
+            throw e;
+        }
+        unavailableUntil.set(index, System.currentTimeMillis() + unavailableTimeout);
+        log.distributedRealmUnavailable(index, unavailableTimeout, e);
+    }
+
+    @FunctionalInterface
+    interface Lookup {
+
+        /**
+         * Obtain the identity from the given realm.
+         *
+         * @param realm the realm to query
+         * @return the identity, or {@code null} if the realm can not provide a usable identity
+         * @throws RealmUnavailableException if the realm is not able to handle requests for any reason
+         */
+        RealmIdentity lookup(SecurityRealm realm) throws RealmUnavailableException;
+    }
+
+    /**
+     * The lookups of an identity in each of the realms, either performed on demand or started up front on the executor.
+     */
+    final class Lookups {
+        private final Lookup lookup;
+        private final LookupTask[] tasks;
+        private int nextRealm = 0;
+
+        Lookups(final Lookup lookup) {
+            this.lookup = lookup;
+            if (lookupExecutor != null && securityRealms.length > 1) {
+                tasks = new LookupTask[securityRealms.length];
+                for (int i = 0; i < securityRealms.length; i++) {
+                    if (isAvailable(i)) {
+                        LookupTask task = new LookupTask(securityRealms[i]);
+                        tasks[i] = task;
+                        try {
+                            lookupExecutor.execute(task);
+                        } catch (RejectedExecutionException e) {
+                            // the task will be run by the caller when the result is needed
+                        }
+                    }
+                }
+            } else {
+                tasks = null;
+            }
+        }
+
+        RealmIdentity next() throws RealmUnavailableException {
+            while (nextRealm < securityRealms.length) {
+                final int index = nextRealm++;
+                LookupTask task = null;
+                if (tasks == null) {
+                    if (isAvailable(index) == false) {
+                        continue;
+                    }
+                } else {
+                    task = tasks[index];
+                    if (task == null) {
+                        continue;
+                    }
+                    tasks[index] = null;
+                }
+                RealmIdentity identity;
+                boolean completed = false;
+                try {
+                    identity = task == null ? lookup.lookup(securityRealms[index]) : task.await();
+                    completed = true;
+                } catch (RealmUnavailableException e) {
+                    markUnavailable(index, e);
+                    completed = true;
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw log.distributedRealmLookupInterrupted(e);
+                } finally {
+                    if (completed == false) {
+                        // whatever ended the lookup, the lookups still outstanding are not needed anymore
+                        cancel();
+                    }
+                }
+                markAvailable(index);
+                if (identity != null) {
+                    return identity;
+                }
+            }
+            return null;
+        }
+
+        void cancel() {
+            if (tasks != null) {
+                for (int i = nextRealm; i < tasks.length; i++) {
+                    LookupTask task = tasks[i];
+                    if (task != null) {
+                        tasks[i] = null;
+                        task.cancel(true);
+                    }
+                }
+            }
+        }
+
+        final class LookupTask extends FutureTask<RealmIdentity> {
+
+            LookupTask(final SecurityRealm realm) {
+                super(() -> lookup.lookup(realm));
+            }
+
+            RealmIdentity await() throws RealmUnavailableException, InterruptedException {
+                // no-op if the executor has already started the lookup
+                run();
+                try {
+                    return get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RealmUnavailableException) {
+                        throw (RealmUnavailableException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+
+            @Override
+            protected void set(final RealmIdentity identity) {
+                super.set(identity);
+                if (isCancelled() && identity != null) {
+                    // the lookup completed after it was cancelled, nobody else will dispose of the identity
+                    identity.dispose();
+                }
+            }
+
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                if (super.cancel(mayInterruptIfRunning)) {
+                    return true;
+                }
+                if (isDone()) {
+                    try {
+                        RealmIdentity identity = get();
+                        if (identity != null) {
+                            identity.dispose();
+                        }
+                    } catch (ExecutionException | InterruptedException ignored) {
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
     final class EvidenceDistributedIdentity implements RealmIdentity {
         private final Evidence evidence;
         private final String evidenceAlgorithm;
+        private final Lookups lookups;
         private RealmIdentity currentIdentity = RealmIdentity.NON_EXISTENT;
-        private int nextRealm = 0;
 
         private EvidenceDistributedIdentity(Evidence evidence) throws RealmUnavailableException {
             this.evidence = evidence;
@@ -82,25 +306,30 @@ public class DistributedSecurityRealm implements SecurityRealm {
             } else {
                 evidenceAlgorithm = null;
             }
+            lookups = new Lookups(this::lookup);
             nextIdentity();
         }
 
+        private RealmIdentity lookup(final SecurityRealm realm) throws RealmUnavailableException {
+            if (realm.getEvidenceVerifySupport(evidence.getClass(), evidenceAlgorithm).mayBeSupported() == false) {
+                return null;
+            }
+            RealmIdentity identity = realm.getRealmIdentity(evidence);
+            if (identity.getEvidenceVerifySupport(evidence.getClass(), evidenceAlgorithm).isNotSupported()) {
+                identity.dispose();
+                return null;
+            }
+            return identity;
+        }
+
         private boolean nextIdentity() throws RealmUnavailableException {
             currentIdentity.dispose();
-            if (nextRealm >= securityRealms.length) {
+            RealmIdentity identity = lookups.next();
+            if (identity == null) {
                 currentIdentity = RealmIdentity.NON_EXISTENT;
                 return false;
             }
-            if (securityRealms[nextRealm].getEvidenceVerifySupport(evidence.getClass(), evidenceAlgorithm).mayBeSupported()) {
-                currentIdentity = securityRealms[nextRealm].getRealmIdentity(evidence);
-                nextRealm++;
-                if (currentIdentity.getEvidenceVerifySupport(evidence.getClass(), evidenceAlgorithm).isNotSupported()) {
-                    return nextIdentity();
-                }
-            } else {
-                nextRealm++;
-                return nextIdentity();
-            }
+            currentIdentity = identity;
             return true;
         }
 
@@ -159,31 +388,39 @@ public class DistributedSecurityRealm implements SecurityRealm {
         @Override
         public void dispose() {
             currentIdentity.dispose();
+            lookups.cancel();
         }
     }
 
     final class PrincipalDistributedIdentity implements RealmIdentity {
 
         private final Principal principal;
+        private final Lookups lookups;
         private RealmIdentity currentIdentity = RealmIdentity.NON_EXISTENT;
-        private int nextRealm = 0;
 
         PrincipalDistributedIdentity(Principal principal) throws RealmUnavailableException {
             this.principal = principal;
+            lookups = new Lookups(this::lookup);
             nextIdentity();
         }
 
+        private RealmIdentity lookup(final SecurityRealm realm) throws RealmUnavailableException {
+            RealmIdentity identity = realm.getRealmIdentity(principal);
+            if (!identity.exists()) {
+                identity.dispose();
+                return null;
+            }
+            return identity;
+        }
+
         private boolean nextIdentity() throws RealmUnavailableException {
             currentIdentity.dispose();
-            if (nextRealm >= securityRealms.length) {
+            RealmIdentity identity = lookups.next();
+            if (identity == null) {
                 currentIdentity = RealmIdentity.NON_EXISTENT;
                 return false;
             }
-            currentIdentity = securityRealms[nextRealm].getRealmIdentity(principal);
-            nextRealm++;
-            if (!currentIdentity.exists()) {
-                return nextIdentity();
-            }
+            currentIdentity = identity;
             return true;
         }
 
@@ -256,6 +493,7 @@ public class DistributedSecurityRealm implements SecurityRealm {
         @Override
         public void dispose() {
             currentIdentity.dispose();
+            lookups.cancel();
         }
     }
 
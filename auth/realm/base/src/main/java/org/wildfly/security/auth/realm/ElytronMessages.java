@@ -44,6 +44,7 @@ import org.wildfly.security.auth.server.SecurityRealm;
 @ValidIdRanges({
     @ValidIdRange(min = 1006, max = 1082),
     @ValidIdRange(min = 1138, max = 1154),
+    @ValidIdRange(min = 1181, max = 1187),
     @ValidIdRange(min = 11005, max = 11005),
     @ValidIdRange(min = 13000, max = 13999)
 })
@@ -126,6 +127,30 @@ interface ElytronMessages extends BasicLogger {
     @Message(id = 1154, value = "Failed to read key store")
     RealmUnavailableException failedToReadKeyStore(@Cause KeyStoreException e);
 
+    @Message(id = 1181, value = "Filesystem-backed realm failed to index identities in path \"%s\"")
+    RealmUnavailableException fileSystemRealmIndexFailed(Path path, @Cause IOException cause);
+
+    @Message(id = 1182, value = "Filesystem-backed realm encountered invalid binary content in path \"%s\" for identity name \"%s\"")
+    RealmUnavailableException fileSystemRealmInvalidBinaryContent(Path path, String name, @Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 1183, value = "Realm %d of the distributed realm is unavailable and will not be queried for %d milliseconds")
+    void distributedRealmUnavailable(int index, long timeout, @Cause RealmUnavailableException rue);
+
+    @Message(id = 1184, value = "Interrupted while waiting for the distributed realm to obtain an identity")
+    RealmUnavailableException distributedRealmLookupInterrupted(@Cause InterruptedException cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 1185, value = "Realm failed %d consecutive times, failing over without querying it for %d milliseconds")
+    void realmFailoverCircuitOpened(int failures, long openDuration, @Cause RealmUnavailableException rue);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 1186, value = "Realm has recovered, failover is no longer forced")
+    void realmFailoverCircuitClosed();
+
+    @Message(id = 1187, value = "Filesystem-backed realm cannot write credential type \"%s\" of identity name \"%s\" in the binary format")
+    IOException fileSystemRealmUnsupportedBinaryCredential(String credentialType, String name);
+
     @Message(id = 11005, value = "Invalid unicode endoding, offending sequence: %s.")
     IOException invalidUnicodeSequence(String s, @Cause NoSuchElementException nsee);
 
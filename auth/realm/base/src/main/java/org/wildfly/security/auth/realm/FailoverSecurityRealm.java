@@ -17,6 +17,8 @@
  */
 package org.wildfly.security.auth.realm;
 
+import static org.wildfly.common.Assert.checkMinimumParameter;
+import static org.wildfly.common.Assert.checkNotNullParam;
 import static org.wildfly.security.auth.realm.ElytronMessages.log;
 
 import org.wildfly.security.auth.SupportLevel;
@@ -30,18 +32,41 @@ import org.wildfly.security.evidence.Evidence;
 
 import java.security.Principal;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * A realm which wraps one realm and fails over to another in case the first is unavailable.
  *
+ * <p>If a failure threshold is set the realm acts as a circuit breaker. After the wrapped realm has failed the given number of
+ * consecutive times requests are routed directly to the failover realm for the open duration, instead of each of them
+ * waiting for the wrapped realm to fail first. Once the open duration has elapsed the circuit is half-open, the wrapped realm
+ * is probed in the background with the probe principal if a probe {@link Executor} is supplied, otherwise a single request
+ * is allowed through to it. The circuit closes again once the wrapped realm responds and re-opens if it fails. Each change
+ * of the state of the circuit is logged and passed to the circuit state callback, if one is set.
+ *
  * @author <a href="mailto:mmazanek@redhat.com">Martin Mazanek</a>
  */
 public class FailoverSecurityRealm implements SecurityRealm {
     protected final SecurityRealm delegateRealm;
     protected final SecurityRealm failoverRealm;
     protected final Consumer<RealmUnavailableException> failoverCallback;
+    private final int failureThreshold;
+    private final long openDuration;
+    private final Executor probeExecutor;
+    private final Principal probePrincipal;
+    private final Consumer<CircuitState> circuitStateCallback;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicReference<CircuitState> circuitState = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicLong retryTime = new AtomicLong();
+    private final LongAdder circuitOpenCount = new LongAdder();
+    private final LongAdder shortCircuitCount = new LongAdder();
 
     /**
      * Construct a new instance.
@@ -51,16 +76,56 @@ public class FailoverSecurityRealm implements SecurityRealm {
      * @param failoverCallback callback function that gets called in case delegateRealm is unavailable
      */
     public FailoverSecurityRealm(final SecurityRealm delegateRealm, final SecurityRealm failoverRealm, final Consumer<RealmUnavailableException> failoverCallback) {
+        this(delegateRealm, failoverRealm, failoverCallback, 0, 0, null, null, null);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param delegateRealm the wrapped realm
+     * @param failoverRealm the realm to use in case delegateRealm is unavailable
+     * @param failoverCallback callback function that gets called in case delegateRealm is unavailable, including when a
+     *                         background probe of delegateRealm fails
+     * @param failureThreshold the number of consecutive failures of delegateRealm after which requests are routed directly to
+     *                         failoverRealm, or {@code 0} to always try delegateRealm first
+     * @param openDuration the time in milliseconds requests are routed directly to failoverRealm before delegateRealm is
+     *                     tried again
+     * @param probeExecutor the {@link Executor} used to probe delegateRealm in the background, or {@code null} to allow a
+     *                      single request through to delegateRealm instead
+     * @param probePrincipal the principal to look up when probing delegateRealm in the background, required if a probe
+     *                       executor is set
+     * @param circuitStateCallback callback function that gets called with the new state each time the state of the circuit
+     *                             changes, or {@code null} if the changes are only logged
+     */
+    public FailoverSecurityRealm(final SecurityRealm delegateRealm, final SecurityRealm failoverRealm, final Consumer<RealmUnavailableException> failoverCallback,
+                                 final int failureThreshold, final long openDuration, final Executor probeExecutor, final Principal probePrincipal,
+                                 final Consumer<CircuitState> circuitStateCallback) {
+        checkMinimumParameter("failureThreshold", 0, failureThreshold);
+        if (failureThreshold > 0) {
+            checkMinimumParameter("openDuration", 1, openDuration);
+            if (probeExecutor != null) {
+                checkNotNullParam("probePrincipal", probePrincipal);
+            }
+        }
         this.delegateRealm = delegateRealm;
         this.failoverRealm = failoverRealm;
         this.failoverCallback = failoverCallback;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.probeExecutor = probeExecutor;
+        this.probePrincipal = probePrincipal;
+        this.circuitStateCallback = circuitStateCallback;
     }
 
     @Override
     public RealmIdentity getRealmIdentity(final Evidence evidence) throws RealmUnavailableException {
+        if (allowDelegate() == false) {
+            return failoverRealm.getRealmIdentity(evidence);
+        }
         try {
             return createFailoverIdentity(delegateRealm.getRealmIdentity(evidence), evidence);
         } catch (RealmUnavailableException e) {
+            recordFailure(e);
             log.realmFailover(e);
             if (failoverCallback != null) {
                 failoverCallback.accept(e);
@@ -71,9 +136,13 @@ public class FailoverSecurityRealm implements SecurityRealm {
 
     @Override
     public RealmIdentity getRealmIdentity(final Principal principal) throws RealmUnavailableException {
+        if (allowDelegate() == false) {
+            return failoverRealm.getRealmIdentity(principal);
+        }
         try {
             return createFailoverIdentity(delegateRealm.getRealmIdentity(principal), principal);
         } catch (RealmUnavailableException e) {
+            recordFailure(e);
             log.realmFailover(e);
             if (failoverCallback != null) {
                 failoverCallback.accept(e);
@@ -84,9 +153,13 @@ public class FailoverSecurityRealm implements SecurityRealm {
 
     @Override
     public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+        if (isCircuitClosed() == false) {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
         try {
             return delegateRealm.getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec);
         } catch (RealmUnavailableException rue) {
+            recordFailure(rue);
             log.realmFailover(rue);
             if (failoverCallback != null) {
                 failoverCallback.accept(rue);
@@ -97,9 +170,13 @@ public class FailoverSecurityRealm implements SecurityRealm {
 
     @Override
     public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+        if (isCircuitClosed() == false) {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
         try {
             return delegateRealm.getEvidenceVerifySupport(evidenceType, algorithmName);
         } catch (RealmUnavailableException rue) {
+            recordFailure(rue);
             log.realmFailover(rue);
             if (failoverCallback != null) {
                 failoverCallback.accept(rue);
@@ -108,6 +185,116 @@ public class FailoverSecurityRealm implements SecurityRealm {
         }
     }
 
+    /**
+     * Gets the current state of the circuit breaker, always {@link CircuitState#CLOSED} if no failure threshold is set.
+     *
+     * @return the current state of the circuit breaker
+     */
+    public CircuitState getCircuitState() {
+        return circuitState.get();
+    }
+
+    /**
+     * Gets the number of times the circuit breaker has opened.
+     *
+     * @return the number of times the circuit breaker has opened
+     */
+    public long getCircuitOpenCount() {
+        return circuitOpenCount.sum();
+    }
+
+    /**
+     * Gets the number of requests routed directly to the failover realm because the circuit breaker was not closed.
+     *
+     * @return the number of requests which were not attempted against the wrapped realm
+     */
+    public long getShortCircuitCount() {
+        return shortCircuitCount.sum();
+    }
+
+    private boolean isCircuitClosed() {
+        return failureThreshold == 0 || circuitState.get() == CircuitState.CLOSED;
+    }
+
+    private boolean allowDelegate() {
+        if (isCircuitClosed()) {
+            return true;
+        }
+        long retry = retryTime.get();
+        long now = System.currentTimeMillis();
+        // only the caller which wins the update gets to try the wrapped realm again
+        if (now < retry || retryTime.compareAndSet(retry, now + openDuration) == false) {
+            shortCircuitCount.increment();
+            return false;
+        }
+        if (circuitState.getAndSet(CircuitState.HALF_OPEN) != CircuitState.HALF_OPEN) {
+            circuitStateChanged(CircuitState.HALF_OPEN);
+        }
+        if (probeExecutor == null) {
+            return true;
+        }
+        try {
+            probeExecutor.execute(this::probe);
+        } catch (RejectedExecutionException e) {
+            log.tracef("Probe of the wrapped realm rejected by executor.");
+        }
+        shortCircuitCount.increment();
+        return false;
+    }
+
+    private void probe() {
+        try {
+            RealmIdentity identity = delegateRealm.getRealmIdentity(probePrincipal);
+            try {
+                identity.exists();
+            } finally {
+                identity.dispose();
+            }
+            recordSuccess();
+        } catch (RealmUnavailableException e) {
+            recordFailure(e);
+            log.tracef(e, "Probe of the wrapped realm failed.");
+            if (failoverCallback != null) {
+                failoverCallback.accept(e);
+            }
+        }
+    }
+
+    private void recordSuccess() {
+        if (failureThreshold == 0) {
+            return;
+        }
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        if (circuitState.get() != CircuitState.CLOSED && circuitState.getAndSet(CircuitState.CLOSED) != CircuitState.CLOSED) {
+            log.realmFailoverCircuitClosed();
+            circuitStateChanged(CircuitState.CLOSED);
+        }
+    }
+
+    private void recordFailure(final RealmUnavailableException rue) {
+        if (failureThreshold == 0) {
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        CircuitState state = circuitState.get();
+        if (state == CircuitState.HALF_OPEN || state == CircuitState.CLOSED && failures >= failureThreshold) {
+            retryTime.set(System.currentTimeMillis() + openDuration);
+            if (circuitState.compareAndSet(state, CircuitState.OPEN)) {
+                circuitOpenCount.increment();
+                log.realmFailoverCircuitOpened(failures, openDuration, rue);
+                circuitStateChanged(CircuitState.OPEN);
+            }
+        }
+    }
+
+    private void circuitStateChanged(final CircuitState state) {
+        if (circuitStateCallback != null) {
+            circuitStateCallback.accept(state);
+        }
+    }
+
     protected RealmIdentity createFailoverIdentity(final RealmIdentity identity, final Evidence evidence) {
         return new FailoverRealmIdentity(identity) {
             @Override
@@ -129,6 +316,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
     protected abstract class FailoverRealmIdentity implements RealmIdentity {
         protected RealmIdentity delegate;
         protected boolean failed = false;
+        private boolean failedOver = false;
 
         public FailoverRealmIdentity(final RealmIdentity identity) {
             this.delegate = identity;
@@ -148,7 +336,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential> C getCredential(Class<C> credentialType) throws RealmUnavailableException {
             try {
-                return delegate.getCredential(credentialType);
+                return delegateAnswered(delegate.getCredential(credentialType));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).getCredential(credentialType);
             } finally {
@@ -168,7 +356,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException {
             try {
-                return delegate.verifyEvidence(evidence);
+                return delegateAnswered(delegate.verifyEvidence(evidence));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).verifyEvidence(evidence);
             } finally {
@@ -179,7 +367,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public boolean exists() throws RealmUnavailableException {
             try {
-                return delegate.exists();
+                return delegateAnswered(delegate.exists());
             } catch (RealmUnavailableException rue) {
                 return failover(rue).exists();
             } finally {
@@ -191,6 +379,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         public void updateCredential(Credential credential) throws RealmUnavailableException {
             try {
                 delegate.updateCredential(credential);
+                delegateAnswered(null);
             } catch (RealmUnavailableException rue) {
                 failover(rue).updateCredential(credential);
             } finally {
@@ -206,7 +395,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential> C getCredential(Class<C> credentialType, String algorithmName) throws RealmUnavailableException {
             try {
-                return delegate.getCredential(credentialType, algorithmName);
+                return delegateAnswered(delegate.getCredential(credentialType, algorithmName));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).getCredential(credentialType, algorithmName);
             } finally {
@@ -217,7 +406,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential> C getCredential(final Class<C> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
             try {
-                return delegate.getCredential(credentialType, algorithmName, parameterSpec);
+                return delegateAnswered(delegate.getCredential(credentialType, algorithmName, parameterSpec));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).getCredential(credentialType, algorithmName, parameterSpec);
             } finally {
@@ -228,7 +417,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential, R> R applyToCredential(Class<C> credentialType, Function<C, R> function) throws RealmUnavailableException {
             try {
-                return delegate.applyToCredential(credentialType, function);
+                return delegateAnswered(delegate.applyToCredential(credentialType, function));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).applyToCredential(credentialType, function);
             } finally {
@@ -239,7 +428,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential, R> R applyToCredential(Class<C> credentialType, String algorithmName, Function<C, R> function) throws RealmUnavailableException {
             try {
-                return delegate.applyToCredential(credentialType, algorithmName, function);
+                return delegateAnswered(delegate.applyToCredential(credentialType, algorithmName, function));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).applyToCredential(credentialType, algorithmName, function);
             } finally {
@@ -250,7 +439,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential, R> R applyToCredential(final Class<C> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec, final Function<C, R> function) throws RealmUnavailableException {
             try {
-                return delegate.applyToCredential(credentialType, algorithmName, parameterSpec, function);
+                return delegateAnswered(delegate.applyToCredential(credentialType, algorithmName, parameterSpec, function));
             } catch (RealmUnavailableException rue) {
                 return failover(rue).applyToCredential(credentialType, algorithmName, parameterSpec, function);
             } finally {
@@ -266,7 +455,7 @@ public class FailoverSecurityRealm implements SecurityRealm {
         @Override
         public AuthorizationIdentity getAuthorizationIdentity() throws RealmUnavailableException {
             try {
-                return delegate.getAuthorizationIdentity();
+                return delegateAnswered(delegate.getAuthorizationIdentity());
             } catch (RealmUnavailableException rue) {
                 return failover(rue).getAuthorizationIdentity();
             } finally {
@@ -283,11 +472,13 @@ public class FailoverSecurityRealm implements SecurityRealm {
             if (failed) {
                 throw rue;
             }
+            recordFailure(rue);
             log.realmFailover(rue);
             if (FailoverSecurityRealm.this.failoverCallback != null) {
                 FailoverSecurityRealm.this.failoverCallback.accept(rue);
             }
             failed = true;
+            failedOver = true;
             delegate.dispose();
             delegate = getFailoverIdentity();
             return delegate;
@@ -297,5 +488,31 @@ public class FailoverSecurityRealm implements SecurityRealm {
         protected void disableFailover() {
             failed = true;
         }
+
+        // Called only when a call returned normally, so that the circuit is not closed by calls which threw.
+        private <T> T delegateAnswered(final T result) {
+            if (failedOver == false) {
+                recordSuccess();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The states of the circuit breaker.
+     */
+    public enum CircuitState {
+        /**
+         * Requests are attempted against the wrapped realm.
+         */
+        CLOSED,
+        /**
+         * Requests are routed directly to the failover realm.
+         */
+        OPEN,
+        /**
+         * The wrapped realm is being tried again, requests are routed directly to the failover realm in the meantime.
+         */
+        HALF_OPEN,
     }
 }
@@ -22,25 +22,40 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.DSYNC;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.AccessController;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.security.PublicKey;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -51,6 +66,7 @@ import java.security.cert.X509Certificate;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -60,8 +76,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
@@ -116,9 +136,26 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
     private final NameRewriter nameRewriter;
     private final int levels;
     private final boolean encoded;
+    private final IdentityFormat format;
+    private final IdentityIndex index;
+    private final Executor watchExecutor;
 
     private final ConcurrentHashMap<String, IdentitySharedExclusiveLock> realmIdentityLocks = new ConcurrentHashMap<>();
 
+    private FileSystemSecurityRealm(final Path root, final NameRewriter nameRewriter, final int levels, final boolean encoded, final boolean indexed, final IdentityFormat format, final Executor watchExecutor) {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(CREATE_SECURITY_REALM);
+        }
+        this.root = root;
+        this.nameRewriter = nameRewriter;
+        this.levels = levels;
+        this.encoded = encoded;
+        this.format = format;
+        this.index = indexed ? new IdentityIndex() : null;
+        this.watchExecutor = watchExecutor;
+    }
+
     /**
      * Construct a new instance.
      *
@@ -130,14 +167,7 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
      * @param encoded whether identity names should by BASE32 encoded before using as filename
      */
     public FileSystemSecurityRealm(final Path root, final NameRewriter nameRewriter, final int levels, final boolean encoded) {
-        final SecurityManager sm = System.getSecurityManager();
-        if (sm != null) {
-            sm.checkPermission(CREATE_SECURITY_REALM);
-        }
-        this.root = root;
-        this.nameRewriter = nameRewriter;
-        this.levels = levels;
-        this.encoded = encoded;
+        this(root, nameRewriter, levels, encoded, false, IdentityFormat.XML, null);
     }
 
     /**
@@ -170,6 +200,138 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         this(root, NameRewriter.IDENTITY_REWRITER, 2, true);
     }
 
+    /**
+     * Obtain a new {@link Builder} capable of building a {@link FileSystemSecurityRealm}.
+     *
+     * @return a new {@link Builder} capable of building a {@link FileSystemSecurityRealm}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder for filesystem security realms.
+     */
+    public static class Builder {
+
+        private Path root;
+        private NameRewriter nameRewriter = NameRewriter.IDENTITY_REWRITER;
+        private int levels = 2;
+        private boolean encoded = true;
+        private boolean indexed;
+        private IdentityFormat format = IdentityFormat.XML;
+        private Executor watchExecutor;
+
+        Builder() {
+        }
+
+        /**
+         * Set the root path of the identity store.
+         *
+         * @param root the root path of the identity store.
+         * @return this {@link Builder}
+         */
+        public Builder setRoot(final Path root) {
+            this.root = root;
+
+            return this;
+        }
+
+        /**
+         * Set the name rewriter to apply to looked up names, by default names are not rewritten.
+         *
+         * @param nameRewriter the name rewriter to apply to looked up names.
+         * @return this {@link Builder}
+         */
+        public Builder setNameRewriter(final NameRewriter nameRewriter) {
+            this.nameRewriter = nameRewriter;
+
+            return this;
+        }
+
+        /**
+         * Set the number of levels of directory hashing to apply, by default 2.
+         *
+         * @param levels the number of levels of directory hashing to apply.
+         * @return this {@link Builder}
+         */
+        public Builder setLevels(final int levels) {
+            this.levels = levels;
+
+            return this;
+        }
+
+        /**
+         * Set whether identity names should by BASE32 encoded before using as filename, by default {@code true}.
+         *
+         * @param encoded whether identity names should by BASE32 encoded before using as filename.
+         * @return this {@link Builder}
+         */
+        public Builder setEncoded(final boolean encoded) {
+            this.encoded = encoded;
+
+            return this;
+        }
+
+        /**
+         * Set whether identities should be held in an in-memory index, by default {@code false}.
+         *
+         * <p>When indexed every identity is parsed into the index the first time the realm is used, after which identities
+         * are served from that index without touching the filesystem. The index is updated by writes made through the
+         * realm, changes made by external processes are only observed if a watch executor is set.  Identity files which
+         * cannot be parsed are left out of the index.
+         *
+         * @param indexed whether identities should be held in an in-memory index.
+         * @return this {@link Builder}
+         */
+        public Builder setIndexed(final boolean indexed) {
+            this.indexed = indexed;
+
+            return this;
+        }
+
+        /**
+         * Set the format identities are stored in, by default {@link IdentityFormat#XML}.
+         *
+         * @param format the format identities are stored in.
+         * @return this {@link Builder}
+         */
+        public Builder setIdentityFormat(final IdentityFormat format) {
+            this.format = format;
+
+            return this;
+        }
+
+        /**
+         * Set the executor to watch the directory tree of an indexed realm for external changes on, by default the directory
+         * tree is not watched.  A task watching the directory tree is submitted to it the first time the index is used, the
+         * task occupies a thread of the executor until {@link FileSystemSecurityRealm#close()} is called.
+         *
+         * @param watchExecutor the executor to watch the directory tree on, or {@code null} to not watch it.
+         * @return this {@link Builder}
+         */
+        public Builder setWatchExecutor(final Executor watchExecutor) {
+            this.watchExecutor = watchExecutor;
+
+            return this;
+        }
+
+        /**
+         * Builds the {@link FileSystemSecurityRealm}.
+         *
+         * Construction with enabled security manager requires {@code createSecurityRealm} {@link ElytronPermission}.
+         *
+         * @return built {@link FileSystemSecurityRealm}
+         */
+        public FileSystemSecurityRealm build() {
+            Assert.checkNotNullParam("root", root);
+            Assert.checkNotNullParam("nameRewriter", nameRewriter);
+            Assert.checkNotNullParam("format", format);
+
+            return new FileSystemSecurityRealm(root, nameRewriter, levels, encoded, indexed, format, watchExecutor);
+        }
+    }
+
     private Path pathFor(String name) {
         assert name.codePointCount(0, name.length()) > 0;
         String normalizedName = name;
@@ -197,12 +359,12 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
             name = normalizedName + "-" + base32;
         }
 
-        return path.resolve(name + ".xml");
+        return path.resolve(name + format.getSuffix());
     }
 
     private String nameFor(Path path) {
         String fileName = path.toString();
-        fileName = fileName.substring(0, fileName.length() - 4); // remove ".xml"
+        fileName = fileName.substring(0, fileName.length() - format.getSuffix().length()); // remove ".xml" or ".bin"
         if (encoded) {
             CodePointIterator it = CodePointIterator.ofString(fileName);
             it.delimitedBy('-').skipAll();
@@ -232,6 +394,11 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
             throw ElytronMessages.log.invalidName();
         }
 
+        if (index != null && ! exclusive) {
+            // the index only holds complete identities, which writes replace while holding the exclusive lock
+            return new Identity(finalName, pathFor(finalName), null, index, format);
+        }
+
         // Acquire the appropriate lock for the realm identity
         IdentitySharedExclusiveLock realmIdentityLock = getRealmIdentityLockForName(finalName);
         IdentityLock lock;
@@ -240,7 +407,63 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         } else {
             lock = realmIdentityLock.lockShared();
         }
-        return new Identity(finalName, pathFor(finalName), lock);
+        return new Identity(finalName, pathFor(finalName), lock, index, format);
+    }
+
+    /**
+     * Stop watching the directory tree for changes made outside of this realm, ending the task submitted to the watch
+     * executor. Once closed, identities continue to be served from the in-memory index but external changes are no longer
+     * observed. Has no effect if this realm is not indexed or was not given a watch executor.
+     */
+    public void close() {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    /**
+     * Copy every identity of this realm, with all of its credentials and attributes, to another realm. This can be used
+     * to migrate the identities of a realm to a different {@link IdentityFormat}. Identities which already exist in the
+     * target realm have their credentials and attributes replaced.
+     *
+     * @param target the realm to copy the identities to (must not be {@code null})
+     * @return the number of identities copied
+     * @throws RealmUnavailableException if an identity could not be read from this realm or written to the target realm
+     */
+    public int copyIdentitiesTo(final ModifiableSecurityRealm target) throws RealmUnavailableException {
+        Assert.checkNotNullParam("target", target);
+        final List<String> names;
+        // walk the tree rather than using the identity iterator, identity names shorter than the levels are stored higher up
+        try (Stream<Path> paths = Files.walk(root, levels + 1)) {
+            names = paths.filter(this::isIdentityFile).map(path -> nameFor(path.getFileName())).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw ElytronMessages.log.fileSystemRealmIndexFailed(root, e);
+        }
+        int count = 0;
+        for (String name : names) {
+            final Identity identity = new Identity(name, pathFor(name), getRealmIdentityLockForName(name).lockShared(), index, format);
+            try {
+                final LoadedIdentity loadedIdentity = identity.loadIdentity(false, false);
+                if (loadedIdentity == null) {
+                    // removed since the tree was walked
+                    continue;
+                }
+                final ModifiableRealmIdentity targetIdentity = target.getRealmIdentityForUpdate(new NamePrincipal(name));
+                try {
+                    if (! targetIdentity.exists()) {
+                        targetIdentity.create();
+                    }
+                    targetIdentity.setCredentials(loadedIdentity.getCredentials());
+                    targetIdentity.setAttributes(loadedIdentity.getAttributes());
+                } finally {
+                    targetIdentity.dispose();
+                }
+                count ++;
+            } finally {
+                identity.dispose();
+            }
+        }
+        return count;
     }
 
     public ModifiableRealmIdentityIterator getRealmIdentityIterator() throws RealmUnavailableException {
@@ -252,7 +475,7 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         final Iterator<Path> iterator;
         if (levels == 0) {
             try {
-                stream = Files.newDirectoryStream(root, "*.xml");
+                stream = Files.newDirectoryStream(root, "*" + format.getSuffix());
                 iterator = stream.iterator();
             } catch (IOException e) {
                 ElytronMessages.log.debug("Unable to open directory", e);
@@ -362,6 +585,212 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         return realmIdentityLock;
     }
 
+    private boolean isIdentityFile(final Path path) {
+        final String fileName = path.getFileName().toString();
+        if (! fileName.endsWith(format.getSuffix()) || ! Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            // only files at the location this realm would look for them are identities
+            return pathFor(nameFor(path.getFileName())).equals(path);
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            ElytronMessages.log.debugf(e, "Ignoring file \"%s\" which does not contain a valid identity name", path);
+            return false;
+        }
+    }
+
+    /**
+     * An in-memory index of the identities in this realm.
+     *
+     * The index is populated from disk the first time it is used, after that it is maintained by the writes made
+     * through {@link Identity} and, if a watch executor was given, by a {@link WatchService} which observes the directory
+     * tree for changes made by other processes. Writes update the index while holding the exclusive lock for the identity
+     * and the watcher re-reads changed files while holding the shared lock, so the index never observes a partially
+     * replaced identity file.
+     */
+    final class IdentityIndex {
+
+        private final ConcurrentHashMap<String, LoadedIdentity> identities = new ConcurrentHashMap<>();
+        private volatile boolean loaded;
+        private volatile boolean closed;
+        private volatile WatchService watchService;
+
+        LoadedIdentity get(final String name) throws RealmUnavailableException {
+            if (! loaded) {
+                load();
+            }
+            return identities.get(name);
+        }
+
+        void put(final LoadedIdentity identity) {
+            identities.put(identity.getName(), snapshot(identity));
+        }
+
+        void remove(final String name) {
+            identities.remove(name);
+        }
+
+        private synchronized void load() throws RealmUnavailableException {
+            if (loaded) {
+                return;
+            }
+            if (System.getSecurityManager() == null) {
+                loadPrivileged();
+                return;
+            }
+            try {
+                AccessController.doPrivileged((PrivilegedExceptionAction<Void>) this::loadPrivileged);
+            } catch (PrivilegedActionException e) {
+                if (e.getException() instanceof RealmUnavailableException) {
+                    throw (RealmUnavailableException) e.getException();
+                }
+                throw new RuntimeException(e.getException());
+            }
+        }
+
+        private Void loadPrivileged() throws RealmUnavailableException {
+            try {
+                Files.createDirectories(root);
+                watchService = closed || watchExecutor == null ? null : root.getFileSystem().newWatchService();
+                // directories are registered before they are read so no change made during the initial scan is missed
+                scan(root, 0, true);
+            } catch (IOException e) {
+                closeWatchService();
+                throw ElytronMessages.log.fileSystemRealmIndexFailed(root, e);
+            }
+            ElytronMessages.log.debugf("Indexed %d identities in filesystem realm \"%s\"", identities.size(), root);
+            loaded = true;
+            final WatchService service = watchService;
+            if (service != null) {
+                try {
+                    watchExecutor.execute(() -> watch(service));
+                } catch (RejectedExecutionException e) {
+                    ElytronMessages.log.debugf(e, "Unable to watch filesystem realm \"%s\" for changes", root);
+                    closeWatchService();
+                }
+            }
+            return null;
+        }
+
+        private void scan(final Path directory, final int depth, final boolean initial) throws IOException {
+            final WatchService service = watchService;
+            if (service != null) {
+                directory.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    if (Files.isDirectory(entry)) {
+                        if (depth < levels) {
+                            scan(entry, depth + 1, initial);
+                        }
+                    } else if (isIdentityFile(entry)) {
+                        final String name = nameFor(entry.getFileName());
+                        if (initial) {
+                            // an entry which is already present was written through the realm while the scan was running
+                            final LoadedIdentity identity = read(name);
+                            if (identity != null) {
+                                identities.putIfAbsent(name, identity);
+                            }
+                        } else {
+                            refresh(name);
+                        }
+                    }
+                }
+            }
+        }
+
+        private LoadedIdentity read(final String name) {
+            try {
+                final LoadedIdentity identity = new Identity(name, pathFor(name), null, null, format).loadIdentity(false, false);
+                return identity == null ? null : snapshot(identity);
+            } catch (RealmUnavailableException e) {
+                ElytronMessages.log.debugf(e, "Unable to index identity \"%s\"", name);
+                return null;
+            }
+        }
+
+        private void refresh(final String name) {
+            try (IdentityLock ignored = getRealmIdentityLockForName(name).lockShared()) {
+                final LoadedIdentity identity = read(name);
+                if (identity == null) {
+                    identities.remove(name);
+                } else {
+                    identities.put(name, identity);
+                }
+            }
+        }
+
+        private LoadedIdentity snapshot(final LoadedIdentity identity) {
+            // a private copy, so changes to the collections held by callers are never visible through the index
+            return new LoadedIdentity(identity.getName(), Collections.unmodifiableList(new ArrayList<>(identity.getCredentials())),
+                    new MapAttributes(identity.getAttributes()).asReadOnly());
+        }
+
+        private void watch(final WatchService service) {
+            for (;;) {
+                final WatchKey key;
+                try {
+                    key = service.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                final Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    try {
+                        if (event.kind() == OVERFLOW) {
+                            rescan();
+                            continue;
+                        }
+                        final Path entry = directory.resolve((Path) event.context());
+                        if (Files.isDirectory(entry)) {
+                            final int depth = root.relativize(entry).getNameCount();
+                            if (event.kind() == ENTRY_CREATE && depth <= levels) {
+                                // files may have been written to the new directory before it was registered
+                                scan(entry, depth, false);
+                            }
+                        } else if (entry.getFileName().toString().endsWith(format.getSuffix())) {
+                            // the file may no longer exist so only its location can be checked
+                            final String name = nameFor(entry.getFileName());
+                            if (pathFor(name).equals(entry)) {
+                                refresh(name);
+                            }
+                        }
+                    } catch (IOException | IllegalArgumentException | NoSuchElementException e) {
+                        ElytronMessages.log.debugf(e, "Unable to process change in filesystem realm directory \"%s\"", directory);
+                    } catch (ClosedWatchServiceException e) {
+                        return;
+                    }
+                }
+                key.reset();
+            }
+        }
+
+        private void rescan() throws IOException {
+            scan(root, 0, false);
+            for (String name : identities.keySet()) {
+                if (! Files.exists(pathFor(name))) {
+                    refresh(name);
+                }
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            closeWatchService();
+        }
+
+        private void closeWatchService() {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    ElytronMessages.log.debug("Unable to close the watch service", e);
+                }
+                watchService = null;
+            }
+        }
+    }
+
     @FunctionalInterface
     interface CredentialParseFunction {
         void parseCredential(String algorithm, String format, String body) throws RealmUnavailableException, XMLStreamException;
@@ -373,14 +802,30 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         private static final String MCF_FORMAT = "crypt";
         private static final String X509_FORMAT = "X.509";
 
+        private static final int BINARY_MAGIC = 0x454C5949; // "ELYI"
+        private static final int BINARY_VERSION_1 = 1;
+        private static final int BINARY_PASSWORD = 1;
+        private static final int BINARY_MCF_PASSWORD = 2;
+        private static final int BINARY_OTP = 3;
+        private static final int BINARY_PUBLIC_KEY = 4;
+        private static final int BINARY_CERTIFICATE_CHAIN = 5;
+
         private final String name;
         private final Path path;
+        private final IdentityIndex index;
+        private final IdentityFormat format;
         private IdentityLock lock;
 
         Identity(final String name, final Path path, final IdentityLock lock) {
+            this(name, path, lock, null, IdentityFormat.XML);
+        }
+
+        Identity(final String name, final Path path, final IdentityLock lock, final IdentityIndex index, final IdentityFormat format) {
             this.name = name;
             this.path = path;
             this.lock = lock;
+            this.index = index;
+            this.format = format;
         }
 
         public Principal getRealmIdentityPrincipal() {
@@ -458,6 +903,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         }
 
         public boolean exists() throws RealmUnavailableException {
+            if (index != null) {
+                return index.get(name) != null;
+            }
             if (System.getSecurityManager() == null) {
                 return Files.exists(path);
             }
@@ -482,6 +930,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         private Void deletePrivileged() throws RealmUnavailableException {
             try {
                 Files.delete(path);
+                if (index != null) {
+                    index.remove(name);
+                }
                 return null;
             } catch (NoSuchFileException e) {
                 throw ElytronMessages.log.fileSystemRealmNotFound(name);
@@ -533,18 +984,26 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
                 final Path tempPath = tempPath();
                 final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
                 try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath, WRITE, CREATE_NEW, DSYNC))) {
-                    try (AutoCloseableXMLStreamWriterHolder holder = new AutoCloseableXMLStreamWriterHolder(xmlOutputFactory.createXMLStreamWriter(outputStream))) {
-                        final XMLStreamWriter streamWriter = holder.getXmlStreamWriter();
-                        // create empty identity
-                        streamWriter.writeStartDocument();
-                        streamWriter.writeCharacters("\n");
-                        streamWriter.writeStartElement("identity");
-                        // Continue to write using 1.0 as not using any features added in 1.0.1
-                        streamWriter.writeDefaultNamespace(ELYTRON_1_0);
-                        streamWriter.writeEndElement();
-                        streamWriter.writeEndDocument();
-                    } catch (XMLStreamException e) {
-                        throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                    if (format == IdentityFormat.BINARY) {
+                        try {
+                            writeBinaryIdentity(outputStream, new LoadedIdentity(name, Collections.emptyList(), Attributes.EMPTY));
+                        } catch (IOException | GeneralSecurityException e) {
+                            throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                        }
+                    } else {
+                        try (AutoCloseableXMLStreamWriterHolder holder = new AutoCloseableXMLStreamWriterHolder(xmlOutputFactory.createXMLStreamWriter(outputStream))) {
+                            final XMLStreamWriter streamWriter = holder.getXmlStreamWriter();
+                            // create empty identity
+                            streamWriter.writeStartDocument();
+                            streamWriter.writeCharacters("\n");
+                            streamWriter.writeStartElement("identity");
+                            // Continue to write using 1.0 as not using any features added in 1.0.1
+                            streamWriter.writeDefaultNamespace(ELYTRON_1_0);
+                            streamWriter.writeEndElement();
+                            streamWriter.writeEndDocument();
+                        } catch (XMLStreamException e) {
+                            throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                        }
                     }
                 } catch (FileAlreadyExistsException ignored) {
                     // try a new name
@@ -569,6 +1028,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
                 } catch (IOException ignored) {
                     // nothing we can do
                 }
+                if (index != null) {
+                    index.put(new LoadedIdentity(name, Collections.emptyList(), Attributes.EMPTY));
+                }
                 return null;
             }
         }
@@ -624,10 +1086,18 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
                 try {
                     final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
                     try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath, WRITE, CREATE_NEW, DSYNC))) {
-                        try (AutoCloseableXMLStreamWriterHolder holder = new AutoCloseableXMLStreamWriterHolder(xmlOutputFactory.createXMLStreamWriter(outputStream))) {
-                            writeIdentity(holder.getXmlStreamWriter(), newIdentity);
-                        } catch (XMLStreamException | InvalidKeySpecException | NoSuchAlgorithmException | CertificateEncodingException e) {
-                            throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                        if (format == IdentityFormat.BINARY) {
+                            try {
+                                writeBinaryIdentity(outputStream, newIdentity);
+                            } catch (IOException | GeneralSecurityException e) {
+                                throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                            }
+                        } else {
+                            try (AutoCloseableXMLStreamWriterHolder holder = new AutoCloseableXMLStreamWriterHolder(xmlOutputFactory.createXMLStreamWriter(outputStream))) {
+                                writeIdentity(holder.getXmlStreamWriter(), newIdentity);
+                            } catch (XMLStreamException | InvalidKeySpecException | NoSuchAlgorithmException | CertificateEncodingException e) {
+                                throw ElytronMessages.log.fileSystemRealmFailedToWrite(tempPath, name, e);
+                            }
                         }
                     } catch (FileAlreadyExistsException ignored) {
                         // try a new name
@@ -662,6 +1132,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
                     } catch (IOException ignored) {
                         // nothing we can do
                     }
+                    if (index != null) {
+                        index.put(newIdentity);
+                    }
                     return null;
                 } catch (Throwable t) {
                     try {
@@ -742,6 +1215,87 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
             streamWriter.writeEndDocument();
         }
 
+        /**
+         * Write an identity in the binary format. After a header holding a magic number and the format version, the
+         * credentials and the attributes are each written as a section prefixed with its length in bytes, so readers
+         * which only need one of them can skip the other without decoding it.
+         */
+        private void writeBinaryIdentity(final OutputStream outputStream, final LoadedIdentity newIdentity) throws IOException, GeneralSecurityException {
+            final ByteArrayOutputStream credentialBytes = new ByteArrayOutputStream();
+            final DataOutputStream credentialOutput = new DataOutputStream(credentialBytes);
+            int credentialCount = 0;
+            for (Credential credential : newIdentity.getCredentials()) {
+                if (credential instanceof PasswordCredential) {
+                    Password password = ((PasswordCredential) credential).getPassword();
+                    if (password instanceof OneTimePassword) {
+                        final OneTimePassword otp = (OneTimePassword) password;
+                        credentialOutput.writeByte(BINARY_OTP);
+                        writeBinaryString(credentialOutput, otp.getAlgorithm());
+                        writeBinaryBytes(credentialOutput, otp.getHash());
+                        writeBinaryString(credentialOutput, otp.getSeed());
+                        credentialOutput.writeInt(otp.getSequenceNumber());
+                    } else {
+                        byte[] encoded = BasicPasswordSpecEncoding.encode(password);
+                        if (encoded != null) {
+                            credentialOutput.writeByte(BINARY_PASSWORD);
+                            writeBinaryString(credentialOutput, password.getAlgorithm());
+                            writeBinaryBytes(credentialOutput, encoded);
+                        } else {
+                            credentialOutput.writeByte(BINARY_MCF_PASSWORD);
+                            writeBinaryString(credentialOutput, ModularCrypt.encodeAsString(password));
+                        }
+                    }
+                } else if (credential instanceof PublicKeyCredential) {
+                    final PublicKey publicKey = ((PublicKeyCredential) credential).getPublicKey();
+                    credentialOutput.writeByte(BINARY_PUBLIC_KEY);
+                    writeBinaryString(credentialOutput, publicKey.getAlgorithm());
+                    writeBinaryBytes(credentialOutput, publicKey.getEncoded());
+                } else if (credential instanceof X509CertificateChainPublicCredential) {
+                    final X509Certificate[] certificateChain = ((X509CertificateChainPublicCredential) credential).getCertificateChain();
+                    credentialOutput.writeByte(BINARY_CERTIFICATE_CHAIN);
+                    credentialOutput.writeInt(certificateChain.length);
+                    for (X509Certificate certificate : certificateChain) {
+                        writeBinaryBytes(credentialOutput, certificate.getEncoded());
+                    }
+                } else {
+                    // never drop a credential the format cannot hold, the write fails and the existing file is kept
+                    throw ElytronMessages.log.fileSystemRealmUnsupportedBinaryCredential(credential.getClass().getName(), name);
+                }
+                credentialCount ++;
+            }
+
+            final ByteArrayOutputStream attributeBytes = new ByteArrayOutputStream();
+            final DataOutputStream attributeOutput = new DataOutputStream(attributeBytes);
+            final Collection<Attributes.Entry> entries = newIdentity.getAttributes().entries();
+            attributeOutput.writeInt(entries.size());
+            for (Attributes.Entry entry : entries) {
+                writeBinaryString(attributeOutput, entry.getKey());
+                attributeOutput.writeInt(entry.size());
+                for (String value : entry) {
+                    writeBinaryString(attributeOutput, value);
+                }
+            }
+
+            final DataOutputStream output = new DataOutputStream(outputStream);
+            output.writeInt(BINARY_MAGIC);
+            output.writeByte(BINARY_VERSION_1);
+            output.writeInt(credentialBytes.size() + 4);
+            output.writeInt(credentialCount);
+            credentialBytes.writeTo(output);
+            output.writeInt(attributeBytes.size());
+            attributeBytes.writeTo(output);
+            output.flush();
+        }
+
+        private void writeBinaryString(final DataOutputStream output, final String value) throws IOException {
+            writeBinaryBytes(output, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writeBinaryBytes(final DataOutputStream output, final byte[] value) throws IOException {
+            output.writeInt(value.length);
+            output.write(value);
+        }
+
         public void dispose() {
             // Release the lock for this realm identity
             IdentityLock identityLock = lock;
@@ -757,6 +1311,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         }
 
         private LoadedIdentity loadIdentity(final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException {
+            if (index != null) {
+                return index.get(name);
+            }
             if (System.getSecurityManager() == null) {
                 return loadIdentityPrivileged(skipCredentials, skipAttributes);
             }
@@ -771,6 +1328,9 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         }
 
         private LoadedIdentity loadIdentityPrivileged(final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException {
+            if (format == IdentityFormat.BINARY) {
+                return loadBinaryIdentityPrivileged(skipCredentials, skipAttributes);
+            }
             try (InputStream inputStream = Files.newInputStream(path, READ)) {
                 final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
                 inputFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
@@ -790,6 +1350,121 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
             }
         }
 
+        private LoadedIdentity loadBinaryIdentityPrivileged(final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException {
+            final byte[] content;
+            try {
+                content = Files.readAllBytes(path);
+            } catch (NoSuchFileException | FileNotFoundException ignored) {
+                return null;
+            } catch (IOException e) {
+                throw ElytronMessages.log.fileSystemRealmFailedToOpen(path, name, e);
+            }
+            try {
+                return parseBinaryIdentity(new DataInputStream(new ByteArrayInputStream(content)), skipCredentials, skipAttributes);
+            } catch (IOException e) {
+                throw ElytronMessages.log.fileSystemRealmInvalidBinaryContent(path, name, e);
+            }
+        }
+
+        private LoadedIdentity parseBinaryIdentity(final DataInputStream input, final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException, IOException {
+            if (input.readInt() != BINARY_MAGIC || input.readUnsignedByte() != BINARY_VERSION_1) {
+                throw ElytronMessages.log.fileSystemRealmInvalidBinaryContent(path, name, null);
+            }
+            List<Credential> credentials = Collections.emptyList();
+            final int credentialsLength = readBinaryLength(input);
+            if (skipCredentials) {
+                input.skipBytes(credentialsLength);
+            } else {
+                credentials = parseBinaryCredentials(input);
+            }
+            Attributes attributes = Attributes.EMPTY;
+            readBinaryLength(input);
+            if (! skipAttributes) {
+                attributes = new MapAttributes();
+                final int attributeCount = readBinaryLength(input);
+                for (int i = 0; i < attributeCount; i ++) {
+                    final String key = readBinaryString(input);
+                    final int valueCount = readBinaryLength(input);
+                    for (int j = 0; j < valueCount; j ++) {
+                        attributes.addLast(key, readBinaryString(input));
+                    }
+                }
+            }
+            return new LoadedIdentity(name, credentials, attributes);
+        }
+
+        private List<Credential> parseBinaryCredentials(final DataInputStream input) throws RealmUnavailableException, IOException {
+            final int credentialCount = readBinaryLength(input);
+            final List<Credential> credentials = new ArrayList<>(credentialCount);
+            for (int i = 0; i < credentialCount; i ++) {
+                final int type = input.readUnsignedByte();
+                try {
+                    switch (type) {
+                        case BINARY_PASSWORD: {
+                            final String algorithm = readBinaryString(input);
+                            final PasswordSpec passwordSpec = BasicPasswordSpecEncoding.decode(readBinaryBytes(input));
+                            if (passwordSpec == null) {
+                                throw ElytronMessages.log.fileSystemRealmInvalidBinaryContent(path, name, null);
+                            }
+                            credentials.add(new PasswordCredential(PasswordFactory.getInstance(algorithm).generatePassword(passwordSpec)));
+                            break;
+                        }
+                        case BINARY_MCF_PASSWORD: {
+                            credentials.add(new PasswordCredential(ModularCrypt.decode(readBinaryString(input))));
+                            break;
+                        }
+                        case BINARY_OTP: {
+                            final String algorithm = readBinaryString(input);
+                            final byte[] hash = readBinaryBytes(input);
+                            final String seed = readBinaryString(input);
+                            final int sequenceNumber = input.readInt();
+                            credentials.add(new PasswordCredential(PasswordFactory.getInstance(algorithm).generatePassword(new OneTimePasswordSpec(hash, seed, sequenceNumber))));
+                            break;
+                        }
+                        case BINARY_PUBLIC_KEY: {
+                            final KeyFactory keyFactory = KeyFactory.getInstance(readBinaryString(input));
+                            credentials.add(new PublicKeyCredential(keyFactory.generatePublic(new X509EncodedKeySpec(readBinaryBytes(input)))));
+                            break;
+                        }
+                        case BINARY_CERTIFICATE_CHAIN: {
+                            final CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+                            final X509Certificate[] certificateChain = new X509Certificate[readBinaryLength(input)];
+                            for (int j = 0; j < certificateChain.length; j ++) {
+                                certificateChain[j] = (X509Certificate) certificateFactory.generateCertificate(new ByteArrayInputStream(readBinaryBytes(input)));
+                            }
+                            credentials.add(new X509CertificateChainPublicCredential(certificateChain));
+                            break;
+                        }
+                        default: {
+                            throw ElytronMessages.log.fileSystemRealmInvalidBinaryContent(path, name, null);
+                        }
+                    }
+                } catch (GeneralSecurityException | ClassCastException e) {
+                    throw ElytronMessages.log.fileSystemRealmInvalidBinaryContent(path, name, e);
+                }
+            }
+            return credentials;
+        }
+
+        private int readBinaryLength(final DataInputStream input) throws IOException {
+            final int length = input.readInt();
+            // every element takes at least one byte, so a length beyond the remaining content means the file is damaged
+            if (length < 0 || length > input.available()) {
+                throw new EOFException();
+            }
+            return length;
+        }
+
+        private String readBinaryString(final DataInputStream input) throws IOException {
+            return new String(readBinaryBytes(input), StandardCharsets.UTF_8);
+        }
+
+        private byte[] readBinaryBytes(final DataInputStream input) throws IOException {
+            final byte[] bytes = new byte[readBinaryLength(input)];
+            input.readFully(bytes);
+            return bytes;
+        }
+
         private LoadedIdentity parseIdentity(final XMLStreamReader streamReader, final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException, XMLStreamException {
             final int tag = streamReader.nextTag();
             if (tag != START_ELEMENT || ! validNamespace(streamReader.getNamespaceURI()) || ! "identity".equals(streamReader.getLocalName())) {
@@ -1071,6 +1746,36 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm, C
         }
     }
 
+    /**
+     * The formats in which a {@link FileSystemSecurityRealm} can store identities, each identity is stored in a file of
+     * its own.
+     */
+    public enum IdentityFormat {
+
+        /**
+         * Identities are stored as XML documents in files with the {@code .xml} suffix.
+         */
+        XML(".xml"),
+
+        /**
+         * Identities are stored in a compact, versioned binary encoding in files with the {@code .bin} suffix. Reading an
+         * identity in this format needs no XML parsing, and the credentials or the attributes can be skipped without
+         * being decoded when only the other is needed.
+         */
+        BINARY(".bin"),
+        ;
+
+        private final String suffix;
+
+        IdentityFormat(final String suffix) {
+            this.suffix = suffix;
+        }
+
+        String getSuffix() {
+            return suffix;
+        }
+    }
+
     static final class LoadedIdentity {
         private final String name;
         private final List<Credential> credentials;
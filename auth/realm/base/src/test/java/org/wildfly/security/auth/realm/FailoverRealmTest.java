@@ -15,6 +15,7 @@
  */
 package org.wildfly.security.auth.realm;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -30,9 +31,13 @@ import org.wildfly.security.evidence.Evidence;
 
 import java.security.Principal;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -77,6 +82,92 @@ public class FailoverRealmTest {
         assertTrue(thrownException[0]);
     }
 
+    @Test
+    public void testCircuitOpens() throws RealmUnavailableException {
+        AtomicInteger failoverCount = new AtomicInteger();
+        ToggleRealm delegateRealm = new ToggleRealm(false);
+        FailoverSecurityRealm failoverRealm = new FailoverSecurityRealm(delegateRealm, workingRealm, (e) -> failoverCount.incrementAndGet(), 2, 60000, null, null, null);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        }
+
+        assertEquals(2, delegateRealm.lookupCount.get());
+        assertEquals(2, failoverCount.get());
+        assertEquals(FailoverSecurityRealm.CircuitState.OPEN, failoverRealm.getCircuitState());
+        assertEquals(1, failoverRealm.getCircuitOpenCount());
+        assertEquals(2, failoverRealm.getShortCircuitCount());
+    }
+
+    @Test
+    public void testCircuitClosesAfterProbe() throws Exception {
+        ToggleRealm delegateRealm = new ToggleRealm(false);
+        FailoverSecurityRealm failoverRealm = new FailoverSecurityRealm(delegateRealm, workingRealm, null, 1, 1, Runnable::run, IDENTITY_PRINCIPAL, null);
+
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        assertEquals(FailoverSecurityRealm.CircuitState.OPEN, failoverRealm.getCircuitState());
+
+        delegateRealm.available = true;
+        Thread.sleep(10);
+        // the request which triggers the probe is still served by the failover realm
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        assertEquals(2, delegateRealm.lookupCount.get());
+        assertEquals(FailoverSecurityRealm.CircuitState.CLOSED, failoverRealm.getCircuitState());
+
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        assertEquals(3, delegateRealm.lookupCount.get());
+    }
+
+    @Test
+    public void testCircuitReopensAfterFailedTrial() throws Exception {
+        ToggleRealm delegateRealm = new ToggleRealm(false);
+        FailoverSecurityRealm failoverRealm = new FailoverSecurityRealm(delegateRealm, workingRealm, null, 1, 1, null, null, null);
+
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        Thread.sleep(10);
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+
+        assertEquals(2, delegateRealm.lookupCount.get());
+        assertEquals(FailoverSecurityRealm.CircuitState.OPEN, failoverRealm.getCircuitState());
+        assertEquals(2, failoverRealm.getCircuitOpenCount());
+    }
+
+    @Test
+    public void testCircuitNotClosedByRuntimeException() throws Exception {
+        ToggleRealm delegateRealm = new ToggleRealm(false);
+        FailoverSecurityRealm failoverRealm = new FailoverSecurityRealm(delegateRealm, workingRealm, null, 1, 1, null, null, null);
+
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        delegateRealm.available = true;
+        delegateRealm.broken = true;
+        Thread.sleep(10);
+        RealmIdentity identity = failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL);
+        try {
+            identity.exists();
+            fail();
+        } catch (IllegalStateException e) {}
+
+        assertEquals(FailoverSecurityRealm.CircuitState.HALF_OPEN, failoverRealm.getCircuitState());
+    }
+
+    @Test
+    public void testCircuitStateCallback() throws Exception {
+        List<FailoverSecurityRealm.CircuitState> states = new CopyOnWriteArrayList<>();
+        ToggleRealm delegateRealm = new ToggleRealm(false);
+        FailoverSecurityRealm failoverRealm = new FailoverSecurityRealm(delegateRealm, workingRealm, null, 1, 1, null, null, states::add);
+
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        Thread.sleep(10);
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        delegateRealm.available = true;
+        Thread.sleep(10);
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+        assertTrue(failoverRealm.getRealmIdentity(IDENTITY_PRINCIPAL).exists());
+
+        assertEquals(Arrays.asList(FailoverSecurityRealm.CircuitState.OPEN, FailoverSecurityRealm.CircuitState.HALF_OPEN,
+                FailoverSecurityRealm.CircuitState.OPEN, FailoverSecurityRealm.CircuitState.HALF_OPEN,
+                FailoverSecurityRealm.CircuitState.CLOSED), states);
+    }
 
     private static SecurityRealm toSecurityRealm(Attributes attributes) {
         SimpleMapBackedSecurityRealm securityRealm = new SimpleMapBackedSecurityRealm();
@@ -117,6 +208,68 @@ public class FailoverRealmTest {
         }
     }
 
+    private static class ToggleRealm implements SecurityRealm {
+        private final AtomicInteger lookupCount = new AtomicInteger();
+        private volatile boolean available;
+        private volatile boolean broken;
+
+        ToggleRealm(boolean available) {
+            this.available = available;
+        }
+
+        @Override
+        public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+            lookupCount.incrementAndGet();
+            if (available == false) {
+                throw new RealmUnavailableException();
+            }
+            return broken ? new BrokenIdentity() : workingRealm.getRealmIdentity(principal);
+        }
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) throws RealmUnavailableException {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
+    }
+
+    private static class BrokenIdentity implements RealmIdentity {
+
+        @Override
+        public Principal getRealmIdentityPrincipal() {
+            return IDENTITY_PRINCIPAL;
+        }
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) throws RealmUnavailableException {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public <C extends Credential> C getCredential(Class<C> credentialType) throws RealmUnavailableException {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean exists() throws RealmUnavailableException {
+            throw new IllegalStateException();
+        }
+    }
+
     private static class FailingRealm implements SecurityRealm {
 
         @Override
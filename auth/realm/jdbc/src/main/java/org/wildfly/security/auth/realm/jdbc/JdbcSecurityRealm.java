@@ -26,7 +26,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -49,6 +51,9 @@ import org.wildfly.security.evidence.Evidence;
 /**
  * Security realm implementation backed by a database.
  *
+ * <p>When an identity is loaded all of the configured queries using the same {@link DataSource} are executed on a single
+ * {@link Connection}, so a realm with several queries only obtains one connection per data source for each identity.
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Igor</a>
  */
 public class JdbcSecurityRealm implements CacheableSecurityRealm {
@@ -78,7 +83,7 @@ public class JdbcSecurityRealm implements CacheableSecurityRealm {
         Assert.checkNotNullParam("credentialType", credentialType);
         SupportLevel support = SupportLevel.UNSUPPORTED;
         for (QueryConfiguration configuration : queryConfiguration) {
-            for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
+            for (KeyMapper keyMapper : configuration.getKeyMappers()) {
                 final SupportLevel mapperSupport = keyMapper.getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec);
                 if (support.compareTo(mapperSupport) < 0) {
                     support = mapperSupport;
@@ -93,7 +98,7 @@ public class JdbcSecurityRealm implements CacheableSecurityRealm {
         Assert.checkNotNullParam("evidenceType", evidenceType);
         SupportLevel support = SupportLevel.UNSUPPORTED;
         for (QueryConfiguration configuration : queryConfiguration) {
-            for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
+            for (KeyMapper keyMapper : configuration.getKeyMappers()) {
                 final SupportLevel mapperSupport = keyMapper.getEvidenceVerifySupport(evidenceType, algorithmName);
                 if (support.compareTo(mapperSupport) < 0) {
                     support = mapperSupport;
@@ -198,45 +203,51 @@ public class JdbcSecurityRealm implements CacheableSecurityRealm {
                 MapAttributes attributes = new MapAttributes();
                 IdentityCredentials credentials = IdentityCredentials.NONE;
                 boolean found = false;
-
-                for (QueryConfiguration configuration : queryConfiguration) {
-                    String sql = configuration.getSql();
-
-                    log.tracef("Executing principalQuery %s with value %s", sql, name);
-
-                    try (Connection connection = getConnection(configuration);
-                            PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-                        preparedStatement.setString(1, name);
-
-                        try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                            List<AttributeMapper> attributeMappers = configuration.getColumnMappers(AttributeMapper.class);
-                            List<KeyMapper> keyMappers = configuration.getColumnMappers(KeyMapper.class);
-                            while (resultSet.next()) {
-                                found = true;
-
-                                for (AttributeMapper attributeMapper : attributeMappers) {
-                                    Object value = attributeMapper.map(resultSet, providers);
-                                    if (value != null) {
-                                        if (attributes.containsKey(attributeMapper.getName())) {
-                                            attributes.get(attributeMapper.getName()).add(value.toString());
-                                        } else {
-                                            attributes.addFirst(attributeMapper.getName(), value.toString());
+                Map<DataSource, Connection> connections = new IdentityHashMap<>(2);
+
+                try {
+                    for (QueryConfiguration configuration : queryConfiguration) {
+                        String sql = configuration.getSql();
+
+                        log.tracef("Executing principalQuery %s with value %s", sql, name);
+
+                        try (PreparedStatement preparedStatement = getConnection(configuration, connections).prepareStatement(sql)) {
+                            preparedStatement.setString(1, name);
+
+                            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                                List<AttributeMapper> attributeMappers = configuration.getAttributeMappers();
+                                List<KeyMapper> keyMappers = configuration.getKeyMappers();
+                                while (resultSet.next()) {
+                                    found = true;
+
+                                    for (AttributeMapper attributeMapper : attributeMappers) {
+                                        Object value = attributeMapper.map(resultSet, providers);
+                                        if (value != null) {
+                                            if (attributes.containsKey(attributeMapper.getName())) {
+                                                attributes.get(attributeMapper.getName()).add(value.toString());
+                                            } else {
+                                                attributes.addFirst(attributeMapper.getName(), value.toString());
+                                            }
                                         }
                                     }
-                                }
 
-                                for (KeyMapper keyMapper : keyMappers) {
-                                    Credential credential = keyMapper.map(resultSet, providers);
-                                    if (credential != null) {
-                                        credentials = credentials.withCredential(credential);
+                                    for (KeyMapper keyMapper : keyMappers) {
+                                        Credential credential = keyMapper.map(resultSet, providers);
+                                        if (credential != null) {
+                                            credentials = credentials.withCredential(credential);
+                                        }
                                     }
                                 }
                             }
+                        } catch (SQLException e) {
+                            throw log.couldNotExecuteQuery(sql, e);
+                        } catch (Exception e) {
+                            throw log.unexpectedErrorWhenProcessingAuthenticationQuery(sql, e);
                         }
-                    } catch (SQLException e) {
-                        throw log.couldNotExecuteQuery(sql, e);
-                    } catch (Exception e) {
-                        throw log.unexpectedErrorWhenProcessingAuthenticationQuery(sql, e);
+                    }
+                } finally {
+                    for (Connection connection : connections.values()) {
+                        safeClose(connection);
                     }
                 }
 
@@ -247,12 +258,25 @@ public class JdbcSecurityRealm implements CacheableSecurityRealm {
             return this.identity;
         }
 
-        private Connection getConnection(QueryConfiguration configuration) throws RealmUnavailableException {
+        private Connection getConnection(QueryConfiguration configuration, Map<DataSource, Connection> connections) throws RealmUnavailableException {
+            DataSource dataSource = configuration.getDataSource();
+            Connection connection = connections.get(dataSource);
+            if (connection == null) {
+                try {
+                    connection = dataSource.getConnection();
+                } catch (Exception e) {
+                    throw log.couldNotOpenConnection(e);
+                }
+                connections.put(dataSource, connection);
+            }
+            return connection;
+        }
+
+        private void safeClose(Connection connection) {
             try {
-                DataSource dataSource = configuration.getDataSource();
-                return dataSource.getConnection();
-            } catch (Exception e) {
-                throw log.couldNotOpenConnection(e);
+                connection.close();
+            } catch (SQLException e) {
+                log.tracef(e, "Unable to close connection");
             }
         }
 
@@ -18,6 +18,7 @@
 package org.wildfly.security.auth.realm.jdbc;
 
 import org.wildfly.common.Assert;
+import org.wildfly.security.auth.realm.jdbc.mapper.AttributeMapper;
 
 import javax.sql.DataSource;
 import java.util.ArrayList;
@@ -34,6 +35,8 @@ public class QueryConfiguration {
     private final DataSource dataSource;
     private String sql;
     private List<ColumnMapper> columnMappers = new ArrayList<>();
+    private final List<AttributeMapper> attributeMappers;
+    private final List<KeyMapper> keyMappers;
 
     QueryConfiguration(String sql, DataSource dataSource, List<ColumnMapper> columnMappers) {
         Assert.checkNotNullParam("sql", sql);
@@ -42,6 +45,8 @@ public class QueryConfiguration {
         this.sql = sql;
         this.dataSource = dataSource;
         this.columnMappers = columnMappers;
+        this.attributeMappers = Collections.unmodifiableList(getColumnMappers(AttributeMapper.class));
+        this.keyMappers = Collections.unmodifiableList(getColumnMappers(KeyMapper.class));
     }
 
     /**
@@ -71,6 +76,24 @@ public class QueryConfiguration {
         return Collections.unmodifiableList(this.columnMappers);
     }
 
+    /**
+     * Returns the {@link AttributeMapper} instances associated with this query, resolved once when the query was built.
+     *
+     * @return the attribute mappers
+     */
+    List<AttributeMapper> getAttributeMappers() {
+        return this.attributeMappers;
+    }
+
+    /**
+     * Returns the {@link KeyMapper} instances associated with this query, resolved once when the query was built.
+     *
+     * @return the key mappers
+     */
+    List<KeyMapper> getKeyMappers() {
+        return this.keyMappers;
+    }
+
     <T extends ColumnMapper> List<T> getColumnMappers(Class<T> mapperType) {
         List<T> attributeMappers = new ArrayList<>();
 
@@ -17,9 +17,16 @@
  */
 package org.wildfly.security.auth.realm.jdbc;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.wildfly.security.auth.principal.NamePrincipal;
 import org.wildfly.security.auth.realm.jdbc.mapper.AttributeMapper;
@@ -201,6 +208,51 @@ public class AttributeMappingTest extends AbstractJdbcSecurityRealmTest {
         assertAttributeValue(attributes.get(allInOneAttributeName), "admin", "manager", "user", "John", "Smith", "jsmith@elytron.org");
     }
 
+    @Test
+    public void testDifferentQueriesShareConnection() throws Exception {
+        createUserTable();
+        insertUser("plainUser", "plainPassword", "John", "Smith", "jsmith@elytron.org");
+
+        AtomicInteger connectionCount = new AtomicInteger();
+        DataSource dataSource = getDataSource();
+        DataSource countingDataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                connectionCount.incrementAndGet();
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+
+        PasswordKeyMapper passwordKeyMapper = PasswordKeyMapper.builder()
+            .setDefaultAlgorithm(ClearPassword.ALGORITHM_CLEAR)
+            .setHashColumn(1)
+            .build();
+
+        JdbcSecurityRealm securityRealm = JdbcSecurityRealm.builder()
+                .principalQuery("SELECT password FROM user_table WHERE name = ?")
+                    .withMapper(passwordKeyMapper)
+                    .from(countingDataSource)
+                .principalQuery("SELECT firstName, lastName FROM user_table WHERE name = ?")
+                    .withMapper(new AttributeMapper(1, "firstName"))
+                    .withMapper(new AttributeMapper(2, "lastName"))
+                    .from(countingDataSource)
+                .principalQuery("SELECT email FROM user_table WHERE name = ?")
+                    .withMapper(new AttributeMapper(1, "email"))
+                    .from(countingDataSource)
+                .build();
+
+        RealmIdentity plainUser = securityRealm.getRealmIdentity(new NamePrincipal("plainUser"));
+        Attributes attributes = plainUser.getAuthorizationIdentity().getAttributes();
+
+        assertAttributeValue(attributes.get("firstName"), "John");
+        assertAttributeValue(attributes.get("lastName"), "Smith");
+        assertAttributeValue(attributes.get("email"), "jsmith@elytron.org");
+        assertEquals(1, connectionCount.get());
+    }
+
     protected void assertAttributeValue(Attributes.Entry attribute, String... expectedValues) {
         assertNotNull("Attribute [" + attribute.getKey() + "] not found.", attribute);
 
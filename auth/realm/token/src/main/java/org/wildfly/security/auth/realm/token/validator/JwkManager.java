@@ -25,60 +25,118 @@ import javax.json.JsonObject;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.wildfly.security.auth.realm.token._private.ElytronMessages.log;
 
 /**
- * Object for caching RSA JSON Web Keys for signature validation
+ * Object for caching JSON Web Keys for signature validation.
+ *
+ * <p>RSA, EC ({@code P-256}, {@code P-384} and {@code P-521}) and OKP ({@code Ed25519} and {@code Ed448}) keys are
+ * supported. If a key specifies its algorithm, the algorithm is resolved when the key is loaded and tokens signed with any
+ * other algorithm are rejected for that key.
+ *
+ * <p>Key sets are fetched once and then refreshed ahead of their expiry, while the refresh is in progress or if it fails
+ * the previously fetched keys continue to be used. The lifetime of a key set is taken from the {@code max-age} directive of
+ * the {@code Cache-Control} response header, or the update timeout if there is none, and the {@code ETag} response header is
+ * used to avoid downloading a key set which has not changed. If a key id is not found the key set is fetched again
+ * immediately, but not more often than the minimum time between requests.
+ *
+ * <p>The refresh ahead of the expiry runs on the refresh {@link Executor} if one is set, otherwise it runs synchronously on the
+ * thread of the request which found the key set due for refresh.
  *
  * @author <a href="mailto:mmazanek@redhat.com">Martin Mazanek</a>
  */
 class JwkManager {
 
-    private final Map<URL, Map<String, RSAPublicKey>> keys = new LinkedHashMap<>();
-    private final Map<URL, Long> timeouts = new ConcurrentHashMap<>();
-    private final SSLContext sslContext;
+    private final Map<URL, RemoteKeySet> keySets = new ConcurrentHashMap<>();
+    private final SSLSocketFactory sslSocketFactory;
     private final HostnameVerifier hostnameVerifier;
 
     private final long updateTimeout;
+    private final long minTimeBetweenRequests;
+    private final Executor refreshExecutor;
 
     private static final int CONNECTION_TIMEOUT = 2000;//2s
 
-    JwkManager(SSLContext sslContext, HostnameVerifier hostnameVerifier, long updateTimeout) {
-        this.sslContext = sslContext;
+    private static final Map<String, String> EC_CURVES;
+    private static final Map<String, byte[]> OKP_KEY_PREFIXES;
+
+    static {
+        Map<String, String> ecCurves = new HashMap<>();
+        ecCurves.put("P-256", "secp256r1");
+        ecCurves.put("P-384", "secp384r1");
+        ecCurves.put("P-521", "secp521r1");
+        EC_CURVES = Collections.unmodifiableMap(ecCurves);
+
+        Map<String, byte[]> okpKeyPrefixes = new HashMap<>();
+        okpKeyPrefixes.put("Ed25519", new byte[] { 0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00 });
+        okpKeyPrefixes.put("Ed448", new byte[] { 0x30, 0x43, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x71, 0x03, 0x3a, 0x00 });
+        OKP_KEY_PREFIXES = Collections.unmodifiableMap(okpKeyPrefixes);
+    }
+
+    JwkManager(SSLContext sslContext, HostnameVerifier hostnameVerifier, long updateTimeout, long minTimeBetweenRequests, Executor refreshExecutor) {
+        this.sslSocketFactory = sslContext.getSocketFactory();
         this.hostnameVerifier = hostnameVerifier;
         this.updateTimeout = updateTimeout;
+        this.minTimeBetweenRequests = minTimeBetweenRequests;
+        this.refreshExecutor = refreshExecutor;
     }
 
     /**
      * Thread-safe method for receiving remote public key
      * @param kid key id
      * @param url remote jkws url
-     * @return signature verification public key if found, null otherwise
+     * @return signature verification key if found, null otherwise
      */
-    public PublicKey getPublicKey(String kid, URL url) {
-        Map<String, RSAPublicKey> urlKeys = checkRemote(url);
+    public VerificationKey getPublicKey(String kid, URL url) {
+        Assert.checkNotNullParam("url", url);
+
+        RemoteKeySet keySet = keySets.computeIfAbsent(url, RemoteKeySet::new);
+        Map<String, VerificationKey> urlKeys = keySet.keys;
 
         if (urlKeys == null) {
-            return null;
+            urlKeys = keySet.fetch(null);
+            if (urlKeys == null) {
+                return null;
+            }
+        } else if (System.currentTimeMillis() >= keySet.refreshTime) {
+            keySet.scheduleRefresh();
         }
 
-        PublicKey pk = urlKeys.get(kid);
+        VerificationKey pk = urlKeys.get(kid);
+        if (pk == null) {
+            // the keys may have been rotated since they were fetched
+            urlKeys = keySet.fetch(urlKeys);
+            pk = urlKeys.get(kid);
+        }
         if (pk == null) {
             log.warn("Unknown kid: " + kid);
             return null;
@@ -86,62 +144,130 @@ class JwkManager {
         return pk;
     }
 
-    private Map<String, RSAPublicKey> checkRemote(URL url) {
-        Assert.checkNotNullParam("url", url);
+    private final class RemoteKeySet {
 
-        long lastUpdate = 0;
+        private final URL url;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Map<String, VerificationKey> keys;
+        private volatile long refreshTime;
+        // guarded by this
+        private String etag;
+        private long lastRequestTime;
 
-        Map<String, RSAPublicKey> urlKeys;
+        RemoteKeySet(URL url) {
+            this.url = url;
+        }
 
-        synchronized (keys) {
-            urlKeys = keys.get(url);
-            if (urlKeys == null) {
-                urlKeys = new ConcurrentHashMap<>();
-                keys.put(url, urlKeys);
+        /**
+         * Fetch the key set unless it has changed since the given keys were obtained or it was requested too recently.
+         *
+         * @param seen the keys the caller has already seen, or {@code null} if none
+         * @return the current keys, or {@code null} if no keys could be obtained yet
+         */
+        synchronized Map<String, VerificationKey> fetch(Map<String, VerificationKey> seen) {
+            Map<String, VerificationKey> current = keys;
+            if (current != seen || System.currentTimeMillis() - lastRequestTime < minTimeBetweenRequests) {
+                return current;
             }
+            refresh();
+            return keys;
         }
 
-        synchronized (urlKeys) {
-            if (timeouts.containsKey(url)) {
-                lastUpdate = timeouts.get(url);
+        void scheduleRefresh() {
+            if (refreshing.compareAndSet(false, true) == false) {
+                return;
             }
+            Runnable task = () -> {
+                try {
+                    synchronized (this) {
+                        refresh();
+                    }
+                } finally {
+                    refreshing.set(false);
+                }
+            };
+            if (refreshExecutor == null) {
+                // the other callers keep using the current keys while this one refreshes them
+                task.run();
+                return;
+            }
+            try {
+                refreshExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false);
+            }
+        }
+
+        // must be called while holding the lock on this
+        private void refresh() {
+            long now = System.currentTimeMillis();
+            lastRequestTime = now;
+            try {
+                URLConnection connection = url.openConnection();
+                if (connection instanceof HttpsURLConnection) {
+                    HttpsURLConnection conn = (HttpsURLConnection) connection;
+                    conn.setRequestMethod("GET");
+                    conn.setSSLSocketFactory(sslSocketFactory);
+                    conn.setHostnameVerifier(hostnameVerifier);
+                    conn.setConnectTimeout(CONNECTION_TIMEOUT);
+                    conn.setReadTimeout(CONNECTION_TIMEOUT);
+                    if (etag != null && keys != null) {
+                        conn.setRequestProperty("If-None-Match", etag);
+                    }
+                    conn.connect();
+
+                    long lifetime = getLifetime(conn.getHeaderField("Cache-Control"));
+                    if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED && keys != null) {
+                        log.debugf("Jwk set from %s has not been modified", url);
+                        // the empty response must still be closed for the connection to be reused
+                        conn.getInputStream().close();
+                        refreshTime = now + lifetime - lifetime / 4;
+                        return;
+                    }
 
-            if (lastUpdate + updateTimeout <= System.currentTimeMillis()) {
-                Map<String, RSAPublicKey> newJwks = getJwksFromUrl(url, sslContext, hostnameVerifier);
-                if (newJwks == null) {
-                    log.unableToFetchJwks(url.toString());
-                    return null;
+                    JsonObject response;
+                    try (InputStream inputStream = conn.getInputStream()) {
+                        response = Json.createReader(inputStream).readObject();
+                    }
+                    Map<String, VerificationKey> newKeys = parseJwks(response);
+                    if (newKeys != null) {
+                        keys = Collections.unmodifiableMap(newKeys);
+                        etag = conn.getHeaderField("ETag");
+                        // refresh ahead of the expiry so that the keys never have to be fetched while a caller waits
+                        refreshTime = now + lifetime - lifetime / 4;
+                        return;
+                    }
+                } else {
+                    log.warn("No response when fetching jwk set from " + url.toString());
                 }
-                urlKeys.clear();
-                urlKeys.putAll(newJwks);
-                timeouts.put(url, System.currentTimeMillis());
+            } catch (IOException e) {
+                log.warn("Unable to connect to " + url.toString());
             }
-            return urlKeys;
+            log.unableToFetchJwks(url.toString());
+            // keep using any keys obtained previously and try again later
+            refreshTime = now + minTimeBetweenRequests;
         }
-    }
 
-    private static Map<String, RSAPublicKey> getJwksFromUrl(final URL url, SSLContext sslContext, HostnameVerifier hostnameVerifier) {
-        JsonObject response = null;
-        try {
-            URLConnection connection = url.openConnection();
-            if (connection instanceof HttpsURLConnection) {
-                HttpsURLConnection conn = (HttpsURLConnection) connection;
-                conn.setRequestMethod("GET");
-                conn.setSSLSocketFactory(sslContext.getSocketFactory());
-                conn.setHostnameVerifier(hostnameVerifier);
-                conn.setConnectTimeout(CONNECTION_TIMEOUT);
-                conn.setReadTimeout(CONNECTION_TIMEOUT);
-                conn.connect();
-                InputStream inputStream = conn.getInputStream();
-                response = Json.createReader(inputStream).readObject();
+        private long getLifetime(String cacheControl) {
+            if (cacheControl != null) {
+                for (String directive : cacheControl.split(",")) {
+                    directive = directive.trim();
+                    if (directive.regionMatches(true, 0, "max-age=", 0, 8)) {
+                        try {
+                            return Math.max(Long.parseLong(directive.substring(8).trim()) * 1000, minTimeBetweenRequests);
+                        } catch (NumberFormatException e) {
+                            log.debugf("Invalid Cache-Control directive [%s] from %s", directive, url);
+                        }
+                    }
+                }
             }
-        } catch (IOException e) {
-            log.warn("Unable to connect to " + url.toString());
-            return null;
+            return updateTimeout;
         }
+    }
 
+    private static Map<String, VerificationKey> parseJwks(JsonObject response) {
         if (response == null) {
-            log.warn("No response when fetching jwk set from " + url.toString());
+            log.warn("No response when fetching jwk set");
             return null;
         }
         JsonArray jwks = response.getJsonArray("keys");
@@ -149,44 +275,130 @@ class JwkManager {
             log.warn("Unable to parse jwks");
             return null;
         }
-        Map<String, RSAPublicKey> res = new LinkedHashMap<>();
+        Map<String, VerificationKey> res = new LinkedHashMap<>();
         for (int i = 0; i < jwks.size(); i++) {
             JsonObject jwk = jwks.getJsonObject(i);
             String kid = jwk.getString("kid", null);
             String kty = jwk.getString("kty", null);
-            String e1 = jwk.getString("e", null);
-            String n1 = jwk.getString("n", null);
+            String alg = jwk.getString("alg", null);
 
             if (kid == null) {
                 log.tokenRealmJwkMissingClaim("kid");
                 continue;
             }
-            if (!"RSA".equals(kty)) {
+            if (kty == null) {
                 log.tokenRealmJwkMissingClaim("kty");
                 continue;
             }
-            if (e1 == null) {
-                log.tokenRealmJwkMissingClaim("e");
-                continue;
-            }
-            if (n1 == null) {
-                log.tokenRealmJwkMissingClaim("n");
-                continue;
-            }
 
-            BigInteger e = new BigInteger(Base64.getDecoder().decode(e1));
-            BigInteger n = new BigInteger(Base64.getDecoder().decode(n1));
-            RSAPublicKeySpec keySpec = new RSAPublicKeySpec(n, e);
+            JwsAlgorithm algorithm = null;
+            if (alg != null) {
+                algorithm = JwsAlgorithm.forName(alg);
+                if (algorithm == null || !algorithm.getKeyType().equals(kty)) {
+                    log.debugf("Fetched jwk with kid [%s] uses unsupported algorithm [%s], ignoring...", kid, alg);
+                    continue;
+                }
+            }
 
             try {
-                RSAPublicKey publicKey = (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(keySpec);
-                res.put(kid, publicKey);
-            } catch (InvalidKeySpecException | NoSuchAlgorithmException ex) {
+                PublicKey publicKey;
+                switch (kty) {
+                    case "RSA":
+                        publicKey = parseRsaKey(jwk);
+                        break;
+                    case "EC":
+                        publicKey = parseEcKey(jwk);
+                        break;
+                    case "OKP":
+                        publicKey = parseOkpKey(jwk);
+                        break;
+                    default:
+                        log.tokenRealmJwkMissingClaim("kty");
+                        continue;
+                }
+                if (publicKey == null) {
+                    continue;
+                }
+                if (algorithm != null) {
+                    // fail now rather than on every token if the key cannot be used with its algorithm
+                    algorithm.createSignature().initVerify(publicKey);
+                }
+                res.put(kid, new VerificationKey(publicKey, algorithm));
+            } catch (GeneralSecurityException | IllegalArgumentException ex) {
                 log.info("Fetched jwk could not be parsed, ignoring...");
-                ex.printStackTrace();
-                continue;
+                log.debug("Unable to parse jwk", ex);
             }
         }
         return res;
     }
-}
\ No newline at end of file
+
+    private static PublicKey parseRsaKey(JsonObject jwk) throws GeneralSecurityException {
+        String e1 = jwk.getString("e", null);
+        String n1 = jwk.getString("n", null);
+
+        if (e1 == null) {
+            log.tokenRealmJwkMissingClaim("e");
+            return null;
+        }
+        if (n1 == null) {
+            log.tokenRealmJwkMissingClaim("n");
+            return null;
+        }
+
+        BigInteger e = new BigInteger(Base64.getDecoder().decode(e1));
+        BigInteger n = new BigInteger(Base64.getDecoder().decode(n1));
+        return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(n, e));
+    }
+
+    private static PublicKey parseEcKey(JsonObject jwk) throws GeneralSecurityException {
+        String crv = jwk.getString("crv", null);
+        String x1 = jwk.getString("x", null);
+        String y1 = jwk.getString("y", null);
+
+        String curve = crv == null ? null : EC_CURVES.get(crv);
+        if (curve == null) {
+            log.tokenRealmJwkMissingClaim("crv");
+            return null;
+        }
+        if (x1 == null) {
+            log.tokenRealmJwkMissingClaim("x");
+            return null;
+        }
+        if (y1 == null) {
+            log.tokenRealmJwkMissingClaim("y");
+            return null;
+        }
+
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(curve));
+        ECParameterSpec parameterSpec = parameters.getParameterSpec(ECParameterSpec.class);
+        BigInteger x = new BigInteger(1, Base64.getUrlDecoder().decode(x1));
+        BigInteger y = new BigInteger(1, Base64.getUrlDecoder().decode(y1));
+        return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(new ECPoint(x, y), parameterSpec));
+    }
+
+    private static PublicKey parseOkpKey(JsonObject jwk) throws GeneralSecurityException {
+        String crv = jwk.getString("crv", null);
+        String x1 = jwk.getString("x", null);
+
+        byte[] prefix = crv == null ? null : OKP_KEY_PREFIXES.get(crv);
+        if (prefix == null) {
+            log.tokenRealmJwkMissingClaim("crv");
+            return null;
+        }
+        if (x1 == null) {
+            log.tokenRealmJwkMissingClaim("x");
+            return null;
+        }
+
+        // wrap the raw key in a SubjectPublicKeyInfo structure, the only encoding accepted on every JDK with EdDSA support
+        byte[] x = Base64.getUrlDecoder().decode(x1);
+        // the prefix ends with the bit string length, which counts the unused bits byte, and the unused bits byte
+        if (x.length != prefix[prefix.length - 2] - 1) {
+            throw new InvalidKeySpecException("Invalid " + crv + " key length");
+        }
+        byte[] encoded = Arrays.copyOf(prefix, prefix.length + x.length);
+        System.arraycopy(x, 0, encoded, prefix.length, x.length);
+        return KeyFactory.getInstance("EdDSA").generatePublic(new X509EncodedKeySpec(encoded));
+    }
+}
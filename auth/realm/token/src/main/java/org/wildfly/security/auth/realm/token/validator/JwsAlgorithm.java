@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.auth.realm.token.validator;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * The JWS signature algorithms supported for token verification, along with their JCA counterparts.
+ */
+enum JwsAlgorithm {
+
+    RS256("SHA256withRSA", "RSA", null, 0),
+    RS384("SHA384withRSA", "RSA", null, 0),
+    RS512("SHA512withRSA", "RSA", null, 0),
+    PS256("RSASSA-PSS", "RSA", new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1), 0),
+    PS384("RSASSA-PSS", "RSA", new PSSParameterSpec("SHA-384", "MGF1", MGF1ParameterSpec.SHA384, 48, 1), 0),
+    PS512("RSASSA-PSS", "RSA", new PSSParameterSpec("SHA-512", "MGF1", MGF1ParameterSpec.SHA512, 64, 1), 0),
+    ES256("SHA256withECDSA", "EC", null, 32),
+    ES384("SHA384withECDSA", "EC", null, 48),
+    ES512("SHA512withECDSA", "EC", null, 66),
+    EdDSA("EdDSA", "OKP", null, 0);
+
+    private final String jcaName;
+    private final String keyType;
+    private final AlgorithmParameterSpec parameterSpec;
+    private final int coordinateLength;
+
+    JwsAlgorithm(String jcaName, String keyType, AlgorithmParameterSpec parameterSpec, int coordinateLength) {
+        this.jcaName = jcaName;
+        this.keyType = keyType;
+        this.parameterSpec = parameterSpec;
+        this.coordinateLength = coordinateLength;
+    }
+
+    /**
+     * Get the algorithm for the given {@code alg} header or JWK parameter value.
+     *
+     * @param name the JWS algorithm name
+     * @return the algorithm, or {@code null} if it is not supported
+     */
+    static JwsAlgorithm forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the JWK key type ({@code kty}) of the keys this algorithm verifies with.
+     *
+     * @return the JWK key type
+     */
+    String getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * Get the JWK key type of the given public key.
+     *
+     * @param publicKey the public key
+     * @return the JWK key type, or {@code null} if the key is of a type none of the algorithms use
+     */
+    static String keyTypeOf(PublicKey publicKey) {
+        switch (publicKey.getAlgorithm()) {
+            case "RSA":
+            case "RSASSA-PSS":
+                return "RSA";
+            case "EC":
+                return "EC";
+            case "EdDSA":
+            case "Ed25519":
+            case "Ed448":
+                return "OKP";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Create a new {@link Signature} for this algorithm.
+     *
+     * @return the signature, not yet initialised
+     * @throws NoSuchAlgorithmException if no provider supports this algorithm
+     */
+    Signature createSignature() throws NoSuchAlgorithmException {
+        Signature signature = Signature.getInstance(jcaName);
+        if (parameterSpec != null) {
+            try {
+                signature.setParameter(parameterSpec);
+            } catch (InvalidAlgorithmParameterException e) {
+                throw new NoSuchAlgorithmException(e);
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Verify the given JWS signature value with a {@link Signature} which has been initialised and updated.
+     *
+     * @param signature the signature to verify with
+     * @param bytes the array holding the signature value
+     * @param offset the offset of the signature value
+     * @param length the length of the signature value
+     * @return {@code true} if the signature is valid, {@code false} otherwise
+     * @throws SignatureException if the signature could not be verified
+     */
+    boolean verify(Signature signature, byte[] bytes, int offset, int length) throws SignatureException {
+        if (coordinateLength == 0) {
+            return signature.verify(bytes, offset, length);
+        }
+        // JWS holds ECDSA signatures as the concatenated R and S values where JCA expects a DER sequence
+        if (length != 2 * coordinateLength) {
+            return false;
+        }
+        return signature.verify(toDer(bytes, offset, coordinateLength));
+    }
+
+    private static byte[] toDer(byte[] bytes, int offset, int coordinateLength) {
+        int rStart = skipLeadingZeros(bytes, offset, coordinateLength);
+        int sStart = skipLeadingZeros(bytes, offset + coordinateLength, coordinateLength);
+        int rLength = offset + coordinateLength - rStart;
+        int sLength = offset + 2 * coordinateLength - sStart;
+        int rPad = (bytes[rStart] & 0x80) != 0 ? 1 : 0;
+        int sPad = (bytes[sStart] & 0x80) != 0 ? 1 : 0;
+        int contentLength = 4 + rPad + rLength + sPad + sLength;
+        int headerLength = contentLength > 0x7f ? 3 : 2;
+
+        byte[] der = new byte[headerLength + contentLength];
+        int i = 0;
+        der[i++] = 0x30;
+        if (headerLength == 3) {
+            der[i++] = (byte) 0x81;
+        }
+        der[i++] = (byte) contentLength;
+        der[i++] = 0x02;
+        der[i++] = (byte) (rPad + rLength);
+        i += rPad;
+        System.arraycopy(bytes, rStart, der, i, rLength);
+        i += rLength;
+        der[i++] = 0x02;
+        der[i++] = (byte) (sPad + sLength);
+        i += sPad;
+        System.arraycopy(bytes, sStart, der, i, sLength);
+        return der;
+    }
+
+    private static int skipLeadingZeros(byte[] bytes, int offset, int length) {
+        int end = offset + length - 1;
+        while (offset < end && bytes[offset] == 0) {
+            offset++;
+        }
+        return offset;
+    }
+}
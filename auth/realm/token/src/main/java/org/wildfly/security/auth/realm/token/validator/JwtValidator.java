@@ -18,7 +18,6 @@
 
 package org.wildfly.security.auth.realm.token.validator;
 
-import org.wildfly.common.iteration.ByteIterator;
 import org.wildfly.common.iteration.CodePointIterator;
 import org.wildfly.security.auth.realm.token.TokenValidator;
 import org.wildfly.security.auth.server.RealmUnavailableException;
@@ -35,21 +34,30 @@ import javax.json.JsonValue;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import static java.util.Arrays.asList;
+import static org.wildfly.common.Assert.checkMinimumParameter;
 import static org.wildfly.common.Assert.checkNotNullParam;
 import static org.wildfly.security.auth.realm.token._private.ElytronMessages.log;
 import static org.wildfly.security.json.util.JsonUtil.toAttributes;
@@ -58,6 +66,14 @@ import static org.wildfly.security.json.util.JsonUtil.toAttributes;
  * <p>A {@link TokenValidator} capable of validating and parsing JWT. Most of the validations performed by this validator are
  * based on RFC-7523 (JSON Web Token (JWT) Profile for OAuth 2.0 Client Authentication and Authorization Grants).
  *
+ * <p>Signatures using the {@code RS256}, {@code RS384}, {@code RS512}, {@code PS256}, {@code PS384}, {@code PS512},
+ * {@code ES256}, {@code ES384}, {@code ES512} and {@code EdDSA} algorithms can be verified, provided the algorithm is supported
+ * by the installed security providers.
+ *
+ * <p>If a token cache size is configured, the claims of successfully validated tokens are cached until the tokens expire so that
+ * a token presented again is not parsed and its signature not verified again. Note that a cached token remains valid even if
+ * its signing key is removed from the configured jwks in the meantime.
+ *
  * <p>This validator can also be used as a JWT parser only. In this case, for security reasons, you need to make sure that
  * JWT validations such as issuer, audience and signature checks are performed before obtaining identities from this realm.
  *
@@ -77,19 +93,32 @@ public class JwtValidator implements TokenValidator {
     private final Set<String> issuers;
     private final Set<String> audiences;
     private final JwkManager jwkManager;
-    private final Map<String, PublicKey> namedKeys;
+    private final Map<String, VerificationKey> namedKeys;
+
+    private final VerificationKey defaultPublicKey;
+
+    private final int tokenCacheSize;
+    private final Map<TokenKey, CachedToken> tokenCache;
 
-    private final PublicKey defaultPublicKey;
+    // held by each validator rather than statically so that the instances are released along with the validator
+    private final ThreadLocal<Map<JwsAlgorithm, Signature>> signatures = ThreadLocal.withInitial(() -> new EnumMap<>(JwsAlgorithm.class));
+    private final ThreadLocal<MessageDigest> tokenDigest = ThreadLocal.withInitial(TokenKey::createDigest);
 
     JwtValidator(Builder configuration) {
         this.issuers = checkNotNullParam("issuers", configuration.issuers);
         this.audiences = checkNotNullParam("audience", configuration.audience);
-        this.defaultPublicKey = configuration.publicKey;
-        this.namedKeys = configuration.namedKeys;
+        this.defaultPublicKey = configuration.publicKey != null ? new VerificationKey(configuration.publicKey, null) : null;
+        Map<String, VerificationKey> namedKeys = new HashMap<>(configuration.namedKeys.size());
+        for (Map.Entry<String, PublicKey> entry : configuration.namedKeys.entrySet()) {
+            namedKeys.put(entry.getKey(), new VerificationKey(entry.getValue(), null));
+        }
+        this.namedKeys = namedKeys;
         if (configuration.sslContext != null) {
             this.jwkManager = new JwkManager(configuration.sslContext,
                                             configuration.hostnameVerifier != null ? configuration.hostnameVerifier : HttpsURLConnection.getDefaultHostnameVerifier(),
-                                            configuration.updateTimeout);
+                                            configuration.updateTimeout,
+                                            configuration.minTimeBetweenRequests,
+                                            configuration.refreshExecutor);
         }
         else {
             log.tokenRealmJwtNoSSLIgnoringJku();
@@ -106,34 +135,75 @@ public class JwtValidator implements TokenValidator {
             log.tokenRealmJwtWarnNoAudienceIgnoringAudienceCheck();
         }
 
+        checkMinimumParameter("tokenCacheSize", 0, configuration.tokenCacheSize);
+        this.tokenCacheSize = configuration.tokenCacheSize;
+        this.tokenCache = tokenCacheSize > 0 ? new ConcurrentHashMap<>() : null;
+
     }
 
     @Override
     public Attributes validate(BearerTokenEvidence evidence) throws RealmUnavailableException {
         checkNotNullParam("evidence", evidence);
         String jwt = evidence.getToken();
-        String[] parts = jwt.split("\\.", -1);
+        int headerEnd = jwt.indexOf('.');
+        int claimsEnd = headerEnd != -1 ? jwt.indexOf('.', headerEnd + 1) : -1;
 
-        if (parts.length < 3) {
+        if (claimsEnd == -1) {
             throw log.tokenRealmJwtInvalidFormat();
         }
 
-        String encodedHeader = parts[0];
-        String encodedClaims = parts[1];
-        String encodedSignature = parts[2];
+        int signatureEnd = jwt.indexOf('.', claimsEnd + 1);
+
+        if (signatureEnd == -1) {
+            signatureEnd = jwt.length();
+        }
+
+        // the parts of the token are decoded in place, the signature is verified over the bytes up to the second separator
+        byte[] token = jwt.getBytes(StandardCharsets.US_ASCII);
+        TokenKey tokenKey = null;
+
+        if (tokenCache != null) {
+            tokenKey = new TokenKey(tokenDigest.get().digest(token));
+            CachedToken cached = tokenCache.get(tokenKey);
+            if (cached != null) {
+                if (currentTimeInSeconds() <= cached.expiration) {
+                    return cached.attributes;
+                }
+                tokenCache.remove(tokenKey, cached);
+            }
+        }
 
-        JsonObject claims = extractClaims(encodedClaims);
+        JsonObject claims = extractClaims(token, headerEnd + 1, claimsEnd);
 
-        if (verifySignature(encodedHeader, encodedClaims, encodedSignature)
+        if (verifySignature(token, headerEnd, claimsEnd, signatureEnd)
                 && hasValidIssuer(claims)
                 && hasValidAudience(claims)
                 && verifyTimeConstraints(claims)) {
-            return toAttributes(claims);
+            if (tokenCache == null) {
+                return toAttributes(claims);
+            }
+            Attributes attributes = toAttributes(claims).asReadOnly();
+            tokenCache.put(tokenKey, new CachedToken(attributes, claims.getInt("exp")));
+            if (tokenCache.size() > tokenCacheSize) {
+                evictTokens();
+            }
+            return attributes;
         }
 
         return null;
     }
 
+    private void evictTokens() {
+        int currentTime = currentTimeInSeconds();
+        tokenCache.values().removeIf(cached -> currentTime > cached.expiration);
+        // free a quarter of the cache at once so that the full scan is not repeated on every request
+        Iterator<CachedToken> iterator = tokenCache.values().iterator();
+        while (tokenCache.size() > tokenCacheSize - tokenCacheSize / 4 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
     private boolean verifyTimeConstraints(JsonObject claims) {
         int currentTime = currentTimeInSeconds();
         boolean expired = currentTime > claims.getInt("exp", -1);
@@ -155,28 +225,31 @@ public class JwtValidator implements TokenValidator {
         return true;
     }
 
-    private JsonObject extractClaims(String encodedClaims) throws RealmUnavailableException {
+    private JsonObject extractClaims(byte[] token, int offset, int end) throws RealmUnavailableException {
         try {
-            Base64.Decoder urlDecoder = Base64.getUrlDecoder();
-            CodePointIterator decodedClaims = CodePointIterator.ofUtf8Bytes(urlDecoder.decode(encodedClaims));
-
-            return Json.createReader(decodedClaims.asUtf8().asInputStream()).readObject();
+            return Json.createReader(decode(token, offset, end)).readObject();
         } catch (Exception cause) {
             throw log.tokenRealmJwtParseFailed(cause);
         }
     }
 
-    private boolean verifySignature(String encodedHeader, String encodedClaims, String encodedSignature) throws RealmUnavailableException {
+    private static ByteArrayInputStream decode(byte[] token, int offset, int end) {
+        ByteBuffer decoded = Base64.getUrlDecoder().decode(ByteBuffer.wrap(token, offset, end - offset));
+        return new ByteArrayInputStream(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining());
+    }
+
+    private boolean verifySignature(byte[] token, int headerEnd, int claimsEnd, int signatureEnd) throws RealmUnavailableException {
         if (defaultPublicKey == null && jwkManager == null && namedKeys.isEmpty()) {
             return true;
         }
 
         try {
-            Base64.Decoder urlDecoder = Base64.getUrlDecoder();
-            byte[] decodedSignature = urlDecoder.decode(encodedSignature);
+            ByteBuffer decodedSignature = Base64.getUrlDecoder().decode(ByteBuffer.wrap(token, claimsEnd + 1, signatureEnd - claimsEnd - 1));
 
-            Signature signature = createSignature(encodedHeader, encodedClaims);
-            boolean verify = signature != null ? ByteIterator.ofBytes(decodedSignature).verify(signature) : false;
+            JsonObject headers = Json.createReader(decode(token, 0, headerEnd)).readObject();
+            JwsAlgorithm algorithm = resolveAlgorithm(headers);
+            Signature signature = createSignature(headers, algorithm, token, claimsEnd);
+            boolean verify = signature != null ? algorithm.verify(signature, decodedSignature.array(), decodedSignature.arrayOffset() + decodedSignature.position(), decodedSignature.remaining()) : false;
 
             if (!verify) {
                 log.debug("Signature verification failed");
@@ -236,31 +309,41 @@ public class JwtValidator implements TokenValidator {
         return valid;
     }
 
-    private Signature createSignature(String encodedHeader, String encodedClaims) throws NoSuchAlgorithmException, SignatureException, RealmUnavailableException {
-
-        byte[] headerDecoded = Base64.getUrlDecoder().decode(encodedHeader);
-        JsonObject headers = Json.createReader(ByteIterator.ofBytes(headerDecoded).asInputStream()).readObject();
+    private Signature createSignature(JsonObject headers, JwsAlgorithm algorithm, byte[] token, int claimsEnd) throws NoSuchAlgorithmException, SignatureException, RealmUnavailableException {
+        VerificationKey publicKey = resolvePublicKey(headers);
+        if (publicKey == null) {
+            log.debug("Public key could not be resolved.");
+            return null;
+        }
+        if (!publicKey.isCompatible(algorithm)) {
+            return null;
+        }
 
-        String headerAlg = resolveAlgorithm(headers);
-        Signature signature = Signature.getInstance(headerAlg);
+        Signature signature = getSignature(algorithm);
         try {
-            PublicKey publicKey = resolvePublicKey(headers);
-            if (publicKey == null) {
-                log.debug("Public key could not be resolved.");
-                return null;
-            }
-            signature.initVerify(publicKey);
+            signature.initVerify(publicKey.getPublicKey());
         } catch (InvalidKeyException e) {
             e.printStackTrace();
             return null;
         }
 
-        signature.update((encodedHeader + "." + encodedClaims).getBytes());
+        signature.update(token, 0, claimsEnd);
 
         return signature;
     }
 
-    private String resolveAlgorithm(JsonObject headers) {
+    private Signature getSignature(JwsAlgorithm algorithm) throws NoSuchAlgorithmException {
+        // Signature instances are reset by initVerify so each thread can keep reusing its own
+        Map<JwsAlgorithm, Signature> threadSignatures = signatures.get();
+        Signature signature = threadSignatures.get(algorithm);
+        if (signature == null) {
+            signature = algorithm.createSignature();
+            threadSignatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    private JwsAlgorithm resolveAlgorithm(JsonObject headers) {
         JsonString algClaim = (JsonString) headers.get("alg");
 
         if (algClaim == null) {
@@ -271,19 +354,16 @@ public class JwtValidator implements TokenValidator {
 
         log.debugf("Token is using algorithm [%s]", algorithm);
 
-        switch (algorithm) {
-            case "RS256":
-                return "SHA256withRSA";
-            case "RS384":
-                return "SHA384withRSA";
-            case "RS512":
-                return "SHA512withRSA";
-            default:
-                throw log.tokenRealmJwtSignatureInvalidAlgorithm(algorithm);
+        JwsAlgorithm resolved = JwsAlgorithm.forName(algorithm);
+
+        if (resolved == null) {
+            throw log.tokenRealmJwtSignatureInvalidAlgorithm(algorithm);
         }
+
+        return resolved;
     }
 
-    private PublicKey resolvePublicKey(JsonObject headers) {
+    private VerificationKey resolvePublicKey(JsonObject headers) {
         JsonString kid = headers.getJsonString("kid");
         JsonString jku = headers.getJsonString("jku");
 
@@ -306,7 +386,7 @@ public class JwtValidator implements TokenValidator {
                 log.debug("Cannot validate token with kid claim.");
                 return null;
             }
-            PublicKey res = namedKeys.get(kid.getString());
+            VerificationKey res = namedKeys.get(kid.getString());
             if (res == null) {
                 log.debug("Unknown kid.");
             }
@@ -318,6 +398,17 @@ public class JwtValidator implements TokenValidator {
         return ((int) (System.currentTimeMillis() / 1000));
     }
 
+    private static final class CachedToken {
+
+        final Attributes attributes;
+        final int expiration;
+
+        CachedToken(Attributes attributes, int expiration) {
+            this.attributes = attributes;
+            this.expiration = expiration;
+        }
+    }
+
     public static class Builder {
 
         private Set<String> issuers = new LinkedHashSet<>();
@@ -327,6 +418,9 @@ public class JwtValidator implements TokenValidator {
         private HostnameVerifier hostnameVerifier;
         private SSLContext sslContext;
         private long updateTimeout = 120000;
+        private long minTimeBetweenRequests = 10000;
+        private Executor refreshExecutor;
+        private int tokenCacheSize;
 
         private Builder() {
         }
@@ -430,7 +524,8 @@ public class JwtValidator implements TokenValidator {
 
         /**
          * <p>A timeout for cached jwks when using jku claim. After this timeout, the keys of need to be re-cached before use.
-         * Default value is 2 minutes.
+         * The keys are refreshed ahead of the timeout and the {@code max-age} of a {@code Cache-Control} response header takes
+         * precedence over it. Default value is 2 minutes.
          *
          * @param timeout timeout in ms before keys needs to be re-cached
          * @return this instance
@@ -440,6 +535,45 @@ public class JwtValidator implements TokenValidator {
             return this;
         }
 
+        /**
+         * <p>The minimum time between two requests for the same jwks when using jku claim. Tokens with an unknown key id cause
+         * the jwks to be fetched again immediately, unless it was requested less than this time ago. Failed requests are
+         * also retried after this time. Default value is 10 seconds.
+         *
+         * @param minTimeBetweenRequests time in ms that must elapse between two requests for the same jwks
+         * @return this instance
+         */
+        public Builder setJkuMinTimeBetweenRequests(long minTimeBetweenRequests) {
+            this.minTimeBetweenRequests = minTimeBetweenRequests;
+            return this;
+        }
+
+        /**
+         * <p>An {@link Executor} used to refresh cached jwks in the background when using jku claim. If not set, a cached jwks
+         * is refreshed synchronously on the thread of the first request which finds it due for refresh, that request waits for
+         * the jwks to be fetched (up to the connection and read timeouts of 2 seconds each) while concurrent requests continue
+         * to use the previously fetched keys. Setting an executor is recommended so that no request waits for a refresh.
+         *
+         * @param refreshExecutor the executor used to refresh jwks
+         * @return this instance
+         */
+        public Builder setJkuRefreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        /**
+         * <p>The maximum number of successfully validated tokens to cache. A cached token is not parsed and verified again until
+         * it expires. Default value is 0, which disables the cache.
+         *
+         * @param tokenCacheSize the maximum number of cached tokens
+         * @return this instance
+         */
+        public Builder tokenCacheSize(int tokenCacheSize) {
+            this.tokenCacheSize = tokenCacheSize;
+            return this;
+        }
+
         /**
          * Returns a {@link JwtValidator} instance based on all the configuration provided with this builder.
          *
@@ -24,13 +24,17 @@ import org.wildfly.common.iteration.CodePointIterator;
 import org.wildfly.security.auth.realm.token.TokenValidator;
 import org.wildfly.security.auth.server.RealmUnavailableException;
 import org.wildfly.security.authz.Attributes;
+import org.wildfly.security.authz.MapAttributes;
 import org.wildfly.security.evidence.BearerTokenEvidence;
 
 import javax.json.Json;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonValue;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -40,8 +44,16 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.wildfly.security.auth.realm.token._private.ElytronMessages.log;
 import static org.wildfly.security.json.util.JsonUtil.toAttributes;
@@ -50,6 +62,11 @@ import static org.wildfly.security.json.util.JsonUtil.toAttributes;
 /**
  * A RFC-7662 (OAuth2 Token Introspection) compliant {@link TokenValidator}.
  *
+ * <p>Connections to the token introspection endpoint are kept alive and reused between requests. Concurrent validations of
+ * the same token share a single request to the endpoint and, if a cache size and maximum age are configured, the result for
+ * an active token is cached until the maximum age or the expiration time of the token is reached, whichever comes first.
+ * Tokens are tracked by their SHA-256 digest, the tokens themselves are not retained.
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Igor</a>
  */
 public class OAuth2IntrospectValidator implements TokenValidator {
@@ -68,6 +85,19 @@ public class OAuth2IntrospectValidator implements TokenValidator {
     private final String clientSecret;
     private final SSLContext sslContext;
     private final HostnameVerifier hostnameVerifier;
+    private final SSLSocketFactory sslSocketFactory;
+    private final String authorization;
+    private final int cacheSize;
+    private final long cacheMaxAge;
+    private final Map<TokenKey, CachedAttributes> cache;
+    private final Map<TokenKey, CompletableFuture<Attributes>> pendingRequests = new ConcurrentHashMap<>();
+    private final ThreadLocal<MessageDigest> tokenDigest = ThreadLocal.withInitial(TokenKey::createDigest);
+
+    /**
+     * The maximum time in milliseconds to wait for the in-flight introspection of the same token by another thread, after
+     * which the token is introspected again.
+     */
+    private static final long PENDING_REQUEST_TIMEOUT = 30000;
 
     OAuth2IntrospectValidator(Builder configuration) {
         this.tokenIntrospectionUrl = Assert.checkNotNullParam("tokenIntrospectionUrl", configuration.tokenIntrospectionUrl);
@@ -80,24 +110,117 @@ public class OAuth2IntrospectValidator implements TokenValidator {
 
         this.sslContext = configuration.sslContext;
         this.hostnameVerifier = configuration.hostnameVerifier;
+        // the JDK only reuses a kept alive TLS connection if it was created by the same socket factory
+        this.sslSocketFactory = sslContext != null ? sslContext.getSocketFactory() : null;
+        this.authorization = "Basic " + CodePointIterator.ofString(clientId + ":" + clientSecret).asUtf8().base64Encode().drainToString();
+        Assert.checkMinimumParameter("cacheSize", 0, configuration.cacheSize);
+        Assert.checkMinimumParameter("cacheMaxAge", 0, configuration.cacheMaxAge);
+        this.cacheSize = configuration.cacheSize;
+        this.cacheMaxAge = configuration.cacheMaxAge;
+        this.cache = cacheSize > 0 && cacheMaxAge > 0 ? new ConcurrentHashMap<>() : null;
     }
 
     @Override
     public Attributes validate(BearerTokenEvidence evidence) throws RealmUnavailableException {
         Assert.checkNotNullParam("evidence", evidence);
 
-        try {
-            JsonObject claims = introspectAccessToken(this.tokenIntrospectionUrl,
-                    this.clientId, this.clientSecret, evidence.getToken(), this.sslContext, this.hostnameVerifier);
+        String token = evidence.getToken();
+        TokenKey key = new TokenKey(tokenDigest.get().digest(token.getBytes(StandardCharsets.UTF_8)));
 
-            if (isValidToken(claims)) {
-                return toAttributes(claims);
+        if (cache != null) {
+            CachedAttributes cached = cache.get(key);
+            if (cached != null) {
+                if (cached.expiration > System.currentTimeMillis()) {
+                    return cached.attributes;
+                }
+                cache.remove(key, cached);
             }
+        }
+
+        CompletableFuture<Attributes> request = new CompletableFuture<>();
+        CompletableFuture<Attributes> inFlight = pendingRequests.putIfAbsent(key, request);
+
+        if (inFlight != null) {
+            log.tracef("Waiting for in-flight introspection of token");
+            try {
+                Attributes attributes = inFlight.get(PENDING_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+                // each waiting caller gets its own copy of modifiable attributes
+                return cache == null && attributes != null ? new MapAttributes(attributes) : attributes;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RealmUnavailableException) {
+                    throw (RealmUnavailableException) cause;
+                }
+                throw log.tokenRealmOAuth2TokenIntrospectionFailed(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw log.tokenRealmOAuth2TokenIntrospectionFailed(e);
+            } catch (TimeoutException e) {
+                log.tracef("Timed out waiting for in-flight introspection of token, introspecting it again");
+                return introspect(key, token);
+            }
+        }
+
+        try {
+            Attributes attributes = introspect(key, token);
+            // without a cache the returned attributes are modifiable, the waiting callers copy a snapshot of them instead
+            request.complete(cache == null && attributes != null ? new MapAttributes(attributes) : attributes);
+            return attributes;
+        } catch (RealmUnavailableException e) {
+            request.completeExceptionally(e);
+            throw e;
         } catch (Exception e) {
-            throw log.tokenRealmOAuth2TokenIntrospectionFailed(e);
+            RealmUnavailableException rue = log.tokenRealmOAuth2TokenIntrospectionFailed(e);
+            request.completeExceptionally(rue);
+            throw rue;
+        } finally {
+            pendingRequests.remove(key, request);
+            if (request.isDone() == false) {
+                // the waiting callers must be released whatever ended this introspection
+                request.completeExceptionally(log.tokenRealmOAuth2TokenIntrospectionFailed(null));
+            }
         }
+    }
 
-        return null;
+    private Attributes introspect(TokenKey key, String token) throws RealmUnavailableException {
+        JsonObject claims = introspectAccessToken(this.tokenIntrospectionUrl,
+                this.clientId, this.clientSecret, token, this.sslContext, this.hostnameVerifier);
+
+        if (isValidToken(claims) == false) {
+            return null;
+        }
+
+        if (cache == null) {
+            return toAttributes(claims);
+        }
+
+        Attributes attributes = toAttributes(claims).asReadOnly();
+        long expiration = System.currentTimeMillis() + cacheMaxAge;
+        JsonValue exp = claims.get("exp");
+
+        if (exp instanceof JsonNumber) {
+            expiration = Math.min(expiration, ((JsonNumber) exp).longValue() * 1000);
+        }
+
+        if (expiration > System.currentTimeMillis()) {
+            cache.put(key, new CachedAttributes(attributes, expiration));
+            if (cache.size() > cacheSize) {
+                evict();
+            }
+        }
+
+        return attributes;
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(cached -> cached.expiration <= now);
+        // free a quarter of the cache at once so that the full scan is not repeated on every request
+        Iterator<CachedAttributes> iterator = cache.values().iterator();
+        while (cache.size() > cacheSize - cacheSize / 4 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
     }
 
     private boolean isValidToken(JsonObject claims) {
@@ -136,14 +259,19 @@ public class OAuth2IntrospectValidator implements TokenValidator {
             connection.setRequestMethod("POST");
             connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
             connection.setRequestProperty("Content-Length", String.valueOf(params.length));
-            connection.setRequestProperty("Authorization", "Basic " + CodePointIterator.ofString(clientId + ":" + clientSecret).asUtf8().base64Encode().drainToString());
+            connection.setRequestProperty("Authorization", authorization);
+            connection.setFixedLengthStreamingMode(params.length);
 
             try (OutputStream outputStream = connection.getOutputStream()) {
                 outputStream.write(params);
             }
 
             try (InputStream inputStream = new BufferedInputStream(connection.getInputStream())) {
-                return Json.createReader(inputStream).readObject();
+                JsonObject response = Json.createReader(inputStream).readObject();
+                // consume whatever follows the response so the connection can be returned to the keep-alive cache
+                while (inputStream.read() != -1) {
+                }
+                return response;
             }
         } catch (IOException ioe) {
             if (connection != null && connection.getErrorStream() != null) {
@@ -177,7 +305,7 @@ public class OAuth2IntrospectValidator implements TokenValidator {
             if (isHttps) {
                 HttpsURLConnection https = (HttpsURLConnection) connection;
 
-                https.setSSLSocketFactory(sslContext.getSocketFactory());
+                https.setSSLSocketFactory(sslSocketFactory);
 
                 if (hostnameVerifier != null) {
                     https.setHostnameVerifier(hostnameVerifier);
@@ -203,6 +331,17 @@ public class OAuth2IntrospectValidator implements TokenValidator {
         return params.toArray();
     }
 
+    private static final class CachedAttributes {
+
+        final Attributes attributes;
+        final long expiration;
+
+        CachedAttributes(Attributes attributes, long expiration) {
+            this.attributes = attributes;
+            this.expiration = expiration;
+        }
+    }
+
     public static class Builder {
 
         private String clientId;
@@ -210,6 +349,8 @@ public class OAuth2IntrospectValidator implements TokenValidator {
         private URL tokenIntrospectionUrl;
         private SSLContext sslContext;
         private HostnameVerifier hostnameVerifier;
+        private int cacheSize;
+        private long cacheMaxAge;
 
         private Builder() {
         }
@@ -276,6 +417,30 @@ public class OAuth2IntrospectValidator implements TokenValidator {
             return this;
         }
 
+        /**
+         * The maximum number of introspection results for active tokens to cache. Results are only cached if both the cache
+         * size and the {@link #cacheMaxAge(long) maximum age} are greater than {@code 0}, which is not the case by default.
+         *
+         * @param cacheSize the maximum number of cached introspection results
+         * @return this instance
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * The time in milliseconds an introspection result for an active token is cached for. A result is never cached beyond
+         * the expiration time of the token as reported by the {@code exp} claim.
+         *
+         * @param cacheMaxAge the maximum age of cached introspection results in milliseconds
+         * @return this instance
+         */
+        public Builder cacheMaxAge(long cacheMaxAge) {
+            this.cacheMaxAge = cacheMaxAge;
+            return this;
+        }
+
         /**
          * Returns a {@link OAuth2IntrospectValidator} instance based on all the configuration provided with this builder.
          *
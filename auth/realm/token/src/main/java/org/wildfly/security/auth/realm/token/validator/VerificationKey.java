@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.auth.realm.token.validator;
+
+import java.security.PublicKey;
+
+import static org.wildfly.security.auth.realm.token._private.ElytronMessages.log;
+
+/**
+ * A public key used to verify token signatures, along with the algorithm resolved for it when the key was loaded.
+ */
+final class VerificationKey {
+
+    private final PublicKey publicKey;
+    private final String keyType;
+    private final JwsAlgorithm algorithm;
+
+    /**
+     * Create a new instance.
+     *
+     * @param publicKey the public key
+     * @param algorithm the only algorithm the key may be used with, or {@code null} to allow any algorithm for its key type
+     */
+    VerificationKey(PublicKey publicKey, JwsAlgorithm algorithm) {
+        this.publicKey = publicKey;
+        this.keyType = JwsAlgorithm.keyTypeOf(publicKey);
+        this.algorithm = algorithm;
+    }
+
+    PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Determine whether a token signature with the given algorithm can be verified with this key.
+     *
+     * @param requested the algorithm named by the token header
+     * @return {@code true} if this key can be used with the requested algorithm, {@code false} otherwise
+     */
+    boolean isCompatible(JwsAlgorithm requested) {
+        if (algorithm != null ? algorithm != requested : keyType != null && !requested.getKeyType().equals(keyType)) {
+            log.debugf("Token algorithm [%s] cannot be used with the resolved public key.", requested);
+            return false;
+        }
+        return true;
+    }
+}
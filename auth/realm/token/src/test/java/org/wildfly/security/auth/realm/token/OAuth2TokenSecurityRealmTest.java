@@ -42,6 +42,8 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static org.junit.Assert.*;
@@ -170,6 +172,129 @@ public class OAuth2TokenSecurityRealmTest {
         assertEquals("{\"objField1\":\"value1\",\"objectField2\":\"value2\"}", attributes.getFirst("attribute7"));
     }
 
+    @Test
+    public void testCachedIntrospection() throws Exception {
+        AtomicInteger introspectionCount = new AtomicInteger();
+        configureTokenIntrospectionEndpoint(s -> {
+            introspectionCount.incrementAndGet();
+            return Json.createReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8))).readObject();
+        });
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .validator(OAuth2IntrospectValidator.builder()
+                        .clientId("wildfly-elytron")
+                        .clientSecret("dont_tell_me")
+                        .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect"))
+                        .cacheSize(10)
+                        .cacheMaxAge(60000).build())
+                .build();
+
+        JsonObjectBuilder tokenBuilder = Json.createObjectBuilder();
+
+        tokenBuilder.add("active", true);
+        tokenBuilder.add("username", "elytron@jboss.org");
+        tokenBuilder.add("exp", System.currentTimeMillis() / 1000 + 60);
+
+        String token = tokenBuilder.build().toString();
+
+        for (int i = 0; i < 3; i++) {
+            RealmIdentity realmIdentity = securityRealm.getRealmIdentity(new BearerTokenEvidence(token));
+
+            assertTrue(realmIdentity.exists());
+            assertEquals("elytron@jboss.org", realmIdentity.getRealmIdentityPrincipal().getName());
+        }
+
+        assertEquals(1, introspectionCount.get());
+    }
+
+    @Test
+    public void testExpiredTokenNotCached() throws Exception {
+        AtomicInteger introspectionCount = new AtomicInteger();
+        configureTokenIntrospectionEndpoint(s -> {
+            introspectionCount.incrementAndGet();
+            return Json.createReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8))).readObject();
+        });
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .validator(OAuth2IntrospectValidator.builder()
+                        .clientId("wildfly-elytron")
+                        .clientSecret("dont_tell_me")
+                        .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect"))
+                        .cacheSize(10)
+                        .cacheMaxAge(60000).build())
+                .build();
+
+        JsonObjectBuilder tokenBuilder = Json.createObjectBuilder();
+
+        tokenBuilder.add("active", true);
+        tokenBuilder.add("username", "elytron@jboss.org");
+        tokenBuilder.add("exp", System.currentTimeMillis() / 1000 - 60);
+
+        String token = tokenBuilder.build().toString();
+
+        assertTrue(securityRealm.getRealmIdentity(new BearerTokenEvidence(token)).exists());
+        assertTrue(securityRealm.getRealmIdentity(new BearerTokenEvidence(token)).exists());
+
+        assertEquals(2, introspectionCount.get());
+    }
+
+    @Test
+    public void testCoalescedIntrospection() throws Exception {
+        AtomicInteger introspectionCount = new AtomicInteger();
+        CountDownLatch introspecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        configureTokenIntrospectionEndpoint(s -> {
+            introspectionCount.incrementAndGet();
+            introspecting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return Json.createReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8))).readObject();
+        });
+
+        OAuth2IntrospectValidator validator = OAuth2IntrospectValidator.builder()
+                .clientId("wildfly-elytron")
+                .clientSecret("dont_tell_me")
+                .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect")).build();
+
+        JsonObjectBuilder tokenBuilder = Json.createObjectBuilder();
+
+        tokenBuilder.add("active", true);
+        tokenBuilder.add("username", "elytron@jboss.org");
+
+        BearerTokenEvidence evidence = new BearerTokenEvidence(tokenBuilder.build().toString());
+        Attributes[] results = new Attributes[2];
+        Thread first = new Thread(() -> results[0] = validate(validator, evidence));
+        Thread second = new Thread(() -> results[1] = validate(validator, evidence));
+
+        first.start();
+        introspecting.await();
+        second.start();
+        while (second.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, introspectionCount.get());
+        assertEquals("elytron@jboss.org", results[0].getFirst("username"));
+        assertEquals("elytron@jboss.org", results[1].getFirst("username"));
+        // without a cache each caller can modify its own attributes
+        results[0].addFirst("username", "other");
+        assertEquals("elytron@jboss.org", results[1].getFirst("username"));
+    }
+
+    private static Attributes validate(OAuth2IntrospectValidator validator, BearerTokenEvidence evidence) {
+        try {
+            return validator.validate(evidence);
+        } catch (RealmUnavailableException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Test(expected = RealmUnavailableException.class)
     public void testInErrorTokenIntrospectionEndpoint() throws Exception {
         configureTokenIntrospectionEndpoint(s ->  {throw new RuntimeException("Forcing exception.");});
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.server;
+
+import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import org.wildfly.common.Assert;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.evidence.Evidence;
+
+/**
+ * A {@link SecurityRealm} which is able to obtain identities and verify evidence without blocking the calling thread.
+ *
+ * <p>Realms which are natively non-blocking can implement this interface directly, the blocking methods of
+ * {@link SecurityRealm} are then implemented by waiting for the asynchronous result.  Existing blocking realms can be
+ * adapted using {@link #from(SecurityRealm, Executor)} in which case the blocking calls are made on the supplied
+ * {@link Executor}, this may be a dedicated bounded pool or an executor backed by virtual threads where available.
+ */
+public interface AsyncSecurityRealm extends SecurityRealm {
+
+    /**
+     * Get a handle for the identity for the given principal in the context of this security realm without blocking.
+     * The returned handle <em>must</em> be cleaned up by a call to {@link RealmIdentity#dispose()}.
+     *
+     * @param principal the principal which identifies the identity within the realm (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with the {@link RealmIdentity} for the provided principal, or
+     * exceptionally with a {@link RealmUnavailableException} if the realm is not able to handle requests for any reason
+     */
+    CompletionStage<RealmIdentity> getRealmIdentityAsync(Principal principal);
+
+    /**
+     * Get a handle for the identity for the given evidence in the context of this security realm without blocking.
+     * The returned handle <em>must</em> be cleaned up by a call to {@link RealmIdentity#dispose()}.
+     *
+     * @param evidence an evidence instance which identifies the identity within the realm (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with the {@link RealmIdentity} for the provided evidence, or
+     * exceptionally with a {@link RealmUnavailableException} if the realm is not able to handle requests for any reason
+     */
+    default CompletionStage<RealmIdentity> getRealmIdentityAsync(Evidence evidence) {
+        final Principal principal = evidence.getDecodedPrincipal();
+        return principal == null ? CompletableFuture.completedFuture(RealmIdentity.NON_EXISTENT) : getRealmIdentityAsync(principal);
+    }
+
+    /**
+     * Verify the given evidence against an identity previously obtained from this realm without blocking.
+     *
+     * @param realmIdentity the identity obtained from this realm (must not be {@code null})
+     * @param evidence the evidence to verify (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with {@code true} if verification was successful, {@code false}
+     * otherwise, or exceptionally with a {@link RealmUnavailableException} if the realm is not able to handle requests
+     */
+    CompletionStage<Boolean> verifyEvidenceAsync(RealmIdentity realmIdentity, Evidence evidence);
+
+    /**
+     * Get the authorization identity of an identity previously obtained from this realm without blocking.  The default
+     * implementation obtains it from the identity on the calling thread, realms which load the authorization information
+     * of their identities lazily should override this method.
+     *
+     * @param realmIdentity the identity obtained from this realm (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with the {@link AuthorizationIdentity} of the identity, or
+     * exceptionally with a {@link RealmUnavailableException} if the realm is not able to handle requests
+     */
+    default CompletionStage<AuthorizationIdentity> getAuthorizationIdentityAsync(RealmIdentity realmIdentity) {
+        final CompletableFuture<AuthorizationIdentity> future = new CompletableFuture<>();
+        try {
+            future.complete(realmIdentity.getAuthorizationIdentity());
+        } catch (RealmUnavailableException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    default RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+        return join(getRealmIdentityAsync(principal));
+    }
+
+    @Override
+    default RealmIdentity getRealmIdentity(Evidence evidence) throws RealmUnavailableException {
+        return join(getRealmIdentityAsync(evidence));
+    }
+
+    /**
+     * Obtain an {@link AsyncSecurityRealm} for the given realm.  If the realm already implements this interface it is
+     * returned as is, otherwise the blocking calls to the realm and its identities are made using the supplied
+     * {@link Executor}.
+     *
+     * @param realm the realm to adapt (must not be {@code null})
+     * @param executor the executor to make blocking calls on (must not be {@code null})
+     * @return the asynchronous realm (not {@code null})
+     */
+    static AsyncSecurityRealm from(SecurityRealm realm, Executor executor) {
+        Assert.checkNotNullParam("realm", realm);
+        Assert.checkNotNullParam("executor", executor);
+        if (realm instanceof AsyncSecurityRealm) {
+            return (AsyncSecurityRealm) realm;
+        }
+        return new ExecutorAsyncSecurityRealm(realm, executor);
+    }
+
+    /**
+     * Wait for the result of an asynchronous realm operation, unwrapping any {@link RealmUnavailableException}.
+     *
+     * @param stage the stage to wait for (must not be {@code null})
+     * @param <T> the result type
+     * @return the result of the stage
+     * @throws RealmUnavailableException if the stage completed with a {@link RealmUnavailableException}
+     */
+    static <T> T join(CompletionStage<T> stage) throws RealmUnavailableException {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RealmUnavailableException) {
+                throw (RealmUnavailableException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RealmUnavailableException(cause);
+        }
+    }
+}
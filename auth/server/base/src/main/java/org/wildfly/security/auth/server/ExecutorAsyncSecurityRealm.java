@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.server;
+
+import java.security.Principal;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.wildfly.common.function.ExceptionSupplier;
+import org.wildfly.security.auth.SupportLevel;
+import org.wildfly.security.auth.server.event.RealmEvent;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.evidence.Evidence;
+
+/**
+ * An {@link AsyncSecurityRealm} which adapts a blocking {@link SecurityRealm} by making the blocking calls on an
+ * {@link Executor}.
+ */
+final class ExecutorAsyncSecurityRealm implements AsyncSecurityRealm {
+
+    private final SecurityRealm realm;
+    private final Executor executor;
+
+    ExecutorAsyncSecurityRealm(final SecurityRealm realm, final Executor executor) {
+        this.realm = realm;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<RealmIdentity> getRealmIdentityAsync(final Principal principal) {
+        return supply(() -> realm.getRealmIdentity(principal), executor);
+    }
+
+    @Override
+    public CompletionStage<RealmIdentity> getRealmIdentityAsync(final Evidence evidence) {
+        return supply(() -> realm.getRealmIdentity(evidence), executor);
+    }
+
+    @Override
+    public CompletionStage<Boolean> verifyEvidenceAsync(final RealmIdentity realmIdentity, final Evidence evidence) {
+        return supply(() -> realmIdentity.verifyEvidence(evidence), executor);
+    }
+
+    @Override
+    public CompletionStage<AuthorizationIdentity> getAuthorizationIdentityAsync(final RealmIdentity realmIdentity) {
+        return supply(realmIdentity::getAuthorizationIdentity, executor);
+    }
+
+    @Override
+    public RealmIdentity getRealmIdentity(final Principal principal) throws RealmUnavailableException {
+        return realm.getRealmIdentity(principal);
+    }
+
+    @Override
+    public RealmIdentity getRealmIdentity(final Evidence evidence) throws RealmUnavailableException {
+        return realm.getRealmIdentity(evidence);
+    }
+
+    @Override
+    public RealmIdentity getRealmIdentity(final Evidence evidence, final Function<Principal, Principal> principalTransformer) throws RealmUnavailableException {
+        return realm.getRealmIdentity(evidence, principalTransformer);
+    }
+
+    @Override
+    public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+        return realm.getCredentialAcquireSupport(credentialType, algorithmName, parameterSpec);
+    }
+
+    @Override
+    public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+        return realm.getEvidenceVerifySupport(evidenceType, algorithmName);
+    }
+
+    @Override
+    public void handleRealmEvent(final RealmEvent event) {
+        realm.handleRealmEvent(event);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorAsyncSecurityRealm[" + realm + "]";
+    }
+
+    private static <T> CompletionStage<T> supply(final ExceptionSupplier<T, RealmUnavailableException> supplier, final Executor executor) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RealmUnavailableException(e));
+        }
+        return future;
+    }
+}
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -101,6 +102,9 @@ public final class SecurityDomain {
     private final Consumer<SecurityEvent> securityEventListener;
     private final Function<Evidence, Principal> evidenceDecoder;
     private final RoleDecoder roleDecoder;
+    private final int permissionCacheSize;
+    private final LongAdder permissionCacheHitCount = new LongAdder();
+    private final LongAdder permissionCacheMissCount = new LongAdder();
 
     SecurityDomain(Builder builder, final LinkedHashMap<String, RealmInfo> realmMap) {
         this.realmMap = realmMap;
@@ -115,6 +119,7 @@ public final class SecurityDomain {
         this.securityEventListener = builder.securityEventListener;
         this.evidenceDecoder = builder.evidenceDecoder;
         this.roleDecoder = builder.roleDecoder;
+        this.permissionCacheSize = builder.permissionCacheSize;
         final Map<String, RoleMapper> originalRoleMappers = builder.categoryRoleMappers;
         final Map<String, RoleMapper> copiedRoleMappers;
         if (originalRoleMappers.isEmpty()) {
@@ -719,6 +724,40 @@ public final class SecurityDomain {
         return domainMappedRoles;
     }
 
+    /**
+     * Get the number of permission checks of identities of this domain which were answered by their permission decision
+     * cache.
+     *
+     * @return the number of permission decision cache hits
+     * @see Builder#setPermissionCacheSize(int)
+     */
+    public long getPermissionCacheHitCount() {
+        return permissionCacheHitCount.sum();
+    }
+
+    /**
+     * Get the number of permission checks of identities of this domain which were not answered by their permission
+     * decision cache and had to be evaluated.
+     *
+     * @return the number of permission decision cache misses
+     * @see Builder#setPermissionCacheSize(int)
+     */
+    public long getPermissionCacheMissCount() {
+        return permissionCacheMissCount.sum();
+    }
+
+    int getPermissionCacheSize() {
+        return permissionCacheSize;
+    }
+
+    void recordPermissionCacheAccess(final boolean hit) {
+        if (hit) {
+            permissionCacheHitCount.increment();
+        } else {
+            permissionCacheMissCount.increment();
+        }
+    }
+
     PermissionVerifier mapPermissions(final SecurityIdentity securityIdentity) {
         Assert.checkNotNullParam("securityIdentity", securityIdentity);
         final Roles roles = securityIdentity.getRoles();
@@ -832,6 +871,7 @@ public final class SecurityDomain {
         private Consumer<SecurityEvent> securityEventListener = e -> {};
         private Function<Evidence, Principal> evidenceDecoder = evidence -> evidence.getDefaultPrincipal();
         private RoleDecoder roleDecoder = RoleDecoder.EMPTY;
+        private int permissionCacheSize = 0;
 
         Builder() {
         }
@@ -925,6 +965,21 @@ public final class SecurityDomain {
             return this;
         }
 
+        /**
+         * Set the maximum number of permission decisions cached by each security identity of this domain. Decisions are
+         * held by the identity which made them, any identity derived from it starts with an empty cache. By default no
+         * decisions are cached and every check is evaluated by the mapped permissions.
+         *
+         * @param permissionCacheSize the maximum number of cached decisions per identity, {@code 0} to disable caching
+         * @return this builder
+         */
+        public Builder setPermissionCacheSize(int permissionCacheSize) {
+            Assert.checkMinimumParameter("permissionCacheSize", 0, permissionCacheSize);
+            assertNotBuilt();
+            this.permissionCacheSize = permissionCacheSize;
+            return this;
+        }
+
         /**
          * Set the principal decoder for this security domain, which will be used to convert {@link Principal} objects
          * into names for handling in the realm.
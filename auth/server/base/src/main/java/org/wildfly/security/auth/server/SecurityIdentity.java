@@ -31,6 +31,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
@@ -82,6 +84,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
     private final Map<String, RoleMapper> roleMappers;
     private final Instant creationTime;
     private final PermissionVerifier verifier;
+    private final PermissionDecisionCache permissionCache;
     private final IdentityCredentials publicCredentials;
     private final IdentityCredentials privateCredentials;
     private final Supplier<SecurityIdentity[]> withSuppliedIdentities;
@@ -96,6 +99,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = roleMappers;
         this.creationTime = Instant.now();
         this.verifier = securityDomain.mapPermissions(this);
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = publicCredentials;
         this.privateCredentials = privateCredentials;
         this.withSuppliedIdentities = null;
@@ -111,6 +115,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = old.withSuppliedIdentities;
@@ -126,6 +131,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = old.withSuppliedIdentities;
@@ -141,6 +147,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = isPrivate ? old.publicCredentials : old.publicCredentials.withCredential(credential);
         this.privateCredentials = isPrivate ? old.privateCredentials.withCredential(credential) : old.privateCredentials;
         this.withSuppliedIdentities = old.withSuppliedIdentities;
@@ -156,6 +163,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = isPrivate ? old.publicCredentials : old.publicCredentials.with(credentials);
         this.privateCredentials = isPrivate ? old.privateCredentials.with(credentials) : old.privateCredentials;
         this.withSuppliedIdentities = old.withSuppliedIdentities;
@@ -171,6 +179,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = withSuppliedIdentites;
@@ -186,6 +195,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = null;
@@ -201,6 +211,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = null;
@@ -216,6 +227,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
         this.roleMappers = old.roleMappers;
         this.creationTime = old.creationTime;
         this.verifier = old.verifier;
+        this.permissionCache = PermissionDecisionCache.create(this.securityDomain);
         this.publicCredentials = old.publicCredentials;
         this.privateCredentials = old.privateCredentials;
         this.withSuppliedIdentities = null;
@@ -807,7 +819,7 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
     }
 
     public boolean implies(final Permission permission) {
-        final boolean result = verifier.implies(permission);
+        final boolean result = permissionCache != null ? permissionCache.implies(verifier, permission) : verifier.implies(permission);
         SecurityDomain.safeHandleSecurityEvent(securityDomain,
                 result ? new SecurityPermissionCheckSuccessfulEvent(this, permission) : new SecurityPermissionCheckFailedEvent(this, permission));
         return result;
@@ -962,4 +974,68 @@ public final class SecurityIdentity implements PermissionVerifier, PermissionMap
                 ", creationTime=" + creationTime +
                 '}';
     }
+
+    /**
+     * A bounded cache of the decisions of the permission verifier of a single identity, keyed by permission type, name
+     * and actions.
+     */
+    private static final class PermissionDecisionCache {
+        private final SecurityDomain securityDomain;
+        private final int maxSize;
+        private final ConcurrentHashMap<PermissionKey, Boolean> decisions = new ConcurrentHashMap<>();
+
+        private PermissionDecisionCache(final SecurityDomain securityDomain, final int maxSize) {
+            this.securityDomain = securityDomain;
+            this.maxSize = maxSize;
+        }
+
+        static PermissionDecisionCache create(final SecurityDomain securityDomain) {
+            final int maxSize = securityDomain.getPermissionCacheSize();
+            return maxSize > 0 ? new PermissionDecisionCache(securityDomain, maxSize) : null;
+        }
+
+        boolean implies(final PermissionVerifier verifier, final Permission permission) {
+            final PermissionKey key = new PermissionKey(permission);
+            final Boolean cached = decisions.get(key);
+            if (cached != null) {
+                securityDomain.recordPermissionCacheAccess(true);
+                return cached.booleanValue();
+            }
+            securityDomain.recordPermissionCacheAccess(false);
+            final boolean decision = verifier.implies(permission);
+            if (decisions.size() >= maxSize) {
+                decisions.clear();
+            }
+            decisions.put(key, Boolean.valueOf(decision));
+            return decision;
+        }
+    }
+
+    private static final class PermissionKey {
+        private final Class<?> type;
+        private final String name;
+        private final String actions;
+        private final int hashCode;
+
+        PermissionKey(final Permission permission) {
+            this.type = permission.getClass();
+            this.name = permission.getName();
+            this.actions = permission.getActions();
+            this.hashCode = Objects.hash(type, name, actions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (! (obj instanceof PermissionKey)) {
+                return false;
+            }
+            final PermissionKey other = (PermissionKey) obj;
+            return type == other.type && Objects.equals(name, other.name) && Objects.equals(actions, other.actions);
+        }
+    }
 }
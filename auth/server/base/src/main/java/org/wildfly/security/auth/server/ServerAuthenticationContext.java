@@ -31,6 +31,9 @@ import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -45,6 +48,7 @@ import javax.security.sasl.AuthorizeCallback;
 import javax.security.sasl.RealmCallback;
 
 import org.wildfly.common.Assert;
+import org.wildfly.common.function.ExceptionSupplier;
 import org.wildfly.security.auth.SupportLevel;
 import org.wildfly.security.auth.callback.AnonymousAuthorizationCallback;
 import org.wildfly.security.auth.callback.AuthenticationCompleteCallback;
@@ -416,6 +420,22 @@ public final class ServerAuthenticationContext implements AutoCloseable {
         stateRef.get().setPrincipal(principal, exclusive);
     }
 
+    /**
+     * Set the authentication principal for this authentication without blocking the calling thread.  The realm identity
+     * is obtained using {@link AsyncSecurityRealm#getRealmIdentityAsync(Principal)} if the realm implements
+     * {@link AsyncSecurityRealm}, otherwise the realm is called using the given {@link Executor}.
+     *
+     * @param principal the authentication principal (must not be {@code null})
+     * @param executor the executor to call blocking realms on (must not be {@code null})
+     * @return a {@link CompletionStage} which completes once the principal has been set, or exceptionally with the
+     * exception {@link #setAuthenticationPrincipal(Principal)} would have thrown
+     */
+    public CompletionStage<Void> setAuthenticationPrincipalAsync(Principal principal, Executor executor) {
+        Assert.checkNotNullParam("principal", principal);
+        Assert.checkNotNullParam("executor", executor);
+        return stateRef.get().setPrincipalAsync(principal, executor);
+    }
+
     /**
      * Determine if the given name refers to the same identity as the currently set authentication name.
      *
@@ -481,6 +501,20 @@ public final class ServerAuthenticationContext implements AutoCloseable {
         return stateRef.get().authorize(requireLoginPermission);
     }
 
+    /**
+     * Attempt to authorize an authentication attempt without blocking the calling thread.  The authorization identity is
+     * obtained using {@link AsyncSecurityRealm#getAuthorizationIdentityAsync(RealmIdentity)} if the realm implements
+     * {@link AsyncSecurityRealm}, otherwise the realm identity is called using the given {@link Executor}.
+     *
+     * @param executor the executor to call blocking realms on (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with the result of {@link #authorize()}, or exceptionally with the
+     * exception it would have thrown
+     */
+    public CompletionStage<Boolean> authorizeAsync(Executor executor) {
+        Assert.checkNotNullParam("executor", executor);
+        return stateRef.get().authorizeAsync(true, executor);
+    }
+
     /**
      * Attempt to authorize a change to a new user (possibly including an authentication attempt).  If the authorization
      * is successful, {@code true} is returned and the context is placed in the "authorized" state with the new authorization
@@ -767,6 +801,22 @@ public final class ServerAuthenticationContext implements AutoCloseable {
         return stateRef.get().verifyEvidence(evidence);
     }
 
+    /**
+     * Verify the given evidence without blocking the calling thread.  The realm identity is obtained and the evidence is
+     * verified using the methods of {@link AsyncSecurityRealm} if the realm implements it, otherwise the realm is called
+     * using the given {@link Executor}.
+     *
+     * @param evidence the evidence to verify (must not be {@code null})
+     * @param executor the executor to call blocking realms on (must not be {@code null})
+     * @return a {@link CompletionStage} which completes with the result of {@link #verifyEvidence(Evidence)}, or
+     * exceptionally with the exception it would have thrown
+     */
+    public CompletionStage<Boolean> verifyEvidenceAsync(Evidence evidence, Executor executor) {
+        Assert.checkNotNullParam("evidence", evidence);
+        Assert.checkNotNullParam("executor", executor);
+        return stateRef.get().verifyEvidenceAsync(evidence, executor);
+    }
+
     /**
      * Set the decoded evidence principal.
      *
@@ -1185,46 +1235,118 @@ public final class ServerAuthenticationContext implements AutoCloseable {
 
     State assignName(final SecurityIdentity capturedIdentity, final MechanismConfiguration mechanismConfiguration, final MechanismRealmConfiguration mechanismRealmConfiguration, Principal originalPrincipal, final Evidence evidence, final IdentityCredentials privateCredentials, final IdentityCredentials publicCredentials, final boolean exclusive, final Attributes runtimeAttributes) throws RealmUnavailableException {
         final SecurityDomain domain = capturedIdentity.getSecurityDomain();
+        final AssignedName assignedName = mapName(domain, mechanismConfiguration, mechanismRealmConfiguration, originalPrincipal);
+        if (assignedName == null) {
+            return new InvalidNameState(capturedIdentity, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+        }
+
+        final SecurityRealm securityRealm = assignedName.realmInfo.getSecurityRealm();
+        final RealmIdentity realmIdentity;
+        try {
+            if (exclusive) {
+                if (securityRealm instanceof ModifiableSecurityRealm) {
+                    realmIdentity = ((ModifiableSecurityRealm) securityRealm).getRealmIdentityForUpdate(assignedName.finalPrincipal);
+                } else {
+                    throw log.unableToObtainExclusiveAccess();
+                }
+            } else {
+                realmIdentity = securityRealm.getRealmIdentity(assignedName.finalPrincipal);
+            }
+        } catch (RealmUnavailableException e) {
+            SecurityDomain.safeHandleSecurityEvent(domain, new SecurityRealmUnavailableEvent(capturedIdentity, assignedName.realmInfo.getName()));
+            throw e;
+        }
+
+
+        return new NameAssignedState(capturedIdentity, assignedName.realmInfo, realmIdentity, assignedName.preRealmPrincipal, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+    }
+
+    CompletionStage<State> assignNameAsync(final SecurityIdentity capturedIdentity, final MechanismConfiguration mechanismConfiguration, final MechanismRealmConfiguration mechanismRealmConfiguration, Principal originalPrincipal, final IdentityCredentials privateCredentials, final IdentityCredentials publicCredentials, final Attributes runtimeAttributes, final Executor executor) {
+        final SecurityDomain domain = capturedIdentity.getSecurityDomain();
+        final AssignedName assignedName = mapName(domain, mechanismConfiguration, mechanismRealmConfiguration, originalPrincipal);
+        if (assignedName == null) {
+            return CompletableFuture.completedFuture(new InvalidNameState(capturedIdentity, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes));
+        }
+
+        final AsyncSecurityRealm securityRealm = AsyncSecurityRealm.from(assignedName.realmInfo.getSecurityRealm(), executor);
+        return whenRealmUnavailable(securityRealm.getRealmIdentityAsync(assignedName.finalPrincipal), domain, capturedIdentity, assignedName.realmInfo)
+                .thenApply(realmIdentity -> new NameAssignedState(capturedIdentity, assignedName.realmInfo, realmIdentity, assignedName.preRealmPrincipal, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes));
+    }
+
+    /**
+     * Rewrite the given principal and select its realm.
+     *
+     * @return the assigned name, or {@code null} if the principal was rejected by one of the rewriters
+     */
+    private static AssignedName mapName(final SecurityDomain domain, final MechanismConfiguration mechanismConfiguration, final MechanismRealmConfiguration mechanismRealmConfiguration, final Principal originalPrincipal) {
         final Principal preRealmPrincipal = rewriteAll(originalPrincipal, mechanismRealmConfiguration.getPreRealmRewriter(), mechanismConfiguration.getPreRealmRewriter(), domain.getPreRealmRewriter());
         if (preRealmPrincipal == null) {
             log.tracef("Unable to rewrite principal [%s] by pre-realm rewritters", originalPrincipal);
-            return new InvalidNameState(capturedIdentity, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+            return null;
         }
         String realmName = mapAll(preRealmPrincipal, mechanismRealmConfiguration.getRealmMapper(), mechanismConfiguration.getRealmMapper(), domain.getRealmMapper(), domain.getDefaultRealmName());
         final RealmInfo realmInfo = domain.getRealmInfo(realmName);
         final Principal postRealmPrincipal = rewriteAll(preRealmPrincipal, mechanismRealmConfiguration.getPostRealmRewriter(), mechanismConfiguration.getPostRealmRewriter(), domain.getPostRealmRewriter());
         if (postRealmPrincipal == null) {
             log.tracef("Unable to rewrite principal [%s] by post-realm rewritters", preRealmPrincipal);
-            return new InvalidNameState(capturedIdentity, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+            return null;
         }
         final Principal finalPrincipal = rewriteAll(postRealmPrincipal, mechanismRealmConfiguration.getFinalRewriter(), mechanismConfiguration.getFinalRewriter(), realmInfo.getPrincipalRewriter());
         if (finalPrincipal == null) {
             log.tracef("Unable to rewrite principal [%s] by final rewritters", postRealmPrincipal);
-            return new InvalidNameState(capturedIdentity, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+            return null;
         }
 
         log.tracef("Principal assigning: [%s], pre-realm rewritten: [%s], realm name: [%s], post-realm rewritten: [%s], realm rewritten: [%s]",
                 originalPrincipal, preRealmPrincipal, realmName, postRealmPrincipal, finalPrincipal);
 
-        final SecurityRealm securityRealm = realmInfo.getSecurityRealm();
-        final RealmIdentity realmIdentity;
-        try {
-            if (exclusive) {
-                if (securityRealm instanceof ModifiableSecurityRealm) {
-                    realmIdentity = ((ModifiableSecurityRealm) securityRealm).getRealmIdentityForUpdate(finalPrincipal);
-                } else {
-                    throw log.unableToObtainExclusiveAccess();
-                }
-            } else {
-                realmIdentity = securityRealm.getRealmIdentity(finalPrincipal);
+        return new AssignedName(realmInfo, preRealmPrincipal, finalPrincipal);
+    }
+
+    private static <T> CompletionStage<T> whenRealmUnavailable(final CompletionStage<T> stage, final SecurityDomain domain, final SecurityIdentity identity, final RealmInfo realmInfo) {
+        return stage.whenComplete((result, failure) -> {
+            if (failure instanceof RealmUnavailableException || failure != null && failure.getCause() instanceof RealmUnavailableException) {
+                SecurityDomain.safeHandleSecurityEvent(domain, new SecurityRealmUnavailableEvent(identity, realmInfo.getName()));
             }
-        } catch (RealmUnavailableException e) {
-            SecurityDomain.safeHandleSecurityEvent(domain, new SecurityRealmUnavailableEvent(capturedIdentity, realmName));
-            throw e;
+        });
+    }
+
+    /**
+     * Get the result of an operation which does not block as a completed stage, completed exceptionally if it throws.
+     */
+    static <T> CompletionStage<T> completedStage(final ExceptionSupplier<T, RealmUnavailableException> operation) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(operation.get());
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
         }
+        return future;
+    }
 
+    /**
+     * Get the stage returned by an operation, or a stage completed exceptionally if the operation throws.
+     */
+    static <T> CompletionStage<T> composedStage(final ExceptionSupplier<CompletionStage<T>, RealmUnavailableException> operation) {
+        try {
+            return operation.get();
+        } catch (Throwable t) {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
 
-        return new NameAssignedState(capturedIdentity, realmInfo, realmIdentity, preRealmPrincipal, mechanismConfiguration, mechanismRealmConfiguration, privateCredentials, publicCredentials, runtimeAttributes);
+    static final class AssignedName {
+        final RealmInfo realmInfo;
+        final Principal preRealmPrincipal;
+        final Principal finalPrincipal;
+
+        AssignedName(final RealmInfo realmInfo, final Principal preRealmPrincipal, final Principal finalPrincipal) {
+            this.realmInfo = realmInfo;
+            this.preRealmPrincipal = preRealmPrincipal;
+            this.finalPrincipal = finalPrincipal;
+        }
     }
 
     abstract static class State {
@@ -1288,10 +1410,25 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             throw log.noAuthenticationInProgress();
         }
 
+        CompletionStage<Void> setPrincipalAsync(Principal principal, Executor executor) {
+            return completedStage(() -> {
+                setPrincipal(principal, false);
+                return null;
+            });
+        }
+
         boolean authorize(final boolean requireLoginPermission) throws RealmUnavailableException {
             throw log.noAuthenticationInProgress();
         }
 
+        CompletionStage<Boolean> authorizeAsync(final boolean requireLoginPermission, final Executor executor) {
+            return completedStage(() -> authorize(requireLoginPermission));
+        }
+
+        CompletionStage<Boolean> verifyEvidenceAsync(final Evidence evidence, final Executor executor) {
+            return completedStage(() -> verifyEvidence(evidence));
+        }
+
         boolean authorize(Principal authorizationId, final boolean authorizeRunAs) throws RealmUnavailableException {
             throw log.noAuthenticationInProgress();
         }
@@ -1452,6 +1589,24 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             stateRef.get().setPrincipal(principal, exclusive);
         }
 
+        @Override
+        CompletionStage<Void> setPrincipalAsync(Principal principal, Executor executor) {
+            transition();
+            return stateRef.get().setPrincipalAsync(principal, executor);
+        }
+
+        @Override
+        CompletionStage<Boolean> verifyEvidenceAsync(Evidence evidence, Executor executor) {
+            transition();
+            return stateRef.get().verifyEvidenceAsync(evidence, executor);
+        }
+
+        @Override
+        CompletionStage<Boolean> authorizeAsync(boolean requireLoginPermission, Executor executor) {
+            transition();
+            return stateRef.get().authorizeAsync(requireLoginPermission, executor);
+        }
+
         @Override
         MechanismConfiguration getMechanismConfiguration() {
             transition();
@@ -1769,6 +1924,77 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             }
         }
 
+        @Override
+        CompletionStage<Void> setPrincipalAsync(final Principal principal, final Executor executor) {
+            Assert.checkNotNullParam("principal", principal);
+            final AtomicReference<State> stateRef = getStateRef();
+            return assignNameAsync(capturedIdentity, mechanismConfiguration, getMechanismRealmConfiguration(), principal, privateCredentials, publicCredentials, runtimeAttributes, executor).thenCompose(newState -> {
+                if (! stateRef.compareAndSet(this, newState)) {
+                    if (newState.isNameAssigned()) {
+                        ((NameAssignedState)newState).realmIdentity.dispose();
+                    }
+                    return stateRef.get().setPrincipalAsync(principal, executor);
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+
+        @Override
+        CompletionStage<Boolean> verifyEvidenceAsync(final Evidence evidence, final Executor executor) {
+            return composedStage(() -> {
+                setDecodedEvidencePrincipal(evidence);
+                final Principal evidencePrincipal = evidence.getDecodedPrincipal();
+                log.tracef("Evidence verification: evidence = %s  evidencePrincipal = %s", evidence, evidencePrincipal);
+                if (evidencePrincipal != null) {
+                    return assignNameAsync(getSourceIdentity(), mechanismConfiguration, getMechanismRealmConfiguration(), evidencePrincipal, privateCredentials, publicCredentials, runtimeAttributes, executor)
+                            .thenCompose(newState -> newState.verifyEvidenceAsync(evidence, executor)
+                                    .thenCompose(verified -> assignVerified(newState, verified, evidence, executor)));
+                }
+                // verify evidence with no name set: use the realms to find a match (SSO scenario, etc.)
+                return verifyWithRealmsAsync(getSecurityDomain().getRealmInfos().iterator(), evidence, executor)
+                        .thenCompose(newState -> newState == null ? CompletableFuture.completedFuture(Boolean.FALSE) : assignVerified(newState, true, evidence, executor));
+            });
+        }
+
+        private CompletionStage<Boolean> assignVerified(final State newState, final boolean verified, final Evidence evidence, final Executor executor) {
+            final AtomicReference<State> stateRef = getStateRef();
+            if (! verified || ! stateRef.compareAndSet(this, newState)) {
+                if (newState.isNameAssigned()) {
+                    ((NameAssignedState)newState).realmIdentity.dispose();
+                }
+                return verified ? stateRef.get().verifyEvidenceAsync(evidence, executor) : CompletableFuture.completedFuture(Boolean.FALSE);
+            }
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+
+        private CompletionStage<NameAssignedState> verifyWithRealmsAsync(final Iterator<RealmInfo> realmInfos, final Evidence evidence, final Executor executor) {
+            if (! realmInfos.hasNext()) {
+                // no verification possible, no identity found
+                return CompletableFuture.completedFuture(null);
+            }
+            final RealmInfo realmInfo = realmInfos.next();
+            final SecurityDomain domain = getSecurityDomain();
+            final AsyncSecurityRealm securityRealm = AsyncSecurityRealm.from(realmInfo.getSecurityRealm(), executor);
+            final Class<? extends Evidence> evidenceType = evidence.getClass();
+            final String algorithm = evidence instanceof AlgorithmEvidence ? ((AlgorithmEvidence) evidence).getAlgorithm() : null;
+            return whenRealmUnavailable(securityRealm.getRealmIdentityAsync(evidence), domain, domain.getCurrentSecurityIdentity(), realmInfo)
+                    .thenCompose(realmIdentity -> composedStage(() -> {
+                        if (! realmIdentity.getEvidenceVerifySupport(evidenceType, algorithm).mayBeSupported()) {
+                            realmIdentity.dispose();
+                            return verifyWithRealmsAsync(realmInfos, evidence, executor);
+                        }
+                        return securityRealm.verifyEvidenceAsync(realmIdentity, evidence).thenApply(verified -> {
+                            // we have to have a principal
+                            final Principal resolvedPrincipal = verified ? realmIdentity.getRealmIdentityPrincipal() : null;
+                            if (resolvedPrincipal == null) {
+                                realmIdentity.dispose();
+                                return null;
+                            }
+                            return new NameAssignedState(getSourceIdentity(), realmInfo, realmIdentity, resolvedPrincipal, mechanismConfiguration, getMechanismRealmConfiguration(), privateCredentials, publicCredentials, runtimeAttributes);
+                        });
+                    }));
+        }
+
         @Override
         MechanismConfiguration getMechanismConfiguration() {
             return mechanismConfiguration;
@@ -2003,6 +2229,25 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             return stateRef.compareAndSet(this, newState) || stateRef.get().authorize(requireLoginPermission);
         }
 
+        @Override
+        CompletionStage<Boolean> authorizeAsync(final boolean requireLoginPermission, final Executor executor) {
+            return composedStage(() -> {
+                if (! realmIdentity.exists()) {
+                    ElytronMessages.log.trace("Authorization failed - realm identity does not exists");
+                    return CompletableFuture.completedFuture(Boolean.FALSE);
+                }
+                return AsyncSecurityRealm.from(realmInfo.getSecurityRealm(), executor).getAuthorizationIdentityAsync(realmIdentity).thenCompose(realmAuthorizationIdentity -> {
+                    final AuthorizedAuthenticationState newState = doAuthorization(requireLoginPermission, realmAuthorizationIdentity);
+                    if (newState == null) {
+                        return CompletableFuture.completedFuture(Boolean.FALSE);
+                    }
+                    final AtomicReference<State> stateRef = getStateRef();
+                    // retry if necessary
+                    return stateRef.compareAndSet(this, newState) ? CompletableFuture.completedFuture(Boolean.TRUE) : stateRef.get().authorizeAsync(requireLoginPermission, executor);
+                });
+            });
+        }
+
         AuthorizedAuthenticationState doAuthorization(final boolean requireLoginPermission) throws RealmUnavailableException {
             final RealmIdentity realmIdentity = this.realmIdentity;
 
@@ -2011,10 +2256,14 @@ public final class ServerAuthenticationContext implements AutoCloseable {
                 return null;
             }
 
+            return doAuthorization(requireLoginPermission, realmIdentity.getAuthorizationIdentity());
+        }
+
+        AuthorizedAuthenticationState doAuthorization(final boolean requireLoginPermission, final AuthorizationIdentity realmAuthorizationIdentity) {
             final RealmInfo realmInfo = this.realmInfo;
             final Principal authenticationPrincipal = this.authenticationPrincipal;
-            final AuthorizationIdentity authorizationIdentity = runtimeAttributes == Attributes.EMPTY ? realmIdentity.getAuthorizationIdentity()
-                    : AuthorizationIdentity.basicIdentity(realmIdentity.getAuthorizationIdentity(), runtimeAttributes);
+            final AuthorizationIdentity authorizationIdentity = runtimeAttributes == Attributes.EMPTY ? realmAuthorizationIdentity
+                    : AuthorizationIdentity.basicIdentity(realmAuthorizationIdentity, runtimeAttributes);
             final SecurityDomain domain = capturedIdentity.getSecurityDomain();
 
             SecurityIdentity authorizedIdentity = Assert.assertNotNull(domain.transform(new SecurityIdentity(domain, authenticationPrincipal, realmInfo, authorizationIdentity, domain.getCategoryRoleMappers(), IdentityCredentials.NONE, IdentityCredentials.NONE)));
@@ -2073,6 +2322,15 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             return (evidencePrincipal == null || isSamePrincipal(evidencePrincipal)) && getRealmIdentity().verifyEvidence(evidence);
         }
 
+        @Override
+        CompletionStage<Boolean> verifyEvidenceAsync(final Evidence evidence, final Executor executor) {
+            final Principal evidencePrincipal = evidence.getDecodedPrincipal();
+            if (evidencePrincipal != null && ! isSamePrincipal(evidencePrincipal)) {
+                return CompletableFuture.completedFuture(Boolean.FALSE);
+            }
+            return AsyncSecurityRealm.from(realmInfo.getSecurityRealm(), executor).verifyEvidenceAsync(realmIdentity, evidence);
+        }
+
         @Override
         void updateCredential(Credential credential) throws RealmUnavailableException {
             realmIdentity.updateCredential(credential);
@@ -2403,6 +2661,11 @@ public final class ServerAuthenticationContext implements AutoCloseable {
             return realmIdentity.verifyEvidence(evidence);
         }
 
+        @Override
+        CompletionStage<Boolean> verifyEvidenceAsync(final Evidence evidence, final Executor executor) {
+            return AsyncSecurityRealm.from(getRealmInfo().getSecurityRealm(), executor).verifyEvidenceAsync(realmIdentity, evidence);
+        }
+
         @Override
         RealmIdentity getRealmIdentity() {
             return realmIdentity;
@@ -22,11 +22,14 @@ import static org.wildfly.common.Assert.checkNotNullParam;
 
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.wildfly.security.permission.PermissionVerifier;
 
@@ -46,17 +49,43 @@ import org.wildfly.security.permission.PermissionVerifier;
  * calling {@link Builder#setMappingMode(SimplePermissionMapper.MappingMode)} to choose a different mode to combine the resulting
  * {@link PermissionVerifier} instances.
  *
+ * The mappings are indexed by principal name and role when the mapper is built so only the matching mappings are visited,
+ * and the combined {@code PermissionVerifier} is shared by every call which matches the same set of mappings.
+ *
  * @author <a href="mailto:darran.lofthouse@jboss.com">Darran Lofthouse</a>
  */
 public class SimplePermissionMapper implements PermissionMapper {
 
+    private static final int MAX_COMBINED_VERIFIERS = 256;
+
     private final MappingMode mappingMode;
 
     private final List<Mapping> mappings;
 
+    private final Map<String, BitSet> mappingsByPrincipal = new HashMap<>();
+
+    private final Map<String, BitSet> mappingsByRole = new HashMap<>();
+
+    private final BitSet matchAllMappings = new BitSet();
+
+    private final Map<BitSet, PermissionVerifier> combinedVerifiers = new ConcurrentHashMap<>();
+
     private SimplePermissionMapper(MappingMode mappingMode, List<Mapping> mappings) {
         this.mappingMode = mappingMode;
         this.mappings = mappings;
+        for (int i = 0; i < mappings.size(); i++) {
+            Mapping mapping = mappings.get(i);
+            if (mapping.principals == null) {
+                matchAllMappings.set(i);
+            } else {
+                for (String principal : mapping.principals) {
+                    mappingsByPrincipal.computeIfAbsent(principal, p -> new BitSet()).set(i);
+                }
+            }
+            for (String role : mapping.roles) {
+                mappingsByRole.computeIfAbsent(role, r -> new BitSet()).set(i);
+            }
+        }
     }
 
     @Override
@@ -64,29 +93,55 @@ public class SimplePermissionMapper implements PermissionMapper {
         checkNotNullParam("permissionMappable", permissionMappable);
         checkNotNullParam("roles", roles);
 
-        PermissionVerifier result = null;
+        BitSet matched = (BitSet) matchAllMappings.clone();
+        BitSet principalMappings = mappingsByPrincipal.get(permissionMappable.getPrincipal().getName());
+        if (principalMappings != null) {
+            matched.or(principalMappings);
+        }
+        for (Map.Entry<String, BitSet> entry : mappingsByRole.entrySet()) {
+            if (roles.contains(entry.getKey())) {
+                matched.or(entry.getValue());
+            }
+        }
 
-        for (Mapping current : mappings) {
-            if (current.principalPredicate.test(permissionMappable.getPrincipal().getName()) || roles.containsAny(current.roles)) {
-                    switch (mappingMode) {
-                        case FIRST_MATCH:
-                            return current.permissionVerifier;
-                        case AND:
-                            result = result != null ? result.and(current.permissionVerifier) : current.permissionVerifier;
-                            break;
-                        case OR:
-                            result = result != null ? result.or(current.permissionVerifier) : current.permissionVerifier;
-                            break;
-                        case UNLESS:
-                            result = result != null ? result.unless(current.permissionVerifier) : current.permissionVerifier;
-                            break;
-                        case XOR:
-                            result = result != null ? result.xor(current.permissionVerifier) : current.permissionVerifier;
-                            break;
-                }
+        if (matched.isEmpty()) {
+            return PermissionVerifier.NONE;
+        } else if (mappingMode == MappingMode.FIRST_MATCH) {
+            return mappings.get(matched.nextSetBit(0)).permissionVerifier;
+        }
+
+        PermissionVerifier result = combinedVerifiers.get(matched);
+        if (result == null) {
+            result = combine(matched);
+            if (combinedVerifiers.size() >= MAX_COMBINED_VERIFIERS) {
+                combinedVerifiers.clear();
             }
+            combinedVerifiers.put(matched, result);
         }
+        return result;
+    }
 
+    private PermissionVerifier combine(BitSet matched) {
+        PermissionVerifier result = null;
+
+        // in the order of the mappings as the result of 'unless' and the grouping of the others depend on it
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            PermissionVerifier current = mappings.get(i).permissionVerifier;
+            switch (mappingMode) {
+                case AND:
+                    result = result != null ? result.and(current) : current;
+                    break;
+                case OR:
+                    result = result != null ? result.or(current) : current;
+                    break;
+                case UNLESS:
+                    result = result != null ? result.unless(current) : current;
+                    break;
+                case XOR:
+                    result = result != null ? result.xor(current) : current;
+                    break;
+            }
+        }
 
         return result != null ? result : PermissionVerifier.NONE;
     }
@@ -137,7 +192,7 @@ public class SimplePermissionMapper implements PermissionMapper {
          */
         public Builder addMapping(Set<String> principals, Set<String> roles, PermissionVerifier permissionVerifier) {
             assertNotBuilt();
-            mappings.add(new Mapping(new HashSet<>(checkNotNullParam("principals", principals))::contains, roles, permissionVerifier));
+            mappings.add(new Mapping(checkNotNullParam("principals", principals), roles, permissionVerifier));
 
             return this;
         }
@@ -150,7 +205,7 @@ public class SimplePermissionMapper implements PermissionMapper {
          */
         public Builder addMatchAllPrincipals(PermissionVerifier permissionVerifier) {
             assertNotBuilt();
-            mappings.add(new Mapping(name -> true, Collections.emptySet(), permissionVerifier));
+            mappings.add(new Mapping(null, Collections.emptySet(), permissionVerifier));
 
             return this;
         }
@@ -177,14 +232,17 @@ public class SimplePermissionMapper implements PermissionMapper {
 
     static class Mapping {
 
-        final Predicate<String> principalPredicate;
+        /**
+         * The principal names matching this mapping, or {@code null} if every principal matches.
+         */
+        final Set<String> principals;
 
         final Set<String> roles;
 
         final PermissionVerifier permissionVerifier;
 
-        Mapping(Predicate<String> principalPredicate, Set<String> roles, PermissionVerifier permissionVerifier) {
-            this.principalPredicate = principalPredicate;
+        Mapping(Set<String> principals, Set<String> roles, PermissionVerifier permissionVerifier) {
+            this.principals = principals != null ? Collections.unmodifiableSet(new HashSet<>(principals)) : null;
             this.roles = Collections.unmodifiableSet(new HashSet<>(checkNotNullParam("roles", roles)));
             this.permissionVerifier = checkNotNullParam("permissionVerifier", permissionVerifier);
         }
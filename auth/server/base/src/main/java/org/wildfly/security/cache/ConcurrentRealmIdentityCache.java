@@ -0,0 +1,290 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wildfly.security.cache;
+
+import static org.wildfly.common.Assert.checkMinimumParameter;
+
+import java.security.Principal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wildfly.security.auth.server.RealmIdentity;
+
+/**
+ * <p>A {@link RealmIdentityCache} implementation designed for highly concurrent access.
+ *
+ * <p>Entries are held in a {@link ConcurrentHashMap}, so reads never block and writes only contend on the bin of the
+ * key being written. Instead of strict LRU ordering, eviction uses the CLOCK (second chance) approximation: reading an
+ * entry merely flags it as referenced, and when the cache grows beyond its maximum size the oldest entries are
+ * evicted unless they were referenced since the last sweep, in which case they are given another pass.
+ *
+ * <p>As with {@link LRURealmIdentityCache}, entries can also be looked up by the principal returned from
+ * {@link RealmIdentity#getRealmIdentityPrincipal()}, and removing either principal removes all of the entries for that
+ * realm identity.
+ */
+public final class ConcurrentRealmIdentityCache implements RealmIdentityCache {
+
+    /**
+     * Holds the cached identities where the key is the domain principal, the one used to lookup the identity
+     */
+    private final ConcurrentHashMap<Principal, CacheEntry> identityCache = new ConcurrentHashMap<>();
+
+    /**
+     * Holds a mapping between a realm principal and domain principals
+     */
+    private final ConcurrentHashMap<Principal, Set<Principal>> domainPrincipalMap = new ConcurrentHashMap<>();
+
+    /**
+     * The eviction order, entries are appended as they are added to the cache.
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> evictionQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of entries in the eviction queue which have already been removed from the cache.
+     */
+    private final AtomicInteger removedCount = new AtomicInteger();
+
+    private final int maxEntries;
+
+    private final long maxAge;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxEntries the maximum number of entries to keep in the cache
+     */
+    public ConcurrentRealmIdentityCache(int maxEntries) {
+        this(maxEntries, -1);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxEntries the maximum number of entries to keep in the cache
+     * @param maxAge the time in milliseconds that an entry can stay in the cache. If {@code -1}, entries never expire
+     */
+    public ConcurrentRealmIdentityCache(int maxEntries, long maxAge) {
+        checkMinimumParameter("maxEntries", 1, maxEntries);
+        checkMinimumParameter("maxAge", -1, maxAge);
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public void put(Principal key, RealmIdentity newValue) {
+        CacheEntry entry = new CacheEntry(key, newValue, maxAge);
+        CacheEntry existing = identityCache.putIfAbsent(key, entry);
+        if (existing != null) {
+            if (existing.isExpired() == false || identityCache.replace(key, existing, entry) == false) {
+                return;
+            }
+            unlink(existing);
+        }
+
+        Principal realmPrincipal = newValue.getRealmIdentityPrincipal();
+        if (realmPrincipal != null) {
+            domainPrincipalMap.computeIfAbsent(realmPrincipal, principal -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        evictionQueue.offer(entry);
+        evictIfNecessary();
+    }
+
+    @Override
+    public boolean replace(Principal key, RealmIdentity oldValue, RealmIdentity newValue) {
+        CacheEntry existing = identityCache.get(key);
+        if (existing == null || existing.value() != oldValue) {
+            return false;
+        }
+        CacheEntry entry = new CacheEntry(key, newValue, maxAge);
+        if (identityCache.replace(key, existing, entry) == false) {
+            return false;
+        }
+        unlink(existing);
+
+        Principal oldRealmPrincipal = oldValue.getRealmIdentityPrincipal();
+        Principal realmPrincipal = newValue.getRealmIdentityPrincipal();
+        if (oldRealmPrincipal != null && oldRealmPrincipal.equals(realmPrincipal) == false) {
+            domainPrincipalMap.computeIfPresent(oldRealmPrincipal, (principal, domainPrincipals) -> {
+                domainPrincipals.remove(key);
+                return domainPrincipals.isEmpty() ? null : domainPrincipals;
+            });
+        }
+        if (realmPrincipal != null) {
+            domainPrincipalMap.computeIfAbsent(realmPrincipal, principal -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        evictionQueue.offer(entry);
+        evictIfNecessary();
+        return true;
+    }
+
+    @Override
+    public RealmIdentity get(Principal key) {
+        CacheEntry cached = identityCache.get(key);
+
+        if (cached == null) {
+            Set<Principal> domainPrincipals = domainPrincipalMap.get(key);
+            if (domainPrincipals != null) {
+                for (Principal domainPrincipal : domainPrincipals) {
+                    cached = identityCache.get(domainPrincipal);
+                    if (cached != null) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (cached == null) {
+            return null;
+        }
+
+        if (cached.isExpired()) {
+            remove(cached.key());
+            return null;
+        }
+
+        cached.markReferenced();
+        return cached.value();
+    }
+
+    @Override
+    public void remove(Principal key) {
+        CacheEntry removed = identityCache.remove(key);
+        Set<Principal> domainPrincipals;
+        if (removed != null) {
+            unlink(removed);
+            Principal realmPrincipal = removed.value().getRealmIdentityPrincipal();
+            domainPrincipals = realmPrincipal != null ? domainPrincipalMap.remove(realmPrincipal) : null;
+        } else {
+            domainPrincipals = domainPrincipalMap.remove(key);
+        }
+
+        if (domainPrincipals != null) {
+            for (Principal domainPrincipal : domainPrincipals) {
+                CacheEntry alias = identityCache.remove(domainPrincipal);
+                if (alias != null) {
+                    unlink(alias);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        identityCache.clear();
+        domainPrincipalMap.clear();
+        evictionQueue.clear();
+        removedCount.set(0);
+    }
+
+    private void evictIfNecessary() {
+        // every entry in the queue can be given at most one second chance per sweep so this loop is bounded
+        int remaining = 2 * (identityCache.size() + removedCount.get()) + 1;
+        while (identityCache.size() > maxEntries && remaining-- > 0) {
+            CacheEntry candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return;
+            }
+            if (candidate.isRemoved()) {
+                removedCount.decrementAndGet();
+                continue;
+            }
+            if (candidate.clearReferenced()) {
+                evictionQueue.offer(candidate);
+                continue;
+            }
+            if (identityCache.remove(candidate.key(), candidate)) {
+                candidate.markRemoved();
+                Principal realmPrincipal = candidate.value().getRealmIdentityPrincipal();
+                if (realmPrincipal != null) {
+                    domainPrincipalMap.computeIfPresent(realmPrincipal, (principal, domainPrincipals) -> {
+                        domainPrincipals.remove(candidate.key());
+                        return domainPrincipals.isEmpty() ? null : domainPrincipals;
+                    });
+                }
+            }
+        }
+    }
+
+    private void unlink(CacheEntry entry) {
+        if (entry.markRemoved() && removedCount.incrementAndGet() > maxEntries) {
+            // entries removed explicitly are normally discarded as eviction reaches them, purge them if they pile up
+            if (evictionQueue.removeIf(CacheEntry::isRemoved)) {
+                removedCount.set(0);
+            }
+        }
+    }
+
+    private static final class CacheEntry {
+
+        final Principal key;
+        final RealmIdentity value;
+        final long expiration;
+        volatile boolean referenced;
+        final AtomicInteger state = new AtomicInteger();
+
+        CacheEntry(Principal key, RealmIdentity value, long maxAge) {
+            this.key = key;
+            this.value = value;
+            if (maxAge == -1) {
+                expiration = -1;
+            } else {
+                expiration = System.currentTimeMillis() + maxAge;
+            }
+        }
+
+        Principal key() {
+            return key;
+        }
+
+        RealmIdentity value() {
+            return value;
+        }
+
+        boolean isExpired() {
+            return expiration != -1 ? System.currentTimeMillis() > expiration : false;
+        }
+
+        void markReferenced() {
+            // avoid the volatile write on the read path when the flag is already set
+            if (referenced == false) {
+                referenced = true;
+            }
+        }
+
+        boolean clearReferenced() {
+            if (referenced) {
+                referenced = false;
+                return true;
+            }
+            return false;
+        }
+
+        boolean markRemoved() {
+            return state.compareAndSet(0, 1);
+        }
+
+        boolean isRemoved() {
+            return state.get() != 0;
+        }
+    }
+}
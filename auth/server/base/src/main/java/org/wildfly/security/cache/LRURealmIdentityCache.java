@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
@@ -112,6 +113,34 @@ public final class LRURealmIdentityCache implements RealmIdentityCache {
         }
     }
 
+    @Override
+    public boolean replace(Principal key, RealmIdentity oldValue, RealmIdentity newValue) {
+        try {
+            if (parkForWriteAndCheckInterrupt()) {
+                return false;
+            }
+
+            CacheEntry existing = identityCache.get(key);
+            if (existing == null || existing.value() != oldValue) {
+                return false;
+            }
+
+            Principal oldRealmPrincipal = oldValue.getRealmIdentityPrincipal();
+            Principal realmPrincipal = newValue.getRealmIdentityPrincipal();
+            if (Objects.equals(oldRealmPrincipal, realmPrincipal) == false) {
+                Set<Principal> principals = domainPrincipalMap.get(oldRealmPrincipal);
+                if (principals != null && principals.remove(key) && principals.isEmpty()) {
+                    domainPrincipalMap.remove(oldRealmPrincipal);
+                }
+            }
+            domainPrincipalMap.computeIfAbsent(realmPrincipal, principal -> new HashSet<>()).add(key);
+            identityCache.put(key, new CacheEntry(key, newValue, maxAge));
+            return true;
+        } finally {
+            writing.lazySet(false);
+        }
+    }
+
     @Override
     public RealmIdentity get(Principal key) {
         if (parkForReadAndCheckInterrupt()) {
@@ -69,6 +69,30 @@ public interface RealmIdentityCache {
         return v;
     }
 
+    /**
+     * <p>Replaces the {@link RealmIdentity} cached for the specified {@link Principal} only if it is currently the given
+     * identity, so the replacement is discarded if the entry was removed or replaced in the meantime.
+     *
+     * <p>The default implementation removes the existing entry before putting the new one, implementations should override
+     * it so that the entry is replaced without being missing from the cache in between.
+     *
+     * @param principal the {@link Principal} that references the realm identity being cached
+     * @param oldValue the {@link RealmIdentity} expected to be cached
+     * @param newValue the {@link RealmIdentity} to cache instead
+     * @return {@code true} if the identity was replaced, {@code false} otherwise
+     */
+    default boolean replace(Principal principal, RealmIdentity oldValue, RealmIdentity newValue) {
+        checkNotNullParam("principal", principal);
+        checkNotNullParam("oldValue", oldValue);
+        checkNotNullParam("newValue", newValue);
+        if (get(principal) != oldValue) {
+            return false;
+        }
+        remove(principal);
+        put(principal, newValue);
+        return true;
+    }
+
     /**
      * Obtains a previously cached {@link RealmIdentity} or {@code null} if no entry could be found with the specified {@link Principal}.
      *
@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.Principal;
+import java.security.spec.AlgorithmParameterSpec;
+
+import org.junit.Test;
+import org.wildfly.security.auth.SupportLevel;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.cache.ConcurrentRealmIdentityCache;
+import org.wildfly.security.cache.RealmIdentityCache;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.evidence.Evidence;
+
+/**
+ * Tests for {@link ConcurrentRealmIdentityCache}.
+ */
+public class ConcurrentRealmIdentityCacheTest {
+
+    @Test
+    public void testMaxEntries() {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5);
+        Principal[] principals = new Principal[20];
+        for (int i = 0; i < principals.length; i++) {
+            principals[i] = createPrincipal(String.valueOf(i));
+            cache.put(principals[i], createRealmIdentity(null));
+        }
+
+        int cached = 0;
+        for (Principal principal : principals) {
+            if (cache.get(principal) != null) {
+                cached++;
+            }
+        }
+        assertEquals(5, cached);
+        assertNotNull(cache.get(principals[principals.length - 1]));
+    }
+
+    @Test
+    public void testReferencedEntriesRetained() {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5);
+        Principal hot = createPrincipal("hot");
+        cache.put(hot, createRealmIdentity(null));
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(cache.get(hot));
+            cache.put(createPrincipal(String.valueOf(i)), createRealmIdentity(null));
+        }
+
+        assertNotNull(cache.get(hot));
+    }
+
+    @Test
+    public void testRealmPrincipalMapping() {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5);
+        Principal realmPrincipal = createPrincipal("realm");
+        Principal first = createPrincipal("first");
+        Principal second = createPrincipal("second");
+        RealmIdentity identity = createRealmIdentity(realmPrincipal);
+
+        cache.put(first, identity);
+        cache.put(second, identity);
+
+        assertNotNull(cache.get(realmPrincipal));
+        assertNotNull(cache.get(first));
+        assertNotNull(cache.get(second));
+
+        cache.remove(realmPrincipal);
+
+        assertNull(cache.get(realmPrincipal));
+        assertNull(cache.get(first));
+        assertNull(cache.get(second));
+
+        cache.put(first, identity);
+        cache.put(second, identity);
+        cache.remove(first);
+
+        assertNull(cache.get(realmPrincipal));
+        assertNull(cache.get(first));
+        assertNull(cache.get(second));
+    }
+
+    @Test
+    public void testReplace() {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5);
+        Principal realmPrincipal = createPrincipal("realm");
+        Principal principal = createPrincipal("replaced");
+        RealmIdentity identity = createRealmIdentity(realmPrincipal);
+        RealmIdentity replacement = createRealmIdentity(realmPrincipal);
+
+        assertFalse(cache.replace(principal, identity, replacement));
+        assertNull(cache.get(principal));
+
+        cache.put(principal, identity);
+        assertTrue(cache.replace(principal, identity, replacement));
+        assertSame(replacement, cache.get(principal));
+        assertSame(replacement, cache.get(realmPrincipal));
+
+        // the identity was already replaced
+        assertFalse(cache.replace(principal, identity, createRealmIdentity(realmPrincipal)));
+        assertSame(replacement, cache.get(principal));
+
+        cache.remove(realmPrincipal);
+        assertNull(cache.get(principal));
+    }
+
+    @Test
+    public void testMaxAge() throws Exception {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5, 10);
+        Principal principal = createPrincipal("aged");
+        cache.put(principal, createRealmIdentity(null));
+        assertNotNull(cache.get(principal));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get(principal));
+        cache.put(principal, createRealmIdentity(null));
+        assertNotNull(cache.get(principal));
+    }
+
+    @Test
+    public void testClear() {
+        RealmIdentityCache cache = new ConcurrentRealmIdentityCache(5);
+        Principal principal = createPrincipal("cleared");
+        cache.put(principal, createRealmIdentity(null));
+
+        cache.clear();
+
+        assertNull(cache.get(principal));
+    }
+
+    private static Principal createPrincipal(String name) {
+        return new Principal() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    private static RealmIdentity createRealmIdentity(Principal realmPrincipal) {
+        return new RealmIdentity() {
+            @Override
+            public Principal getRealmIdentityPrincipal() {
+                return realmPrincipal;
+            }
+
+            @Override
+            public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, final AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+                return null;
+            }
+
+            @Override
+            public <C extends Credential> C getCredential(Class<C> credentialType) throws RealmUnavailableException {
+                return null;
+            }
+
+            @Override
+            public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) throws RealmUnavailableException {
+                return null;
+            }
+
+            @Override
+            public boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException {
+                return false;
+            }
+
+            @Override
+            public boolean exists() throws RealmUnavailableException {
+                return false;
+            }
+        };
+    }
+}
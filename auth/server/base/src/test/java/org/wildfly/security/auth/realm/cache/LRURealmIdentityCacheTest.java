@@ -18,8 +18,11 @@
 
 package org.wildfly.security.auth.realm.cache;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.security.Principal;
 import java.security.spec.AlgorithmParameterSpec;
@@ -148,6 +151,22 @@ public class LRURealmIdentityCacheTest {
         assertNull(cache.get(principals.get(4)));
     }
 
+    @Test
+    public void testReplace() {
+        RealmIdentity identity = cache.get(principals.get(2));
+        RealmIdentity replacement = createRealmIdentity();
+
+        assertTrue(cache.replace(principals.get(2), identity, replacement));
+        assertSame(replacement, cache.get(principals.get(2)));
+
+        assertFalse(cache.replace(principals.get(2), identity, createRealmIdentity()));
+        assertSame(replacement, cache.get(principals.get(2)));
+
+        cache.remove(principals.get(2));
+        assertFalse(cache.replace(principals.get(2), replacement, identity));
+        assertNull(cache.get(principals.get(2)));
+    }
+
     @Test
     public void testClear() {
         cache.clear();
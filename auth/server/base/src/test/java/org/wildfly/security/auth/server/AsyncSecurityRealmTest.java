@@ -0,0 +1,285 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.Principal;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wildfly.security.auth.SupportLevel;
+import org.wildfly.security.auth.permission.LoginPermission;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+
+/**
+ * Tests for {@link AsyncSecurityRealm}.
+ */
+public class AsyncSecurityRealmTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void onBefore() {
+        executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "realm-executor"));
+    }
+
+    @After
+    public void onAfter() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBlockingRealmRunsOnExecutor() throws Exception {
+        AtomicReference<String> threadName = new AtomicReference<>();
+        AsyncSecurityRealm realm = AsyncSecurityRealm.from(new TestRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) {
+                threadName.set(Thread.currentThread().getName());
+                return RealmIdentity.ANONYMOUS;
+            }
+        }, executor);
+
+        RealmIdentity realmIdentity = realm.getRealmIdentityAsync(new NamePrincipal("joe")).toCompletableFuture().get();
+
+        assertSame(RealmIdentity.ANONYMOUS, realmIdentity);
+        assertEquals("realm-executor", threadName.get());
+        assertFalse(realm.verifyEvidenceAsync(realmIdentity, null).toCompletableFuture().get());
+    }
+
+    @Test
+    public void testRealmUnavailable() {
+        AsyncSecurityRealm realm = AsyncSecurityRealm.from(new TestRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+                throw new RealmUnavailableException("unavailable");
+            }
+        }, executor);
+
+        try {
+            AsyncSecurityRealm.join(realm.getRealmIdentityAsync(new NamePrincipal("joe")));
+            fail("Expected RealmUnavailableException");
+        } catch (RealmUnavailableException e) {
+            assertEquals("unavailable", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAsyncRealmBlockingAccess() throws Exception {
+        AsyncSecurityRealm realm = new AsyncSecurityRealm() {
+            @Override
+            public CompletionStage<RealmIdentity> getRealmIdentityAsync(Principal principal) {
+                return CompletableFuture.completedFuture(RealmIdentity.ANONYMOUS);
+            }
+
+            @Override
+            public CompletionStage<Boolean> verifyEvidenceAsync(RealmIdentity realmIdentity, Evidence evidence) {
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+            }
+
+            @Override
+            public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+                return SupportLevel.UNSUPPORTED;
+            }
+
+            @Override
+            public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+                return SupportLevel.UNSUPPORTED;
+            }
+        };
+
+        assertSame(realm, AsyncSecurityRealm.from(realm, executor));
+        assertSame(RealmIdentity.ANONYMOUS, realm.getRealmIdentity(new NamePrincipal("joe")));
+        assertTrue(realm.verifyEvidenceAsync(RealmIdentity.ANONYMOUS, null).toCompletableFuture().get());
+    }
+
+    @Test
+    public void testAuthenticationContextUsesAsyncRealm() throws Exception {
+        AtomicInteger asyncCalls = new AtomicInteger();
+        RealmIdentity identity = new TestIdentity() {
+            @Override
+            public boolean verifyEvidence(Evidence evidence) {
+                throw new AssertionError("blocking evidence verification");
+            }
+
+            @Override
+            public AuthorizationIdentity getAuthorizationIdentity() {
+                throw new AssertionError("blocking authorization identity");
+            }
+        };
+        AsyncSecurityRealm realm = new AsyncSecurityRealm() {
+            @Override
+            public CompletionStage<RealmIdentity> getRealmIdentityAsync(Principal principal) {
+                asyncCalls.incrementAndGet();
+                return CompletableFuture.completedFuture(identity);
+            }
+
+            @Override
+            public CompletionStage<Boolean> verifyEvidenceAsync(RealmIdentity realmIdentity, Evidence evidence) {
+                asyncCalls.incrementAndGet();
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+            }
+
+            @Override
+            public CompletionStage<AuthorizationIdentity> getAuthorizationIdentityAsync(RealmIdentity realmIdentity) {
+                asyncCalls.incrementAndGet();
+                return CompletableFuture.completedFuture(AuthorizationIdentity.EMPTY);
+            }
+
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) {
+                throw new AssertionError("blocking identity lookup");
+            }
+
+            @Override
+            public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+                return SupportLevel.UNSUPPORTED;
+            }
+
+            @Override
+            public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+                return SupportLevel.SUPPORTED;
+            }
+        };
+        Executor unused = command -> {
+            throw new AssertionError("executor used for an asynchronous realm");
+        };
+
+        ServerAuthenticationContext context = createDomain(realm).createNewAuthenticationContext();
+        context.setAuthenticationPrincipalAsync(new NamePrincipal("joe"), unused).toCompletableFuture().get();
+        assertTrue(context.verifyEvidenceAsync(new PasswordGuessEvidence("secret".toCharArray()), unused).toCompletableFuture().get());
+        assertTrue(context.authorizeAsync(unused).toCompletableFuture().get());
+
+        assertEquals(3, asyncCalls.get());
+        assertEquals("joe", context.getAuthorizedIdentity().getPrincipal().getName());
+    }
+
+    @Test
+    public void testAuthenticationContextBlockingRealmOnExecutor() throws Exception {
+        List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        SecurityRealm realm = new TestRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) {
+                threadNames.add(Thread.currentThread().getName());
+                return new TestIdentity() {
+                    @Override
+                    public boolean verifyEvidence(Evidence evidence) {
+                        threadNames.add(Thread.currentThread().getName());
+                        return true;
+                    }
+                };
+            }
+        };
+
+        ServerAuthenticationContext context = createDomain(realm).createNewAuthenticationContext();
+        context.setAuthenticationPrincipalAsync(new NamePrincipal("joe"), executor).toCompletableFuture().get();
+        assertTrue(context.verifyEvidenceAsync(new PasswordGuessEvidence("secret".toCharArray()), executor).toCompletableFuture().get());
+        assertTrue(context.authorizeAsync(executor).toCompletableFuture().get());
+
+        assertEquals(Arrays.asList("realm-executor", "realm-executor"), threadNames);
+    }
+
+    @Test
+    public void testAuthenticationContextRealmUnavailable() throws Exception {
+        SecurityRealm realm = new TestRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+                throw new RealmUnavailableException("unavailable");
+            }
+        };
+
+        ServerAuthenticationContext context = createDomain(realm).createNewAuthenticationContext();
+        try {
+            AsyncSecurityRealm.join(context.setAuthenticationPrincipalAsync(new NamePrincipal("joe"), executor));
+            fail("Expected RealmUnavailableException");
+        } catch (RealmUnavailableException e) {
+            assertEquals("unavailable", e.getMessage());
+        }
+    }
+
+    private static SecurityDomain createDomain(SecurityRealm realm) {
+        SecurityDomain.Builder builder = SecurityDomain.builder();
+        builder.addRealm("default", realm).build();
+        builder.setDefaultRealmName("default");
+        builder.setPermissionMapper((permissionMappable, roles) -> LoginPermission.getInstance());
+        return builder.build();
+    }
+
+    private abstract static class TestIdentity implements RealmIdentity {
+
+        @Override
+        public Principal getRealmIdentityPrincipal() {
+            return new NamePrincipal("joe");
+        }
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+            return SupportLevel.UNSUPPORTED;
+        }
+
+        @Override
+        public <C extends Credential> C getCredential(Class<C> credentialType) {
+            return null;
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+            return SupportLevel.SUPPORTED;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+    }
+
+    private abstract static class TestRealm implements SecurityRealm {
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+            return SupportLevel.UNSUPPORTED;
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+            return SupportLevel.UNSUPPORTED;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.authz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.permission.PermissionVerifier;
+
+/**
+ * Tests of {@link SimplePermissionMapper}, the mappings matched and the way they are combined must not depend on the index
+ * of the mappings.
+ */
+public class SimplePermissionMapperTest {
+
+    private static final String[] NAMES = { "alice", "bob", "carol" };
+    private static final String[] ROLES = { "admin", "user", "guest", "auditor" };
+    private static final RuntimePermission[] PERMISSIONS = { new RuntimePermission("a"), new RuntimePermission("b"),
+            new RuntimePermission("c"), new RuntimePermission("d") };
+
+    private static PermissionMappable mappable(String name) {
+        Principal principal = new NamePrincipal(name);
+        return new PermissionMappable() {
+            @Override
+            public Principal getPrincipal() {
+                return principal;
+            }
+        };
+    }
+
+    private static Set<String> randomSubset(Random random, String[] values) {
+        Set<String> subset = new HashSet<>();
+        for (String value : values) {
+            if (random.nextInt(3) == 0) {
+                subset.add(value);
+            }
+        }
+        return subset;
+    }
+
+    @Test
+    public void testSameResultsAsSequentialMatching() {
+        Random random = new Random(4321);
+        for (SimplePermissionMapper.MappingMode mode : SimplePermissionMapper.MappingMode.values()) {
+            for (int round = 0; round < 50; round++) {
+                SimplePermissionMapper.Builder builder = SimplePermissionMapper.builder().setMappingMode(mode);
+                List<SimplePermissionMapper.Mapping> mappings = new ArrayList<>();
+                for (int i = random.nextInt(8); i > 0; i--) {
+                    Set<String> granted = randomSubset(random, new String[] { "a", "b", "c", "d" });
+                    PermissionVerifier verifier = permission -> permission instanceof RuntimePermission && granted.contains(permission.getName());
+                    if (random.nextInt(5) == 0) {
+                        builder.addMatchAllPrincipals(verifier);
+                        mappings.add(new SimplePermissionMapper.Mapping(null, Collections.emptySet(), verifier));
+                    } else {
+                        Set<String> principals = randomSubset(random, NAMES);
+                        Set<String> roles = randomSubset(random, ROLES);
+                        builder.addMapping(principals, roles, verifier);
+                        mappings.add(new SimplePermissionMapper.Mapping(principals, roles, verifier));
+                    }
+                }
+                PermissionMapper mapper = builder.build();
+
+                for (int check = 0; check < 20; check++) {
+                    String name = NAMES[random.nextInt(NAMES.length)];
+                    Roles roles = Roles.fromSet(randomSubset(random, ROLES));
+                    PermissionVerifier expected = sequentialMapping(mode, mappings, name, roles);
+                    PermissionVerifier actual = mapper.mapPermissions(mappable(name), roles);
+                    for (RuntimePermission permission : PERMISSIONS) {
+                        assertEquals(mode + " " + name + " " + permission, expected.implies(permission), actual.implies(permission));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCombinedVerifierShared() {
+        PermissionMapper mapper = SimplePermissionMapper.builder()
+                .setMappingMode(SimplePermissionMapper.MappingMode.OR)
+                .addMapping(Collections.singleton("alice"), Collections.singleton("admin"), PermissionVerifier.from(PERMISSIONS[0]))
+                .addMapping(Collections.emptySet(), new HashSet<>(Arrays.asList("admin", "user")), PermissionVerifier.from(PERMISSIONS[1]))
+                .addMatchAllPrincipals(PermissionVerifier.from(PERMISSIONS[2]))
+                .build();
+
+        PermissionVerifier admin = mapper.mapPermissions(mappable("bob"), Roles.of("admin"));
+        assertSame(admin, mapper.mapPermissions(mappable("carol"), Roles.of("admin")));
+        // the principal name matches the same mappings as the role
+        assertSame(admin, mapper.mapPermissions(mappable("alice"), Roles.of("user")));
+        assertEquals(true, admin.implies(PERMISSIONS[0]) && admin.implies(PERMISSIONS[1]) && admin.implies(PERMISSIONS[2]));
+
+        PermissionVerifier user = mapper.mapPermissions(mappable("bob"), Roles.of("user"));
+        assertEquals(false, user.implies(PERMISSIONS[0]));
+        assertEquals(true, user.implies(PERMISSIONS[1]));
+    }
+
+    private static PermissionVerifier sequentialMapping(SimplePermissionMapper.MappingMode mode, List<SimplePermissionMapper.Mapping> mappings, String name, Roles roles) {
+        PermissionVerifier result = null;
+        for (SimplePermissionMapper.Mapping current : mappings) {
+            if ((current.principals == null || current.principals.contains(name)) || roles.containsAny(current.roles)) {
+                switch (mode) {
+                    case FIRST_MATCH:
+                        return current.permissionVerifier;
+                    case AND:
+                        result = result != null ? result.and(current.permissionVerifier) : current.permissionVerifier;
+                        break;
+                    case OR:
+                        result = result != null ? result.or(current.permissionVerifier) : current.permissionVerifier;
+                        break;
+                    case UNLESS:
+                        result = result != null ? result.unless(current.permissionVerifier) : current.permissionVerifier;
+                        break;
+                    case XOR:
+                        result = result != null ? result.xor(current.permissionVerifier) : current.permissionVerifier;
+                        break;
+                }
+            }
+        }
+        return result != null ? result : PermissionVerifier.NONE;
+    }
+}
@@ -51,10 +51,11 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
 
     private final String contextId;
     private final Map<String, Permissions> rolePermissions = Collections.synchronizedMap(new HashMap<>());
-    private State state = State.OPEN; // needs synchronization
-    private volatile Permissions uncheckedPermissions = new Permissions(); // atomic reference + synchronized inside
-    private volatile Permissions excludedPermissions = new Permissions(); // atomic reference + synchronized inside
+    private volatile State state = State.OPEN; // changes need synchronization
+    private volatile Permissions uncheckedPermissions = new Permissions(); // changes need synchronization
+    private volatile Permissions excludedPermissions = new Permissions(); // changes need synchronization
     private volatile Set<PolicyConfiguration> linkedPolicies = Collections.synchronizedSet(new LinkedHashSet<>()); // atomic reference
+    private volatile PolicyIndex policyIndex = PolicyIndex.EMPTY; // atomic reference, replaced on commit
 
     ElytronPolicyConfiguration(String contextID) {
         checkNotNullParam("contextID", contextID);
@@ -133,6 +134,9 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
                 throw log.authzInvalidStateForOperation(this.state.name());
             }
 
+            synchronized (this.rolePermissions) {
+                this.policyIndex = new PolicyIndex(this.excludedPermissions, this.uncheckedPermissions, this.rolePermissions);
+            }
             transitionTo(State.IN_SERVICE);
         }
     }
@@ -144,6 +148,7 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
             this.uncheckedPermissions = new Permissions();
             this.excludedPermissions = new Permissions();
             this.rolePermissions.clear();
+            this.policyIndex = PolicyIndex.EMPTY;
             this.linkedPolicies.remove(this);
         }
     }
@@ -155,9 +160,7 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
 
     @Override
     public boolean inService() {
-        synchronized (this) {
-            return State.IN_SERVICE.equals(this.state);
-        }
+        return State.IN_SERVICE.equals(this.state); // volatile reference - no synchronization needed
     }
 
     @Override
@@ -215,16 +218,8 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
         return this.linkedPolicies; // volatile/atomic reference - no synchronization needed
     }
 
-    Permissions getUncheckedPermissions() {
-        return this.uncheckedPermissions; // volatile/atomic reference - no synchronization needed
-    }
-
-    Permissions getExcludedPermissions() {
-        return this.excludedPermissions; // volatile/atomic reference - no synchronization needed
-    }
-
-    Map<String, Permissions> getRolePermissions() {
-        return this.rolePermissions;
+    PolicyIndex getPolicyIndex() {
+        return this.policyIndex; // volatile/atomic reference - no synchronization needed
     }
 
     /* must not be called outside of synchronized(this) section */
@@ -32,14 +32,12 @@ import javax.security.jacc.WebUserDataPermission;
 import java.security.CodeSource;
 import java.security.Permission;
 import java.security.PermissionCollection;
-import java.security.Permissions;
 import java.security.Policy;
 import java.security.Principal;
 import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import static java.lang.System.getSecurityManager;
@@ -91,16 +89,17 @@ public class JaccDelegatingPolicy extends Policy {
         try {
             if (isJaccPermission(permission)) {
                 ElytronPolicyConfiguration policyConfiguration = ElytronPolicyConfigurationFactory.getCurrentPolicyConfiguration();
+                PolicyIndex policyIndex = policyConfiguration.getPolicyIndex();
 
-                if (impliesExcludedPermission(permission, policyConfiguration)) {
+                if (policyIndex.impliesExcludedPermission(permission)) {
                     return false;
                 }
 
-                if (impliesUncheckedPermission(permission, policyConfiguration)) {
+                if (policyIndex.impliesUncheckedPermission(permission)) {
                     return true;
                 }
 
-                if (impliesRolePermission(domain, permission, policyConfiguration)) {
+                if (impliesRolePermission(domain, permission, policyIndex)) {
                     return true;
                 }
 
@@ -198,7 +197,7 @@ public class JaccDelegatingPolicy extends Policy {
         }
     }
 
-    private boolean impliesRolePermission(ProtectionDomain domain, Permission permission, ElytronPolicyConfiguration policyConfiguration) throws PolicyContextException, ClassNotFoundException {
+    private boolean impliesRolePermission(ProtectionDomain domain, Permission permission, PolicyIndex policyIndex) throws PolicyContextException, ClassNotFoundException {
         Set<String> roles = new HashSet<>();
 
         // keep JACC behavior where roles are obtained as Principal instances from a ProtectionDomain
@@ -210,37 +209,7 @@ public class JaccDelegatingPolicy extends Policy {
 
         roles.add(ANY_AUTHENTICATED_USER_ROLE);
 
-        Map<String, Permissions> rolePermissions = policyConfiguration.getRolePermissions();
-
-        synchronized (rolePermissions) {
-            for (String roleName : roles) {
-                Permissions permissions = rolePermissions.get(roleName);
-
-                if (permissions != null) {
-                    if (permissions.implies(permission)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
-    private boolean impliesUncheckedPermission(Permission permission, ElytronPolicyConfiguration policyConfiguration) {
-        Permissions uncheckedPermissions = policyConfiguration.getUncheckedPermissions();
-
-        synchronized (uncheckedPermissions) {
-            return uncheckedPermissions.implies(permission);
-        }
-    }
-
-    private boolean impliesExcludedPermission(Permission permission, ElytronPolicyConfiguration policyConfiguration) {
-        Permissions excludedPermissions = policyConfiguration.getExcludedPermissions();
-
-        synchronized (excludedPermissions) {
-            return excludedPermissions.implies(permission);
-        }
+        return policyIndex.impliesRolePermission(permission, roles);
     }
 
     private boolean isJaccPermission(Permission permission) {
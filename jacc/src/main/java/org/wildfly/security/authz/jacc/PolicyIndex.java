@@ -0,0 +1,225 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.authz.jacc;
+
+import javax.security.jacc.EJBMethodPermission;
+import javax.security.jacc.EJBRoleRefPermission;
+import javax.security.jacc.WebResourcePermission;
+import javax.security.jacc.WebRoleRefPermission;
+import javax.security.jacc.WebUserDataPermission;
+import java.security.AllPermission;
+import java.security.Permission;
+import java.security.Permissions;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>An immutable index of the permissions of a committed {@link ElytronPolicyConfiguration}.
+ *
+ * <p>Checking a permission only evaluates the configured permissions which could imply it. Web permissions are indexed by
+ * the first URL pattern of their name and a check looks up the exact, path-prefix, extension and default patterns which
+ * can match the URL pattern being checked, while EJB method and role reference permissions are indexed by name. Role
+ * permissions share a single index where each permission records the roles granting it, so a check costs the same
+ * whatever the number of roles of the caller.
+ *
+ * <p>The result of every check is the same as {@link Permissions#implies(Permission)} for the JACC permission types, any
+ * other permission type except {@link AllPermission} cannot imply a JACC permission and is not indexed.
+ *
+ * @see JaccDelegatingPolicy
+ */
+final class PolicyIndex {
+
+    static final PolicyIndex EMPTY = new PolicyIndex(new Permissions(), new Permissions(), Collections.emptyMap());
+
+    private final PermissionIndex excludedPermissions = new PermissionIndex();
+    private final PermissionIndex uncheckedPermissions = new PermissionIndex();
+    private final PermissionIndex rolePermissions = new PermissionIndex();
+    private final Map<String, Integer> roleIndexes = new HashMap<>();
+
+    PolicyIndex(Permissions excludedPermissions, Permissions uncheckedPermissions, Map<String, Permissions> rolePermissions) {
+        addAll(this.excludedPermissions, excludedPermissions, -1);
+        addAll(this.uncheckedPermissions, uncheckedPermissions, -1);
+        for (Map.Entry<String, Permissions> entry : rolePermissions.entrySet()) {
+            int roleIndex = roleIndexes.size();
+            roleIndexes.put(entry.getKey(), roleIndex);
+            addAll(this.rolePermissions, entry.getValue(), roleIndex);
+        }
+    }
+
+    private static void addAll(PermissionIndex index, Permissions permissions, int roleIndex) {
+        Enumeration<Permission> elements = permissions.elements();
+        while (elements.hasMoreElements()) {
+            index.add(elements.nextElement(), roleIndex);
+        }
+    }
+
+    boolean impliesExcludedPermission(Permission permission) {
+        return excludedPermissions.implies(permission, null);
+    }
+
+    boolean impliesUncheckedPermission(Permission permission) {
+        return uncheckedPermissions.implies(permission, null);
+    }
+
+    boolean impliesRolePermission(Permission permission, Collection<String> roles) {
+        BitSet roleMask = new BitSet(roleIndexes.size());
+        for (String role : roles) {
+            Integer roleIndex = roleIndexes.get(role);
+            if (roleIndex != null) {
+                roleMask.set(roleIndex);
+            }
+        }
+        return ! roleMask.isEmpty() && rolePermissions.implies(permission, roleMask);
+    }
+
+    private static boolean isIndexed(Class<?> permissionType) {
+        return permissionType == WebResourcePermission.class || permissionType == WebUserDataPermission.class
+                || permissionType == WebRoleRefPermission.class || permissionType == EJBMethodPermission.class
+                || permissionType == EJBRoleRefPermission.class;
+    }
+
+    private static boolean isWebResource(Class<?> permissionType) {
+        return permissionType == WebResourcePermission.class || permissionType == WebUserDataPermission.class;
+    }
+
+    private static String getFirstURLPattern(String name) {
+        int colon = name.indexOf(':');
+        return colon == -1 ? name : name.substring(0, colon);
+    }
+
+    /**
+     * A permission and the roles it is granted to, or {@code null} roles if it is not granted to any role in particular.
+     */
+    private static final class Entry {
+        private final Permission permission;
+        private final BitSet roles;
+
+        Entry(Permission permission, BitSet roles) {
+            this.permission = permission;
+            this.roles = roles;
+        }
+
+        boolean implies(Permission permission, BitSet roleMask) {
+            return (roles == null || roles.intersects(roleMask)) && this.permission.implies(permission);
+        }
+    }
+
+    private static final class PermissionIndex {
+        private final Map<Class<?>, Map<String, List<Entry>>> entriesByType = new HashMap<>();
+        private final Map<Class<?>, List<Entry>> unindexedEntriesByType = new HashMap<>();
+        private Entry allPermission;
+
+        void add(Permission permission, int roleIndex) {
+            Class<?> permissionType = permission.getClass();
+            List<Entry> entries;
+            if (permission instanceof AllPermission) {
+                if (allPermission == null) {
+                    allPermission = new Entry(permission, roleIndex == -1 ? null : new BitSet());
+                }
+                if (roleIndex != -1) {
+                    allPermission.roles.set(roleIndex);
+                }
+                return;
+            } else if (! isIndexed(permissionType)) {
+                return;
+            } else if (isWebResource(permissionType)) {
+                String pattern = getFirstURLPattern(permission.getName());
+                if (pattern.isEmpty() || pattern.startsWith("/") || pattern.startsWith("*.")) {
+                    entries = entriesByType.computeIfAbsent(permissionType, t -> new HashMap<>()).computeIfAbsent(pattern, p -> new ArrayList<>(1));
+                } else {
+                    entries = unindexedEntriesByType.computeIfAbsent(permissionType, t -> new ArrayList<>(1));
+                }
+            } else {
+                entries = entriesByType.computeIfAbsent(permissionType, t -> new HashMap<>()).computeIfAbsent(permission.getName(), p -> new ArrayList<>(1));
+            }
+
+            for (Entry entry : entries) {
+                if (entry.permission.equals(permission)) {
+                    if (roleIndex != -1) {
+                        entry.roles.set(roleIndex);
+                    }
+                    return;
+                }
+            }
+            BitSet roles = null;
+            if (roleIndex != -1) {
+                roles = new BitSet();
+                roles.set(roleIndex);
+            }
+            entries.add(new Entry(permission, roles));
+        }
+
+        boolean implies(Permission permission, BitSet roleMask) {
+            if (allPermission != null && allPermission.implies(permission, roleMask)) {
+                return true;
+            }
+            Class<?> permissionType = permission.getClass();
+            if (implies(unindexedEntriesByType.get(permissionType), permission, roleMask)) {
+                return true;
+            }
+            Map<String, List<Entry>> entries = entriesByType.get(permissionType);
+            if (entries == null) {
+                return false;
+            }
+            if (! isWebResource(permissionType)) {
+                return implies(entries.get(permission.getName()), permission, roleMask);
+            }
+
+            String pattern = getFirstURLPattern(permission.getName());
+            if (implies(entries.get(pattern), permission, roleMask)) {
+                return true;
+            }
+            // path-prefix patterns matching the pattern or any of its parent paths, down to the "/*" pattern
+            if (pattern.startsWith("/")) {
+                for (int end = pattern.length(); end > 0; end = pattern.lastIndexOf('/', end - 1)) {
+                    if (implies(entries.get(pattern.substring(0, end) + "/*"), permission, roleMask)) {
+                        return true;
+                    }
+                }
+            }
+            if (! pattern.equals("/*") && implies(entries.get("/*"), permission, roleMask)) {
+                return true;
+            }
+            // extension patterns matching any suffix of the last path segment starting with a period
+            for (int dot = pattern.indexOf('.', pattern.lastIndexOf('/') + 1); dot != -1; dot = pattern.indexOf('.', dot + 1)) {
+                if (implies(entries.get("*" + pattern.substring(dot)), permission, roleMask)) {
+                    return true;
+                }
+            }
+            // the default pattern
+            return ! pattern.equals("/") && implies(entries.get("/"), permission, roleMask);
+        }
+
+        private static boolean implies(List<Entry> entries, Permission permission, BitSet roleMask) {
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    if (entry.implies(permission, roleMask)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.authz.jacc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.security.jacc.EJBMethodPermission;
+import javax.security.jacc.WebResourcePermission;
+import javax.security.jacc.WebRoleRefPermission;
+import javax.security.jacc.WebUserDataPermission;
+import java.security.AllPermission;
+import java.security.Permission;
+import java.security.Permissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link PolicyIndex}, the results must always match the ones of {@link Permissions}.
+ */
+public class PolicyIndexTest {
+
+    private static final String[] PATTERNS = { "", "/", "/*", "/a", "/a/*", "/a/b", "/a/b/*", "/a/b/c.jsp", "/a/bc", "/a/bc/*",
+            "*.jsp", "*.tar.gz", "/a/x.tar.gz", "/b/*", "/b/c/d", "*.gz", "/a/*:/a/b", "/a/*:/a/b/*", "/*:*.jsp", "/:/a/*" };
+    private static final String[] METHODS = { null, "GET", "POST", "GET,POST", "PUT" };
+    private static final String[] ROLES = { "admin", "user", "guest", "**" };
+
+    private static Permission randomPermission(Random random) {
+        String pattern = PATTERNS[random.nextInt(PATTERNS.length)];
+        switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+                return new WebResourcePermission(pattern, METHODS[random.nextInt(METHODS.length)]);
+            case 2:
+                return new WebUserDataPermission(pattern, random.nextBoolean() ? null : "GET:CONFIDENTIAL");
+            case 3:
+                return new WebRoleRefPermission("servlet" + random.nextInt(2), ROLES[random.nextInt(ROLES.length)]);
+            default:
+                return new EJBMethodPermission("Bean" + random.nextInt(2), "method" + random.nextInt(2) + ",Local");
+        }
+    }
+
+    @Test
+    public void testSameResultsAsPermissions() {
+        Random random = new Random(1234);
+        for (int round = 0; round < 200; round++) {
+            Permissions excluded = new Permissions();
+            Permissions unchecked = new Permissions();
+            Map<String, Permissions> roles = new HashMap<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                excluded.add(randomPermission(random));
+            }
+            for (int i = random.nextInt(6); i > 0; i--) {
+                unchecked.add(randomPermission(random));
+            }
+            for (String role : ROLES) {
+                if (random.nextBoolean()) {
+                    Permissions permissions = new Permissions();
+                    for (int i = random.nextInt(6); i > 0; i--) {
+                        permissions.add(randomPermission(random));
+                    }
+                    roles.put(role, permissions);
+                }
+            }
+            PolicyIndex index = new PolicyIndex(excluded, unchecked, roles);
+
+            for (int check = 0; check < 200; check++) {
+                Permission permission = randomPermission(random);
+                assertEquals(permission.toString(), excluded.implies(permission), index.impliesExcludedPermission(permission));
+                assertEquals(permission.toString(), unchecked.implies(permission), index.impliesUncheckedPermission(permission));
+
+                Set<String> callerRoles = new HashSet<>();
+                for (String role : ROLES) {
+                    if (random.nextInt(3) == 0) {
+                        callerRoles.add(role);
+                    }
+                }
+                boolean expected = false;
+                for (String role : callerRoles) {
+                    Permissions permissions = roles.get(role);
+                    expected |= permissions != null && permissions.implies(permission);
+                }
+                assertEquals(permission + " " + callerRoles, expected, index.impliesRolePermission(permission, callerRoles));
+            }
+        }
+    }
+
+    @Test
+    public void testAllPermission() {
+        Permissions admin = new Permissions();
+        admin.add(new AllPermission());
+        PolicyIndex index = new PolicyIndex(new Permissions(), new Permissions(), Collections.singletonMap("admin", admin));
+
+        WebResourcePermission permission = new WebResourcePermission("/secured", "GET");
+        assertTrue(index.impliesRolePermission(permission, Arrays.asList("user", "admin")));
+        assertFalse(index.impliesRolePermission(permission, Collections.singletonList("user")));
+        assertFalse(index.impliesUncheckedPermission(permission));
+    }
+}
@@ -26,10 +26,12 @@ import org.wildfly.security.password.interfaces.ScramDigestPassword;
 public final class ScramInitialServerResult {
     private final ScramInitialServerMessage scramInitialChallenge;
     private final ScramDigestPassword scramDigestPassword;
+    private final boolean storedPassword;
 
-    ScramInitialServerResult(final ScramInitialServerMessage scramInitialChallenge, final ScramDigestPassword scramDigestPassword) {
+    ScramInitialServerResult(final ScramInitialServerMessage scramInitialChallenge, final ScramDigestPassword scramDigestPassword, final boolean storedPassword) {
         this.scramInitialChallenge = scramInitialChallenge;
         this.scramDigestPassword = scramDigestPassword;
+        this.storedPassword = storedPassword;
     }
 
     public ScramInitialServerMessage getScramInitialChallenge() {
@@ -39,4 +41,8 @@ public final class ScramInitialServerResult {
     public ScramDigestPassword getScramDigestPassword() {
         return scramDigestPassword;
     }
+
+    boolean isStoredPassword() {
+        return storedPassword;
+    }
 }
@@ -18,10 +18,18 @@
 
 package org.wildfly.security.mechanism.scram;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Supplier;
 
+import javax.crypto.Mac;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.wildfly.security.auth.callback.ChannelBindingCallback;
@@ -33,6 +41,9 @@ import org.wildfly.security.sasl.WildFlySasl;
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class ScramMechanism {
+    private static final int MAX_POOLED_INSTANCES = 16;
+    private static final int MAX_CACHED_SERVER_KEYS = 256;
+
     /** Hash size; may be less than the output size of the MD/MAC */
     private final int hashSize;
     private final String messageDigestName;
@@ -40,6 +51,16 @@ public final class ScramMechanism {
     private final boolean plus;
     private final String passwordAlgorithm;
     private final String toString;
+    // bounded pools rather than per thread instances, as the mechanisms are shared by every thread for the lifetime of the class
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+    private final Queue<MessageDigest> messageDigests = new ConcurrentLinkedQueue<>();
+    // in insertion order, as every entry has the same lifetime the expired entries are always the eldest ones
+    private final Map<ScramServer.SaltedPasswordKey, ScramServer.ServerKeys> serverKeys = new LinkedHashMap<ScramServer.SaltedPasswordKey, ScramServer.ServerKeys>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ScramServer.SaltedPasswordKey, ScramServer.ServerKeys> eldest) {
+            return size() > MAX_CACHED_SERVER_KEYS;
+        }
+    };
 
     private ScramMechanism(final int hashSize, final String messageDigestName, final String hmacName, final boolean plus, final String passwordAlgorithm) {
         this.hashSize = hashSize;
@@ -128,6 +149,93 @@ public final class ScramMechanism {
         return passwordAlgorithm;
     }
 
+    /**
+     * Get an HMAC instance of this mechanism, either a pooled one or a new one.  The instance must be initialized before
+     * each use and should be returned with {@link #releaseMac(Mac)} once it is no longer used.
+     *
+     * @return the HMAC instance (not {@code null})
+     * @throws NoSuchAlgorithmException if the HMAC algorithm is not supported
+     */
+    Mac acquireMac() throws NoSuchAlgorithmException {
+        Mac mac = macs.poll();
+        return mac != null ? mac : Mac.getInstance(hmacName);
+    }
+
+    /**
+     * Return an HMAC instance obtained from {@link #acquireMac()} to the pool, unless the pool is full.
+     *
+     * @param mac the HMAC instance (must not be used by the caller afterwards)
+     */
+    void releaseMac(Mac mac) {
+        if (macs.size() < MAX_POOLED_INSTANCES) {
+            macs.offer(mac);
+        }
+    }
+
+    /**
+     * Get a message digest instance of this mechanism reset to its initial state, either a pooled one or a new one.  The
+     * instance should be returned with {@link #releaseMessageDigest(MessageDigest)} once it is no longer used.
+     *
+     * @return the message digest instance (not {@code null})
+     * @throws NoSuchAlgorithmException if the message digest algorithm is not supported
+     */
+    MessageDigest acquireMessageDigest() throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = messageDigests.poll();
+        if (messageDigest == null) {
+            return MessageDigest.getInstance(messageDigestName);
+        }
+        messageDigest.reset();
+        return messageDigest;
+    }
+
+    /**
+     * Return a message digest instance obtained from {@link #acquireMessageDigest()} to the pool, unless the pool is full.
+     *
+     * @param messageDigest the message digest instance (must not be used by the caller afterwards)
+     */
+    void releaseMessageDigest(MessageDigest messageDigest) {
+        if (messageDigests.size() < MAX_POOLED_INSTANCES) {
+            messageDigests.offer(messageDigest);
+        }
+    }
+
+    /**
+     * Get the keys recently derived by a server of this mechanism from a stored salted password.  As a password with a new
+     * digest, salt or iteration count has a different salted password, the keys of a password are never reused once it has
+     * changed.
+     *
+     * @param key the digest of the salted password
+     * @param now the current time in milliseconds
+     * @return the keys derived from the salted password, or {@code null} if they are not cached or have expired
+     */
+    ScramServer.ServerKeys getServerKeys(ScramServer.SaltedPasswordKey key, long now) {
+        final ScramServer.ServerKeys keys;
+        synchronized (serverKeys) {
+            keys = serverKeys.get(key);
+        }
+        return keys == null || keys.isExpired(now) ? null : keys;
+    }
+
+    /**
+     * Cache the keys derived by a server of this mechanism from a stored salted password.  Expired keys are discarded first,
+     * and the eldest keys are evicted once the cache is full.
+     *
+     * @param key the digest of the salted password
+     * @param keys the keys derived from the salted password
+     * @param now the current time in milliseconds
+     */
+    void putServerKeys(ScramServer.SaltedPasswordKey key, ScramServer.ServerKeys keys, long now) {
+        synchronized (serverKeys) {
+            Iterator<ScramServer.ServerKeys> iterator = serverKeys.values().iterator();
+            while (iterator.hasNext() && iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+            // removed first so that the replaced keys move to the end of the insertion order
+            serverKeys.remove(key);
+            serverKeys.put(key, keys);
+        }
+    }
+
     public String toString() {
         return toString;
     }
@@ -37,6 +37,7 @@ import java.util.function.Supplier;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
@@ -46,6 +47,7 @@ import org.wildfly.common.Assert;
 import org.wildfly.common.bytes.ByteStringBuilder;
 import org.wildfly.common.iteration.ByteIterator;
 import org.wildfly.security.auth.callback.ChannelBindingCallback;
+import org.wildfly.security.auth.callback.CredentialCallback;
 import org.wildfly.security.mechanism._private.MechanismUtil;
 import org.wildfly.security.mechanism.AuthenticationMechanismException;
 import org.wildfly.security.mechanism.ScramServerErrorCode;
@@ -58,6 +60,8 @@ import org.wildfly.security.sasl.util.StringPrep;
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class ScramServer {
+    private static final long SERVER_KEYS_LIFETIME = 5 * 60 * 1000;
+
     private final Supplier<Provider[]> providers;
     private final ScramMechanism mechanism;
     private final CallbackHandler callbackHandler;
@@ -204,7 +208,19 @@ public final class ScramServer {
         final IteratedPasswordAlgorithmSpec generateParameters = new IteratedPasswordAlgorithmSpec(
             max(minimumIterationCount, min(maximumIterationCount, ScramDigestPassword.DEFAULT_ITERATION_COUNT))
         );
-        final ScramDigestPassword password = MechanismUtil.getPasswordCredential(clientMessage.getAuthenticationName(), callbackHandler, ScramDigestPassword.class, mechanism.getPasswordAlgorithm(), null, generateParameters, providers, saslScram);
+        // a password is only stored with its salt if it was obtained as a SCRAM credential, otherwise the salt is generated
+        // for this exchange and the keys derived from it will not be used again
+        final boolean[] storedPassword = new boolean[1];
+        final CallbackHandler credentialCallbackHandler = callbacks -> {
+            callbackHandler.handle(callbacks);
+            for (Callback callback : callbacks) {
+                if (callback instanceof CredentialCallback && ((CredentialCallback) callback).getCredential() != null
+                        && mechanism.getPasswordAlgorithm().equals(((CredentialCallback) callback).getAlgorithm())) {
+                    storedPassword[0] = true;
+                }
+            }
+        };
+        final ScramDigestPassword password = MechanismUtil.getPasswordCredential(clientMessage.getAuthenticationName(), credentialCallbackHandler, ScramDigestPassword.class, mechanism.getPasswordAlgorithm(), null, generateParameters, providers, saslScram);
 
         final byte[] saltedPasswordBytes = password.getDigest();
         final int iterationCount = password.getIterationCount();
@@ -237,7 +253,7 @@ public final class ScramServer {
 
         byte[] messageBytes = b.toArray();
 
-        return new ScramInitialServerResult(new ScramInitialServerMessage(clientMessage, serverNonce, salt, iterationCount, messageBytes), password);
+        return new ScramInitialServerResult(new ScramInitialServerMessage(clientMessage, serverNonce, salt, iterationCount, messageBytes), password, storedPassword[0]);
     }
 
     public ScramFinalClientMessage parseFinalClientMessage(final ScramInitialClientMessage initialResponse, final ScramInitialServerResult initialResult, final byte[] bytes) throws AuthenticationMechanismException {
@@ -360,32 +376,22 @@ public final class ScramServer {
 
         ByteStringBuilder b = new ByteStringBuilder();
 
+        Mac mac = null;
+        MessageDigest messageDigest = null;
         try {
 
-            final Mac mac = Mac.getInstance(getMechanism().getHmacName());
-            final MessageDigest messageDigest = MessageDigest.getInstance(getMechanism().getMessageDigestName());
+            mac = mechanism.acquireMac();
+            messageDigest = mechanism.acquireMessageDigest();
 
             // == verify proof ==
 
-            // client key
-            byte[] clientKey;
-            mac.reset();
-            byte[] saltedPassword = initialResult.getScramDigestPassword().getDigest();
-            mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
-            mac.update(ScramUtil.CLIENT_KEY_BYTES);
-            clientKey = mac.doFinal();
-            if(trace) saslScram.tracef("[S] Client key: %s%n", ByteIterator.ofBytes(clientKey).hexEncode().drainToString());
-
-            // stored key
-            byte[] storedKey;
-            messageDigest.reset();
-            messageDigest.update(clientKey);
-            storedKey = messageDigest.digest();
-            if(trace) saslScram.tracef("[S] Stored key: %s%n", ByteIterator.ofBytes(storedKey).hexEncode().drainToString());
+            // stored key and server key
+            final ServerKeys serverKeys = getServerKeys(initialResult.getScramDigestPassword(), initialResult.isStoredPassword(), mac, messageDigest);
+            if(trace) saslScram.tracef("[S] Stored key: %s%n", ByteIterator.ofBytes(serverKeys.storedKey.getEncoded()).hexEncode().drainToString());
+            if(trace) saslScram.tracef("[S] Server key: %s%n", ByteIterator.ofBytes(serverKeys.serverKey.getEncoded()).hexEncode().drainToString());
 
             // client signature
-            mac.reset();
-            mac.init(new SecretKeySpec(storedKey, mac.getAlgorithm()));
+            mac.init(serverKeys.storedKey);
             final byte[] clientFirstMessage = clientMessage.getInitialResponse().getRawMessageBytes();
             final int clientFirstMessageBareStart = clientMessage.getInitialResponse().getInitialPartIndex();
             mac.update(clientFirstMessage, clientFirstMessageBareStart, clientFirstMessage.length - clientFirstMessageBareStart);
@@ -402,18 +408,9 @@ public final class ScramServer {
             byte[] clientSignature = mac.doFinal();
             if(trace) saslScram.tracef("[S] Client signature: %s%n", ByteIterator.ofBytes(clientSignature).hexEncode().drainToString());
 
-            // server key
-            byte[] serverKey;
-            mac.reset();
-            mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
-            mac.update(ScramUtil.SERVER_KEY_BYTES);
-            serverKey = mac.doFinal();
-            if(trace) saslScram.tracef("[S] Server key: %s%n", ByteIterator.ofBytes(serverKey).hexEncode().drainToString());
-
             // server signature
             byte[] serverSignature;
-            mac.reset();
-            mac.init(new SecretKeySpec(serverKey, mac.getAlgorithm()));
+            mac.init(serverKeys.serverKey);
             mac.update(clientFirstMessage, clientFirstMessageBareStart, clientFirstMessage.length - clientFirstMessageBareStart);
             mac.update((byte) ',');
             mac.update(serverFirstMessage);
@@ -425,11 +422,11 @@ public final class ScramServer {
             final byte[] recoveredClientProof = clientMessage.getRawClientProof();
             if(trace) saslScram.tracef("[S] Client proof: %s%n", ByteIterator.ofBytes(recoveredClientProof).hexEncode().drainToString());
 
-            // now check the proof
+            // now check the proof, the hash of the recovered client key must be the stored key
             byte[] recoveredClientKey = clientSignature.clone();
             ScramUtil.xor(recoveredClientKey, recoveredClientProof);
             if(trace) saslScram.tracef("[S] Recovered client key: %s%n", ByteIterator.ofBytes(recoveredClientKey).hexEncode().drainToString());
-            if (! Arrays.equals(recoveredClientKey, clientKey)) {
+            if (! MessageDigest.isEqual(messageDigest.digest(recoveredClientKey), serverKeys.storedKey.getEncoded())) {
                 throw saslScram.mechAuthenticationRejectedInvalidProof();
             }
 
@@ -460,9 +457,54 @@ public final class ScramServer {
             return new ScramFinalServerMessage(serverSignature, b.toArray());
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             throw saslScram.mechMacAlgorithmNotSupported(e);
+        } finally {
+            if (mac != null) {
+                mechanism.releaseMac(mac);
+            }
+            if (messageDigest != null) {
+                mechanism.releaseMessageDigest(messageDigest);
+            }
         }
     }
 
+    /**
+     * Get the stored key and the server key of a salted password.  The keys of a stored password are derived once and then
+     * reused for a limited time, the keys of a password salted for this exchange only are not cached.
+     */
+    private ServerKeys getServerKeys(final ScramDigestPassword password, final boolean storedPassword, final Mac mac, final MessageDigest messageDigest) throws InvalidKeyException {
+        final byte[] saltedPassword = password.getDigest();
+        if (! storedPassword) {
+            return deriveServerKeys(saltedPassword, mac, messageDigest, 0);
+        }
+        messageDigest.reset();
+        final SaltedPasswordKey key = new SaltedPasswordKey(messageDigest.digest(saltedPassword));
+        final long now = System.currentTimeMillis();
+        ServerKeys serverKeys = mechanism.getServerKeys(key, now);
+        if (serverKeys == null) {
+            serverKeys = deriveServerKeys(saltedPassword, mac, messageDigest, now + SERVER_KEYS_LIFETIME);
+            mechanism.putServerKeys(key, serverKeys, now);
+        }
+        return serverKeys;
+    }
+
+    private static ServerKeys deriveServerKeys(final byte[] saltedPassword, final Mac mac, final MessageDigest messageDigest, final long expiry) throws InvalidKeyException {
+        // client key
+        mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
+        mac.update(ScramUtil.CLIENT_KEY_BYTES);
+        byte[] clientKey = mac.doFinal();
+
+        // stored key
+        messageDigest.reset();
+        byte[] storedKey = messageDigest.digest(clientKey);
+
+        // server key
+        mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
+        mac.update(ScramUtil.SERVER_KEY_BYTES);
+        byte[] serverKey = mac.doFinal();
+
+        return new ServerKeys(new SecretKeySpec(storedKey, mac.getAlgorithm()), new SecretKeySpec(serverKey, mac.getAlgorithm()), expiry);
+    }
+
     public ScramMechanism getMechanism() {
         return mechanism;
     }
@@ -486,4 +528,42 @@ public final class ScramServer {
     public String getBindingType() {
         return bindingType;
     }
+
+    static final class ServerKeys {
+        private final SecretKeySpec storedKey;
+        private final SecretKeySpec serverKey;
+        private final long expiry;
+
+        ServerKeys(final SecretKeySpec storedKey, final SecretKeySpec serverKey, final long expiry) {
+            this.storedKey = storedKey;
+            this.serverKey = serverKey;
+            this.expiry = expiry;
+        }
+
+        boolean isExpired(final long now) {
+            return now >= expiry;
+        }
+    }
+
+    /**
+     * The key of the server keys of a salted password, the digest of the salted password so that the password itself is
+     * not retained.
+     */
+    static final class SaltedPasswordKey {
+        private final byte[] digest;
+        private final int hashCode;
+
+        SaltedPasswordKey(final byte[] digest) {
+            this.digest = digest;
+            this.hashCode = Arrays.hashCode(digest);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof SaltedPasswordKey && Arrays.equals(digest, ((SaltedPasswordKey) obj).digest);
+        }
+    }
 }
@@ -26,8 +26,10 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import javax.net.ssl.SSLSession;
@@ -44,9 +46,12 @@ import org.wildfly.common.iteration.CodePointIterator;
 public abstract class SaslMechanismSelector {
 
     private static final SaslMechanismPredicate[] NO_PREDICATES = new SaslMechanismPredicate[0];
+    private static final int MAX_CACHED_SELECTIONS = 64;
     final SaslMechanismSelector prev;
 
     private int hashCode;
+    private volatile Map<List<String>, List<String>> selections;
+    private volatile Map<List<String>, List<String>> tlsSelections;
 
     SaslMechanismSelector(final SaslMechanismSelector prev) {
         this.prev = prev;
@@ -114,12 +119,43 @@ public abstract class SaslMechanismSelector {
      * Get a list of mechanism names which are matched by this selector in the preferential order that the selector
      * specifies.  When no preference between two mechanisms is specified, the original order is used.
      *
+     * The result only depends on the mechanism names, their order and whether SSL is active, so the selections of the most
+     * recently offered lists of mechanism names are cached by this selector.
+     *
      * @param mechNames the mechanism names (must not be {@code null})
      * @param sslSession the SSL session, if any is active, or {@code null} if SSL is not active
      * @return the list of mechanisms (not {@code null})
      */
     public List<String> apply(Collection<String> mechNames, SSLSession sslSession) {
         Assert.checkNotNullParam("mechNames", mechNames);
+        final Map<List<String>, List<String>> selections = getSelections(sslSession != null);
+        // any list is equal to another list with the same elements in the same order
+        List<String> offered = mechNames instanceof List ? (List<String>) mechNames : new ArrayList<>(mechNames);
+        List<String> selected = selections.get(offered);
+        if (selected == null) {
+            selected = select(offered, sslSession);
+            if (selections.size() >= MAX_CACHED_SELECTIONS) {
+                selections.clear();
+            }
+            selections.put(offered == mechNames ? new ArrayList<>(offered) : offered, selected);
+        }
+        return selected.size() > 1 ? new ArrayList<>(selected) : selected;
+    }
+
+    private Map<List<String>, List<String>> getSelections(boolean tls) {
+        Map<List<String>, List<String>> selections = tls ? tlsSelections : this.selections;
+        if (selections == null) {
+            selections = new ConcurrentHashMap<>();
+            if (tls) {
+                tlsSelections = selections;
+            } else {
+                this.selections = selections;
+            }
+        }
+        return selections;
+    }
+
+    private List<String> select(Collection<String> mechNames, SSLSession sslSession) {
         final Supplier<String> supplier = createMechanismSupplier(mechNames, sslSession);
         final String first = supplier.get();
         if (first == null) {
@@ -866,21 +902,28 @@ public abstract class SaslMechanismSelector {
 
         Supplier<String> doCreateSupplier(final LinkedHashSet<String> set, final SSLSession sslSession) {
             final Supplier<String> prevSupplier = prev.doCreateSupplier(set, sslSession);
-            final Iterator<String> iterator = set.iterator();
-            return () -> {
-                String name = prevSupplier.get();
-                if (name != null) {
-                    return name;
-                }
-                while (iterator.hasNext()) {
-                    name = iterator.next();
-                    if (predicate.test(name, sslSession)) try {
+            return new Supplier<String>() {
+                // created once the previous suppliers are exhausted, as they remove names from the set
+                private Iterator<String> iterator;
+
+                public String get() {
+                    String name = prevSupplier.get();
+                    if (name != null) {
                         return name;
-                    } finally {
-                        iterator.remove();
                     }
+                    if (iterator == null) {
+                        iterator = set.iterator();
+                    }
+                    while (iterator.hasNext()) {
+                        name = iterator.next();
+                        if (predicate.test(name, sslSession)) try {
+                            return name;
+                        } finally {
+                            iterator.remove();
+                        }
+                    }
+                    return null;
                 }
-                return null;
             };
         }
 
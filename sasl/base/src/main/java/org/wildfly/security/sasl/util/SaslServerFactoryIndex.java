@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.sasl.util;
+
+import static org.wildfly.security.sasl._private.ElytronMessages.log;
+
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.sasl.SaslServerFactory;
+
+import org.wildfly.security.sasl.WildFlySasl;
+
+/**
+ * An immutable index of the mechanisms of a list of {@link SaslServerFactory} instances, used to find the factories which
+ * can create a mechanism without asking every factory of the list.
+ *
+ * Factories are indexed by the mechanism names they return when all of their supported mechanisms are queried, a factory
+ * which returns no mechanism names is a candidate for every mechanism.  The candidates are returned in the original order
+ * of the factories.
+ */
+final class SaslServerFactoryIndex {
+
+    private static final Map<String, String> QUERY_ALL = Collections.singletonMap(WildFlySasl.MECHANISM_QUERY_ALL, "true");
+
+    private final List<SaslServerFactory> factories = new ArrayList<>();
+    private final List<Provider> providers = new ArrayList<>();
+    private final BitSet anyMechanismFactories = new BitSet();
+    private final Map<String, BitSet> factoriesByMechanism = new HashMap<>();
+
+    /**
+     * Add a factory to the index, this must only be called before the index is shared with other threads.
+     *
+     * @param factory the factory to add (must not be {@code null})
+     * @param provider the provider of the factory, or {@code null} if it was not provided by a security provider
+     */
+    void add(SaslServerFactory factory, Provider provider) {
+        final int index = factories.size();
+        factories.add(factory);
+        providers.add(provider);
+        String[] mechanismNames = null;
+        try {
+            mechanismNames = factory.getMechanismNames(QUERY_ALL);
+        } catch (RuntimeException e) {
+            log.debug("Unable to query the mechanisms of SaslServerFactory", e);
+        }
+        if (mechanismNames == null || mechanismNames.length == 0) {
+            anyMechanismFactories.set(index);
+        } else {
+            for (String mechanismName : mechanismNames) {
+                factoriesByMechanism.computeIfAbsent(mechanismName, m -> new BitSet()).set(index);
+            }
+        }
+    }
+
+    int size() {
+        return factories.size();
+    }
+
+    SaslServerFactory getFactory(int index) {
+        return factories.get(index);
+    }
+
+    Provider getProvider(int index) {
+        return providers.get(index);
+    }
+
+    /**
+     * Get the indexes of the factories which could create the given mechanism, in their original order.
+     *
+     * @param mechanism the mechanism name
+     * @return the indexes of the candidate factories (must not be modified)
+     */
+    BitSet getCandidates(String mechanism) {
+        final BitSet candidates = factoriesByMechanism.get(mechanism);
+        if (candidates == null) {
+            return anyMechanismFactories;
+        }
+        if (anyMechanismFactories.isEmpty()) {
+            return candidates;
+        }
+        final BitSet result = (BitSet) candidates.clone();
+        result.or(anyMechanismFactories);
+        return result;
+    }
+}
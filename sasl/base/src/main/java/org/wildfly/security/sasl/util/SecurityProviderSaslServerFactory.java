@@ -25,6 +25,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Provider.Service;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -41,7 +42,8 @@ import static org.wildfly.security.sasl._private.ElytronMessages.log;
 
 /**
  * A {@link SaslServerFactory} which uses the currently installed security providers to acquire a delegate
- * {@code SaslServerFactory}.  The provider service instances may or may not be cached.
+ * {@code SaslServerFactory}.  The provider service instances are cached along with an index of the mechanisms they
+ * support, until the providers or their services change.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
@@ -50,6 +52,7 @@ public final class SecurityProviderSaslServerFactory implements SaslServerFactor
     private static final String SERVICE_TYPE = SaslServerFactory.class.getSimpleName();
 
     private final Supplier<Provider[]> providerSupplier;
+    private volatile ProviderIndex providerIndex;
 
     /**
      * Construct a new instance.
@@ -70,30 +73,17 @@ public final class SecurityProviderSaslServerFactory implements SaslServerFactor
     @Override
     public SaslServer createSaslServer(final String mechanism, final String protocol, final String serverName, final Map<String, ?> props, final CallbackHandler cbh) throws SaslException {
         final BiPredicate<String, Provider> mechFilter = SaslFactories.getProviderFilterPredicate(props);
+        final SaslServerFactoryIndex index = getIndex().index;
+        final BitSet candidates = index.getCandidates(mechanism);
         SaslServer saslServer;
-        for (Provider currentProvider : providerSupplier.get()) {
-            if (currentProvider == null) {
-                continue;
-            }
-            if (mechFilter.test(mechanism, currentProvider)) {
-                Set<Service> services = currentProvider.getServices();
-                if (services != null) {
-                    for (Provider.Service service : services) {
-                        if (SERVICE_TYPE.equals(service.getType())) {
-                            try {
-                                saslServer = ((SaslServerFactory) service.newInstance(null)).createSaslServer(mechanism,
-                                        protocol, serverName, props, cbh);
-                                if (saslServer != null) {
-                                    if (log.isTraceEnabled()) {
-                                        log.tracef("Creating SaslServer [%s] for mechanism [%s] and protocol [%s]", saslServer, mechanism, protocol);
-                                    }
-                                    return saslServer;
-                                }
-                            } catch (NoSuchAlgorithmException | ClassCastException | InvalidParameterException e) {
-                                log.debug("Unable to create instance of SaslServerFactory", e);
-                            }
-                        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (mechFilter.test(mechanism, index.getProvider(i))) {
+                saslServer = index.getFactory(i).createSaslServer(mechanism, protocol, serverName, props, cbh);
+                if (saslServer != null) {
+                    if (log.isTraceEnabled()) {
+                        log.tracef("Creating SaslServer [%s] for mechanism [%s] and protocol [%s]", saslServer, mechanism, protocol);
                     }
+                    return saslServer;
                 }
             }
         }
@@ -106,25 +96,73 @@ public final class SecurityProviderSaslServerFactory implements SaslServerFactor
     @Override
     public String[] getMechanismNames(final Map<String, ?> props) {
         final BiPredicate<String, Provider> mechFilter = SaslFactories.getProviderFilterPredicate(props);
+        final SaslServerFactoryIndex index = getIndex().index;
         final Set<String> names = new LinkedHashSet<>();
-        for (Provider currentProvider : providerSupplier.get()) {
-            Set<Service> services = currentProvider.getServices();
-            if (services != null) {
-                for (Service service : services) {
-                    if (SERVICE_TYPE.equals(service.getType())) {
-                        try {
-                            final String[] mechanismNames = ((SaslServerFactory) service.newInstance(null)).getMechanismNames(props);
-                            Collections.addAll(names, SaslFactories.filterMechanismsByProvider(mechanismNames, 0, 0, currentProvider, mechFilter));
-                        } catch (NoSuchAlgorithmException | ClassCastException | InvalidParameterException e) {
-                            log.debug("Unable to create instance", e);
+        for (int i = 0; i < index.size(); i++) {
+            final String[] mechanismNames = index.getFactory(i).getMechanismNames(props);
+            Collections.addAll(names, SaslFactories.filterMechanismsByProvider(mechanismNames, 0, 0, index.getProvider(i), mechFilter));
+        }
+        if (names.size() == 0 && log.isTraceEnabled()) {
+            log.tracef("No %s provided by provider supplier in %s: %s", SERVICE_TYPE, getClass().getSimpleName(), Arrays.toString(providerSupplier.get()));
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Get the index of the factories of the current providers, the index is rebuilt if a provider or the services of a
+     * provider have changed since it was built.
+     *
+     * @return the index of the factories of the current providers (not {@code null})
+     */
+    private ProviderIndex getIndex() {
+        final Provider[] providers = providerSupplier.get();
+        ProviderIndex providerIndex = this.providerIndex;
+        if (providerIndex == null || ! providerIndex.isCurrent(providers)) {
+            this.providerIndex = providerIndex = new ProviderIndex(providers);
+        }
+        return providerIndex;
+    }
+
+    private static final class ProviderIndex {
+        private final Provider[] providers;
+        private final Set<?>[] services;
+        private final SaslServerFactoryIndex index = new SaslServerFactoryIndex();
+
+        ProviderIndex(final Provider[] providers) {
+            this.providers = providers.clone();
+            this.services = new Set<?>[providers.length];
+            for (int i = 0; i < providers.length; i++) {
+                final Provider provider = providers[i];
+                if (provider == null) {
+                    continue;
+                }
+                final Set<Service> providerServices = provider.getServices();
+                services[i] = providerServices;
+                if (providerServices != null) {
+                    for (Service service : providerServices) {
+                        if (SERVICE_TYPE.equals(service.getType())) {
+                            try {
+                                index.add((SaslServerFactory) service.newInstance(null), provider);
+                            } catch (NoSuchAlgorithmException | ClassCastException | InvalidParameterException e) {
+                                log.debug("Unable to create instance of SaslServerFactory", e);
+                            }
                         }
                     }
                 }
             }
         }
-        if (names.size() == 0 && log.isTraceEnabled()) {
-            log.tracef("No %s provided by provider supplier in %s: %s", SERVICE_TYPE, getClass().getSimpleName(), Arrays.toString(providerSupplier.get()));
+
+        boolean isCurrent(final Provider[] providers) {
+            if (providers.length != this.providers.length) {
+                return false;
+            }
+            for (int i = 0; i < providers.length; i++) {
+                // the services of a provider are a new set once they have changed
+                if (providers[i] != this.providers[i] || providers[i] != null && providers[i].getServices() != services[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
-        return names.toArray(new String[names.size()]);
     }
 }
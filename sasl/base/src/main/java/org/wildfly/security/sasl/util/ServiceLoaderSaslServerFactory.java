@@ -18,6 +18,7 @@
 
 package org.wildfly.security.sasl.util;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -32,12 +33,14 @@ import javax.security.sasl.SaslServerFactory;
 import javax.security.sasl.SaslException;
 
 /**
- * A {@link SaslServerFactory} which uses a {@link ServiceLoader} to find implementations.
+ * A {@link SaslServerFactory} which uses a {@link ServiceLoader} to find implementations.  The implementations are found
+ * once and indexed by the mechanisms they support, until the service loader is {@linkplain #reload() reloaded}.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class ServiceLoaderSaslServerFactory implements SaslServerFactory {
     private final ServiceLoader<SaslServerFactory> loader;
+    private volatile SaslServerFactoryIndex index;
 
     /**
      * Construct a new instance.
@@ -59,43 +62,57 @@ public final class ServiceLoaderSaslServerFactory implements SaslServerFactory {
     }
 
     public SaslServer createSaslServer(final String mechanism, final String protocol, final String serverName, final Map<String, ?> props, final CallbackHandler cbh) throws SaslException {
-        synchronized (loader) {
-            final Iterator<SaslServerFactory> iterator = loader.iterator();
-            SaslServerFactory serverFactory;
-            SaslServer saslServer;
-            for (;;) try {
-                // Service loader iterators can blow up in various ways; that's why the loop is structured this way
-                if (! iterator.hasNext()) {
-                    break;
-                }
-                serverFactory = iterator.next();
-                // let SaslException bubble up
-                saslServer = serverFactory.createSaslServer(mechanism, protocol, serverName, props, cbh);
-                if (saslServer != null) {
-                    return saslServer;
-                }
-            } catch (ServiceConfigurationError ignored) {}
-            return null;
+        final SaslServerFactoryIndex index = getIndex();
+        final BitSet candidates = index.getCandidates(mechanism);
+        SaslServer saslServer;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            // let SaslException bubble up
+            saslServer = index.getFactory(i).createSaslServer(mechanism, protocol, serverName, props, cbh);
+            if (saslServer != null) {
+                return saslServer;
+            }
         }
+        return null;
     }
 
     public String[] getMechanismNames(final Map<String, ?> props) {
-        synchronized (loader){
-            final Set<String> set = new LinkedHashSet<>();
-            final Iterator<SaslServerFactory> iterator = loader.iterator();
-            SaslServerFactory serverFactory;
-            for (; ; )
-                try {
-                    // Service loader iterators can blow up in various ways; that's why the loop is structured this way
-                    if (!iterator.hasNext()) {
-                        break;
-                    }
-                    serverFactory = iterator.next();
-                    // let SaslException bubble up
-                    Collections.addAll(set, serverFactory.getMechanismNames(props));
-                } catch (ServiceConfigurationError ignored) {
+        final SaslServerFactoryIndex index = getIndex();
+        final Set<String> set = new LinkedHashSet<>();
+        for (int i = 0; i < index.size(); i++) {
+            Collections.addAll(set, index.getFactory(i).getMechanismNames(props));
+        }
+        return set.toArray(new String[set.size()]);
+    }
+
+    /**
+     * Reload the service loader, the factories it finds are indexed again the next time a mechanism is requested.
+     */
+    public void reload() {
+        synchronized (loader) {
+            loader.reload();
+            index = null;
+        }
+    }
+
+    private SaslServerFactoryIndex getIndex() {
+        SaslServerFactoryIndex index = this.index;
+        if (index == null) {
+            synchronized (loader) {
+                index = this.index;
+                if (index == null) {
+                    index = new SaslServerFactoryIndex();
+                    final Iterator<SaslServerFactory> iterator = loader.iterator();
+                    for (;;) try {
+                        // Service loader iterators can blow up in various ways; that's why the loop is structured this way
+                        if (! iterator.hasNext()) {
+                            break;
+                        }
+                        index.add(iterator.next(), null);
+                    } catch (ServiceConfigurationError ignored) {}
+                    this.index = index;
                 }
-            return set.toArray(new String[set.size()]);
+            }
         }
+        return index;
     }
 }
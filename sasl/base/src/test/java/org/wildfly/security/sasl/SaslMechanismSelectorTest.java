@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.sasl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.Test;
+
+/**
+ * Tests of the selections cached by {@link SaslMechanismSelector#apply}, which must be the same as the mechanisms supplied by
+ * {@link SaslMechanismSelector#createMechanismSupplier}.
+ */
+public class SaslMechanismSelectorTest {
+
+    private static final String[] NAMES = { "PLAIN", "DIGEST-MD5", "SCRAM-SHA-1", "SCRAM-SHA-256-PLUS", "EXTERNAL",
+            "GSSAPI", "ANONYMOUS", "OAUTHBEARER", "JBOSS-LOCAL-USER", "OTHER" };
+    private static final String[] SELECTORS = { "", "#ALL", "PLAIN", "#ALL -PLAIN", "SCRAM-SHA-1 #ALL",
+            "(#TLS ? PLAIN : #FAMILY(SCRAM)) #ALL", "#FAMILY(SCRAM) #HASH(SHA-256) PLAIN", "#ALL -#PLUS -#MUTUAL", "#ALL -#FAMILY(DIGEST)" };
+
+    private static final SSLSession SSL_SESSION = (SSLSession) Proxy.newProxyInstance(SaslMechanismSelectorTest.class.getClassLoader(),
+            new Class<?>[] { SSLSession.class }, (proxy, method, args) -> null);
+
+    private static List<String> supplied(SaslMechanismSelector selector, List<String> mechNames, SSLSession sslSession) {
+        List<String> result = new ArrayList<>();
+        Supplier<String> supplier = selector.createMechanismSupplier(mechNames, sslSession);
+        for (String name = supplier.get(); name != null; name = supplier.get()) {
+            result.add(name);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameResultsAsSupplier() {
+        Random random = new Random(2468);
+        for (String string : SELECTORS) {
+            SaslMechanismSelector selector = SaslMechanismSelector.fromString(string);
+            for (int check = 0; check < 200; check++) {
+                List<String> mechNames = new ArrayList<>(Arrays.asList(NAMES));
+                Collections.shuffle(mechNames, random);
+                mechNames = new ArrayList<>(mechNames.subList(0, random.nextInt(4)));
+                SSLSession sslSession = random.nextBoolean() ? SSL_SESSION : null;
+                String message = string + " " + mechNames + " " + (sslSession != null);
+                assertEquals(message, supplied(selector, mechNames, sslSession), selector.apply(mechNames, sslSession));
+                assertEquals(message, supplied(selector, mechNames, sslSession), selector.apply(new LinkedHashSet<>(mechNames), sslSession));
+            }
+        }
+    }
+
+    @Test
+    public void testSelectionNotShared() {
+        SaslMechanismSelector selector = SaslMechanismSelector.ALL;
+        List<String> mechNames = new ArrayList<>(Arrays.asList("PLAIN", "EXTERNAL", "GSSAPI"));
+        List<String> first = selector.apply(mechNames, null);
+        first.remove("PLAIN");
+        mechNames.remove("GSSAPI");
+
+        List<String> second = selector.apply(Arrays.asList("PLAIN", "EXTERNAL", "GSSAPI"), null);
+        assertNotSame(first, second);
+        assertEquals(Arrays.asList("PLAIN", "EXTERNAL", "GSSAPI"), second);
+        assertEquals(Arrays.asList("PLAIN", "EXTERNAL"), selector.apply(mechNames, null));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.sasl.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.security.Provider;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.sasl.SaslServer;
+import javax.security.sasl.SaslServerFactory;
+
+import org.junit.Test;
+import org.wildfly.security.sasl.WildFlySasl;
+
+/**
+ * Tests of the index of the factories used by {@link SecurityProviderSaslServerFactory}.
+ */
+public class SecurityProviderSaslServerFactoryTest {
+
+    private static final AtomicInteger created = new AtomicInteger();
+    private static final AtomicInteger queried = new AtomicInteger();
+
+    private static final Map<String, ?> NO_PROPS = Collections.emptyMap();
+
+    @Test
+    public void testFactoriesIndexedByMechanism() throws Exception {
+        TestProvider first = new TestProvider("first", FooFactory.class);
+        TestProvider second = new TestProvider("second", FooBarFactory.class);
+        Provider[][] providers = { { first, null, second } };
+        SecurityProviderSaslServerFactory factory = new SecurityProviderSaslServerFactory(() -> providers[0].clone());
+        created.set(0);
+
+        assertEquals("FOO FooFactory", create(factory, "FOO", NO_PROPS));
+        assertEquals("BAR FooBarFactory", create(factory, "BAR", NO_PROPS));
+        assertNull(factory.createSaslServer("BAZ", "test", "localhost", NO_PROPS, null));
+        assertArrayEquals(new String[] { "FOO", "BAR" }, factory.getMechanismNames(NO_PROPS));
+        assertEquals(2, created.get());
+
+        // the mechanism filter is still applied for each provider
+        BiPredicate<String, Provider> filter = (mechanism, provider) -> provider != first;
+        Map<String, ?> props = Collections.singletonMap(SaslFactories.PROVIDER_FILTER_KEY, filter);
+        assertEquals("FOO FooBarFactory", create(factory, "FOO", props));
+        assertEquals(2, created.get());
+
+        // a change of the providers or of their services rebuilds the index
+        providers[0] = new Provider[] { second, first };
+        assertEquals("FOO FooBarFactory", create(factory, "FOO", NO_PROPS));
+        assertEquals(4, created.get());
+        first.add(AnyFactory.class);
+        assertEquals("ANY AnyFactory", create(factory, "ANY", NO_PROPS));
+        assertEquals(7, created.get());
+    }
+
+    @Test
+    public void testFactoryWithoutMechanismNamesAlwaysCandidate() throws Exception {
+        SecurityProviderSaslServerFactory factory = new SecurityProviderSaslServerFactory(() -> new Provider[] {
+                new TestProvider("first", AnyFactory.class, FooFactory.class) });
+        assertEquals("ANY AnyFactory", create(factory, "ANY", NO_PROPS));
+        assertEquals("FOO FooFactory", create(factory, "FOO", NO_PROPS));
+    }
+
+    @Test
+    public void testMechanismsQueriedOnce() throws Exception {
+        TestProvider provider = new TestProvider("fixed", FooFactory.class);
+        SecurityProviderSaslServerFactory factory = new SecurityProviderSaslServerFactory(() -> new Provider[] { provider });
+        queried.set(0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("FOO FooFactory", create(factory, "FOO", NO_PROPS));
+        }
+        assertEquals(1, queried.get());
+    }
+
+    private static String create(SaslServerFactory factory, String mechanism, Map<String, ?> props) throws Exception {
+        return factory.createSaslServer(mechanism, "test", "localhost", props, null).getMechanismName();
+    }
+
+    static final class TestProvider extends Provider {
+        private static final long serialVersionUID = 1L;
+
+        TestProvider(String name, Class<?>... factories) {
+            super(name, 1.0, name);
+            for (Class<?> factory : factories) {
+                add(factory);
+            }
+        }
+
+        void add(Class<?> factory) {
+            putService(new Service(this, SaslServerFactory.class.getSimpleName(), factory.getSimpleName(), factory.getName(), null, null));
+        }
+    }
+
+    public abstract static class TestFactory implements SaslServerFactory {
+        private final String[] mechanisms;
+
+        TestFactory(String... mechanisms) {
+            this.mechanisms = mechanisms;
+            created.incrementAndGet();
+        }
+
+        public SaslServer createSaslServer(String mechanism, String protocol, String serverName, Map<String, ?> props, CallbackHandler cbh) {
+            for (String name : mechanisms.length == 0 ? new String[] { "ANY" } : mechanisms) {
+                if (name.equals(mechanism)) {
+                    final String mechanismName = mechanism + " " + getClass().getSimpleName();
+                    return (SaslServer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { SaslServer.class },
+                            (proxy, method, args) -> mechanismName);
+                }
+            }
+            return null;
+        }
+
+        public String[] getMechanismNames(Map<String, ?> props) {
+            if ("true".equals(props.get(WildFlySasl.MECHANISM_QUERY_ALL))) {
+                queried.incrementAndGet();
+            }
+            return mechanisms.clone();
+        }
+    }
+
+    public static final class FooFactory extends TestFactory {
+        public FooFactory() {
+            super("FOO");
+        }
+    }
+
+    public static final class FooBarFactory extends TestFactory {
+        public FooBarFactory() {
+            super("FOO", "BAR");
+        }
+    }
+
+    public static final class AnyFactory extends TestFactory {
+        public AnyFactory() {
+            super();
+        }
+    }
+}
@@ -47,7 +47,7 @@ import org.wildfly.security.auth.server.RealmUnavailableException;
 @MessageLogger(projectCode = "ELY", length = 5)
 @ValidIdRanges({
     @ValidIdRange(min = 1066, max = 1077),
-    @ValidIdRange(min = 4001, max = 4031),
+    @ValidIdRange(min = 4001, max = 4033),
     @ValidIdRange(min = 5015, max = 5017),
     @ValidIdRange(min = 15000, max = 15999)
 })
@@ -179,6 +179,13 @@ interface ElytronMessages extends BasicLogger {
     @Message(id = 4031, value = "TrustManagerFactory algorithm [%s] does not support certificate revocation")
     IllegalStateException sslErrorCreatingRevocationTrustManager(String name, @Cause Throwable cause);
 
+    @Message(id = 4032, value = "Certificate [%s] has been revoked by its issuer [%s]")
+    CertificateException certificateRevoked(String subject, String issuer);
+
+    @LogMessage(level = WARN)
+    @Message(id = 4033, value = "Unable to refresh the certificate revocation lists")
+    void unableToRefreshCrls(@Cause Throwable cause);
+
     @Message(id = 5015, value = "Unexpected character U+%04x at offset %d of mechanism selection string \"%s\"")
     IllegalArgumentException mechSelectorUnexpectedChar(int codePoint, long offset, String string);
 
@@ -22,11 +22,14 @@ import static org.wildfly.security.ssl.ElytronMessages.tls;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
 
+import javax.net.ssl.ExtendedSSLSession;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 
 final class JDKSpecific {
@@ -50,6 +53,10 @@ final class JDKSpecific {
     private static final Method SSLSOCKET_SET_HANDSHAKE_APPLICATION_PROTOCOL_SELECTOR = getMethodOrNull(SSLSocket.class, "setHandshakeApplicationProtocolSelector", BiFunction.class);
     private static final Method SSLSOCKET_GET_HANDSHAKE_APPLICATION_PROTOCOL_SELECTOR = getMethodOrNull(SSLSocket.class, "getHandshakeApplicationProtocolSelector");
 
+    // ExtendedSSLSession Methods
+
+    private static final Method EXTENDEDSSLSESSION_GET_STATUS_RESPONSES = getMethodOrNull(ExtendedSSLSession.class, "getStatusResponses");
+
     private static Method getMethodOrNull(Class clazz, String methodName, Class... parameterTypes) {
         try {
         return clazz.getMethod(methodName, parameterTypes);
@@ -226,4 +233,26 @@ final class JDKSpecific {
         throw new UnsupportedOperationException();
     }
 
+    /*
+     * SSLSession
+     */
+
+    /**
+     * Get the stapled OCSP responses received during the handshake, on java 8 no responses are ever available.
+     *
+     * @param session the handshake session (may be {@code null})
+     * @return the DER encoded OCSP responses, one per certificate of the peer's chain (not {@code null})
+     */
+    static List<byte[]> getStatusResponses(SSLSession session) {
+        if (EXTENDEDSSLSESSION_GET_STATUS_RESPONSES != null && session instanceof ExtendedSSLSession) {
+            try {
+                return (List<byte[]>) EXTENDEDSSLSESSION_GET_STATUS_RESPONSES.invoke(session);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                return Collections.emptyList();
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
 }
@@ -17,54 +17,258 @@ package org.wildfly.security.ssl;
 
 import static org.wildfly.security.ssl.ElytronMessages.log;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIMatcher;
 import javax.net.ssl.SNIServerName;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.StandardConstants;
 
+/**
+ * <p>Selects the {@link SSLContext} to use for a connection based on the host names requested through SNI.
+ *
+ * <p>Host names added with {@link Builder#addMatch(String, SSLContext)} are regular expressions, names containing a
+ * {@code *} are wildcards which are only considered when none of the other names match. Within each group the name added
+ * first wins.
+ *
+ * <p>So that selection does not have to evaluate every expression in turn, names consisting only of host name characters
+ * are looked up in a hash table, with any {@code .} taken to be a literal dot, and names consisting of {@code .*},
+ * {@code .+}, {@code [^.]*} or {@code [^.]+} followed by {@code \.} and such a host name are looked up in a tree of the
+ * reversed host name labels. Only the remaining names are evaluated as regular expressions.
+ */
 public class SNIContextMatcher {
 
     private final SSLContext defaultContext;
-    private final Map<SNIMatcher, SSLContext> wildcards;
-    private final Map<SNIMatcher, SSLContext> exacts;
+    private final HostTable wildcards;
+    private final HostTable exacts;
 
-    SNIContextMatcher(SSLContext defaultContext, Map<SNIMatcher, SSLContext> wildcards, Map<SNIMatcher, SSLContext> exacts) {
+    SNIContextMatcher(SSLContext defaultContext, HostTable wildcards, HostTable exacts) {
         this.defaultContext = defaultContext;
         this.wildcards = wildcards;
         this.exacts = exacts;
     }
 
     public SSLContext getContext(List<SNIServerName> servers) {
-        for (Map.Entry<SNIMatcher, SSLContext> entry : exacts.entrySet()) {
-            for (SNIServerName server : servers) {
-                if (entry.getKey().matches(server)) {
-                    return entry.getValue();
+        String[] hostNames = new String[servers.size()];
+        for (int i = 0; i < hostNames.length; i++) {
+            hostNames[i] = getHostName(servers.get(i));
+        }
+        SSLContext context = exacts.getContext(servers, hostNames);
+        if (context == null) {
+            context = wildcards.getContext(servers, hostNames);
+        }
+        return context != null ? context : defaultContext;
+    }
+
+    /**
+     * Get the context for the host name found by {@link SNISSLExplorer#scan(java.nio.ByteBuffer, SNISSLExplorer.ClientHelloInfo)}.
+     *
+     * @param clientHello the scanned ClientHello
+     * @return the context to use
+     * @throws IllegalArgumentException if the requested host name is not valid
+     */
+    SSLContext getContext(SNISSLExplorer.ClientHelloInfo clientHello) {
+        String hostName = clientHello.getHostName();
+        if (hostName != null) {
+            hostName = hostName.toLowerCase(Locale.ROOT);
+        }
+        // the server names are only needed if any names have to be evaluated as expressions
+        List<SNIServerName> servers = exacts.hasExpressions() || wildcards.hasExpressions() ? clientHello.getServerNames() : null;
+        SSLContext context = exacts.getContext(servers, hostName);
+        if (context == null) {
+            context = wildcards.getContext(servers, hostName);
+        }
+        return context != null ? context : defaultContext;
+    }
+
+    public SSLContext getDefaultContext() {
+        return defaultContext;
+    }
+
+    private static String getHostName(SNIServerName server) {
+        if (server.getType() != StandardConstants.SNI_HOST_NAME) {
+            return null;
+        }
+        try {
+            SNIHostName hostName = server instanceof SNIHostName ? (SNIHostName) server : new SNIHostName(server.getEncoded());
+            // expressions are matched case insensitively
+            return hostName.getAsciiName().toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The names of one precedence group, indexed where possible.
+     */
+    static final class HostTable {
+
+        // the kinds of indexed wildcards, in the order of their prefixes
+        private static final int ANY = 0;
+        private static final int ANY_NONEMPTY = 1;
+        private static final int LABEL = 2;
+        private static final int LABEL_NONEMPTY = 3;
+        private static final String[] WILDCARD_PREFIXES = { ".*\\.", ".+\\.", "[^.]*\\.", "[^.]+\\." };
+
+        private final Map<String, Entry> names = new HashMap<>();
+        private final Node suffixes = new Node();
+        private final List<Entry> expressions = new ArrayList<>();
+        private int size;
+
+        void add(String name, SSLContext context) {
+            SNIMatcher matcher = SNIHostName.createSNIMatcher(name);
+            Entry entry = new Entry(size++, matcher, context);
+            String hostName = toHostName(name, 0);
+            if (hostName != null) {
+                names.putIfAbsent(hostName, entry);
+                return;
+            }
+            for (int kind = 0; kind < WILDCARD_PREFIXES.length; kind++) {
+                if (name.startsWith(WILDCARD_PREFIXES[kind])) {
+                    String suffix = toHostName(name, WILDCARD_PREFIXES[kind].length());
+                    if (suffix != null) {
+                        Node node = suffixes;
+                        int end = suffix.length();
+                        while (end > 0) {
+                            int start = suffix.lastIndexOf('.', end - 1) + 1;
+                            node = node.children.computeIfAbsent(suffix.substring(start, end), label -> new Node());
+                            end = start - 1;
+                        }
+                        if (node.wildcards[kind] == null) {
+                            node.wildcards[kind] = entry;
+                        }
+                        return;
+                    }
+                    break;
                 }
             }
+            expressions.add(entry);
+        }
+
+        boolean hasExpressions() {
+            return ! expressions.isEmpty();
+        }
+
+        SSLContext getContext(List<SNIServerName> servers, String[] hostNames) {
+            Entry best = null;
+            for (String hostName : hostNames) {
+                best = first(best, find(hostName));
+            }
+            return getContext(servers, best);
+        }
+
+        SSLContext getContext(List<SNIServerName> servers, String hostName) {
+            return getContext(servers, find(hostName));
         }
-        for (Map.Entry<SNIMatcher, SSLContext> entry : wildcards.entrySet()) {
-            for (SNIServerName server : servers) {
-                if (entry.getKey().matches(server)) {
-                    return entry.getValue();
+
+        private Entry find(String hostName) {
+            return hostName != null ? first(names.get(hostName), findWildcard(hostName)) : null;
+        }
+
+        private SSLContext getContext(List<SNIServerName> servers, Entry best) {
+            // expressions added before the best indexed match take precedence over it
+            for (Entry entry : expressions) {
+                if (best != null && entry.index > best.index) {
+                    break;
+                }
+                for (SNIServerName server : servers) {
+                    if (entry.matcher.matches(server)) {
+                        return entry.context;
+                    }
                 }
             }
+            return best != null ? best.context : null;
+        }
+
+        private Entry findWildcard(String hostName) {
+            Entry best = null;
+            Node node = suffixes;
+            int end = hostName.length();
+            while (end > 0) {
+                int start = hostName.lastIndexOf('.', end - 1) + 1;
+                node = node.children.get(hostName.substring(start, end));
+                if (node == null || start == 0) {
+                    break;
+                }
+                // the host name is now the remaining prefix followed by a dot and the suffix represented by this node
+                int prefixLength = start - 1;
+                boolean singleLabel = hostName.lastIndexOf('.', prefixLength - 1) == -1;
+                best = first(best, node.wildcards[ANY]);
+                if (prefixLength > 0) {
+                    best = first(best, node.wildcards[ANY_NONEMPTY]);
+                }
+                if (singleLabel) {
+                    best = first(best, node.wildcards[LABEL]);
+                    if (prefixLength > 0) {
+                        best = first(best, node.wildcards[LABEL_NONEMPTY]);
+                    }
+                }
+                end = prefixLength;
+            }
+            return best;
+        }
+
+        private static Entry first(Entry a, Entry b) {
+            return a == null || b != null && b.index < a.index ? b : a;
+        }
+
+        /**
+         * Get the host name matched by the given expression if it matches exactly one.
+         *
+         * @param expression the expression
+         * @param offset the offset to start from
+         * @return the lower case host name, or {@code null} if the expression uses anything other than host name characters
+         */
+        private static String toHostName(String expression, int offset) {
+            StringBuilder b = new StringBuilder(expression.length() - offset);
+            for (int i = offset; i < expression.length(); i++) {
+                char c = expression.charAt(i);
+                if (c == '\\' && i + 1 < expression.length() && expression.charAt(i + 1) == '.') {
+                    c = expression.charAt(++i);
+                } else if (! (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_' || c == '.')) {
+                    return null;
+                }
+                if (c == '.' && (b.length() == 0 || b.charAt(b.length() - 1) == '.')) {
+                    return null;
+                }
+                b.append(Character.toLowerCase(c));
+            }
+            if (b.length() == 0 || b.charAt(b.length() - 1) == '.') {
+                return null;
+            }
+            return b.toString();
         }
-        return defaultContext;
     }
 
-    public SSLContext getDefaultContext() {
-        return defaultContext;
+    private static final class Entry {
+
+        final int index;
+        final SNIMatcher matcher;
+        final SSLContext context;
+
+        Entry(int index, SNIMatcher matcher, SSLContext context) {
+            this.index = index;
+            this.matcher = matcher;
+            this.context = context;
+        }
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        final Entry[] wildcards = new Entry[4];
     }
 
     public static class Builder {
 
         private SSLContext defaultContext;
-        private final Map<SNIMatcher, SSLContext> wildcards = new LinkedHashMap<>();
-        private final Map<SNIMatcher, SSLContext> exacts = new LinkedHashMap<>();
+        private final HostTable wildcards = new HostTable();
+        private final HostTable exacts = new HostTable();
 
         public SNIContextMatcher build() {
             if(defaultContext == null) {
@@ -84,9 +288,9 @@ public class SNIContextMatcher {
 
         public Builder addMatch(String name, SSLContext context) {
             if (name.contains("*")) {
-                wildcards.put(SNIHostName.createSNIMatcher(name), context);
+                wildcards.add(name, context);
             } else {
-                exacts.put(SNIHostName.createSNIMatcher(name), context);
+                exacts.add(name, context);
             }
             return this;
         }
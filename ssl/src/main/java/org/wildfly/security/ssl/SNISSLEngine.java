@@ -21,12 +21,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.security.Principal;
 import java.security.cert.Certificate;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
-import javax.net.ssl.SNIServerName;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
@@ -211,6 +209,8 @@ class SNISSLEngine extends SSLEngine implements SelectingContext {
         private int packetBufferSize = SNISSLExplorer.RECORD_HEADER_SIZE;
         private String[] enabledSuites;
         private String[] enabledProtocols;
+        // reused while more of the ClientHello is awaited, released with this state once the context is selected
+        private SNISSLExplorer.ClientHelloInfo clientHello;
 
         private final SSLSession handshakeSession = new SSLSession() {
             public byte[] getId() {
@@ -314,17 +314,20 @@ class SNISSLEngine extends SSLEngine implements SelectingContext {
             SSLEngine next;
             final int mark = src.position();
             try {
-                if (src.remaining() < SNISSLExplorer.RECORD_HEADER_SIZE) {
-                    packetBufferSize = SNISSLExplorer.RECORD_HEADER_SIZE;
-                    return UNDERFLOW_UNWRAP;
+                SNISSLExplorer.ClientHelloInfo clientHello = this.clientHello;
+                if (clientHello == null) {
+                    clientHello = this.clientHello = new SNISSLExplorer.ClientHelloInfo();
                 }
-                final int requiredSize = SNISSLExplorer.getRequiredSize(src);
-                if (src.remaining() < requiredSize) {
-                    packetBufferSize = requiredSize;
-                    return UNDERFLOW_UNWRAP;
+                final SSLContext sslContext;
+                try {
+                    if (! SNISSLExplorer.scan(src, clientHello)) {
+                        packetBufferSize = clientHello.getRequiredSize();
+                        return UNDERFLOW_UNWRAP;
+                    }
+                    sslContext = selector.getContext(clientHello);
+                } finally {
+                    clientHello.clear();
                 }
-                List<SNIServerName> names = SNISSLExplorer.explore(src);
-                SSLContext sslContext = selector.getContext(names);
                 if (sslContext == null) {
                     // no SSL context is available
                     throw log.noSNIContextForSslConnection();
@@ -44,6 +44,7 @@ import javax.net.ssl.StandardConstants;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -221,6 +222,187 @@ final class SNISSLExplorer {
         return explore(byteBuffer);
     }
 
+    /**
+     * The largest ClientHello accepted by {@link #scan(ByteBuffer, ClientHelloInfo)}.
+     */
+    static final int MAX_CLIENT_HELLO_SIZE = 0x10000;
+
+    /**
+     * Scan the ClientHello at the position of the given buffer for the server name and application protocols.
+     * <P>
+     * Unlike {@link #explore(ByteBuffer)}, this method reads the ClientHello in place and only records where the values
+     * were found in the given holder, so no objects are created. The ClientHello may span multiple handshake records, up to
+     * {@link #MAX_CLIENT_HELLO_SIZE} bytes.
+     * <P>
+     * This method accesses the {@code source} parameter in read-only
+     * mode, and does not update the buffer's properties such as capacity,
+     * limit, position, and mark values. The buffer must not be modified
+     * while the holder is in use.
+     *
+     * @param  source
+     *         a {@link ByteBuffer} containing
+     *         inbound network data for an SSL/TLS connection.
+     * @param  info
+     *         the holder to reset and record the values in
+     *
+     * @throws SSLException on network data error
+     *
+     * @return {@code true} if the ClientHello was scanned, {@code false} if
+     *         more data is required, in which case the required size is
+     *         available from {@link ClientHelloInfo#getRequiredSize()}
+     */
+    static boolean scan(ByteBuffer source, ClientHelloInfo info) throws SSLException {
+        info.clear();
+        final int start = source.position();
+        final int limit = source.limit();
+
+        if (limit - start < RECORD_HEADER_SIZE) {
+            info.requiredSize = RECORD_HEADER_SIZE;
+            return false;
+        }
+        byte firstByte = source.get(start);
+        if ((firstByte & 0x80) != 0 && source.get(start + 2) == 0x01) {
+            // looks like a V2ClientHello, which has no extensions
+            return true;
+        } else if (firstByte != 22) {   // 22: handshake record
+            throw log.notHandshakeRecord();
+        }
+
+        // find the records holding the whole ClientHello before reading it
+        int recordStart = start;
+        int handshakeBytes = 0;
+        int handshakeSize = -1;
+        while (handshakeSize == -1 || handshakeBytes < handshakeSize) {
+            if (limit - recordStart < RECORD_HEADER_SIZE) {
+                info.requiredSize = recordStart - start + RECORD_HEADER_SIZE;
+                return false;
+            }
+            if (source.get(recordStart) != 22) {
+                throw log.invalidHandshakeRecord();
+            }
+            int recordEnd = recordStart + RECORD_HEADER_SIZE + ((source.get(recordStart + 3) & 0xFF) << 8 | source.get(recordStart + 4) & 0xFF);
+            if (recordEnd > limit) {
+                info.requiredSize = recordEnd - start;
+                return false;
+            }
+            handshakeBytes += recordEnd - recordStart - RECORD_HEADER_SIZE;
+            if (handshakeSize == -1 && handshakeBytes >= 4) {  // 4: handshake header size
+                info.reset(source, start, 4);
+                if (info.getInt8() != 0x01) {   // 0x01: client_hello message
+                    throw log.expectedClientHello();
+                }
+                handshakeSize = info.getInt24() + 4;
+                if (handshakeSize > MAX_CLIENT_HELLO_SIZE) {
+                    throw log.invalidHandshakeRecord();
+                }
+            }
+            recordStart = recordEnd;
+        }
+
+        info.reset(source, start, handshakeSize);
+        try {
+            info.skip(4);
+            scanClientHello(info);
+        } catch (BufferUnderflowException ignored) {
+            throw log.invalidHandshakeRecord();
+        }
+        return true;
+    }
+
+    private static void scanClientHello(ClientHelloInfo info) throws SSLException {
+        info.skip(2 + 32);              // client version and random
+        info.skip(info.getInt8());      // session id
+        info.skip(info.getInt16());     // cipher suites
+        info.skip(info.getInt8());      // compression methods
+
+        if (info.left == 0) {
+            return;
+        }
+        int length = info.getInt16();           // length of extensions
+        while (length > 0) {
+            int extType = info.getInt16();      // extension type
+            int extLen = info.getInt16();       // length of extension data
+
+            if (extType == 0x00) {      // 0x00: type of server name indication
+                scanSNIExt(info, extLen);
+            } else if (extType == 0x10) { // 0x10: type of alpn
+                scanALPN(info, extLen);
+            } else {                    // ignore other extensions
+                info.skip(extLen);
+            }
+
+            length -= extLen + 4;
+        }
+    }
+
+    private static void scanALPN(ClientHelloInfo info, int extLen) throws SSLException {
+        int rem = extLen;
+        if (extLen >= 2) {
+            int listLen = info.getInt16();
+            if (listLen == 0 || listLen + 2 != extLen) {
+                throw log.invalidTlsExt();
+            }
+
+            rem -= 2;
+            info.alpnPosition = info.position;
+            info.alpnRecordEnd = info.recordEnd;
+            info.alpnLength = rem;
+            while (rem > 0) {
+                int len = info.getInt8();
+                if (len > rem) {
+                    throw log.notEnoughData();
+                }
+                info.skip(len);
+
+                rem -= len + 1;
+            }
+        }
+    }
+
+    private static void scanSNIExt(ClientHelloInfo info, int extLen) throws SSLException {
+        int remains = extLen;
+        if (extLen >= 2) {     // "server_name" extension in ClientHello
+            int listLen = info.getInt16();     // length of server_name_list
+            if (listLen == 0 || listLen + 2 != extLen) {
+                throw log.invalidTlsExt();
+            }
+
+            remains -= 2;     // 0x02: the length field of server_name_list
+            while (remains > 0) {
+                int code = info.getInt8();          // name_type
+                int snLen = info.getInt16();        // length field of server name
+                if (snLen > remains) {
+                    throw log.notEnoughData();
+                }
+                // check for duplicated server name type
+                long bit = 1L << (code & 0x3F);
+                if ((info.nameTypes[code >>> 6] & bit) != 0) {
+                    throw log.duplicatedSniServerName(code);
+                }
+                info.nameTypes[code >>> 6] |= bit;
+
+                if (code == StandardConstants.SNI_HOST_NAME) {
+                    if (snLen == 0) {
+                        throw log.emptyHostNameSni();
+                    }
+                    info.hostNamePosition = info.position;
+                    info.hostNameRecordEnd = info.recordEnd;
+                    info.hostNameLength = snLen;
+                }
+                info.skip(snLen);
+
+                remains -= snLen + 3;   // NameType: 1 byte
+                                        // HostName length: 2 bytes
+            }
+        } else if (extLen == 0) {     // "server_name" extension in ServerHello
+            throw log.invalidTlsExt();
+        }
+
+        if (remains != 0) {
+            throw log.invalidTlsExt();
+        }
+    }
+
     /*
      * struct {
      *     uint8 major;
@@ -553,6 +735,186 @@ final class SNISSLExplorer {
         }
     }
 
+    /**
+     * A reusable holder of the values found by {@link #scan(ByteBuffer, ClientHelloInfo)}.
+     * <P>
+     * The values are held as positions within the scanned buffer and are only
+     * converted to objects on request, the holder must be cleared once it is no
+     * longer needed so that the buffer is not retained.
+     */
+    static final class ClientHelloInfo {
+
+        // the read position within the handshake records of the scanned buffer
+        private ByteBuffer source;
+        private int position;
+        private int recordEnd;
+        private int left;
+
+        private int requiredSize;
+        private final long[] nameTypes = new long[4];
+        private int hostNamePosition;
+        private int hostNameRecordEnd;
+        private int hostNameLength;
+        private int alpnPosition;
+        private int alpnRecordEnd;
+        private int alpnLength;
+
+        private final byte[] scratch = new byte[255];
+
+        /**
+         * Get the number of bytes required from the position of the buffer if the last scan needed more data.
+         *
+         * @return the required number of bytes
+         */
+        int getRequiredSize() {
+            return requiredSize;
+        }
+
+        /**
+         * Determine whether the ClientHello requested a host name.
+         *
+         * @return {@code true} if a host name was requested, {@code false} otherwise
+         */
+        boolean hasHostName() {
+            return hostNameLength != 0;
+        }
+
+        /**
+         * Get the requested host name, in the form returned by {@link SNIHostName#getAsciiName()}.
+         *
+         * @return the host name, or {@code null} if none was requested
+         * @throws IllegalArgumentException if the requested host name is not valid
+         */
+        String getHostName() {
+            if (hostNameLength == 0) {
+                return null;
+            }
+            byte[] encoded = hostNameLength <= scratch.length ? scratch : new byte[hostNameLength];
+            read(hostNamePosition, hostNameRecordEnd, encoded, 0, hostNameLength);
+            if (isAsciiHostName(encoded, hostNameLength)) {
+                return new String(encoded, 0, hostNameLength, StandardCharsets.US_ASCII);
+            }
+            // let SNIHostName decode and validate anything else
+            return new SNIHostName(Arrays.copyOf(encoded, hostNameLength)).getAsciiName();
+        }
+
+        /**
+         * Get the requested server names, only the host name is included.
+         *
+         * @return the server names
+         * @throws IllegalArgumentException if the requested host name is not valid
+         */
+        List<SNIServerName> getServerNames() {
+            String hostName = getHostName();
+            return hostName != null ? Collections.singletonList(new SNIHostName(hostName)) : Collections.emptyList();
+        }
+
+        /**
+         * Get the application protocols offered through ALPN.
+         *
+         * @return the application protocols
+         */
+        List<String> getApplicationProtocols() {
+            if (alpnLength == 0) {
+                return Collections.emptyList();
+            }
+            byte[] list = new byte[alpnLength];
+            read(alpnPosition, alpnRecordEnd, list, 0, alpnLength);
+            List<String> protocols = new ArrayList<>();
+            for (int i = 0; i < list.length; i += 1 + (list[i] & 0xFF)) {
+                protocols.add(new String(list, i + 1, list[i] & 0xFF, StandardCharsets.UTF_8));
+            }
+            return protocols;
+        }
+
+        /**
+         * Forget the scanned buffer and the values found in it.
+         */
+        void clear() {
+            source = null;
+            requiredSize = 0;
+            Arrays.fill(nameTypes, 0);
+            hostNameLength = 0;
+            alpnLength = 0;
+        }
+
+        void reset(ByteBuffer source, int start, int length) {
+            this.source = source;
+            position = start + RECORD_HEADER_SIZE;
+            recordEnd = position + ((source.get(start + 3) & 0xFF) << 8 | source.get(start + 4) & 0xFF);
+            left = length;
+        }
+
+        int getInt8() {
+            if (left == 0) {
+                throw new BufferUnderflowException();
+            }
+            if (position == recordEnd) {
+                // continue with the fragment of the next record, the records were checked when the ClientHello was located
+                recordEnd = position + RECORD_HEADER_SIZE + ((source.get(position + 3) & 0xFF) << 8 | source.get(position + 4) & 0xFF);
+                position += RECORD_HEADER_SIZE;
+                return getInt8();
+            }
+            left--;
+            return source.get(position++) & 0xFF;
+        }
+
+        int getInt16() {
+            return getInt8() << 8 | getInt8();
+        }
+
+        int getInt24() {
+            return getInt8() << 16 | getInt8() << 8 | getInt8();
+        }
+
+        void skip(int length) {
+            if (length > left) {
+                throw new BufferUnderflowException();
+            }
+            left -= length;
+            while (length > recordEnd - position) {
+                length -= recordEnd - position;
+                position = recordEnd;
+                recordEnd = position + RECORD_HEADER_SIZE + ((source.get(position + 3) & 0xFF) << 8 | source.get(position + 4) & 0xFF);
+                position += RECORD_HEADER_SIZE;
+            }
+            position += length;
+        }
+
+        private void read(int position, int recordEnd, byte[] target, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (position == recordEnd) {
+                    recordEnd = position + RECORD_HEADER_SIZE + ((source.get(position + 3) & 0xFF) << 8 | source.get(position + 4) & 0xFF);
+                    position += RECORD_HEADER_SIZE;
+                }
+                target[offset + i] = source.get(position++);
+            }
+        }
+
+        /*
+         * Determine whether the name is one which SNIHostName would accept unchanged, i.e. labels of 1 to 63 letters,
+         * digits and hyphens which do not start or end with a hyphen.
+         */
+        private static boolean isAsciiHostName(byte[] name, int length) {
+            int labelStart = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || name[i] == '.') {
+                    int labelLength = i - labelStart;
+                    if (labelLength == 0 || labelLength > 63 || name[labelStart] == '-' || name[i - 1] == '-') {
+                        return false;
+                    }
+                    labelStart = i + 1;
+                } else {
+                    byte b = name[i];
+                    if (! (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '-')) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
     static final class UnknownServerName extends SNIServerName {
         UnknownServerName(int code, byte[] encoded) {
             super(code, encoded);
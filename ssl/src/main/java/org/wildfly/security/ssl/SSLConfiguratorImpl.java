@@ -18,6 +18,11 @@
 
 package org.wildfly.security.ssl;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
@@ -34,6 +39,8 @@ final class SSLConfiguratorImpl implements SSLConfigurator {
     private final boolean needClientAuth;
     private final boolean useCipherSuitesOrder;
     private final boolean clientMode;
+    private final EvaluationCache protocols;
+    private final EvaluationCache cipherSuites;
 
     /**
      * Construct a new instance in server mode.
@@ -50,6 +57,8 @@ final class SSLConfiguratorImpl implements SSLConfigurator {
         this.wantClientAuth = wantClientAuth;
         this.needClientAuth = needClientAuth;
         clientMode = false;
+        this.protocols = new EvaluationCache(protocolSelector::evaluate);
+        this.cipherSuites = new EvaluationCache(cipherSuiteSelector::evaluate);
     }
 
     /**
@@ -65,13 +74,37 @@ final class SSLConfiguratorImpl implements SSLConfigurator {
         this.wantClientAuth = false;
         this.needClientAuth = false;
         clientMode = true;
+        this.protocols = new EvaluationCache(protocolSelector::evaluate);
+        this.cipherSuites = new EvaluationCache(cipherSuiteSelector::evaluate);
+    }
+
+    /**
+     * Get the protocols the protocol selector enables out of the given protocols. The result is cached, so the selector is
+     * only evaluated once for each distinct set of supported protocols.
+     *
+     * @param supportedProtocols the supported protocols
+     * @return the enabled protocols
+     */
+    String[] evaluateProtocols(String[] supportedProtocols) {
+        return protocols.evaluate(supportedProtocols);
+    }
+
+    /**
+     * Get the cipher suites the cipher suite selector enables out of the given cipher suites. The result is cached, so the
+     * selector is only evaluated once for each distinct set of supported cipher suites.
+     *
+     * @param supportedCipherSuites the supported cipher suites
+     * @return the enabled cipher suites
+     */
+    String[] evaluateCipherSuites(String[] supportedCipherSuites) {
+        return cipherSuites.evaluate(supportedCipherSuites);
     }
 
     void configure(SSLParameters params, String[] supportedProtocols, String[] supportedCipherSuites) {
         Assert.checkNotNullParam("supportedProtocols", supportedProtocols);
         Assert.checkNotNullParam("supportedCipherSuites", supportedCipherSuites);
-        params.setProtocols(protocolSelector.evaluate(supportedProtocols));
-        params.setCipherSuites(cipherSuiteSelector.evaluate(supportedCipherSuites));
+        params.setProtocols(evaluateProtocols(supportedProtocols));
+        params.setCipherSuites(evaluateCipherSuites(supportedCipherSuites));
         params.setUseCipherSuitesOrder(useCipherSuitesOrder);
         params.setWantClientAuth(wantClientAuth); // unsets need
         if (needClientAuth) params.setNeedClientAuth(needClientAuth); // unsets want
@@ -133,33 +166,33 @@ final class SSLConfiguratorImpl implements SSLConfigurator {
     }
 
     public void setEnabledCipherSuites(final SSLContext sslContext, final SSLSocket sslSocket, final String[] cipherSuites) {
-        sslSocket.setEnabledCipherSuites(cipherSuiteSelector.evaluate(cipherSuites));
+        sslSocket.setEnabledCipherSuites(evaluateCipherSuites(cipherSuites));
     }
 
     public void setEnabledCipherSuites(final SSLContext sslContext, final SSLEngine sslEngine, final String[] cipherSuites) {
-        sslEngine.setEnabledCipherSuites(cipherSuiteSelector.evaluate(cipherSuites));
+        sslEngine.setEnabledCipherSuites(evaluateCipherSuites(cipherSuites));
     }
 
     public void setEnabledCipherSuites(final SSLContext sslContext, final SSLServerSocket sslServerSocket, final String[] cipherSuites) {
-        sslServerSocket.setEnabledCipherSuites(cipherSuiteSelector.evaluate(cipherSuites));
+        sslServerSocket.setEnabledCipherSuites(evaluateCipherSuites(cipherSuites));
     }
 
     public void setEnabledProtocols(final SSLContext sslContext, final SSLSocket sslSocket, final String[] protocols) {
-        sslSocket.setEnabledProtocols(protocolSelector.evaluate(protocols));
+        sslSocket.setEnabledProtocols(evaluateProtocols(protocols));
     }
 
     public void setEnabledProtocols(final SSLContext sslContext, final SSLEngine sslEngine, final String[] protocols) {
-        sslEngine.setEnabledProtocols(protocolSelector.evaluate(protocols));
+        sslEngine.setEnabledProtocols(evaluateProtocols(protocols));
     }
 
     public void setEnabledProtocols(final SSLContext sslContext, final SSLServerSocket sslServerSocket, final String[] protocols) {
-        sslServerSocket.setEnabledProtocols(protocolSelector.evaluate(protocols));
+        sslServerSocket.setEnabledProtocols(evaluateProtocols(protocols));
     }
 
     private SSLParameters redefine(SSLParameters original) {
         SSLParameters params = JDKSpecific.setSSLParameters(original);
-        params.setProtocols(protocolSelector.evaluate(params.getProtocols()));
-        params.setCipherSuites(cipherSuiteSelector.evaluate(params.getCipherSuites()));
+        params.setProtocols(evaluateProtocols(params.getProtocols()));
+        params.setCipherSuites(evaluateCipherSuites(params.getCipherSuites()));
         return params;
     }
 
@@ -195,4 +228,54 @@ final class SSLConfiguratorImpl implements SSLConfigurator {
         }
         // ignored
     }
+
+    /**
+     * The results of evaluating a selector, keyed by the contents of the array it was evaluated on. The supported arrays
+     * of engines and sockets are fresh copies of the same few arrays, so only a handful of distinct keys are expected.
+     */
+    static final class EvaluationCache {
+
+        private static final int MAX_ENTRIES = 16;
+
+        private final Function<String[], String[]> selector;
+        private final Map<Key, String[]> results = new ConcurrentHashMap<>();
+
+        EvaluationCache(final Function<String[], String[]> selector) {
+            this.selector = selector;
+        }
+
+        String[] evaluate(final String[] supported) {
+            final Key key = new Key(supported);
+            String[] result = results.get(key);
+            if (result == null) {
+                result = selector.apply(supported);
+                if (results.size() >= MAX_ENTRIES) {
+                    // the arrays are unlikely to be the same ones each time, start again rather than keep growing
+                    results.clear();
+                }
+                results.put(new Key(supported.clone()), result);
+            }
+            // the callers own the returned array
+            return result.clone();
+        }
+
+        static final class Key {
+
+            private final String[] values;
+            private final int hashCode;
+
+            Key(final String[] values) {
+                this.values = values;
+                this.hashCode = Arrays.hashCode(values);
+            }
+
+            public int hashCode() {
+                return hashCode;
+            }
+
+            public boolean equals(final Object obj) {
+                return obj instanceof Key && hashCode == ((Key) obj).hashCode && Arrays.equals(values, ((Key) obj).values);
+            }
+        }
+    }
 }
@@ -18,10 +18,15 @@
 
 package org.wildfly.security.ssl;
 
+import org.wildfly.security.asn1.ASN1;
+import org.wildfly.security.asn1.ASN1Exception;
+import org.wildfly.security.asn1.DERDecoder;
 import org.wildfly.security.x500.X500;
 
 import javax.net.ssl.CertPathTrustManagerParameters;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509ExtendedTrustManager;
 import javax.net.ssl.X509TrustManager;
@@ -31,51 +36,110 @@ import java.io.InputStream;
 import java.net.Socket;
 import java.net.URI;
 import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyStore;
+import java.security.PublicKey;
 import java.security.cert.CRL;
+import java.security.cert.CRLReason;
+import java.security.cert.CRLSelector;
 import java.security.cert.CertPathBuilder;
 import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertSelector;
 import java.security.cert.CertStore;
-import java.security.cert.CertStoreParameters;
+import java.security.cert.CertStoreSpi;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
-import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.PKIXCertPathChecker;
 import java.security.cert.PKIXReason;
 import java.security.cert.PKIXRevocationChecker;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509CRLSelector;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static org.wildfly.common.Assert.checkMinimumParameter;
 import static org.wildfly.common.Assert.checkNotNullParam;
+import static org.wildfly.security.ssl.ElytronMessages.log;
 
 /**
  * Extension to the {@link X509TrustManager} interface to support OCSP and CRL verification.
  *
+ * <p>Configured certificate revocation lists are indexed by issuer, so certificates revoked by a current list signed by a
+ * trusted certificate are rejected without building a certification path, and a refreshable CRL source is reloaded ahead
+ * of the next update of its lists. When
+ * the handshake socket or engine is available it is passed on to the underlying trust manager, which allows stapled
+ * OCSP responses to be used instead of contacting the responder.
+ *
+ * <p>Successfully validated chains can optionally be cached (see {@link Builder#setRevocationCacheTime(long)}) until
+ * the earliest of the configured cache time, the expiry of the certificates and the next update of the CRLs and
+ * stapled OCSP responses covering them. Failures are never cached, and nothing is cached in soft fail mode as a chain may
+ * then have been accepted without its revocation status being known.
+ *
  * @author <a href="mailto:mmazanek@redhat.com">Martin Mazanek</a>
  */
 public class X509RevocationTrustManager extends X509ExtendedTrustManager {
 
     private static final int DEFAULT_MAX_CERT_PATH_LENGTH = 5;
+    private static final int MAX_VALIDATED_CHAINS = 1024;
+    private static final long MIN_CRL_REFRESH_INTERVAL = 60_000;
+    private static final String OCSP_BASIC_RESPONSE_OID = "1.3.6.1.5.5.7.48.1.1";
+    private static final DateTimeFormatter GENERALIZED_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     private final X509Certificate[] acceptedIssuers;
     private final X509TrustManager trustManager;
+    private final boolean onlyEndEntity;
+    private final long revocationCacheTime;
+    private final Map<ValidatedChain, Long> validatedChains;
+    private final CrlStore crlStore;
+    private final Supplier<InputStream> crlSource;
+    private final long crlRefreshInterval;
+    private final Executor crlRefreshExecutor;
+    private final AtomicBoolean crlRefreshing = new AtomicBoolean();
+    private volatile long crlRefreshTime = Long.MAX_VALUE;
 
     private X509RevocationTrustManager(Builder builder) {
+        this.onlyEndEntity = builder.onlyEndEntity;
+        this.revocationCacheTime = builder.revocationCacheTime;
+        // the soft fail exceptions of a validation are not visible through the trust manager, so soft fail disables the cache
+        this.validatedChains = revocationCacheTime > 0 && ! builder.softFail ? new ConcurrentHashMap<>() : null;
+        this.crlSource = builder.crlSource;
+        this.crlRefreshInterval = builder.crlRefreshInterval;
+        this.crlRefreshExecutor = builder.crlRefreshExecutor;
 
         try {
             PKIXBuilderParameters params = new PKIXBuilderParameters(builder.trustStore, new X509CertSelector());
 
-            if (builder.crlStream != null) {
-                CertStoreParameters csp = new CollectionCertStoreParameters(getCRLs(builder.crlStream));
-                CertStore store = CertStore.getInstance("Collection", csp);
-                params.addCertStore(store);
+            if (builder.crlSource != null || builder.crlStream != null) {
+                this.crlStore = new CrlStore(params.getTrustAnchors());
+                loadCrls(builder.crlSource != null ? builder.crlSource.get() : builder.crlStream);
+                params.addCertStore(crlStore.getCertStore());
+            } else {
+                this.crlStore = null;
             }
 
             CertPathBuilder cpb = CertPathBuilder.getInstance("PKIX");
@@ -130,32 +194,32 @@ public class X509RevocationTrustManager extends X509ExtendedTrustManager {
 
     @Override
     public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-        trustManager.checkClientTrusted(chain, authType);
+        checkTrusted(chain, authType, true, null, null);
     }
 
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-        trustManager.checkServerTrusted(chain, authType);
+        checkTrusted(chain, authType, false, null, null);
     }
 
     @Override
     public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
-        trustManager.checkClientTrusted(chain, authType);
+        checkTrusted(chain, authType, true, socket, null);
     }
 
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
-        trustManager.checkServerTrusted(chain, authType);
+        checkTrusted(chain, authType, false, socket, null);
     }
 
     @Override
     public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine sslEngine) throws CertificateException {
-        trustManager.checkClientTrusted(chain, authType);
+        checkTrusted(chain, authType, true, null, sslEngine);
     }
 
     @Override
     public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine sslEngine) throws CertificateException {
-        trustManager.checkServerTrusted(chain, authType);
+        checkTrusted(chain, authType, false, null, sslEngine);
     }
 
     @Override
@@ -163,7 +227,201 @@ public class X509RevocationTrustManager extends X509ExtendedTrustManager {
         return acceptedIssuers;
     }
 
-    private Collection<? extends CRL> getCRLs(InputStream crlStream) throws GeneralSecurityException {
+    private void checkTrusted(X509Certificate[] chain, String authType, boolean client, Socket socket, SSLEngine sslEngine) throws CertificateException {
+        if (crlStore != null && chain != null) {
+            refreshCrlsIfDue();
+            crlStore.checkRevoked(chain, onlyEndEntity);
+        }
+
+        ValidatedChain validatedChain = null;
+        // endpoint identification depends on the peer rather than on the chain, so those results are not cached
+        if (validatedChains != null && chain != null && chain.length > 0 && ! isEndpointIdentificationEnabled(socket, sslEngine)) {
+            validatedChain = new ValidatedChain(chain, authType, client);
+            Long expiry = validatedChains.get(validatedChain);
+            if (expiry != null) {
+                if (System.currentTimeMillis() < expiry) {
+                    return;
+                }
+                validatedChains.remove(validatedChain, expiry);
+            }
+        }
+
+        if (trustManager instanceof X509ExtendedTrustManager && (socket != null || sslEngine != null)) {
+            // the handshake session gives the underlying trust manager access to any stapled OCSP responses
+            X509ExtendedTrustManager extendedTrustManager = (X509ExtendedTrustManager) trustManager;
+            if (sslEngine != null) {
+                if (client) {
+                    extendedTrustManager.checkClientTrusted(chain, authType, sslEngine);
+                } else {
+                    extendedTrustManager.checkServerTrusted(chain, authType, sslEngine);
+                }
+            } else if (client) {
+                extendedTrustManager.checkClientTrusted(chain, authType, socket);
+            } else {
+                extendedTrustManager.checkServerTrusted(chain, authType, socket);
+            }
+        } else if (client) {
+            trustManager.checkClientTrusted(chain, authType);
+        } else {
+            trustManager.checkServerTrusted(chain, authType);
+        }
+
+        if (validatedChain != null) {
+            cacheValidatedChain(validatedChain, getCacheExpiry(chain, getHandshakeSession(socket, sslEngine)));
+        }
+    }
+
+    private void cacheValidatedChain(ValidatedChain validatedChain, long expiry) {
+        if (validatedChains.size() >= MAX_VALIDATED_CHAINS) {
+            long now = System.currentTimeMillis();
+            validatedChains.values().removeIf(e -> e <= now);
+            if (validatedChains.size() >= MAX_VALIDATED_CHAINS) {
+                validatedChains.clear();
+            }
+        }
+        validatedChains.put(validatedChain, expiry);
+    }
+
+    private long getCacheExpiry(X509Certificate[] chain, SSLSession session) {
+        long expiry = System.currentTimeMillis() + revocationCacheTime;
+        for (X509Certificate certificate : chain) {
+            expiry = Math.min(expiry, certificate.getNotAfter().getTime());
+        }
+        if (crlStore != null) {
+            expiry = Math.min(expiry, crlStore.getNextUpdate(chain));
+        }
+        for (byte[] response : JDKSpecific.getStatusResponses(session)) {
+            if (response != null && response.length > 0) {
+                expiry = Math.min(expiry, getNextUpdate(response));
+            }
+        }
+        return expiry;
+    }
+
+    private void refreshCrlsIfDue() {
+        if (crlSource == null || System.currentTimeMillis() < crlRefreshTime || ! crlRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Runnable refresh = () -> {
+            try {
+                loadCrls(crlSource.get());
+                if (validatedChains != null) {
+                    validatedChains.clear();
+                }
+            } catch (GeneralSecurityException | RuntimeException e) {
+                log.unableToRefreshCrls(e);
+                crlRefreshTime = System.currentTimeMillis() + MIN_CRL_REFRESH_INTERVAL;
+            } finally {
+                crlRefreshing.set(false);
+            }
+        };
+        if (crlRefreshExecutor != null) {
+            try {
+                crlRefreshExecutor.execute(refresh);
+            } catch (RejectedExecutionException e) {
+                refresh.run();
+            }
+        } else {
+            refresh.run();
+        }
+    }
+
+    private void loadCrls(InputStream crlStream) throws GeneralSecurityException {
+        Collection<? extends CRL> crls = getCRLs(crlStream);
+        crlStore.setCrls(crls);
+        if (crlSource == null) {
+            return;
+        }
+
+        // reload once three quarters of the validity of the earliest list have elapsed so it never goes stale
+        long now = System.currentTimeMillis();
+        long refreshTime = crlRefreshInterval > 0 ? now + crlRefreshInterval : Long.MAX_VALUE;
+        for (CRL crl : crls) {
+            if (crl instanceof X509CRL) {
+                Date nextUpdate = ((X509CRL) crl).getNextUpdate();
+                if (nextUpdate != null) {
+                    long thisUpdate = ((X509CRL) crl).getThisUpdate().getTime();
+                    refreshTime = Math.min(refreshTime, thisUpdate + (nextUpdate.getTime() - thisUpdate) / 4 * 3);
+                }
+            }
+        }
+        // lists which are already due for an update are not read again more often than the minimum interval
+        crlRefreshTime = refreshTime > now ? refreshTime : now + MIN_CRL_REFRESH_INTERVAL;
+    }
+
+    private static boolean isEndpointIdentificationEnabled(Socket socket, SSLEngine sslEngine) {
+        String algorithm = null;
+        if (sslEngine != null) {
+            algorithm = sslEngine.getSSLParameters().getEndpointIdentificationAlgorithm();
+        } else if (socket instanceof SSLSocket) {
+            algorithm = ((SSLSocket) socket).getSSLParameters().getEndpointIdentificationAlgorithm();
+        }
+        return algorithm != null && ! algorithm.isEmpty();
+    }
+
+    private static SSLSession getHandshakeSession(Socket socket, SSLEngine sslEngine) {
+        if (sslEngine != null) {
+            return sslEngine.getHandshakeSession();
+        } else if (socket instanceof SSLSocket) {
+            return ((SSLSocket) socket).getHandshakeSession();
+        }
+        return null;
+    }
+
+    /**
+     * Get the earliest next update time of the single responses within a DER encoded OCSP response.
+     *
+     * @param response the encoded OCSP response
+     * @return the next update time in milliseconds, or {@link Long#MAX_VALUE} if none could be determined
+     */
+    static long getNextUpdate(byte[] response) {
+        long nextUpdate = Long.MAX_VALUE;
+        try {
+            DERDecoder decoder = new DERDecoder(response);
+            decoder.startSequence();
+            decoder.skipElement(); // responseStatus
+            decoder.startExplicit(0);
+            decoder.startSequence();
+            if (! OCSP_BASIC_RESPONSE_OID.equals(decoder.decodeObjectIdentifier())) {
+                return nextUpdate;
+            }
+            decoder = new DERDecoder(decoder.decodeOctetString());
+            decoder.startSequence(); // BasicOCSPResponse
+            decoder.startSequence(); // ResponseData
+            if (decoder.isNextType(ASN1.CONTEXT_SPECIFIC_MASK, 0, true)) {
+                decoder.skipElement(); // version
+            }
+            decoder.skipElement(); // responderID
+            decoder.skipElement(); // producedAt
+            decoder.startSequence();
+            while (decoder.hasNextElement()) {
+                decoder.startSequence(); // SingleResponse
+                decoder.skipElement(); // certID
+                decoder.skipElement(); // certStatus
+                decoder.skipElement(); // thisUpdate
+                if (decoder.hasNextElement() && decoder.isNextType(ASN1.CONTEXT_SPECIFIC_MASK, 0, true)) {
+                    decoder.startExplicit(0);
+                    decoder.decodeImplicit(0, ASN1.GENERALIZED_TIME_TYPE);
+                    nextUpdate = Math.min(nextUpdate, parseGeneralizedTime(decoder.decodeOctetStringAsString("US-ASCII")));
+                    decoder.endExplicit();
+                }
+                decoder.endSequence();
+            }
+        } catch (ASN1Exception | DateTimeParseException e) {
+            return Long.MAX_VALUE;
+        }
+        return nextUpdate;
+    }
+
+    private static long parseGeneralizedTime(String time) {
+        // RFC 5280 GeneralizedTime is YYYYMMDDHHMMSSZ, optionally with fractional seconds before the Z
+        if (time.length() < 15 || time.charAt(time.length() - 1) != 'Z') {
+            throw new DateTimeParseException("Invalid GeneralizedTime", time, 0);
+        }
+        return LocalDateTime.parse(time.substring(0, 14), GENERALIZED_TIME_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static Collection<? extends CRL> getCRLs(InputStream crlStream) throws GeneralSecurityException {
         CertificateFactory cf = CertificateFactory.getInstance("X.509");
         try {
             return cf.generateCRLs(crlStream);
@@ -186,6 +444,10 @@ public class X509RevocationTrustManager extends X509ExtendedTrustManager {
         private boolean onlyEndEntity = false;
         private boolean softFail = false;
         private boolean noFallback = false;
+        private long revocationCacheTime = 0;
+        private Supplier<InputStream> crlSource = null;
+        private long crlRefreshInterval = 0;
+        private Executor crlRefreshExecutor = null;
 
 
         private Builder() {}
@@ -311,6 +573,59 @@ public class X509RevocationTrustManager extends X509ExtendedTrustManager {
             return this;
         }
 
+        /**
+         * Set the maximum time in milliseconds for which a successfully validated certificate chain is trusted without
+         * being validated again. The time is further limited by the expiry of the certificates and the next update of the
+         * CRLs and stapled OCSP responses covering them. Results are not cached if {@link #setSoftFail(boolean) soft fail}
+         * is enabled. Default 0, chains are validated on every handshake
+         *
+         * @param revocationCacheTime the maximum time to cache validation results in milliseconds
+         * @return this Builder for subsequent changes
+         */
+        public Builder setRevocationCacheTime(long revocationCacheTime) {
+            checkMinimumParameter("revocationCacheTime", 0, revocationCacheTime);
+            this.revocationCacheTime = revocationCacheTime;
+            return this;
+        }
+
+        /**
+         * Set a source of certificate revocation lists to be used instead of {@link #setCrlStream(InputStream)} (may be {@code null}).
+         * The source is read again ahead of the next update of the loaded lists, or once the refresh interval has elapsed,
+         * and each stream obtained from it will be automatically closed.
+         *
+         * @param crlSource the supplier of input streams pointing to certificate revocation lists
+         * @return this Builder for subsequent changes
+         */
+        public Builder setCrlSource(Supplier<InputStream> crlSource) {
+            this.crlSource = crlSource;
+            return this;
+        }
+
+        /**
+         * Set the maximum time in milliseconds between two reads of the CRL source. Default 0, lists are only read again
+         * ahead of their next update
+         *
+         * @param crlRefreshInterval the maximum refresh interval in milliseconds
+         * @return this Builder for subsequent changes
+         */
+        public Builder setCrlRefreshInterval(long crlRefreshInterval) {
+            checkMinimumParameter("crlRefreshInterval", 0, crlRefreshInterval);
+            this.crlRefreshInterval = crlRefreshInterval;
+            return this;
+        }
+
+        /**
+         * Set the {@link Executor} used to read the CRL source in the background (may be {@code null}). By default the
+         * source is read by the thread validating the certificate chain which finds the lists due for a refresh
+         *
+         * @param crlRefreshExecutor the executor to refresh certificate revocation lists with
+         * @return this Builder for subsequent changes
+         */
+        public Builder setCrlRefreshExecutor(Executor crlRefreshExecutor) {
+            this.crlRefreshExecutor = crlRefreshExecutor;
+            return this;
+        }
+
         public X509RevocationTrustManager build() {
             checkNotNullParam("trustStore", trustStore);
             checkNotNullParam("trustManagerFactory", trustManagerFactory);
@@ -328,6 +643,181 @@ public class X509RevocationTrustManager extends X509ExtendedTrustManager {
     }
 
 
+    /**
+     * A certificate chain which has been successfully validated, certificates are compared by their encoded form.
+     */
+    private static final class ValidatedChain {
+        private final X509Certificate[] chain;
+        private final String authType;
+        private final boolean client;
+        private final int hashCode;
+
+        ValidatedChain(X509Certificate[] chain, String authType, boolean client) {
+            this.chain = chain.clone();
+            this.authType = authType;
+            this.client = client;
+            this.hashCode = (Arrays.hashCode(chain) * 31 + Objects.hashCode(authType)) * 31 + Boolean.hashCode(client);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (! (obj instanceof ValidatedChain)) {
+                return false;
+            }
+            ValidatedChain other = (ValidatedChain) obj;
+            return hashCode == other.hashCode && client == other.client && Objects.equals(authType, other.authType) && Arrays.equals(chain, other.chain);
+        }
+    }
+
+    /**
+     * A {@link CertStore} of certificate revocation lists indexed by issuer, the lists can be replaced as a whole at any time.
+     */
+    private static final class CrlStore extends CertStoreSpi {
+        private final CertStore certStore;
+        private final Map<X500Principal, List<PublicKey>> trustedKeys = new HashMap<>();
+        private volatile Map<X500Principal, List<X509CRL>> crlsByIssuer = Collections.emptyMap();
+        private volatile Map<X500Principal, List<X509CRL>> trustedCrlsByIssuer = Collections.emptyMap();
+
+        CrlStore(Set<TrustAnchor> trustAnchors) throws InvalidAlgorithmParameterException {
+            super(null);
+            certStore = new CertStore(this, null, "Collection", null) {};
+            for (TrustAnchor trustAnchor : trustAnchors) {
+                X509Certificate trustedCert = trustAnchor.getTrustedCert();
+                if (trustedCert != null) {
+                    trustedKeys.computeIfAbsent(trustedCert.getSubjectX500Principal(), issuer -> new ArrayList<>(1)).add(trustedCert.getPublicKey());
+                } else if (trustAnchor.getCA() != null) {
+                    trustedKeys.computeIfAbsent(trustAnchor.getCA(), issuer -> new ArrayList<>(1)).add(trustAnchor.getCAPublicKey());
+                }
+            }
+        }
+
+        CertStore getCertStore() {
+            return certStore;
+        }
+
+        void setCrls(Collection<? extends CRL> crls) {
+            Map<X500Principal, List<X509CRL>> crlsByIssuer = new HashMap<>();
+            Map<X500Principal, List<X509CRL>> trustedCrlsByIssuer = new HashMap<>();
+            for (CRL crl : crls) {
+                if (crl instanceof X509CRL) {
+                    X509CRL x509Crl = (X509CRL) crl;
+                    crlsByIssuer.computeIfAbsent(x509Crl.getIssuerX500Principal(), issuer -> new ArrayList<>(1)).add(x509Crl);
+                    if (isSignedByTrustedIssuer(x509Crl)) {
+                        trustedCrlsByIssuer.computeIfAbsent(x509Crl.getIssuerX500Principal(), issuer -> new ArrayList<>(1)).add(x509Crl);
+                    }
+                }
+            }
+            this.trustedCrlsByIssuer = trustedCrlsByIssuer;
+            this.crlsByIssuer = crlsByIssuer;
+        }
+
+        private boolean isSignedByTrustedIssuer(X509CRL crl) {
+            List<PublicKey> keys = trustedKeys.get(crl.getIssuerX500Principal());
+            if (keys != null) {
+                for (PublicKey key : keys) {
+                    try {
+                        crl.verify(key);
+                        return true;
+                    } catch (GeneralSecurityException e) {
+                        log.tracef(e, "CRL of [%s] not signed by trusted key", crl.getIssuerX500Principal());
+                    }
+                }
+            }
+            return false;
+        }
+
+        /*
+         * Reject certificates listed by a current CRL of their issuer. Only the lists whose signature has been verified with
+         * the key of a trusted certificate are used here, the lists of other issuers are only used by the full revocation check.
+         */
+        void checkRevoked(X509Certificate[] chain, boolean onlyEndEntity) throws CertificateException {
+            Map<X500Principal, List<X509CRL>> crlsByIssuer = this.trustedCrlsByIssuer;
+            if (crlsByIssuer.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int length = onlyEndEntity ? Math.min(1, chain.length) : chain.length;
+            for (int i = 0; i < length; i++) {
+                X509Certificate certificate = chain[i];
+                X500Principal issuer = certificate.getIssuerX500Principal();
+                List<X509CRL> crls = crlsByIssuer.get(issuer);
+                if (crls != null) {
+                    for (X509CRL crl : crls) {
+                        if (! isCurrent(crl, now)) {
+                            continue;
+                        }
+                        X509CRLEntry entry = crl.getRevokedCertificate(certificate);
+                        if (entry != null && entry.getRevocationReason() != CRLReason.REMOVE_FROM_CRL) {
+                            throw log.certificateRevoked(certificate.getSubjectX500Principal().getName(), issuer.getName());
+                        }
+                    }
+                }
+            }
+        }
+
+        private static boolean isCurrent(X509CRL crl, long now) {
+            Date nextUpdate = crl.getNextUpdate();
+            return crl.getThisUpdate().getTime() <= now && (nextUpdate == null || now < nextUpdate.getTime());
+        }
+
+        long getNextUpdate(X509Certificate[] chain) {
+            Map<X500Principal, List<X509CRL>> crlsByIssuer = this.crlsByIssuer;
+            long nextUpdate = Long.MAX_VALUE;
+            for (X509Certificate certificate : chain) {
+                List<X509CRL> crls = crlsByIssuer.get(certificate.getIssuerX500Principal());
+                if (crls != null) {
+                    for (X509CRL crl : crls) {
+                        Date crlNextUpdate = crl.getNextUpdate();
+                        if (crlNextUpdate != null) {
+                            nextUpdate = Math.min(nextUpdate, crlNextUpdate.getTime());
+                        }
+                    }
+                }
+            }
+            return nextUpdate;
+        }
+
+        @Override
+        public Collection<? extends Certificate> engineGetCertificates(CertSelector selector) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<? extends CRL> engineGetCRLs(CRLSelector selector) {
+            Map<X500Principal, List<X509CRL>> crlsByIssuer = this.crlsByIssuer;
+            Collection<X500Principal> issuers = selector instanceof X509CRLSelector ? ((X509CRLSelector) selector).getIssuers() : null;
+            List<X509CRL> matches = new ArrayList<>();
+            if (issuers != null) {
+                for (X500Principal issuer : issuers) {
+                    addMatches(crlsByIssuer.get(issuer), selector, matches);
+                }
+            } else {
+                for (List<X509CRL> crls : crlsByIssuer.values()) {
+                    addMatches(crls, selector, matches);
+                }
+            }
+            return matches;
+        }
+
+        private static void addMatches(List<X509CRL> crls, CRLSelector selector, List<X509CRL> matches) {
+            if (crls != null) {
+                for (X509CRL crl : crls) {
+                    if (selector == null || selector.match(crl)) {
+                        matches.add(crl);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * PKIXCertPathChecker to check if a cert path being validated is longer than maxPathLength specified
      */
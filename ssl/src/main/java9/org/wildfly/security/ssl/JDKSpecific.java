@@ -18,11 +18,14 @@
 
 package org.wildfly.security.ssl;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
 
+import javax.net.ssl.ExtendedSSLSession;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 
 
@@ -106,4 +109,26 @@ final class JDKSpecific {
     static BiFunction<SSLSocket, List<String>, String> getHandshakeApplicationProtocolSelector(SSLSocket socket) {
         return socket.getHandshakeApplicationProtocolSelector();
     }
+
+    /*
+     * SSLSession
+     */
+
+    /**
+     * Get the stapled OCSP responses received during the handshake.
+     *
+     * @param session the handshake session (may be {@code null})
+     * @return the DER encoded OCSP responses, one per certificate of the peer's chain (not {@code null})
+     */
+    static List<byte[]> getStatusResponses(SSLSession session) {
+        if (session instanceof ExtendedSSLSession) {
+            try {
+                return ((ExtendedSSLSession) session).getStatusResponses();
+            } catch (UnsupportedOperationException e) {
+                return Collections.emptyList();
+            }
+        }
+
+        return Collections.emptyList();
+    }
 }
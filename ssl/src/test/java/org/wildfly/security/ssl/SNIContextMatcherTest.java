@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.ssl;
+
+import static org.junit.Assert.assertSame;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIMatcher;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link SNIContextMatcher}.
+ */
+public class SNIContextMatcherTest {
+
+    private static SSLContext newContext() throws NoSuchAlgorithmException {
+        return SSLContext.getInstance("TLS");
+    }
+
+    private static List<SNIServerName> names(String... hostNames) {
+        List<SNIServerName> names = new ArrayList<>();
+        for (String hostName : hostNames) {
+            names.add(new SNIHostName(hostName));
+        }
+        return names;
+    }
+
+    @Test
+    public void testExactBeforeWildcard() throws Exception {
+        SSLContext defaultContext = newContext();
+        SSLContext wildcard = newContext();
+        SSLContext exact = newContext();
+        SNIContextMatcher matcher = new SNIContextMatcher.Builder()
+                .setDefaultContext(defaultContext)
+                .addMatch(".*\\.example\\.com", wildcard)
+                .addMatch("www.example.com", exact)
+                .build();
+
+        assertSame(exact, matcher.getContext(names("www.example.com")));
+        assertSame(exact, matcher.getContext(names("WWW.Example.COM")));
+        assertSame(wildcard, matcher.getContext(names("mail.example.com")));
+        assertSame(wildcard, matcher.getContext(names("a.b.example.com")));
+        assertSame(defaultContext, matcher.getContext(names("example.com")));
+        assertSame(defaultContext, matcher.getContext(names("www.example.org")));
+        assertSame(defaultContext, matcher.getContext(Collections.emptyList()));
+        assertSame(exact, matcher.getContext(names("mail.example.com", "www.example.com")));
+    }
+
+    @Test
+    public void testSingleLabelWildcard() throws Exception {
+        SSLContext defaultContext = newContext();
+        SSLContext singleLabel = newContext();
+        SSLContext anyDepth = newContext();
+        SNIContextMatcher matcher = new SNIContextMatcher.Builder()
+                .setDefaultContext(defaultContext)
+                .addMatch("[^.]*\\.example\\.com", singleLabel)
+                .addMatch(".*\\.com", anyDepth)
+                .build();
+
+        assertSame(singleLabel, matcher.getContext(names("www.example.com")));
+        assertSame(anyDepth, matcher.getContext(names("a.b.example.com")));
+        assertSame(anyDepth, matcher.getContext(names("example.com")));
+        assertSame(defaultContext, matcher.getContext(names("example.org")));
+    }
+
+    @Test
+    public void testExpressionPrecedence() throws Exception {
+        SSLContext defaultContext = newContext();
+        SSLContext expression = newContext();
+        SSLContext indexed = newContext();
+        SSLContext later = newContext();
+        SNIContextMatcher matcher = new SNIContextMatcher.Builder()
+                .setDefaultContext(defaultContext)
+                .addMatch("(www|mail)\\.example\\.com", expression)
+                .addMatch("www.example.com", indexed)
+                .addMatch("ftp.example.com", indexed)
+                .addMatch("ftp\\.example\\.(net|org)", later)
+                .addMatch("ftp.example.org", indexed)
+                .build();
+
+        assertSame(expression, matcher.getContext(names("www.example.com")));
+        assertSame(indexed, matcher.getContext(names("ftp.example.com")));
+        assertSame(later, matcher.getContext(names("ftp.example.net")));
+        assertSame(later, matcher.getContext(names("ftp.example.org")));
+    }
+
+    @Test
+    public void testSameAsExpressions() throws Exception {
+        Random random = new Random(42);
+        String[] labels = { "www", "mail", "api", "example", "test", "com", "org", "a-b", "x1" };
+        String[] prefixes = { "", ".*\\.", ".+\\.", "[^.]*\\.", "[^.]+\\.", "(api|www)\\." };
+        SSLContext defaultContext = newContext();
+        Map<SNIMatcher, SSLContext> exacts = new LinkedHashMap<>();
+        Map<SNIMatcher, SSLContext> wildcards = new LinkedHashMap<>();
+        SNIContextMatcher.Builder builder = new SNIContextMatcher.Builder().setDefaultContext(defaultContext);
+        for (int i = 0; i < 500; i++) {
+            String name = prefixes[random.nextInt(prefixes.length)] + randomHostName(random, labels).replace(".", random.nextBoolean() ? "." : "\\.");
+            SSLContext context = newContext();
+            builder.addMatch(name, context);
+            (name.contains("*") ? wildcards : exacts).put(SNIHostName.createSNIMatcher(name), context);
+        }
+        SNIContextMatcher matcher = builder.build();
+
+        for (int i = 0; i < 2000; i++) {
+            List<SNIServerName> servers = random.nextInt(10) == 0
+                    ? names(randomHostName(random, labels), randomHostName(random, labels))
+                    : names(randomHostName(random, labels));
+            SSLContext expected = match(exacts, servers);
+            if (expected == null) {
+                expected = match(wildcards, servers);
+            }
+            assertSame(servers.toString(), expected != null ? expected : defaultContext, matcher.getContext(servers));
+        }
+    }
+
+    private static String randomHostName(Random random, String[] labels) {
+        String[] hostName = new String[1 + random.nextInt(4)];
+        for (int i = 0; i < hostName.length; i++) {
+            hostName[i] = labels[random.nextInt(labels.length)];
+        }
+        return String.join(".", Arrays.asList(hostName));
+    }
+
+    private static SSLContext match(Map<SNIMatcher, SSLContext> matchers, List<SNIServerName> servers) {
+        for (Map.Entry<SNIMatcher, SSLContext> entry : matchers.entrySet()) {
+            for (SNIServerName server : servers) {
+                if (entry.getKey().matches(server)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link SNISSLExplorer#scan(ByteBuffer, SNISSLExplorer.ClientHelloInfo)}.
+ */
+public class SNISSLExplorerTest {
+
+    @Test
+    public void testScan() throws Exception {
+        byte[] record = toRecords(clientHello("www.example.com", "h2", "http/1.1"), 0x4000);
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        SNISSLExplorer.ClientHelloInfo info = new SNISSLExplorer.ClientHelloInfo();
+
+        assertTrue(SNISSLExplorer.scan(buffer, info));
+        assertEquals("www.example.com", info.getHostName());
+        assertEquals(Arrays.asList("h2", "http/1.1"), info.getApplicationProtocols());
+        assertEquals(Collections.singletonList(new SNIHostName("www.example.com")), info.getServerNames());
+        assertEquals(0, buffer.position());
+        assertEquals(record.length, buffer.limit());
+    }
+
+    @Test
+    public void testScanWithoutExtensions() throws Exception {
+        SNISSLExplorer.ClientHelloInfo info = new SNISSLExplorer.ClientHelloInfo();
+
+        assertTrue(SNISSLExplorer.scan(ByteBuffer.wrap(toRecords(clientHello(null), 0x4000)), info));
+        assertFalse(info.hasHostName());
+        assertNull(info.getHostName());
+        assertEquals(Collections.emptyList(), info.getApplicationProtocols());
+    }
+
+    @Test
+    public void testScanFragmented() throws Exception {
+        byte[] records = toRecords(clientHello("tenant-42.example.com", "h2"), 7);
+        SNISSLExplorer.ClientHelloInfo info = new SNISSLExplorer.ClientHelloInfo();
+
+        int available = 0;
+        while (! SNISSLExplorer.scan(ByteBuffer.wrap(records, 0, available).slice(), info)) {
+            assertTrue(info.getRequiredSize() > available);
+            available = info.getRequiredSize();
+        }
+        assertEquals(records.length, available);
+        assertEquals("tenant-42.example.com", info.getHostName());
+        assertEquals(Collections.singletonList("h2"), info.getApplicationProtocols());
+    }
+
+    @Test
+    public void testScanUnicodeHostName() throws Exception {
+        SNISSLExplorer.ClientHelloInfo info = new SNISSLExplorer.ClientHelloInfo();
+
+        assertTrue(SNISSLExplorer.scan(ByteBuffer.wrap(toRecords(clientHello("Bücher.example.com"), 0x4000)), info));
+        assertEquals(new SNIHostName("Bücher.example.com").getAsciiName(), info.getHostName());
+    }
+
+    @Test
+    public void testSameAsExplore() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, null, null);
+        SSLEngine engine = context.createSSLEngine("www.example.com", 443);
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setServerNames(Collections.singletonList(new SNIHostName("www.example.com")));
+        engine.setSSLParameters(parameters);
+        ByteBuffer clientHello = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        engine.wrap(ByteBuffer.allocate(0), clientHello);
+        clientHello.flip();
+
+        List<SNIServerName> explored = SNISSLExplorer.explore(clientHello);
+        SNISSLExplorer.ClientHelloInfo info = new SNISSLExplorer.ClientHelloInfo();
+        assertTrue(SNISSLExplorer.scan(clientHello, info));
+        assertEquals(explored, info.getServerNames());
+    }
+
+    private static byte[] clientHello(String hostName, String... protocols) {
+        ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+        if (hostName != null) {
+            byte[] name = hostName.getBytes(StandardCharsets.UTF_8);
+            writeInt16(extensions, 0x00);
+            writeInt16(extensions, name.length + 5);
+            writeInt16(extensions, name.length + 3);
+            extensions.write(0x00);
+            writeInt16(extensions, name.length);
+            extensions.write(name, 0, name.length);
+        }
+        if (protocols.length > 0) {
+            ByteArrayOutputStream list = new ByteArrayOutputStream();
+            for (String protocol : protocols) {
+                byte[] bytes = protocol.getBytes(StandardCharsets.UTF_8);
+                list.write(bytes.length);
+                list.write(bytes, 0, bytes.length);
+            }
+            writeInt16(extensions, 0x10);
+            writeInt16(extensions, list.size() + 2);
+            writeInt16(extensions, list.size());
+            extensions.write(list.toByteArray(), 0, list.size());
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(3);
+        body.write(3);
+        body.write(new byte[32], 0, 32);        // random
+        body.write(0);                          // session id
+        writeInt16(body, 2);
+        writeInt16(body, 0x1301);               // TLS_AES_128_GCM_SHA256
+        body.write(1);
+        body.write(0);                          // null compression
+        if (extensions.size() > 0) {
+            writeInt16(body, extensions.size());
+            body.write(extensions.toByteArray(), 0, extensions.size());
+        }
+
+        ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+        handshake.write(0x01);                  // client_hello
+        handshake.write(0);
+        writeInt16(handshake, body.size());
+        handshake.write(body.toByteArray(), 0, body.size());
+        return handshake.toByteArray();
+    }
+
+    private static byte[] toRecords(byte[] handshake, int fragmentSize) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (int i = 0; i < handshake.length; i += fragmentSize) {
+            int length = Math.min(fragmentSize, handshake.length - i);
+            records.write(22);                  // handshake
+            records.write(3);
+            records.write(1);
+            writeInt16(records, length);
+            records.write(handshake, i, length);
+        }
+        return records.toByteArray();
+    }
+
+    private static void writeInt16(ByteArrayOutputStream out, int value) {
+        out.write(value >> 8);
+        out.write(value);
+    }
+}
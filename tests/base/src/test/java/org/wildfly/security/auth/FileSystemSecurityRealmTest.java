@@ -27,9 +27,12 @@ import org.wildfly.security.auth.principal.NamePrincipal;
 import org.wildfly.security.auth.realm.FileSystemSecurityRealm;
 import org.wildfly.security.auth.server.ModifiableRealmIdentityIterator;
 import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
 import org.wildfly.security.authz.Attributes;
 import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.authz.MapAttributes;
+import org.wildfly.security.credential.BearerTokenCredential;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.credential.PasswordCredential;
 import org.wildfly.security.evidence.PasswordGuessEvidence;
@@ -64,13 +67,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.wildfly.security.password.interfaces.BCryptPassword.BCRYPT_SALT_SIZE;
 
 /**
@@ -428,6 +435,184 @@ public class FileSystemSecurityRealmTest {
         getRootPath(); // will fail on windows if iterator not closed correctly
     }
 
+    @Test
+    public void testIndexedRealm() throws Exception {
+        ExecutorService watchExecutor = Executors.newSingleThreadExecutor();
+        FileSystemSecurityRealm securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(getRootPath())
+                .setLevels(1)
+                .setIndexed(true)
+                .setWatchExecutor(watchExecutor)
+                .build();
+        try {
+            ModifiableRealmIdentity newIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+            assertFalse(newIdentity.exists());
+            newIdentity.create();
+            assertTrue(newIdentity.exists());
+
+            MapAttributes newAttributes = new MapAttributes();
+            newAttributes.addAll("roles", Arrays.asList("Employee", "Manager"));
+            newIdentity.setAttributes(newAttributes);
+            newIdentity.dispose();
+
+            // the index holds its own copy of the attributes
+            newAttributes.addFirst("roles", "Admin");
+            RealmIdentity existingIdentity = securityRealm.getRealmIdentity(new NamePrincipal("plainUser"));
+            assertEquals(2, existingIdentity.getAuthorizationIdentity().getAttributes().get("roles").size());
+            existingIdentity.dispose();
+
+            // changes made outside of the realm are picked up from the filesystem
+            FileSystemSecurityRealm externalRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+            ModifiableRealmIdentity externalIdentity = externalRealm.getRealmIdentityForUpdate(new NamePrincipal("otherUser"));
+            externalIdentity.create();
+            externalIdentity.dispose();
+            assertExistsEventually(securityRealm, "otherUser", true);
+
+            externalIdentity = externalRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+            externalIdentity.delete();
+            externalIdentity.dispose();
+            assertExistsEventually(securityRealm, "plainUser", false);
+        } finally {
+            securityRealm.close();
+            watchExecutor.shutdown();
+        }
+        // closing the realm ends the watch task
+        assertTrue(watchExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIndexedRealmWithoutWatcher() throws Exception {
+        FileSystemSecurityRealm securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(getRootPath())
+                .setLevels(1)
+                .setIndexed(true)
+                .build();
+        ModifiableRealmIdentity newIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        newIdentity.create();
+        newIdentity.dispose();
+        assertTrue(securityRealm.getRealmIdentity(new NamePrincipal("plainUser")).exists());
+
+        // only writes made through the realm update the index
+        FileSystemSecurityRealm externalRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        ModifiableRealmIdentity externalIdentity = externalRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        externalIdentity.delete();
+        externalIdentity.dispose();
+        assertTrue(securityRealm.getRealmIdentity(new NamePrincipal("plainUser")).exists());
+    }
+
+    @Test
+    public void testBinaryFormat() throws Exception {
+        FileSystemSecurityRealm securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(getRootPath())
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        ModifiableRealmIdentity newIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        newIdentity.create();
+
+        PasswordFactory factory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR);
+        Password password = factory.generatePassword(new ClearPasswordSpec("secretPassword".toCharArray()));
+        newIdentity.setCredentials(Collections.singleton(new PasswordCredential(password)));
+
+        MapAttributes newAttributes = new MapAttributes();
+        newAttributes.addFirst("name", "plainUser");
+        newAttributes.addAll("roles", Arrays.asList("Employee", "Manager", "Admin"));
+        newIdentity.setAttributes(newAttributes);
+        newIdentity.dispose();
+
+        assertTrue(Files.walk(getRootPath(false)).anyMatch(path -> path.getFileName().toString().endsWith(".bin")));
+        assertFalse(Files.walk(getRootPath(false)).anyMatch(path -> path.getFileName().toString().endsWith(".xml")));
+
+        securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(getRootPath(false))
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        ModifiableRealmIdentity existingIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        assertTrue(existingIdentity.exists());
+        assertTrue(existingIdentity.verifyEvidence(new PasswordGuessEvidence("secretPassword".toCharArray())));
+        assertFalse(existingIdentity.verifyEvidence(new PasswordGuessEvidence("wrongPassword".toCharArray())));
+
+        Attributes existingAttributes = existingIdentity.getAuthorizationIdentity().getAttributes();
+        assertEquals(newAttributes.size(), existingAttributes.size());
+        assertEquals(newAttributes.get("name"), existingAttributes.get("name"));
+        assertEquals(newAttributes.get("roles"), existingAttributes.get("roles"));
+        existingIdentity.dispose();
+
+        // the XML format does not see identities stored in the binary format
+        securityRealm = new FileSystemSecurityRealm(getRootPath(false), 2);
+        existingIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        assertFalse(existingIdentity.exists());
+        existingIdentity.dispose();
+    }
+
+    @Test
+    public void testBinaryFormatUnsupportedCredential() throws Exception {
+        FileSystemSecurityRealm securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(getRootPath())
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        identity.create();
+        PasswordFactory factory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR);
+        PasswordCredential passwordCredential = new PasswordCredential(factory.generatePassword(new ClearPasswordSpec("secretPassword".toCharArray())));
+        identity.setCredentials(Collections.singleton(passwordCredential));
+
+        // a credential the binary format cannot hold fails the write instead of being dropped
+        try {
+            identity.setCredentials(Arrays.asList(passwordCredential, new BearerTokenCredential("token")));
+            fail("Expected RealmUnavailableException not thrown");
+        } catch (RealmUnavailableException expected) {
+        }
+        identity.dispose();
+
+        identity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
+        assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("secretPassword".toCharArray())));
+        identity.dispose();
+    }
+
+    @Test
+    public void testCopyIdentitiesToBinaryFormat() throws Exception {
+        FileSystemSecurityRealm xmlRealm = new FileSystemSecurityRealm(getRootPath(), 2);
+        PasswordFactory factory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR);
+        for (String name : Arrays.asList("plainUser", "otherUser", "p")) {
+            ModifiableRealmIdentity identity = xmlRealm.getRealmIdentityForUpdate(new NamePrincipal(name));
+            identity.create();
+            identity.setCredentials(Collections.singleton(new PasswordCredential(factory.generatePassword(new ClearPasswordSpec((name + "Password").toCharArray())))));
+            MapAttributes attributes = new MapAttributes();
+            attributes.addFirst("name", name);
+            identity.setAttributes(attributes);
+            identity.dispose();
+        }
+
+        Path binaryRoot = getRootPath(false).resolve("binary");
+        FileSystemSecurityRealm binaryRealm = FileSystemSecurityRealm.builder()
+                .setRoot(binaryRoot)
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        assertEquals(3, xmlRealm.copyIdentitiesTo(binaryRealm));
+
+        for (String name : Arrays.asList("plainUser", "otherUser", "p")) {
+            ModifiableRealmIdentity identity = binaryRealm.getRealmIdentityForUpdate(new NamePrincipal(name));
+            assertTrue(identity.exists());
+            assertTrue(identity.verifyEvidence(new PasswordGuessEvidence((name + "Password").toCharArray())));
+            assertEquals(name, identity.getAuthorizationIdentity().getAttributes().getFirst("name"));
+            identity.dispose();
+        }
+    }
+
+    private void assertExistsEventually(FileSystemSecurityRealm securityRealm, String name, boolean expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 30000;
+        for (;;) {
+            RealmIdentity identity = securityRealm.getRealmIdentity(new NamePrincipal(name));
+            boolean exists = identity.exists();
+            identity.dispose();
+            if (exists == expected || System.currentTimeMillis() > deadline) {
+                assertEquals(expected, exists);
+                return;
+            }
+            Thread.sleep(50);
+        }
+    }
+
     private void assertCreateIdentityWithPassword(char[] actualPassword, Password credential) throws Exception {
         FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), 1);
         ModifiableRealmIdentity newIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal("plainUser"));
@@ -41,6 +41,11 @@ import java.security.Provider;
 import java.security.Security;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.wildfly.security.password.interfaces.ClearPassword.ALGORITHM_CLEAR;
 
@@ -137,6 +142,102 @@ public class DistributedSecurityRealmTest {
         identity.dispose();
     }
 
+    @Test
+    public void testParallelLookup() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DistributedSecurityRealm parallelRealm = new DistributedSecurityRealm(executor, 0, realm1, realm2, evidenceRealm, realm3);
+
+            RealmIdentity identity = parallelRealm.getRealmIdentity(new NamePrincipal("user3"));
+            Assert.assertTrue(identity.exists());
+            PasswordCredential credential = identity.getCredential(PasswordCredential.class);
+            Assert.assertFalse(credential.verify(new PasswordGuessEvidence(pass1)));
+            Assert.assertTrue(credential.verify(new PasswordGuessEvidence(pass3)));
+            identity.dispose();
+
+            identity = parallelRealm.getRealmIdentity(new NamePrincipal("user1"));
+            Assert.assertTrue(identity.exists());
+            Assert.assertTrue(identity.getCredential(PasswordCredential.class).verify(new PasswordGuessEvidence(pass1)));
+            identity.dispose();
+
+            identity = parallelRealm.getRealmIdentity(new NamePrincipal("user4"));
+            Assert.assertFalse(identity.exists());
+            identity.dispose();
+
+            identity = parallelRealm.getRealmIdentity(new SimpleEvidence("evidenceUser", true));
+            Assert.assertTrue(identity.exists());
+            Assert.assertEquals(new NamePrincipal("evidenceUser"), identity.getRealmIdentityPrincipal());
+            identity.dispose();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelLookupCancelledOnRuntimeException() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        SecurityRealm failingRealm = new UnavailableRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+                try {
+                    started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException();
+            }
+        };
+        SecurityRealm blockingRealm = new UnavailableRealm() {
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                throw new RealmUnavailableException();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DistributedSecurityRealm parallelRealm = new DistributedSecurityRealm(executor, 0, failingRealm, blockingRealm);
+            try {
+                parallelRealm.getRealmIdentity(new NamePrincipal("user1"));
+                Assert.fail("Expected IllegalStateException not thrown");
+            } catch (IllegalStateException expected) {
+            }
+
+            // the lookup still outstanding is cancelled
+            Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnavailableRealmSkipped() throws Exception {
+        UnavailableRealm unavailableRealm = new UnavailableRealm();
+        DistributedSecurityRealm skippingRealm = new DistributedSecurityRealm(null, 60000, unavailableRealm, realm1);
+
+        RealmIdentity identity = skippingRealm.getRealmIdentity(new NamePrincipal("user1"));
+        Assert.assertTrue(identity.exists());
+        identity.dispose();
+
+        identity = skippingRealm.getRealmIdentity(new NamePrincipal("user1"));
+        Assert.assertTrue(identity.exists());
+        Assert.assertTrue(identity.getCredential(PasswordCredential.class).verify(new PasswordGuessEvidence(pass1)));
+        identity.dispose();
+
+        Assert.assertEquals(1, unavailableRealm.lookupCount.get());
+    }
+
+    @Test(expected = RealmUnavailableException.class)
+    public void testUnavailableRealmPropagated() throws Exception {
+        new DistributedSecurityRealm(new UnavailableRealm(), realm1).getRealmIdentity(new NamePrincipal("user1"));
+    }
+
 
 
     private static PasswordCredential createPasswordCredential(char[] password) throws Exception {
@@ -156,6 +257,26 @@ public class DistributedSecurityRealmTest {
         return realm;
     }
 
+    private static class UnavailableRealm implements SecurityRealm {
+        private final AtomicInteger lookupCount = new AtomicInteger();
+
+        @Override
+        public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+            lookupCount.incrementAndGet();
+            throw new RealmUnavailableException();
+        }
+
+        @Override
+        public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) throws RealmUnavailableException {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
+
+        @Override
+        public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) throws RealmUnavailableException {
+            return SupportLevel.POSSIBLY_SUPPORTED;
+        }
+    }
+
     private class SimpleEvidence implements Evidence {
         private Principal principal;
         private boolean valid;
@@ -19,6 +19,7 @@
 package org.wildfly.security.auth.realm.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +30,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -36,6 +41,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.wildfly.security.password.WildFlyElytronPasswordProvider;
 import org.wildfly.security.auth.SupportLevel;
+import org.wildfly.security.auth.principal.NamePrincipal;
 import org.wildfly.security.auth.permission.LoginPermission;
 import org.wildfly.security.auth.realm.CacheableSecurityRealm;
 import org.wildfly.security.auth.realm.CachingSecurityRealm;
@@ -49,10 +55,12 @@ import org.wildfly.security.auth.server.SecurityRealm;
 import org.wildfly.security.auth.server.ServerAuthenticationContext;
 import org.wildfly.security.authz.MapAttributes;
 import org.wildfly.security.authz.RoleDecoder;
+import org.wildfly.security.cache.ConcurrentRealmIdentityCache;
 import org.wildfly.security.cache.LRURealmIdentityCache;
 import org.wildfly.security.cache.RealmIdentityCache;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.BearerTokenEvidence;
 import org.wildfly.security.evidence.Evidence;
 import org.wildfly.security.evidence.PasswordGuessEvidence;
 import org.wildfly.security.password.PasswordFactory;
@@ -66,6 +74,7 @@ import org.wildfly.security.password.spec.ClearPasswordSpec;
 public class SecurityRealmIdentityCacheTest {
 
     private AtomicInteger realmHitCount = new AtomicInteger();
+    private volatile CountDownLatch realmGate;
 
     @Before
     public void onBefore() {
@@ -122,6 +131,257 @@ public class SecurityRealmIdentityCacheTest {
         assertEquals(2, realmHitCount.get());
     }
 
+    @Test
+    public void testNegativeCache() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, new AtomicInteger()),
+                new ConcurrentRealmIdentityCache(10), new ConcurrentRealmIdentityCache(10, 60000), false);
+        Principal unknown = new NamePrincipal("unknown");
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(securityRealm.getRealmIdentity(unknown).exists());
+        }
+        assertEquals(1, realmHitCount.get());
+
+        listener.get().accept(unknown);
+
+        assertFalse(securityRealm.getRealmIdentity(unknown).exists());
+        assertEquals(2, realmHitCount.get());
+    }
+
+    @Test
+    public void testNegativeLRUCache() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, new AtomicInteger()),
+                new LRURealmIdentityCache(10), new LRURealmIdentityCache(2, 60000), false);
+        Principal first = new NamePrincipal("first");
+        Principal second = new NamePrincipal("second");
+        Principal third = new NamePrincipal("third");
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(securityRealm.getRealmIdentity(first).exists());
+            assertFalse(securityRealm.getRealmIdentity(second).exists());
+        }
+        assertEquals(2, realmHitCount.get());
+
+        // invalidating one principal keeps the other principals cached
+        listener.get().accept(first);
+
+        assertFalse(securityRealm.getRealmIdentity(second).exists());
+        assertEquals(2, realmHitCount.get());
+        assertFalse(securityRealm.getRealmIdentity(first).exists());
+        assertEquals(3, realmHitCount.get());
+
+        // the least recently used principal is evicted once the negative cache is full
+        assertFalse(securityRealm.getRealmIdentity(third).exists());
+        assertEquals(4, realmHitCount.get());
+        assertFalse(securityRealm.getRealmIdentity(first).exists());
+        assertFalse(securityRealm.getRealmIdentity(third).exists());
+        assertEquals(4, realmHitCount.get());
+        assertFalse(securityRealm.getRealmIdentity(second).exists());
+        assertEquals(5, realmHitCount.get());
+    }
+
+    @Test
+    public void testVerifiedEvidenceCache() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        AtomicInteger verifyCount = new AtomicInteger();
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, verifyCount),
+                new ConcurrentRealmIdentityCache(10), null, true);
+        Principal joe = new NamePrincipal("joe");
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(securityRealm.getRealmIdentity(joe).verifyEvidence(new PasswordGuessEvidence("valid".toCharArray())));
+        }
+        assertEquals(1, verifyCount.get());
+
+        // the verified guess is also cached as a credential, which rejects other guesses
+        assertFalse(securityRealm.getRealmIdentity(joe).verifyEvidence(new PasswordGuessEvidence("invalid".toCharArray())));
+        assertFalse(securityRealm.getRealmIdentity(joe).verifyEvidence(new PasswordGuessEvidence("invalid".toCharArray())));
+        assertEquals(1, verifyCount.get());
+
+        listener.get().accept(joe);
+
+        assertTrue(securityRealm.getRealmIdentity(joe).verifyEvidence(new PasswordGuessEvidence("valid".toCharArray())));
+        assertEquals(2, verifyCount.get());
+        assertEquals(2, realmHitCount.get());
+    }
+
+    @Test
+    public void testBearerTokenEvidenceNotCached() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        AtomicInteger verifyCount = new AtomicInteger();
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, verifyCount),
+                new ConcurrentRealmIdentityCache(10), null, true);
+        Principal joe = new NamePrincipal("joe");
+
+        // a token can expire or be revoked while the identity remains cached
+        for (int i = 0; i < 10; i++) {
+            assertTrue(securityRealm.getRealmIdentity(joe).verifyEvidence(new BearerTokenEvidence("valid")));
+        }
+        assertEquals(10, verifyCount.get());
+        assertEquals(1, realmHitCount.get());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        CountDownLatch refreshed = new CountDownLatch(1);
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, new AtomicInteger()),
+                new ConcurrentRealmIdentityCache(10), null, false, refreshExecutor(refreshed), 0, 60000);
+        Principal joe = new NamePrincipal("joe");
+
+        RealmIdentity original = securityRealm.getRealmIdentity(joe);
+        assertEquals(1, realmHitCount.get());
+        awaitClock(1);
+
+        // the stale identity is returned while the reload is blocked in the realm
+        realmGate = new CountDownLatch(1);
+        assertTrue(original == securityRealm.getRealmIdentity(joe));
+        assertTrue(original == securityRealm.getRealmIdentity(joe));
+        assertEquals(2, securityRealm.getRefreshHitCount());
+        realmGate.countDown();
+        assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+
+        assertEquals(2, realmHitCount.get());
+        assertTrue(original != securityRealm.getRealmIdentity(joe));
+        assertEquals(0, securityRealm.getRefreshMissCount());
+    }
+
+    @Test
+    public void testRefreshAheadInvalidatedDuringReload() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        CountDownLatch refreshed = new CountDownLatch(1);
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, new AtomicInteger()),
+                new ConcurrentRealmIdentityCache(10), null, false, refreshExecutor(refreshed), 0, 60000);
+        Principal joe = new NamePrincipal("joe");
+
+        securityRealm.getRealmIdentity(joe);
+        awaitClock(1);
+
+        realmGate = new CountDownLatch(1);
+        securityRealm.getRealmIdentity(joe);
+        listener.get().accept(joe);
+        realmGate.countDown();
+        assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+        assertEquals(2, realmHitCount.get());
+
+        // the identity loaded before the invalidation must not be cached
+        securityRealm.getRealmIdentity(joe);
+        assertEquals(3, realmHitCount.get());
+    }
+
+    @Test
+    public void testRefreshAheadMaxStaleness() throws Exception {
+        AtomicReference<Consumer<Principal>> listener = new AtomicReference<>();
+        CachingSecurityRealm securityRealm = new CachingSecurityRealm(createCountingRealm(listener, new AtomicInteger()),
+                new ConcurrentRealmIdentityCache(10), null, false, command -> {}, 0, 1);
+        Principal joe = new NamePrincipal("joe");
+
+        RealmIdentity original = securityRealm.getRealmIdentity(joe);
+        assertEquals(1, realmHitCount.get());
+        awaitClock(2);
+
+        assertTrue(original != securityRealm.getRealmIdentity(joe));
+        assertEquals(2, realmHitCount.get());
+        assertEquals(1, securityRealm.getRefreshMissCount());
+    }
+
+    /**
+     * Create an executor running each reload in a new thread, counting down the given latch once a reload completes.
+     */
+    private static Executor refreshExecutor(CountDownLatch refreshed) {
+        return command -> new Thread(() -> {
+            try {
+                command.run();
+            } finally {
+                refreshed.countDown();
+            }
+        }).start();
+    }
+
+    /**
+     * Wait until the clock has moved on by more than the given number of milliseconds, so identities loaded before are older
+     * than that age.
+     */
+    private static void awaitClock(long millis) {
+        final long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start <= millis) {
+            Thread.yield();
+        }
+    }
+
+    private CacheableSecurityRealm createCountingRealm(AtomicReference<Consumer<Principal>> listener, AtomicInteger verifyCount) {
+        return new CacheableSecurityRealm() {
+            @Override
+            public void registerIdentityChangeListener(Consumer<Principal> identityChangeListener) {
+                listener.set(identityChangeListener);
+            }
+
+            @Override
+            public RealmIdentity getRealmIdentity(Principal principal) throws RealmUnavailableException {
+                realmHitCount.incrementAndGet();
+                CountDownLatch gate = realmGate;
+                if (gate != null) {
+                    try {
+                        gate.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if ("joe".equals(principal.getName()) == false) {
+                    return RealmIdentity.NON_EXISTENT;
+                }
+                return new RealmIdentity() {
+                    @Override
+                    public Principal getRealmIdentityPrincipal() {
+                        return principal;
+                    }
+
+                    @Override
+                    public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+                        return SupportLevel.UNSUPPORTED;
+                    }
+
+                    @Override
+                    public <C extends Credential> C getCredential(Class<C> credentialType) {
+                        return null;
+                    }
+
+                    @Override
+                    public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+                        return BearerTokenEvidence.class.isAssignableFrom(evidenceType) || PasswordGuessEvidence.class.isAssignableFrom(evidenceType)
+                                ? SupportLevel.SUPPORTED : SupportLevel.UNSUPPORTED;
+                    }
+
+                    @Override
+                    public boolean verifyEvidence(Evidence evidence) {
+                        verifyCount.incrementAndGet();
+                        if (evidence instanceof PasswordGuessEvidence) {
+                            return "valid".equals(new String(((PasswordGuessEvidence) evidence).getGuess()));
+                        }
+                        return evidence instanceof BearerTokenEvidence && "valid".equals(((BearerTokenEvidence) evidence).getToken());
+                    }
+
+                    @Override
+                    public boolean exists() {
+                        return true;
+                    }
+                };
+            }
+
+            @Override
+            public SupportLevel getCredentialAcquireSupport(Class<? extends Credential> credentialType, String algorithmName, AlgorithmParameterSpec parameterSpec) {
+                return SupportLevel.UNSUPPORTED;
+            }
+
+            @Override
+            public SupportLevel getEvidenceVerifySupport(Class<? extends Evidence> evidenceType, String algorithmName) {
+                return SupportLevel.POSSIBLY_SUPPORTED;
+            }
+        };
+    }
+
     private SecurityRealm createSecurityRealm(RealmIdentityCache cache) {
         SimpleMapBackedSecurityRealm realm = new SimpleMapBackedSecurityRealm();
         Map<String, SimpleRealmEntry> users = new HashMap<>();
@@ -26,12 +26,14 @@ import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.PlainHeader;
 import com.nimbusds.jose.PlainObject;
+import com.nimbusds.jose.crypto.ECDSASigner;
 import com.nimbusds.jose.crypto.RSASSASigner;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.net.URI;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
@@ -40,10 +42,15 @@ import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPoint;
 import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
@@ -286,6 +293,107 @@ public class JwtSecurityRealmTest extends BaseTestCase {
         assertIdentityNotExist(securityRealm, evidence9);
     }
 
+    @Test
+    public void testEcSignature() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ecKeyPair = generator.generateKeyPair();
+
+        BearerTokenEvidence evidence1 = new BearerTokenEvidence(createJwt(new ECDSASigner((ECPrivateKey) ecKeyPair.getPrivate()), JWSAlgorithm.ES256, 60, -1, null, null));
+        BearerTokenEvidence evidence2 = new BearerTokenEvidence(createJwt(keyPair1));
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .publicKey(ecKeyPair.getPublic())
+                        .build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence1);
+        assertIdentityNotExist(securityRealm, evidence2);
+    }
+
+    @Test
+    public void testRsaPssSignature() throws Exception {
+        BearerTokenEvidence evidence1 = new BearerTokenEvidence(createJwt(new RSASSASigner(keyPair1.getPrivate()), JWSAlgorithm.PS256, 60, -1, null, null));
+        BearerTokenEvidence evidence2 = new BearerTokenEvidence(createJwt(new RSASSASigner(keyPair2.getPrivate()), JWSAlgorithm.PS256, 60, -1, null, null));
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .publicKey(keyPair1.getPublic())
+                        .build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence1);
+        assertIdentityNotExist(securityRealm, evidence2);
+    }
+
+    @Test
+    public void testEcJku() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ecKeyPair = generator.generateKeyPair();
+        ECPoint point = ((ECPublicKey) ecKeyPair.getPublic()).getW();
+
+        JsonObject ecJwk = Json.createObjectBuilder()
+                .add("kty", "EC")
+                .add("alg", "ES256")
+                .add("kid", "ec")
+                .add("crv", "P-256")
+                .add("x", Base64.getUrlEncoder().withoutPadding().encodeToString(toUnsignedBytes(point.getAffineX(), 32)))
+                .add("y", Base64.getUrlEncoder().withoutPadding().encodeToString(toUnsignedBytes(point.getAffineY(), 32)))
+                .build();
+        server.setDispatcher(createTokenDispatcher(Json.createObjectBuilder().add("keys", Json.createArrayBuilder().add(ecJwk)).build().toString()));
+
+        BearerTokenEvidence evidence1 = new BearerTokenEvidence(createJwt(new ECDSASigner((ECPrivateKey) ecKeyPair.getPrivate()), JWSAlgorithm.ES256, 60, -1, "ec", new URI("https://localhost:50831")));
+        BearerTokenEvidence evidence2 = new BearerTokenEvidence(createJwt(keyPair1, 60, -1, "ec", new URI("https://localhost:50831")));
+
+        X509TrustManager tm = getTrustManager();
+        SSLContext sslContext = new SSLContextBuilder().setTrustManager(tm).setClientMode(true).setSessionTimeout(10).build().create();
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .useSslContext(sslContext)
+                        .useSslHostnameVerifier((a,b) -> true).build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence1);
+        assertIdentityNotExist(securityRealm, evidence2);
+
+        server.setDispatcher(createTokenDispatcher(jwksResponse));
+    }
+
+    @Test
+    public void testTokenCache() throws Exception {
+        BearerTokenEvidence evidence1 = new BearerTokenEvidence(createJwt(keyPair1, 60, -1));
+        BearerTokenEvidence evidence2 = new BearerTokenEvidence(createJwt(keyPair2, 60, -1));
+        BearerTokenEvidence evidence3 = new BearerTokenEvidence(createJwt(keyPair1, -1, -1));
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .publicKey(keyPair1.getPublic())
+                        .tokenCacheSize(1)
+                        .build())
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertIdentityExist(securityRealm, evidence1);
+            assertIdentityNotExist(securityRealm, evidence2);
+            assertIdentityNotExist(securityRealm, evidence3);
+        }
+    }
+
     @Test
     public void testUnsecuredJkuEndpoint() throws Exception {
         BearerTokenEvidence evidence = new BearerTokenEvidence(createJwt(keyPair1, 60, -1, "1", new URI("https://localhost:50832")));
@@ -352,9 +460,131 @@ public class JwtSecurityRealmTest extends BaseTestCase {
 
         assertIdentityExist(securityRealm, evidence);
 
-        //Now the keys need to be re-cached
+        //Now the keys need to be re-cached, the previously fetched keys are still used when this fails
 
-        assertIdentityNotExist(securityRealm, evidence);
+        assertIdentityExist(securityRealm, evidence);
+
+        server.setDispatcher(createTokenDispatcher(jwksResponse));
+    }
+
+    @Test
+    public void testJkuNotModified() throws Exception {
+        AtomicInteger requestCount = new AtomicInteger();
+        String[] ifNoneMatch = new String[1];
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                if (requestCount.incrementAndGet() == 1) {
+                    return new MockResponse().setBody(jwksResponse).setHeader("ETag", "\"keys-1\"");
+                }
+                ifNoneMatch[0] = recordedRequest.getHeader("If-None-Match");
+                return new MockResponse().setResponseCode(HttpsURLConnection.HTTP_NOT_MODIFIED);
+            }
+        });
+
+        BearerTokenEvidence evidence = new BearerTokenEvidence(createJwt(keyPair1, 60, -1, "1", new URI("https://localhost:50831")));
+
+        X509TrustManager tm = getTrustManager();
+        SSLContext sslContext = new SSLContextBuilder().setTrustManager(tm).setClientMode(true).setSessionTimeout(10).build().create();
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .setJkuTimeout(0) //Keys will be revalidated on every request
+                        .useSslContext(sslContext)
+                        .useSslHostnameVerifier((a,b) -> true).build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence);
+        assertIdentityExist(securityRealm, evidence);
+
+        assertEquals(2, requestCount.get());
+        assertEquals("\"keys-1\"", ifNoneMatch[0]);
+
+        server.setDispatcher(createTokenDispatcher(jwksResponse));
+    }
+
+    @Test
+    public void testJkuCacheControl() throws Exception {
+        AtomicInteger requestCount = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                requestCount.incrementAndGet();
+                return new MockResponse().setBody(jwksResponse).setHeader("Cache-Control", "public, max-age=3600");
+            }
+        });
+
+        BearerTokenEvidence evidence = new BearerTokenEvidence(createJwt(keyPair1, 60, -1, "1", new URI("https://localhost:50831")));
+
+        X509TrustManager tm = getTrustManager();
+        SSLContext sslContext = new SSLContextBuilder().setTrustManager(tm).setClientMode(true).setSessionTimeout(10).build().create();
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .setJkuTimeout(0) //Overridden by the Cache-Control response header
+                        .useSslContext(sslContext)
+                        .useSslHostnameVerifier((a,b) -> true).build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence);
+        assertIdentityExist(securityRealm, evidence);
+        assertIdentityExist(securityRealm, evidence);
+
+        assertEquals(1, requestCount.get());
+
+        server.setDispatcher(createTokenDispatcher(jwksResponse));
+    }
+
+    @Test
+    public void testJkuUnknownKid() throws Exception {
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        dispatcher.enqueueResponse(new MockResponse().setBody(jwksToJson(jwk1).toString()));
+        dispatcher.enqueueResponse(new MockResponse().setBody(jwksToJson(jwk1, jwk2).toString()));
+        server.setDispatcher(dispatcher);
+
+        BearerTokenEvidence evidence1 = new BearerTokenEvidence(createJwt(keyPair1, 60, -1, "1", new URI("https://localhost:50831")));
+        BearerTokenEvidence evidence2 = new BearerTokenEvidence(createJwt(keyPair2, 60, -1, "2", new URI("https://localhost:50831")));
+
+        X509TrustManager tm = getTrustManager();
+        SSLContext sslContext = new SSLContextBuilder().setTrustManager(tm).setClientMode(true).setSessionTimeout(10).build().create();
+
+        TokenSecurityRealm rateLimitedRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .useSslContext(sslContext)
+                        .useSslHostnameVerifier((a,b) -> true).build())
+                .build();
+
+        assertIdentityExist(rateLimitedRealm, evidence1);
+        //The keys were fetched too recently to be fetched again
+        assertIdentityNotExist(rateLimitedRealm, evidence2);
+
+        dispatcher = new QueueDispatcher();
+        dispatcher.enqueueResponse(new MockResponse().setBody(jwksToJson(jwk1).toString()));
+        dispatcher.enqueueResponse(new MockResponse().setBody(jwksToJson(jwk1, jwk2).toString()));
+        server.setDispatcher(dispatcher);
+
+        TokenSecurityRealm securityRealm = TokenSecurityRealm.builder()
+                .principalClaimName("sub")
+                .validator(JwtValidator.builder()
+                        .issuer("elytron-oauth2-realm")
+                        .audience("my-app-valid")
+                        .setJkuMinTimeBetweenRequests(0)
+                        .useSslContext(sslContext)
+                        .useSslHostnameVerifier((a,b) -> true).build())
+                .build();
+
+        assertIdentityExist(securityRealm, evidence1);
+        //The unknown kid causes the keys to be fetched again immediately
+        assertIdentityExist(securityRealm, evidence2);
 
         server.setDispatcher(createTokenDispatcher(jwksResponse));
     }
@@ -659,10 +889,13 @@ public class JwtSecurityRealmTest extends BaseTestCase {
 
     private String createJwt(KeyPair keyPair, int expirationOffset, int notBeforeOffset, String kid, URI jku) throws Exception {
         PrivateKey privateKey = keyPair.getPrivate();
-        JWSSigner signer = new RSASSASigner(privateKey);
+        return createJwt(new RSASSASigner(privateKey), JWSAlgorithm.RS256, expirationOffset, notBeforeOffset, kid, jku);
+    }
+
+    private String createJwt(JWSSigner signer, JWSAlgorithm algorithm, int expirationOffset, int notBeforeOffset, String kid, URI jku) throws Exception {
         JsonObjectBuilder claimsBuilder = createClaims(expirationOffset, notBeforeOffset);
 
-        JWSHeader.Builder headerBuilder = new JWSHeader.Builder(JWSAlgorithm.RS256)
+        JWSHeader.Builder headerBuilder = new JWSHeader.Builder(algorithm)
                 .type(new JOSEObjectType("jwt"));
 
         if (jku != null) {
@@ -723,6 +956,14 @@ public class JwtSecurityRealmTest extends BaseTestCase {
         return tm;
     }
 
+    private static byte[] toUnsignedBytes(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        byte[] result = new byte[length];
+        int copied = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copied, result, length - copied, copied);
+        return result;
+    }
+
     private static JsonObject jwksToJson(RsaJwk... jwks) {
         JsonArrayBuilder jab = Json.createArrayBuilder();
         for (int i = 0; i < jwks.length; i++){
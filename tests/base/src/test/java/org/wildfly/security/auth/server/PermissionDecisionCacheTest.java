@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.security.auth.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.PropertyPermission;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.wildfly.security.auth.permission.LoginPermission;
+import org.wildfly.security.auth.realm.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.permission.PermissionVerifier;
+
+/**
+ * Tests of the permission decision cache of {@link SecurityIdentity}.
+ */
+// has dependency on wildfly-elytron-realm
+public class PermissionDecisionCacheTest {
+
+    private static SecurityDomain createDomain(AtomicInteger evaluations, int permissionCacheSize) {
+        SecurityDomain.Builder builder = SecurityDomain.builder();
+        builder.addRealm("default", new SimpleMapBackedSecurityRealm()).build();
+        builder.setDefaultRealmName("default");
+        builder.setPermissionMapper((permissionMappable, roles) -> permission -> {
+            evaluations.incrementAndGet();
+            return PermissionVerifier.from(new LoginPermission()).implies(permission)
+                    || new PropertyPermission("java.*", "read").implies(permission);
+        });
+        builder.setPermissionCacheSize(permissionCacheSize);
+        return builder.build();
+    }
+
+    @Test
+    public void testDecisionsCached() {
+        AtomicInteger evaluations = new AtomicInteger();
+        SecurityDomain domain = createDomain(evaluations, 10);
+        SecurityIdentity identity = domain.getAnonymousSecurityIdentity();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(identity.implies(new LoginPermission()));
+            assertTrue(identity.implies(new PropertyPermission("java.home", "read")));
+            assertFalse(identity.implies(new PropertyPermission("java.home", "write")));
+        }
+        assertEquals(3, evaluations.get());
+        assertEquals(6, domain.getPermissionCacheHitCount());
+        assertEquals(3, domain.getPermissionCacheMissCount());
+
+        // derived identities do not share the decisions of the identity they were created from
+        SecurityIdentity restricted = identity.intersectWith(PermissionVerifier.from(new LoginPermission()));
+        assertTrue(restricted.implies(new LoginPermission()));
+        assertFalse(restricted.implies(new PropertyPermission("java.home", "read")));
+        assertEquals(5, evaluations.get());
+        assertTrue(restricted.implies(new LoginPermission()));
+        assertEquals(5, evaluations.get());
+    }
+
+    @Test
+    public void testCacheBounded() {
+        AtomicInteger evaluations = new AtomicInteger();
+        SecurityDomain domain = createDomain(evaluations, 2);
+        SecurityIdentity identity = domain.getAnonymousSecurityIdentity();
+
+        for (int i = 0; i < 10; i++) {
+            identity.implies(new PropertyPermission("java.property" + i, "read"));
+        }
+        assertEquals(10, evaluations.get());
+        assertTrue(identity.implies(new PropertyPermission("java.property9", "read")));
+        assertEquals(10, evaluations.get());
+    }
+
+    @Test
+    public void testCacheDisabledByDefault() {
+        AtomicInteger evaluations = new AtomicInteger();
+        SecurityDomain domain = createDomain(evaluations, 0);
+        SecurityIdentity identity = domain.getAnonymousSecurityIdentity();
+
+        assertTrue(identity.implies(new LoginPermission()));
+        assertTrue(identity.implies(new LoginPermission()));
+        assertEquals(2, evaluations.get());
+        assertEquals(0, domain.getPermissionCacheHitCount());
+        assertEquals(0, domain.getPermissionCacheMissCount());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.sasl.scram;
+
+import static org.junit.Assert.fail;
+
+import java.security.Provider;
+import java.util.function.Supplier;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.sasl.AuthorizeCallback;
+
+import org.junit.Test;
+import org.wildfly.security.auth.callback.CredentialCallback;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.mechanism.AuthenticationMechanismException;
+import org.wildfly.security.mechanism.scram.ScramClient;
+import org.wildfly.security.mechanism.scram.ScramFinalClientMessage;
+import org.wildfly.security.mechanism.scram.ScramFinalServerMessage;
+import org.wildfly.security.mechanism.scram.ScramInitialClientMessage;
+import org.wildfly.security.mechanism.scram.ScramInitialServerResult;
+import org.wildfly.security.mechanism.scram.ScramMechanism;
+import org.wildfly.security.mechanism.scram.ScramServer;
+import org.wildfly.security.password.Password;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.WildFlyElytronPasswordProvider;
+import org.wildfly.security.password.interfaces.ClearPassword;
+import org.wildfly.security.password.interfaces.ScramDigestPassword;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+
+/**
+ * Tests of the keys a {@link ScramServer} derives from the salted passwords of the users, which are reused by the
+ * following exchanges using the same password.
+ */
+public class ScramServerKeysTest {
+
+    private static final Supplier<Provider[]> PROVIDERS = () -> new Provider[] { WildFlyElytronPasswordProvider.getInstance() };
+    private static final ScramMechanism MECHANISM = ScramMechanism.SCRAM_SHA_256;
+
+    private static Password scramPassword(String password, String salt) throws Exception {
+        PasswordFactory factory = PasswordFactory.getInstance(ScramDigestPassword.ALGORITHM_SCRAM_SHA_256, WildFlyElytronPasswordProvider.getInstance());
+        return factory.generatePassword(new EncryptablePasswordSpec(password.toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4096, salt.getBytes())));
+    }
+
+    private static Password clearPassword(String password) throws Exception {
+        PasswordFactory factory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR, WildFlyElytronPasswordProvider.getInstance());
+        return factory.generatePassword(new ClearPasswordSpec(password.toCharArray()));
+    }
+
+    private static CallbackHandler serverCallbackHandler(Password password) {
+        return callbacks -> {
+            for (Callback callback : callbacks) {
+                if (callback instanceof NameCallback) {
+                    // accepted
+                } else if (callback instanceof CredentialCallback && ((CredentialCallback) callback).isCredentialTypeSupported(PasswordCredential.class, password.getAlgorithm())) {
+                    ((CredentialCallback) callback).setCredential(new PasswordCredential(password));
+                } else if (callback instanceof AuthorizeCallback) {
+                    AuthorizeCallback authorizeCallback = (AuthorizeCallback) callback;
+                    authorizeCallback.setAuthorized(authorizeCallback.getAuthenticationID().equals(authorizeCallback.getAuthorizationID()));
+                } else {
+                    throw new UnsupportedCallbackException(callback);
+                }
+            }
+        };
+    }
+
+    private static CallbackHandler clientCallbackHandler(String password) throws Exception {
+        Password clearPassword = clearPassword(password);
+        return callbacks -> {
+            for (Callback callback : callbacks) {
+                if (callback instanceof NameCallback) {
+                    ((NameCallback) callback).setName("user");
+                } else if (callback instanceof CredentialCallback && ((CredentialCallback) callback).isCredentialTypeSupported(PasswordCredential.class, ClearPassword.ALGORITHM_CLEAR)) {
+                    ((CredentialCallback) callback).setCredential(new PasswordCredential(clearPassword));
+                } else {
+                    throw new UnsupportedCallbackException(callback);
+                }
+            }
+        };
+    }
+
+    private static void authenticate(String clientPassword, Password serverPassword) throws Exception {
+        ScramClient client = MECHANISM.createClient(null, clientCallbackHandler(clientPassword), null, null, 4096, 32768, PROVIDERS);
+        ScramServer server = MECHANISM.createServer(serverCallbackHandler(serverPassword), null, null, 4096, 32768, PROVIDERS);
+
+        ScramInitialClientMessage clientFirst = client.getInitialResponse();
+        ScramInitialClientMessage serverClientFirst = server.parseInitialClientMessage(null, clientFirst.getMessageBytes());
+        ScramInitialServerResult serverFirst = server.evaluateInitialResponse(serverClientFirst);
+        ScramFinalClientMessage clientFinal = client.handleInitialChallenge(clientFirst,
+                client.parseInitialServerMessage(clientFirst, serverFirst.getScramInitialChallenge().getMessageBytes()));
+        ScramFinalServerMessage serverFinal = server.evaluateFinalClientMessage(serverFirst,
+                server.parseFinalClientMessage(serverClientFirst, serverFirst, clientFinal.getMessageBytes()));
+        client.verifyFinalChallenge(clientFinal, client.parseFinalServerMessage(serverFinal.getMessageBytes()));
+    }
+
+    private static void assertRejected(String clientPassword, Password serverPassword) throws Exception {
+        try {
+            authenticate(clientPassword, serverPassword);
+            fail("Expected the client proof to be rejected");
+        } catch (AuthenticationMechanismException expected) {
+        }
+    }
+
+    /**
+     * The client also verifies the server signature, derived from the cached server key after the first exchange.
+     */
+    @Test
+    public void testRepeatedAuthentication() throws Exception {
+        Password password = scramPassword("pencil", "salt-repeated");
+        for (int i = 0; i < 5; i++) {
+            authenticate("pencil", password);
+            assertRejected("pen", password);
+        }
+        // an equal password of another instance
+        authenticate("pencil", scramPassword("pencil", "salt-repeated"));
+    }
+
+    @Test
+    public void testChangedPassword() throws Exception {
+        Password password = scramPassword("pencil", "salt-changed");
+        authenticate("pencil", password);
+
+        Password changed = scramPassword("crayon", "salt-changed");
+        assertRejected("pencil", changed);
+        authenticate("crayon", changed);
+
+        Password salted = scramPassword("crayon", "salt-changed-again");
+        authenticate("crayon", salted);
+        assertRejected("pencil", salted);
+    }
+
+    /**
+     * A clear password is salted again for each exchange, so its keys are derived for each exchange.
+     */
+    @Test
+    public void testClearPassword() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            authenticate("pencil", clearPassword("pencil"));
+            assertRejected("pen", clearPassword("pencil"));
+        }
+        authenticate("crayon", clearPassword("crayon"));
+    }
+}
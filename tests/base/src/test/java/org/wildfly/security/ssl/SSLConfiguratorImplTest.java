@@ -37,6 +37,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -117,4 +118,22 @@ public class SSLConfiguratorImplTest {
         assertEquals("HTTPS", copiedSSLParams.getEndpointIdentificationAlgorithm());
     }
 
+    @Test
+    public void testEvaluationCached() {
+        AtomicInteger evaluations = new AtomicInteger();
+        SSLConfiguratorImpl.EvaluationCache cache = new SSLConfiguratorImpl.EvaluationCache(supported -> {
+            evaluations.incrementAndGet();
+            return ProtocolSelector.DEFAULT_SELECTOR.evaluate(supported);
+        });
+
+        String[] enabled = cache.evaluate(new String[]{"SSLv3", "TLSv1.2", "TLSv1.3"});
+        assertTrue(Arrays.equals(new String[]{"TLSv1.3", "TLSv1.2"}, enabled));
+        enabled[0] = "modified";
+        assertTrue(Arrays.equals(new String[]{"TLSv1.3", "TLSv1.2"}, cache.evaluate(new String[]{"SSLv3", "TLSv1.2", "TLSv1.3"})));
+        assertEquals(1, evaluations.get());
+
+        assertTrue(Arrays.equals(new String[]{"TLSv1.2"}, cache.evaluate(new String[]{"TLSv1.2"})));
+        assertEquals(2, evaluations.get());
+    }
+
 }
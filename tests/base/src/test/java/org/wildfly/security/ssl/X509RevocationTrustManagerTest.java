@@ -0,0 +1,271 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2020 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.security.auth.x500.X500Principal;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.asn1.DEREncoder;
+import org.wildfly.security.x500.cert.BasicConstraintsExtension;
+import org.wildfly.security.x500.cert.X509CertificateBuilder;
+
+/**
+ * Tests of the CRL index, the CRL refresh and the validation cache of {@link X509RevocationTrustManager}.
+ */
+public class X509RevocationTrustManagerTest {
+
+    private static final X500Principal CA_DN = new X500Principal("CN=Revocation CA, O=Elytron");
+    private static final String SHA256_WITH_RSA_OID = "1.2.840.113549.1.1.11";
+
+    private static KeyPair caKeyPair;
+    private static X509Certificate caCertificate;
+    private static X509Certificate firstCertificate;
+    private static X509Certificate secondCertificate;
+    private static KeyStore trustStore;
+
+    @BeforeClass
+    public static void createCertificates() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        caKeyPair = generator.generateKeyPair();
+        caCertificate = new X509CertificateBuilder()
+                .setIssuerDn(CA_DN)
+                .setSubjectDn(CA_DN)
+                .setSerialNumber(BigInteger.ONE)
+                .setSignatureAlgorithmName("SHA256withRSA")
+                .setSigningKey(caKeyPair.getPrivate())
+                .setPublicKey(caKeyPair.getPublic())
+                .addExtension(new BasicConstraintsExtension(false, true, -1))
+                .build();
+        KeyPair keyPair = generator.generateKeyPair();
+        firstCertificate = issue(BigInteger.valueOf(2), "CN=First", keyPair);
+        secondCertificate = issue(BigInteger.valueOf(3), "CN=Second", keyPair);
+
+        trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", caCertificate);
+    }
+
+    private static X509Certificate issue(BigInteger serialNumber, String subject, KeyPair keyPair) throws CertificateException {
+        return new X509CertificateBuilder()
+                .setIssuerDn(CA_DN)
+                .setSubjectDn(new X500Principal(subject))
+                .setSerialNumber(serialNumber)
+                .setSignatureAlgorithmName("SHA256withRSA")
+                .setSigningKey(caKeyPair.getPrivate())
+                .setPublicKey(keyPair.getPublic())
+                .build();
+    }
+
+    private static byte[] createCrl(PrivateKey signingKey, BigInteger... revoked) throws Exception {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+        DEREncoder tbs = new DEREncoder();
+        tbs.startSequence();
+        tbs.encodeInteger(BigInteger.ONE);
+        tbs.startSequence();
+        tbs.encodeObjectIdentifier(SHA256_WITH_RSA_OID);
+        tbs.encodeNull();
+        tbs.endSequence();
+        tbs.writeEncoded(CA_DN.getEncoded());
+        tbs.encodeGeneralizedTime(now.minusMinutes(1));
+        tbs.encodeGeneralizedTime(now.plusDays(1));
+        if (revoked.length > 0) {
+            tbs.startSequence();
+            for (BigInteger serialNumber : revoked) {
+                tbs.startSequence();
+                tbs.encodeInteger(serialNumber);
+                tbs.encodeGeneralizedTime(now.minusMinutes(1));
+                tbs.endSequence();
+            }
+            tbs.endSequence();
+        }
+        tbs.endSequence();
+        byte[] tbsCrl = tbs.getEncoded();
+
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(signingKey);
+        signature.update(tbsCrl);
+
+        DEREncoder crl = new DEREncoder();
+        crl.startSequence();
+        crl.writeEncoded(tbsCrl);
+        crl.startSequence();
+        crl.encodeObjectIdentifier(SHA256_WITH_RSA_OID);
+        crl.encodeNull();
+        crl.endSequence();
+        crl.encodeBitString(signature.sign());
+        crl.endSequence();
+        return crl.getEncoded();
+    }
+
+    private static X509RevocationTrustManager.Builder builder() throws Exception {
+        return X509RevocationTrustManager.builder()
+                .setTrustStore(trustStore)
+                .setTrustManagerFactory(TrustManagerFactory.getInstance("PKIX"))
+                .setPreferCrls(true)
+                .setNoFallback(true);
+    }
+
+    @Test
+    public void testRevokedByCrl() throws Exception {
+        X509RevocationTrustManager trustManager = builder()
+                .setCrlStream(new ByteArrayInputStream(createCrl(caKeyPair.getPrivate(), BigInteger.valueOf(2))))
+                .setRevocationCacheTime(60_000)
+                .build();
+
+        trustManager.checkClientTrusted(new X509Certificate[] { secondCertificate }, "RSA");
+        // a cached result for one certificate must not be used for another one from the same issuer
+        assertRevoked(trustManager, firstCertificate);
+        trustManager.checkClientTrusted(new X509Certificate[] { secondCertificate }, "RSA");
+    }
+
+    @Test
+    public void testUntrustedCrlNotIndexed() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        X509RevocationTrustManager trustManager = builder()
+                .setCrlStream(new ByteArrayInputStream(createCrl(generator.generateKeyPair().getPrivate(), BigInteger.valueOf(2))))
+                .build();
+
+        // a list which only matches the issuer name is left to the full revocation check, which rejects the list itself
+        CertificateException e = assertRevoked(trustManager, firstCertificate);
+        assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CertPathValidatorException);
+
+        // a list signed by the trusted issuer rejects the certificate before a certification path is validated
+        trustManager = builder()
+                .setCrlStream(new ByteArrayInputStream(createCrl(caKeyPair.getPrivate(), BigInteger.valueOf(2))))
+                .build();
+        e = assertRevoked(trustManager, firstCertificate);
+        assertNull(e.getCause());
+    }
+
+    @Test
+    public void testCrlSourceRefresh() throws Exception {
+        AtomicReference<byte[]> crl = new AtomicReference<>(createCrl(caKeyPair.getPrivate()));
+        AtomicInteger reads = new AtomicInteger();
+        X509RevocationTrustManager trustManager = builder()
+                .setCrlSource(() -> {
+                    reads.incrementAndGet();
+                    return new ByteArrayInputStream(crl.get());
+                })
+                .setCrlRefreshInterval(1)
+                .setRevocationCacheTime(60_000)
+                .build();
+        assertEquals(1, reads.get());
+
+        trustManager.checkServerTrusted(new X509Certificate[] { firstCertificate }, "RSA");
+        trustManager.checkServerTrusted(new X509Certificate[] { firstCertificate }, "RSA");
+
+        // the new list is picked up on refresh even though the chain has been cached
+        crl.set(createCrl(caKeyPair.getPrivate(), BigInteger.valueOf(2)));
+        Thread.sleep(5);
+        assertRevoked(trustManager, firstCertificate);
+        trustManager.checkServerTrusted(new X509Certificate[] { secondCertificate }, "RSA");
+    }
+
+    @Test
+    public void testOcspResponseNextUpdate() throws Exception {
+        ZonedDateTime thisUpdate = ZonedDateTime.of(2020, 3, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+        ZonedDateTime nextUpdate = thisUpdate.plusHours(12);
+
+        DEREncoder basic = new DEREncoder();
+        basic.startSequence(); // BasicOCSPResponse
+        basic.startSequence(); // ResponseData
+        basic.startExplicit(1);
+        basic.writeEncoded(CA_DN.getEncoded());
+        basic.endExplicit();
+        basic.encodeGeneralizedTime(thisUpdate);
+        basic.startSequence();
+        for (ZonedDateTime singleNextUpdate : new ZonedDateTime[] { nextUpdate.plusHours(1), nextUpdate, null }) {
+            basic.startSequence(); // SingleResponse
+            basic.startSequence(); // CertID
+            basic.startSequence();
+            basic.encodeObjectIdentifier("1.3.14.3.2.26");
+            basic.endSequence();
+            basic.encodeOctetString(new byte[20]);
+            basic.encodeOctetString(new byte[20]);
+            basic.encodeInteger(BigInteger.valueOf(2));
+            basic.endSequence();
+            basic.encodeImplicit(0);
+            basic.encodeNull();
+            basic.encodeGeneralizedTime(thisUpdate);
+            if (singleNextUpdate != null) {
+                basic.startExplicit(0);
+                basic.encodeGeneralizedTime(singleNextUpdate);
+                basic.endExplicit();
+            }
+            basic.endSequence();
+        }
+        basic.endSequence();
+        basic.endSequence();
+        basic.startSequence();
+        basic.encodeObjectIdentifier(SHA256_WITH_RSA_OID);
+        basic.endSequence();
+        basic.encodeBitString(new byte[16]);
+        basic.endSequence();
+
+        DEREncoder response = new DEREncoder();
+        response.startSequence();
+        response.encodeImplicit(0, 10); // ENUMERATED
+        response.encodeInteger(BigInteger.ZERO); // successful
+        response.startExplicit(0);
+        response.startSequence();
+        response.encodeObjectIdentifier("1.3.6.1.5.5.7.48.1.1");
+        response.encodeOctetString(basic.getEncoded());
+        response.endSequence();
+        response.endExplicit();
+        response.endSequence();
+
+        assertEquals(nextUpdate.toInstant().toEpochMilli(), X509RevocationTrustManager.getNextUpdate(response.getEncoded()));
+        assertEquals(Long.MAX_VALUE, X509RevocationTrustManager.getNextUpdate(new byte[] { 0x30, 0x03, 0x0a, 0x01, 0x06 }));
+    }
+
+    private static CertificateException assertRevoked(X509RevocationTrustManager trustManager, X509Certificate certificate) {
+        try {
+            trustManager.checkClientTrusted(new X509Certificate[] { certificate }, "RSA");
+            fail("Expected CertificateException not thrown");
+        } catch (CertificateException expected) {
+            return expected;
+        }
+        return null;
+    }
+}
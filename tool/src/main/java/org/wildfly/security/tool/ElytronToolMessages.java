@@ -388,6 +388,9 @@ public interface ElytronToolMessages extends BasicLogger {
     @Message(id = 34, value = "Invalid keysize provided: %s")
     InvalidParameterException invalidKeySize(String reason);
 
+    @Message(id = 35, value = "Invalid \"%s\" value. Must be true or false")
+    IllegalArgumentException invalidParameterMustBeBoolean(String parameter);
+
     @Message(id = NONE, value = "In the message below, option '%s' refers to long option '%s'.")
     String longOptionDescription(String option, String longOption);
 
@@ -419,6 +422,16 @@ public interface ElytronToolMessages extends BasicLogger {
             "Blocks of options must be separated by a blank line.")
     String cmdFileSystemRealmBulkConvertDesc();
 
+    @Message(id = NONE, value = "The relative or absolute path to an existing filesystem-realm which uses the XML identity format. " +
+            "Its identities are copied to the output location using the binary identity format. (Action)")
+    String cmdFileSystemRealmMigrateRealmDesc();
+
+    @Message(id = NONE, value = "The number of levels of directory hashing used by the filesystem-realm to migrate, which is also used by the migrated filesystem-realm. Defaults to 2.")
+    String cmdFileSystemRealmLevelsDesc();
+
+    @Message(id = NONE, value = "Whether the identity names of the filesystem-realm to migrate are stored encoded (Base32) in file names, which is also used by the migrated filesystem-realm. Defaults to true.")
+    String cmdFileSystemRealmEncodedDesc();
+
     @Message(id = NONE, value = "Suppresses all output except errors and prompts.")
     String cmdFileSystemRealmSilentDesc();
 
@@ -437,6 +450,12 @@ public interface ElytronToolMessages extends BasicLogger {
     @Message(id = NONE, value = "Both --bulk-convert and one or more of --users-file, --roles-file, and/or --output-location were specified. Please only use --bulk-convert or all of --users-file, --roles-file, and --output-location.")
     MissingOptionException mutuallyExclusiveOptionsSpecified();
 
+    @Message(id = NONE, value = "Both --migrate-realm and one or more of --bulk-convert, --users-file, and/or --roles-file were specified. Please only use --migrate-realm together with --output-location.")
+    MissingOptionException mutuallyExclusiveMigrateOptionsSpecified();
+
+    @Message(id = NONE, value = "No identities found in the filesystem-realm %s using %d levels and encoded set to %s.")
+    IllegalStateException noIdentitiesToMigrate(String location, int levels, boolean encoded);
+
     @Message(id = NONE, value = "No value found for %s.")
     String noValueFound(String param);
 
@@ -74,9 +74,15 @@ class FileSystemRealmCommand extends Command {
     private static final String FILESYSTEM_REALM_NAME_PARAM = "filesystem-realm-name";
     private static final String SECURITY_DOMAIN_NAME_PARAM = "security-domain-name";
     private static final String BULK_CONVERT_PARAM = "bulk-convert";
+    private static final String MIGRATE_REALM_PARAM = "migrate-realm";
+    private static final String LEVELS_PARAM = "levels";
+    private static final String ENCODED_PARAM = "encoded";
     private static final String FILE_ARG = "file";
     private static final String DIRECTORY_ARG = "directory";
     private static final String NAME_ARG = "name";
+    private static final String NUMBER_ARG = "number";
+    private static final String BOOLEAN_ARG = "true|false";
+    private static final int DEFAULT_LEVELS = 2;
     private static final String DEFAULT_FILESYSTEM_REALM_NAME = "converted-properties-filesystem-realm";
     private static final String DEFAULT_SECURITY_DOMAIN_NAME = "converted-properties-security-domain";
 
@@ -111,6 +117,18 @@ class FileSystemRealmCommand extends Command {
         option.setArgName(NAME_ARG);
         options.addOption(option);
 
+        option = new Option("m", MIGRATE_REALM_PARAM, true, ElytronToolMessages.msg.cmdFileSystemRealmMigrateRealmDesc());
+        option.setArgName(DIRECTORY_ARG);
+        options.addOption(option);
+
+        option = new Option("l", LEVELS_PARAM, true, ElytronToolMessages.msg.cmdFileSystemRealmLevelsDesc());
+        option.setArgName(NUMBER_ARG);
+        options.addOption(option);
+
+        option = new Option("e", ENCODED_PARAM, true, ElytronToolMessages.msg.cmdFileSystemRealmEncodedDesc());
+        option.setArgName(BOOLEAN_ARG);
+        options.addOption(option);
+
         option = new Option("f", FILESYSTEM_REALM_NAME_PARAM, true, ElytronToolMessages.msg.cmdFileSystemRealmFileSystemRealmNameDesc());
         option.setArgName(NAME_ARG);
         options.addOption(option);
@@ -239,8 +257,19 @@ class FileSystemRealmCommand extends Command {
         String usersFileOption = cmdLine.getOptionValue("u");
         String rolesFileOption = cmdLine.getOptionValue("r");
         String outputLocationOption = cmdLine.getOptionValue("o");
+        String migrateRealmOption = cmdLine.getOptionValue("m");
 
-        if (bulkConvert == null) {
+        if (migrateRealmOption != null) {
+            if (bulkConvert != null || usersFileOption != null || rolesFileOption != null) {
+                throw ElytronToolMessages.msg.mutuallyExclusiveMigrateOptionsSpecified();
+            } else if (outputLocationOption == null) {
+                errorHandler(ElytronToolMessages.msg.missingOutputLocation());
+            }
+            migrateFileSystemRealm(migrateRealmOption, outputLocationOption, parseLevels(cmdLine.getOptionValue("l")),
+                    parseEncoded(cmdLine.getOptionValue("e")));
+            finish();
+            return;
+        } else if (bulkConvert == null) {
             if (summaryMode) {
                 summaryString.append("Options were specified via CLI, converting single users-roles combination");
                 summaryString.append(System.getProperty("line.separator"));
@@ -275,7 +304,13 @@ class FileSystemRealmCommand extends Command {
 
         createFileSystemRealm();
         createWildFlyScript();
+        finish();
+    }
 
+    /**
+     * Prints the summary, if requested, and sets the exit status of the command
+     */
+    private void finish() {
         if (summaryMode) {
             summaryString.append(String.join("", Collections.nCopies(SUMMARY_WIDTH, "-")));
             summaryString.append(System.getProperty("line.separator"));
@@ -611,6 +646,67 @@ class FileSystemRealmCommand extends Command {
         }
     }
 
+    /**
+     * Copies the identities of an existing filesystem-realm in the XML identity format to a new filesystem-realm
+     * which uses the binary identity format
+     *
+     * @param inputLocation The location of the existing filesystem-realm
+     * @param outputLocation The location of the new filesystem-realm
+     * @param levels The number of levels of directory hashing of both filesystem-realms
+     * @param encoded Whether the identity names are encoded in the file names of both filesystem-realms
+     * @throws Exception Exception to be handled by Elytron Tool
+     */
+    private void migrateFileSystemRealm(String inputLocation, String outputLocation, int levels, boolean encoded) throws Exception {
+        Path inputPath = Paths.get(inputLocation);
+        if (!inputPath.toFile().exists()) {
+            errorHandler(ElytronToolMessages.msg.fileNotFound(inputLocation));
+        }
+        Security.addProvider(new WildFlyElytronProvider());
+        FileSystemSecurityRealm existingFileSystemRealm = FileSystemSecurityRealm.builder()
+                .setRoot(inputPath)
+                .setLevels(levels)
+                .setEncoded(encoded)
+                .build();
+        FileSystemSecurityRealm newFileSystemRealm = FileSystemSecurityRealm.builder()
+                .setRoot(Paths.get(outputLocation))
+                .setLevels(levels)
+                .setEncoded(encoded)
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        int count = existingFileSystemRealm.copyIdentitiesTo(newFileSystemRealm);
+        if (count == 0) {
+            errorHandler(ElytronToolMessages.msg.noIdentitiesToMigrate(inputLocation, levels, encoded));
+        }
+        if (summaryMode) {
+            summaryString.append(String.format("Migrated %d identities from %s to the binary identity format at %s.", count, inputLocation, outputLocation));
+            summaryString.append(System.getProperty("line.separator"));
+        }
+    }
+
+    private static int parseLevels(String levels) {
+        if (levels == null) {
+            return DEFAULT_LEVELS;
+        }
+        try {
+            int result = Integer.parseInt(levels);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw ElytronToolMessages.msg.invalidParameterMustBeIntBetween(LEVELS_PARAM, 0, Integer.MAX_VALUE);
+    }
+
+    private static boolean parseEncoded(String encoded) {
+        if (encoded == null || encoded.equalsIgnoreCase("true")) {
+            return true;
+        } else if (encoded.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw ElytronToolMessages.msg.invalidParameterMustBeBoolean(ENCODED_PARAM);
+    }
+
     /**
      * Creates the script/commands the user must run for Elytron to recognize
      * and use the new filesystem-realm
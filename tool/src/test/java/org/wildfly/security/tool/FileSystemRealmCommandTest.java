@@ -64,7 +64,7 @@ public class FileSystemRealmCommandTest extends AbstractCommandTest {
     private static final String RELATIVE_BASE_DIR_ROLES = RELATIVE_BASE_DIR + "roles/";
     private static String ABSOLUTE_BASE_DIR_USERS = "";
     private static String ABSOLUTE_BASE_DIR_ROLES = "";
-    private static String[] OUTPUT_LOCATIONS_CLI = new String[13];
+    private static String[] OUTPUT_LOCATIONS_CLI = new String[15];
     private static String[] OUTPUT_LOCATIONS_BULK = new String[11];
 
     private static final String ELYTRON_PASSWORD = "testPasswordElytron";
@@ -243,6 +243,8 @@ public class FileSystemRealmCommandTest extends AbstractCommandTest {
         OUTPUT_LOCATIONS_CLI[10] = ABSOLUTE_BASE_DIR + "wrong-output-4";
         OUTPUT_LOCATIONS_CLI[11] = ABSOLUTE_BASE_DIR + "wrong-output-5";
         OUTPUT_LOCATIONS_CLI[12] = ABSOLUTE_BASE_DIR + "wrong-output-6";
+        OUTPUT_LOCATIONS_CLI[13] = RELATIVE_BASE_DIR + "migrate-input";
+        OUTPUT_LOCATIONS_CLI[14] = RELATIVE_BASE_DIR + "migrate-output";
         OUTPUT_LOCATIONS_BULK[0] = RELATIVE_BASE_DIR + "output-1-bulk";
         OUTPUT_LOCATIONS_BULK[1] = RELATIVE_BASE_DIR + "output-2-bulk";
         OUTPUT_LOCATIONS_BULK[2] = RELATIVE_BASE_DIR + "output-3-bulk";
@@ -628,4 +630,67 @@ public class FileSystemRealmCommandTest extends AbstractCommandTest {
         run(descriptorFile, EXPECTED_WARNING);
         checkMultipleFileSystemRealmCreatedSuccessfully(userMaps, optionalParamsMap);
     }
+
+    @Test
+    public void testMigrateRealm() throws Exception {
+        String usersFile = RELATIVE_BASE_DIR_USERS + "users-4.properties";
+        String rolesFile = RELATIVE_BASE_DIR_ROLES + "roles-4.properties";
+        String inputLocation = OUTPUT_LOCATIONS_CLI[13];
+        String outputLocation = OUTPUT_LOCATIONS_CLI[14];
+
+        Map<String, ArrayList<String>> userMap = new HashMap<>();
+        userMap.put(ELYTRON_USER, ELYTRON_MULTIPLE_ROLES);
+        userMap.put(JAVAJOE_USER, JAVAJOE_MULTIPLE_ROLES);
+
+        run(usersFile, rolesFile, inputLocation, "migrate-fs", "migrate-sd", EXPECTED_OK);
+        checkFileSystemRealmCreatedSuccessfully(userMap, inputLocation);
+
+        String[] args = new String[]{"--migrate-realm", inputLocation, "--output-location", outputLocation, "--silent"};
+        executeCommandAndCheckStatus(args, EXPECTED_OK);
+
+        FileSystemSecurityRealm securityRealm = FileSystemSecurityRealm.builder()
+                .setRoot(Paths.get(outputLocation))
+                .setIdentityFormat(FileSystemSecurityRealm.IdentityFormat.BINARY)
+                .build();
+        for (String name : userMap.keySet()) {
+            ModifiableRealmIdentity existingIdentity = securityRealm.getRealmIdentityForUpdate(new NamePrincipal(name));
+            assertTrue(existingIdentity.exists());
+            String password = name.equals(ELYTRON_USER) ? ELYTRON_PASSWORD : JAVAJOE_PASSWORD;
+            assertTrue(existingIdentity.verifyEvidence(new PasswordGuessEvidence(password.toCharArray())));
+            Attributes attributes = existingIdentity.getAuthorizationIdentity().getAttributes();
+            existingIdentity.dispose();
+            assertTrue(userMap.get(name).containsAll(attributes.get("roles")));
+        }
+    }
+
+    @Test
+    public void testMigrateRealmWithUsersFile() throws Exception {
+        exception.expect(RuntimeException.class);
+        exception.expectMessage(ElytronToolMessages.msg.mutuallyExclusiveMigrateOptionsSpecified().getMessage());
+
+        String usersFile = RELATIVE_BASE_DIR_USERS + "users-4.properties";
+        String[] args = new String[]{"--migrate-realm", OUTPUT_LOCATIONS_CLI[13], "--users-file", usersFile, "--output-location", OUTPUT_LOCATIONS_CLI[14]};
+        executeCommandAndCheckStatus(args, EXPECTED_ERROR);
+    }
+
+    @Test
+    public void testMigrateRealmWithWrongLevels() throws Exception {
+        String inputLocation = OUTPUT_LOCATIONS_CLI[13];
+        run(RELATIVE_BASE_DIR_USERS + "users-4.properties", RELATIVE_BASE_DIR_ROLES + "roles-4.properties", inputLocation, "migrate-fs", "migrate-sd", EXPECTED_OK);
+
+        exception.expect(RuntimeException.class);
+        exception.expectMessage(ElytronToolMessages.msg.noIdentitiesToMigrate(inputLocation, 0, true).getMessage());
+
+        String[] args = new String[]{"--migrate-realm", inputLocation, "--output-location", OUTPUT_LOCATIONS_CLI[14], "--levels", "0", "--silent"};
+        executeCommandAndCheckStatus(args, EXPECTED_ERROR);
+    }
+
+    @Test
+    public void testMigrateRealmWithInvalidEncoded() throws Exception {
+        exception.expect(RuntimeException.class);
+        exception.expectMessage(ElytronToolMessages.msg.invalidParameterMustBeBoolean("encoded").getMessage());
+
+        String[] args = new String[]{"--migrate-realm", OUTPUT_LOCATIONS_CLI[13], "--output-location", OUTPUT_LOCATIONS_CLI[14], "--encoded", "ture", "--silent"};
+        executeCommandAndCheckStatus(args, EXPECTED_ERROR);
+    }
 }